@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimerTask;
 
+import mud.interfaces.CommandHandler;
 import mud.interfaces.ODBI;
 import mud.magic.Spell;
 import mud.misc.Effect;
@@ -32,7 +33,7 @@ import mud.utils.Time;
  * changes are made to the one referred to.
  */
 
-public abstract class Command {
+public abstract class Command implements CommandHandler {
 	private MUDServer parent;
 	private ODBI dbi;
 	
@@ -252,11 +253,11 @@ public abstract class Command {
 	}
 	
 	protected final void addSpellTimer(final Player player, final SpellTimer s) {
-		parent.getSpellTimers(player).add(s);
+		parent.addSpellTimer(player, s);
 	}
 	
 	protected final void addEffectTimer(final Player player, final EffectTimer e) {
-		parent.getEffectTimers(player).add(e);
+		parent.addEffectTimer(player, e);
 	}
 	
 	protected final boolean applyEffect(final MUDObject m, final Effect effect) {
@@ -0,0 +1,224 @@
+package mud;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import mud.interfaces.CommandHandler;
+import mud.utils.GameMode;
+import mud.utils.Trie;
+
+/**
+ * A table of commands, built once at startup, mapping each command name
+ * to it's handler (a Command or cmd_x method), the minimum access level
+ * required to use it and the game modes in which it is available.
+ * 
+ * Lookups are a hash lookup on the name, falling back to the alias table
+ * (alias -> command name). A name may be registered more than once for
+ * different game modes, in which case the first registration that allows
+ * the current mode is used.
+ * 
+ * Abbreviations are resolved seperately, through a trie of command names,
+ * and only when they identify a single command. Commands that do something
+ * drastic (i.e. @shutdown, @recycle) can be marked so that they are never
+ * run from an abbreviation and have to be typed in full.
+ * 
+ * @author Jeremy
+ *
+ */
+public class CommandRegistry {
+	public static class Entry {
+		private final String name;
+		private final CommandHandler handler;
+		private final int access;
+		private final EnumSet<GameMode> modes;
+
+		private Entry next = null; // another registration of the same name (for other modes)
+
+		private Entry(final String name, final CommandHandler handler, final int access, final EnumSet<GameMode> modes) {
+			this.name = name;
+			this.handler = handler;
+			this.access = access;
+			this.modes = modes;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public CommandHandler getHandler() {
+			return this.handler;
+		}
+
+		public int getAccessLevel() {
+			return this.access;
+		}
+
+		public boolean allows(final int access, final GameMode mode) {
+			return access >= this.access && this.modes.contains(mode);
+		}
+	}
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>(200, 0.75f);
+	private final Map<String, String> aliases;
+
+	private final Trie names = new Trie();
+
+	private final Set<String> fullNameOnly = new HashSet<String>(); // commands that can't be abbreviated
+
+	/**
+	 * @param aliases alias table (alias -> command name), which may change after the registry is built
+	 */
+	public CommandRegistry(final Map<String, String> aliases) {
+		this.aliases = aliases;
+	}
+
+	public void register(final String name, final int access, final CommandHandler handler) {
+		register(name, access, handler, EnumSet.allOf(GameMode.class));
+	}
+
+	public void register(final String name, final int access, final CommandHandler handler, final GameMode first, final GameMode... rest) {
+		register(name, access, handler, EnumSet.of(first, rest));
+	}
+
+	private void register(final String name, final int access, final CommandHandler handler, final EnumSet<GameMode> modes) {
+		final Entry entry = new Entry(name, handler, access, modes);
+
+		final Entry existing = entries.get(name);
+
+		if( existing == null ) {
+			entries.put(name, entry);
+			names.add(name);
+		}
+		else {
+			// add to the end of the chain for this name
+			Entry last = existing;
+
+			while( last.next != null ) last = last.next;
+
+			last.next = entry;
+		}
+	}
+
+	public void unregister(final String name) {
+		if( entries.remove(name) != null ) names.remove(name);
+
+		fullNameOnly.remove(name);
+	}
+
+	/**
+	 * Require that the named commands be typed in full, i.e. so that "@shu"
+	 * doesn't shut down the server. Neither abbreviations nor aliases will
+	 * find them.
+	 * 
+	 * @param commandNames
+	 */
+	public void requireFullName(final String...commandNames) {
+		Collections.addAll(fullNameOnly, commandNames);
+	}
+
+	public boolean requiresFullName(final String name) {
+		return fullNameOnly.contains(name);
+	}
+
+	/**
+	 * Find the command with the given name (or alias) that is usable with
+	 * the given access level in the given mode.
+	 * 
+	 * @param name
+	 * @param access
+	 * @param mode
+	 * @return the matching entry, or null if there isn't one
+	 */
+	public Entry lookup(final String name, final int access, final GameMode mode) {
+		Entry entry = entries.get(name);
+
+		if( entry == null ) {
+			final String alias = aliases.get(name);
+
+			// an alias is a shorthand too, so it can't stand in for a command that has to be typed in full
+			if( alias != null && !fullNameOnly.contains(alias) ) entry = entries.get(alias);
+		}
+
+		while( entry != null ) {
+			if( entry.allows(access, mode) ) return entry;
+
+			entry = entry.next;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Find the one command whose name starts with the given abbreviation,
+	 * if there is exactly one. Commands that must be typed in full are never
+	 * matched.
+	 * 
+	 * @param prefix
+	 * @param access
+	 * @param mode
+	 * @return the matching entry, or null if none or more than one command match
+	 */
+	public Entry lookupPrefix(final String prefix, final int access, final GameMode mode) {
+		if( prefix.isEmpty() ) return null;
+
+		Entry match = null;
+
+		// only commands usable here count when deciding if the abbreviation is unique
+		for(final String name : names.getMatches(prefix)) {
+			if( fullNameOnly.contains(name) ) continue;
+
+			final Entry entry = lookup(name, access, mode);
+
+			if( entry != null ) {
+				if( match != null ) return null;
+
+				match = entry;
+			}
+		}
+
+		return match;
+	}
+
+	public boolean hasCommand(final String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Get the names of all the commands that require exactly the
+	 * given access level, in alphabetical order.
+	 * 
+	 * @param access
+	 * @return
+	 */
+	public List<String> getNames(final int access) {
+		final List<String> result = new LinkedList<String>();
+
+		for(final Entry entry : entries.values()) {
+			if( entry.access == access ) result.add(entry.name);
+		}
+
+		Collections.sort(result);
+
+		return result;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+}
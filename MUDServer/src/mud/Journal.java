@@ -0,0 +1,522 @@
+package mud;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import mud.objects.NullObject;
+import mud.objects.Player;
+import mud.utils.Utils;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Write-ahead journal for the object database.
+ *
+ * Changes to the database (objects created or moved, objects recycled,
+ * properties set) are appended to a journal file next to the database file
+ * by a background thread, so nothing the game thread does waits on the disk.
+ * At startup the journal's object records replace the matching lines of the
+ * database file as it is loaded (see replayObjects()). Every so often a checkpoint writes a complete snapshot of the
+ * database (again, on the background thread) and starts the journal over.
+ *
+ * The database file has no room for properties, so a checkpoint also writes
+ * the journaled properties, one record per property, to a snapshot of their
+ * own (next to the database, ending in .props), which is replayed before the
+ * journal's property records.
+ *
+ * Journal records are one per line, tab separated:
+ *
+ * O <dbref> <database line>   - the object as it is now (create, move, change)
+ * R <dbref>                   - the object was recycled
+ * P <dbref> <key> <value>     - a property was set
+ * P <dbref> <key>             - a property was removed
+ *
+ * Objects that change (created, moved, renamed, etc) are only marked as they
+ * change and get written out (once) by flush(), which the main loop calls
+ * every tick.
+ *
+ * @author Jeremy
+ *
+ */
+public final class Journal {
+	private static final String OBJECT = "O";
+	private static final String RECYCLE = "R";
+	private static final String PROPERTY = "P";
+
+	private final File dbFile;
+	private final File journalFile;
+	private final File propsFile;
+
+	// objects that changed since the last flush
+	private final Set<MUDObject> touched = new LinkedHashSet<MUDObject>();
+
+	// journaled properties (dbref -> key -> value, null if removed), written to the properties snapshot at each checkpoint
+	private final Map<Integer, Map<String, String>> props = new HashMap<Integer, Map<String, String>>();
+
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+	private Thread writer = null;
+
+	private volatile boolean running = false;
+
+	// statistics
+	private volatile long records = 0;
+	private volatile long checkpoints = 0;
+	private volatile long lastCheckpoint = 0; // how long the last checkpoint took to write (ms)
+	private volatile int lastSnapshotSize = 0;
+	private volatile int replayedObjects = 0;
+
+	public Journal(final String dbFilename) {
+		this.dbFile = new File(dbFilename);
+
+		final String name = dbFilename.endsWith(".txt") ? dbFilename.replace(".txt", ".journal") : dbFilename + ".journal";
+
+		this.journalFile = new File(name);
+		this.propsFile = new File(name.replace(".journal", ".props"));
+	}
+
+	public String getFilename() {
+		return this.journalFile.getPath();
+	}
+
+	/* Replay */
+
+	/**
+	 * Get the latest database line for each object the journal has records
+	 * for (a recycled object's is a NullObject's). When loading, these replace
+	 * the lines in the database file with the same dbref and any that aren't in
+	 * it are new objects, so the file can still be streamed.
+	 *
+	 * @return dbref -> database line, in dbref order
+	 */
+	public SortedMap<Integer, String> replayObjects() {
+		final SortedMap<Integer, String> db = new TreeMap<Integer, String>();
+
+		int count = 0;
+
+		for(final String[] entry : read(journalFile)) {
+			final int dbref = Utils.toInt(entry[1], -1);
+
+			if( dbref == -1 ) continue;
+
+			if( entry[0].equals(OBJECT) && entry.length == 3 ) {
+				db.put(dbref, entry[2]);
+				count++;
+			}
+			else if( entry[0].equals(RECYCLE) ) {
+				db.put(dbref, new NullObject(dbref).toDB());
+				count++;
+			}
+		}
+
+		this.replayedObjects = count;
+
+		return db;
+	}
+
+	/**
+	 * @return the number of object records read by the last replayObjects()
+	 */
+	public int getReplayedObjects() {
+		return this.replayedObjects;
+	}
+
+	/**
+	 * Apply the properties snapshot, and then the property records in the
+	 * journal, to the loaded database. The replayed properties are kept, so
+	 * the next checkpoint writes them to the new snapshot.
+	 *
+	 * Records are taken in the order they were written, so a recycle forgets
+	 * whatever was set on the object before it (the dbref may since have been
+	 * reused for something else).
+	 *
+	 * @param objectDB
+	 * @return the number of properties set or removed
+	 */
+	public int replayProperties(final ObjectDB objectDB) {
+		final Map<Integer, Map<String, String>> replayed = new LinkedHashMap<Integer, Map<String, String>>();
+
+		final List<String[]> entries = read(propsFile);
+
+		entries.addAll( read(journalFile) );
+
+		for(final String[] entry : entries) {
+			final int dbref = Utils.toInt(entry[1], -1);
+
+			if( dbref == -1 ) continue;
+
+			if( entry[0].equals(PROPERTY) && (entry.length == 3 || entry.length == 4) ) {
+				Map<String, String> map = replayed.get(dbref);
+
+				if( map == null ) {
+					map = new LinkedHashMap<String, String>();
+					replayed.put(dbref, map);
+				}
+
+				map.put(entry[2], (entry.length == 4) ? entry[3] : null);
+			}
+			else if( entry[0].equals(RECYCLE) ) {
+				replayed.remove(dbref);
+			}
+		}
+
+		int count = 0;
+
+		for(final Entry<Integer, Map<String, String>> e : replayed.entrySet()) {
+			final MUDObject object = objectDB.getById(e.getKey());
+
+			if( object == null || object instanceof NullObject ) continue;
+
+			for(final Entry<String, String> p : e.getValue().entrySet()) {
+				if( p.getValue() != null ) object.getProperties().put(p.getKey(), p.getValue());
+				else                       object.getProperties().remove(p.getKey());
+
+				remember(e.getKey(), p.getKey(), p.getValue());
+
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private static List<String[]> read(final File file) {
+		final List<String[]> entries = new LinkedList<String[]>();
+
+		if( file.exists() ) {
+			final String[] lines = Utils.loadStrings( file.getPath() );
+
+			if( lines != null ) {
+				for(final String line : lines) {
+					if( line.isEmpty() ) continue;
+
+					final String[] fields = line.split("\t", -1);
+
+					// a half written last line (crash) has too few fields, just skip it
+					if( fields.length < 2 ) continue;
+
+					for(int f = 2; f < fields.length; f++) fields[f] = unescape(fields[f]);
+
+					entries.add(fields);
+				}
+			}
+		}
+
+		return entries;
+	}
+
+	/* Recording */
+
+	/**
+	 * Start the background writer. Changes are only recorded while the
+	 * journal is running, so this should happen after the database has been
+	 * loaded (and the journal replayed).
+	 */
+	public void start() {
+		if( this.running ) return;
+
+		this.running = true;
+
+		this.writer = new Thread(this::write, "journal");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Write out anything still queued and stop the background writer.
+	 */
+	public void stop() {
+		if( !this.running ) return;
+
+		flush();
+
+		this.running = false;
+
+		this.queue.offer(this); // wake the writer up
+
+		try {
+			this.writer.join(5000);
+		}
+		catch(final InterruptedException ie) {
+			System.out.println("Journal: Interrupted!");
+		}
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	// object created, moved or otherwise changed
+	void touched(final MUDObject object) {
+		if( !running ) return;
+
+		synchronized(touched) {
+			touched.add(object);
+		}
+	}
+
+	// object recycled
+	void recycled(final MUDObject object) {
+		if( !running ) return;
+
+		synchronized(touched) {
+			touched.remove(object);
+		}
+
+		synchronized(props) {
+			props.remove(object.getDBRef());
+		}
+
+		append(RECYCLE + "\t" + object.getDBRef());
+	}
+
+	void propertySet(final MUDObject object, final String key, final String value) {
+		if( !running || value == null ) return;
+
+		remember(object.getDBRef(), key, value);
+
+		append(PROPERTY + "\t" + object.getDBRef() + "\t" + escape(key) + "\t" + escape(value));
+	}
+
+	void propertyRemoved(final MUDObject object, final String key) {
+		if( !running ) return;
+
+		remember(object.getDBRef(), key, null);
+
+		append(PROPERTY + "\t" + object.getDBRef() + "\t" + escape(key));
+	}
+
+	/**
+	 * Serialize objects that changed since the last flush and hand them to
+	 * the writer. Should be called when the world isn't changing under us
+	 * (e.g. from the main loop).
+	 */
+	public void flush() {
+		final List<MUDObject> objects;
+
+		synchronized(touched) {
+			if( touched.isEmpty() ) return;
+
+			objects = new ArrayList<MUDObject>(touched);
+
+			touched.clear();
+		}
+
+		for(final MUDObject object : objects) {
+			if( object.db == null ) continue; // not in the database (anymore)
+
+			// new players aren't saved until they've been approved
+			if( object instanceof Player && ((Player) object).isNew() ) continue;
+
+			append(OBJECT + "\t" + object.getDBRef() + "\t" + escape(object.toDB()));
+		}
+	}
+
+	/**
+	 * Take a snapshot of the database (and the properties) and have it
+	 * written over the database file, after which the journal starts over.
+	 * Everything but writing the files happens on the calling thread, which
+	 * should be one where the world isn't changing (e.g. the main loop).
+	 *
+	 * @param objectDB
+	 */
+	public void checkpoint(final ObjectDB objectDB) {
+		if( !running ) return;
+
+		// everything that is pending is part of the snapshot
+		synchronized(touched) {
+			touched.clear();
+		}
+
+		final List<String> lines = objectDB.snapshot();
+
+		final List<String> properties = new ArrayList<String>();
+
+		synchronized(props) {
+			for(final Entry<Integer, Map<String, String>> e : props.entrySet()) {
+				for(final Entry<String, String> p : e.getValue().entrySet()) {
+					// removed properties stay removed, even if they come from somewhere other than the journal
+					if( p.getValue() != null ) properties.add(PROPERTY + "\t" + e.getKey() + "\t" + escape(p.getKey()) + "\t" + escape(p.getValue()));
+					else                       properties.add(PROPERTY + "\t" + e.getKey() + "\t" + escape(p.getKey()));
+				}
+			}
+		}
+
+		queue.offer( new Checkpoint(lines, properties) );
+	}
+
+	private void remember(final int dbref, final String key, final String value) {
+		synchronized(props) {
+			Map<String, String> map = props.get(dbref);
+
+			if( map == null ) {
+				map = new LinkedHashMap<String, String>();
+				props.put(dbref, map);
+			}
+
+			map.put(key, value);
+		}
+	}
+
+	private void append(final String record) {
+		queue.offer(record);
+	}
+
+	/* Writer (background thread) */
+
+	private void write() {
+		BufferedWriter out = open(true);
+
+		while( running || !queue.isEmpty() ) {
+			try {
+				Object item = queue.take();
+
+				// write everything that's waiting, then flush once
+				while( item != null ) {
+					if( item instanceof String ) {
+						if( out != null ) {
+							out.write((String) item);
+							out.newLine();
+						}
+
+						records++;
+					}
+					else if( item instanceof Checkpoint ) {
+						if( out != null ) out.close();
+
+						writeCheckpoint( (Checkpoint) item );
+
+						out = open(false);
+					}
+
+					item = queue.poll();
+				}
+
+				if( out != null ) out.flush();
+			}
+			catch(final InterruptedException ie) {
+				break;
+			}
+			catch(final IOException ioe) {
+				System.out.println("Journal: write failed");
+				ioe.printStackTrace();
+			}
+		}
+
+		try {
+			if( out != null ) out.close();
+		}
+		catch(final IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	private BufferedWriter open(final boolean append) {
+		try {
+			return new BufferedWriter( new OutputStreamWriter( new FileOutputStream(journalFile, append), StandardCharsets.UTF_8 ) );
+		}
+		catch(final IOException ioe) {
+			System.out.println("Journal: could not open " + journalFile.getPath());
+			ioe.printStackTrace();
+
+			return null;
+		}
+	}
+
+	// write the snapshots and then start the journal over (which is what makes them current)
+	private void writeCheckpoint(final Checkpoint cp) throws IOException {
+		final long start = System.currentTimeMillis();
+
+		writeSnapshot(dbFile, cp.lines);
+		writeSnapshot(propsFile, cp.properties);
+
+		this.lastCheckpoint = System.currentTimeMillis() - start;
+		this.lastSnapshotSize = cp.lines.size();
+		this.checkpoints++;
+	}
+
+	// write a snapshot next to the file it replaces and then swap it in, so a crash leaves one or the other intact
+	private static void writeSnapshot(final File file, final List<String> lines) throws IOException {
+		final File temp = new File(file.getPath() + ".tmp");
+
+		try (final BufferedWriter out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream(temp), StandardCharsets.UTF_8 ) )) {
+			for(final String line : lines) {
+				out.write(line);
+				out.newLine();
+			}
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String escape(final String s) {
+		return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(final String s) {
+		if( s.indexOf('\\') == -1 ) return s;
+
+		final StringBuilder sb = new StringBuilder(s.length());
+
+		for(int c = 0; c < s.length(); c++) {
+			final char ch = s.charAt(c);
+
+			if( ch == '\\' && c + 1 < s.length() ) {
+				final char next = s.charAt(++c);
+
+				switch(next) {
+				case 't':  sb.append('\t'); break;
+				case 'n':  sb.append('\n'); break;
+				case 'r':  sb.append('\r'); break;
+				default:   sb.append(next); break;
+				}
+			}
+			else sb.append(ch);
+		}
+
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "Journal (" + journalFile.getName() + ") running: " + running + " queued: " + queue.size() + " records: " + records +
+				" checkpoints: " + checkpoints + " (last: " + lastSnapshotSize + " objects, " + lastCheckpoint + " ms)";
+	}
+
+	private static final class Checkpoint {
+		private final List<String> lines;
+		private final List<String> properties;
+
+		Checkpoint(final List<String> lines, final List<String> properties) {
+			this.lines = lines;
+			this.properties = properties;
+		}
+	}
+}
@@ -1,19 +1,59 @@
 package mud;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+import mud.utils.Histogram;
 import mud.utils.Log;
+import mud.utils.RingBuffer;
 
+/**
+ * Keeps track of the server's logs and does the writing for them.
+ * 
+ * Once started, lines logged from any thread are put in a ring buffer and a
+ * background writer thread takes them out in batches, writes them to their
+ * files and flushes each file once per batch. Nothing that logs ever waits
+ * on the disk. If the writer falls so far behind that the buffer fills up,
+ * lines are dropped (and counted) rather than holding up the game.
+ * 
+ * @author Jeremy
+ *
+ */
 public final class Logger {
+	private static final int CAPACITY = 8192;   // lines the buffer can hold
+	private static final int BATCH_SIZE = 512;  // most lines written before flushing
+	private static final long IDLE_MS = 250;    // how long the writer sleeps when there's nothing to do
+	
 	private final Map<String, Boolean> config;
 	private final Map<String, Log> logs;
 	
 	private String directory = "";
 	
-	private boolean started = false;
+	private volatile boolean started = false;
+	
+	// writing
+	private final RingBuffer<Record> records = new RingBuffer<Record>(CAPACITY);
+	
+	private Thread writer = null;
+	
+	// rotation (applied to each log when registered)
+	private long maxBytes = -1;
+	private long maxAge = -1;
+	
+	// metrics
+	private final AtomicLong dropped = new AtomicLong(0); // lines lost because the buffer was full
+	private final AtomicLong written = new AtomicLong(0); // lines written
+	private final AtomicLong batches = new AtomicLong(0);
+	
+	private final Histogram lag = new Histogram("log lag (us)"); // time from being logged to being written
 
 	public Logger() {
 		this.config = new LinkedHashMap<String, Boolean>();
@@ -93,12 +133,26 @@ public final class Logger {
 		this.directory = dirPath;
 	}
 	
+	/**
+	 * Set when logs start a new file. Applies to logs registered afterwards.
+	 * 
+	 * @param maxBytes size limit of a file, in bytes (-1 for none)
+	 * @param maxAge age limit of a file (-1 for none)
+	 * @param unit unit of maxAge
+	 */
+	public void setRotation(final long maxBytes, final long maxAge, final TimeUnit unit) {
+		this.maxBytes = maxBytes;
+		this.maxAge = (maxAge > 0) ? unit.toMillis(maxAge) : -1;
+	}
+	
 	public void register(final Log log) {
 		if( this.logs.containsKey( log.getName() ) ) {
 			System.out.println("That log conflicts with an existing log by the same name.");
 		}
 		else {
 			log.setLogDirectory(directory);
+			log.setRotation(maxBytes, maxAge);
+			log.setLogger(this);
 			
 			this.logs.put(log.getName(), log);
 			
@@ -117,6 +171,10 @@ public final class Logger {
 		
 		return l;
 	}
+	
+	public Collection<Log> getLogs() {
+		return Collections.unmodifiableCollection(this.logs.values());
+	}
 
 	public void start() {
 		for(final Log log : this.logs.values()) {
@@ -124,14 +182,130 @@ public final class Logger {
 		}
 
 		this.started = true;
+		
+		this.writer = new Thread(this::write, "log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
 	}
 
 	public void stop() {
+		this.started = false;
+		
+		// let the writer finish up whatever is left
+		if( this.writer != null ) {
+			LockSupport.unpark(this.writer);
+			
+			try {
+				this.writer.join(5000);
+			}
+			catch(final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			
+			this.writer = null;
+		}
+		
 		for(final Log log : this.logs.values()) {
 			log.closeLog();
 		}
+	}
+	
+	public boolean isRunning() {
+		return this.started;
+	}
+	
+	/**
+	 * Queue a (formatted) line to be written to a log by the writer thread.
+	 * 
+	 * @param log
+	 * @param line
+	 * @return false if the line was dropped, because the buffer is full
+	 */
+	public boolean enqueue(final Log log, final String line) {
+		if( !records.offer( new Record(log, line) ) ) {
+			dropped.incrementAndGet();
+			
+			return false;
+		}
 		
-		this.started = false;
+		// don't let a burst wait for the writer to wake up on its own
+		if( records.size() >= BATCH_SIZE ) LockSupport.unpark(this.writer);
+		
+		return true;
+	}
+	
+	public long getDropped() {
+		return this.dropped.get();
+	}
+	
+	public long getWritten() {
+		return this.written.get();
+	}
+	
+	/**
+	 * Number of lines waiting to be written.
+	 * 
+	 * @return
+	 */
+	public int getPending() {
+		return this.records.size();
+	}
+	
+	public Histogram getLag() {
+		return this.lag;
+	}
+	
+	@Override
+	public String toString() {
+		return "Logger logs: " + logs.size() + " pending: " + records.size() + " written: " + written.get() +
+				" (" + batches.get() + " batches) dropped: " + dropped.get();
+	}
+	
+	// the writer thread
+	private void write() {
+		final Set<Log> touched = new HashSet<Log>();
+		
+		while( true ) {
+			final boolean running = this.started; // check before draining, so nothing is missed when stopping
+			
+			final long now = System.nanoTime();
+			
+			final int n = records.drain(r -> {
+				r.log.append(r.line);
+				
+				lag.record( (now - r.time) / 1000 );
+				
+				touched.add(r.log);
+			}, BATCH_SIZE);
+			
+			if( n > 0 ) {
+				for(final Log log : touched) log.flush();
+				
+				touched.clear();
+				
+				written.addAndGet(n);
+				batches.incrementAndGet();
+			}
+			
+			final long time = System.currentTimeMillis();
+			
+			for(final Log log : this.logs.values()) log.checkAge(time);
+			
+			if( !running && records.size() == 0 ) break;
+			
+			if( n < BATCH_SIZE ) LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos(IDLE_MS) );
+		}
+	}
+	
+	private static final class Record {
+		private final Log log;
+		private final String line;
+		private final long time = System.nanoTime();
+		
+		private Record(final Log log, final String line) {
+			this.log = log;
+			this.line = line;
+		}
 	}
 
 	// MUDServer
@@ -18,7 +18,6 @@ package mud;
  */
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +26,8 @@ import mud.misc.Effect;
 import mud.objects.Player;
 import mud.utils.MudUtils;
 import mud.utils.Point;
+import mud.utils.PropertyStore;
+import mud.utils.StringTable;
 
 /**
  * MUDObject Class
@@ -35,13 +36,10 @@ import mud.utils.Point;
  * 
  */
 public abstract class MUDObject {
-	private static final int NUM_PROPS = 100;
-	private static final float LOAD_FACT = 0.75f;
-	
 	/* object data - persistent */
 	private Integer dbref;               // database reference number
 	protected String name;               // object name
-	protected String desc;               // object description
+	protected String desc;               // object description (null if it has been packed, see compact(...))
 	protected EnumSet<ObjectFlag> flags; // object flags
 	protected Integer location;          // object location
 	
@@ -53,12 +51,19 @@ public abstract class MUDObject {
 	protected double weight = 0;        // the weight in whatever units are used of the equippable object
 	
 	protected final Point pos;                      // object's position on a cartesian plane (3D Point)
-	protected final Map<String, String> properties; //
+	protected final PropertyStore properties;       // "props" (nothing is allocated until one is set)
 	protected final List<Effect> effects;           // Effects set on the object
 
 	/* object state - transient? */
 	public boolean Edit_Ok = true;  // is this object allowed to be edited
 
+	transient ObjectDB db = null;   // the database indexing this object's location (if any)
+
+	private transient volatile StringTable.Packed packedDesc = null; // the description, if it was long enough to be packed
+	private transient volatile int descVersion = 0;                  // bumped whenever the description is changed
+
+	private transient volatile int changes = 0; // bumped on every change made through the mutators below
+
 	/**
 	 * Parent constructor for subclasses. Allows you to initialize a subclass with
 	 * a dbref number without having issues with the dbref being private.
@@ -79,7 +84,7 @@ public abstract class MUDObject {
 		this.owner = null;
 		
 		this.pos = new Point(0, 0, 0);
-		this.properties = new LinkedHashMap<String, String>(MUDObject.NUM_PROPS, MUDObject.LOAD_FACT);
+		this.properties = new PropertyStore();
 		this.effects = new ArrayList<Effect>();
 	}
 	
@@ -96,7 +101,7 @@ public abstract class MUDObject {
 		this.owner = null;
 		
 		this.pos = new Point(0, 0, 0);
-		this.properties = new LinkedHashMap<String, String>(MUDObject.NUM_PROPS, MUDObject.LOAD_FACT);
+		this.properties = new PropertyStore();
 		this.effects = new ArrayList<Effect>();
 	}
 	
@@ -113,7 +118,7 @@ public abstract class MUDObject {
 		this.type = TypeFlag.OBJECT;
 		
 		this.name = template.name;
-		this.desc = template.desc;
+		this.desc = template.getDesc(); // the template's may be packed
 		this.flags = template.flags;
 		this.location = -1;
 		
@@ -121,7 +126,7 @@ public abstract class MUDObject {
 		
 		// TODO restore/duplicate template properties?
 		this.pos = new Point(0, 0, 0);
-		this.properties = new LinkedHashMap<String, String>(MUDObject.NUM_PROPS, MUDObject.LOAD_FACT);
+		this.properties = new PropertyStore();
 		this.effects = new ArrayList<Effect>();
 	}
 	
@@ -147,7 +152,7 @@ public abstract class MUDObject {
 		this.owner = null;
 		
 		this.pos = new Point(0, 0, 0);
-		this.properties = new LinkedHashMap<String, String>(MUDObject.NUM_PROPS, MUDObject.LOAD_FACT);
+		this.properties = new PropertyStore();
 		this.effects = new ArrayList<Effect>();
 	}
 
@@ -191,7 +196,8 @@ public abstract class MUDObject {
 	 * @return true if succeeded, false if failed
 	 */
 	public boolean setName(final String newName) {
-		this.name = newName;
+		this.name = (this.db != null) ? this.db.getStrings().intern(newName) : newName;
+		changed();
 		return true;
 	}
 
@@ -202,6 +208,10 @@ public abstract class MUDObject {
 	 */
 	public final String getDesc()
 	{
+		final StringTable.Packed packed = this.packedDesc;
+		
+		if( packed != null ) return (this.db != null) ? this.db.getStrings().text(packed) : packed.toString();
+		
 		return this.desc;
 	}
 
@@ -211,7 +221,47 @@ public abstract class MUDObject {
 	 * @param newDescription the new description for the MUDObject
 	 */
 	public final void setDesc(final String newDescription) {
-		this.desc = newDescription;
+		if( this.db != null ) setText( this.db.getStrings().store(newDescription) );
+		else                  setText( newDescription );
+		
+		this.descVersion++;
+		
+		changed();
+	}
+	
+	/**
+	 * Get the version of the description, which changes every time the
+	 * description does (so that anything made from it can tell if it's out
+	 * of date).
+	 * 
+	 * @return
+	 */
+	public final int getDescVersion() {
+		return this.descVersion;
+	}
+	
+	/**
+	 * Move the name and description into the string table, so that they are
+	 * shared with any other objects that have the same ones (long descriptions
+	 * may be packed instead, see StringTable).
+	 * 
+	 * @param strings
+	 */
+	final void compact(final StringTable strings) {
+		this.name = strings.intern(this.name);
+		
+		if( this.packedDesc == null ) setText( strings.store(this.desc) );
+	}
+	
+	private void setText(final Object text) {
+		if( text instanceof StringTable.Packed ) {
+			this.packedDesc = (StringTable.Packed) text;
+			this.desc = null;
+		}
+		else {
+			this.desc = (String) text;
+			this.packedDesc = null;
+		}
 	}
 
 	/**
@@ -238,6 +288,7 @@ public abstract class MUDObject {
 	
 	public final void setFlag(final ObjectFlag flag) {
 		this.flags.add(flag);
+		changed();
 	}
 
 	/**
@@ -248,6 +299,7 @@ public abstract class MUDObject {
 	public final void setFlags(final EnumSet<ObjectFlag> tempFlags)
 	{
 		this.flags = tempFlags;
+		changed();
 	}
 
 	/**
@@ -257,6 +309,7 @@ public abstract class MUDObject {
 	 */
 	public final void removeFlag(final ObjectFlag flag) {
 		this.flags.remove(flag);
+		changed();
 	}
 
 	/**
@@ -267,6 +320,7 @@ public abstract class MUDObject {
 	public final void removeFlags(final EnumSet<ObjectFlag> tempFlags)
 	{
 		this.flags.removeAll(tempFlags);
+		changed();
 	}
 
 	/**
@@ -297,7 +351,14 @@ public abstract class MUDObject {
 	 * @param newLocation integer (database reference) of another MUDObject
 	 */
 	public final void setLocation(final Integer newLocation) {
+		final Integer oldLocation = this.location;
+
 		this.location = newLocation;
+
+		changed();
+
+		// keep the database's record of what is where up to date
+		if( this.db != null ) this.db.moved(this, oldLocation, newLocation);
 	}
 
 	/**
@@ -351,23 +412,9 @@ public abstract class MUDObject {
 	 * @return
 	 */
 	public final <T> T getProperty(final String key, Class<T> c) throws ClassCastException {
-		// TODO this is an ugly, ugly kludge...
-		final String s = this.properties.get(key);
-
-		if( c.getSimpleName().equals("Boolean") ) {	
-			if( s.equals(":true") ) return (T) c.cast(true);
-			else                    return (T) c.cast(false);
-		}
-		else if( c.getSimpleName().equals("Integer") ) {
-			try {
-				int integer = Integer.parseInt(s);
-				
-				return (T) c.cast(integer);
-			}
-			catch(final NumberFormatException nfe) {
-				return null;
-			}
-		}
+		if( c == Boolean.class )     return c.cast( this.properties.getBoolean(key) );
+		else if( c == Integer.class ) return c.cast( this.properties.getInteger(key) );
+		else if( c == String.class )  return c.cast( this.properties.get(key) );
 		
 		return null;
 	}
@@ -382,27 +429,53 @@ public abstract class MUDObject {
 	 */
 	public final void setProperty(final String key, final String value) {
 		this.properties.put(key,  value);
+
+		changed();
+
+		if( this.db != null ) this.db.propertySet(this, key, value);
 	}
 	
+	/**
+	 * Set a property, keeping the type of the value. Booleans, integers and
+	 * objects (stored as their dbref) are supported, anything else is ignored.
+	 * 
+	 * @param key   property name
+	 * @param value property value
+	 */
 	public final <T> void setProperty(final String key, final T value) {
-		final Class c = value.getClass();
+		if( value instanceof Boolean )        this.properties.putBoolean(key, (Boolean) value);
+		else if( value instanceof Integer )   this.properties.putInteger(key, (Integer) value);
+		else if( value instanceof MUDObject ) this.properties.putDBRef(key, ((MUDObject) value).getDBRef());
+		else if( value instanceof String )    this.properties.put(key, (String) value);
+		else return;
+
+		changed();
+
+		if( this.db != null ) this.db.propertySet(this, key, this.properties.get(key));
+	}
+	
+	/**
+	 * Remove a property from this object.
+	 * 
+	 * @param key property name
+	 * @return false if there was no such property
+	 */
+	public final boolean removeProperty(final String key) {
+		if( this.properties.remove(key) == null ) return false;
+
+		changed();
+
+		if( this.db != null ) this.db.propertyRemoved(this, key);
 		
-		if( c.getSimpleName().equals("Boolean") ) {
-			final Boolean b = (Boolean) value;
-			
-			if( b ) this.properties.put(key, ":true");
-			else    this.properties.put(key, ":false");
-		}
-		else if( c.getSimpleName().equals("Integer") ) {
-			final Integer i = (Integer) value;
-			
-			this.properties.put(key, "" + i.intValue());
-		}
+		return true;
 	}
 
 	/**
-	 * Get the Properties HashMap, a mutable hashmap of strings and objects
-	 * that can be used to store "properties" (a.k.a. "props) of/on the object.
+	 * Get the Properties, a mutable map of strings that can be used to store
+	 * "properties" (a.k.a. "props) of/on the object.
+	 * 
+	 * NOTE: changes made through the map are not journaled, use setProperty
+	 * and removeProperty
 	 * 
 	 * @return
 	 */
@@ -410,21 +483,27 @@ public abstract class MUDObject {
 		return this.properties;
 	}
 	
+	/**
+	 * Get the properties in a property directory (and any directories in it).
+	 * 
+	 * @param propdir directory name, ending in '/' (i.e. "visual/")
+	 * @return the properties or null if propdir isn't a directory name
+	 */
 	public final Map<String, String> getProperties(final String propdir) {
-		if( propdir.endsWith("/") ) {
-			final Map<String, String> props = new LinkedHashMap<String, String>();
-			
-			for(final String key : properties.keySet()) {
-				if( key.startsWith(propdir) ) {
-					props.put( key, properties.get(key) );
-				}
-			}
-			
-			return props;
-		}
+		if( propdir.endsWith("/") ) return this.properties.getDirectory(propdir);
 		
 		return null;
 	}
+	
+	/**
+	 * Are there any properties in the property directory?
+	 * 
+	 * @param propdir directory name, ending in '/' (i.e. "visual/")
+	 * @return
+	 */
+	public final boolean hasProperties(final String propdir) {
+		return this.properties.hasDirectory(propdir);
+	}
 
 	public final Map<String, String> getVisualProperties() {
 		return getProperties("visual/");
@@ -460,6 +539,7 @@ public abstract class MUDObject {
 	public final void addEffect(final Effect effect)
 	{
 		this.effects.add(effect);
+		changed();
 	}
 	
 	/**
@@ -479,6 +559,7 @@ public abstract class MUDObject {
 			effect = this.effects.get(e);
 			if (effect.getName().equals(tEffect)) {
 				this.effects.remove(effect);
+				changed();
 			}
 		}
 	}
@@ -491,7 +572,7 @@ public abstract class MUDObject {
 	 * @param effect
 	 */
 	public final void removeEffect(final Effect effect) {
-		this.effects.remove(effect);
+		if( this.effects.remove(effect) ) changed();
 	}
 	
 	/**
@@ -500,6 +581,27 @@ public abstract class MUDObject {
 	public final void clearEffects()
 	{
 		this.effects.clear();
+		changed();
+	}
+
+	/**
+	 * Note that this object has changed (mutators do this for you). Save
+	 * code compares change counts to find out what needs to be written.
+	 */
+	protected final void changed() {
+		this.changes++;
+		
+		if( this.db != null ) this.db.changed(this);
+	}
+
+	/**
+	 * Get the object's change count (a version number of sorts), which goes
+	 * up every time the object is modified through one of its mutators.
+	 * 
+	 * @return
+	 */
+	public final int getChanges() {
+		return this.changes;
 	}
 
 	public final Point getPosition() {
@@ -21,6 +21,7 @@ package mud;
 
 // Java Libraries
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.net.Socket;
@@ -59,10 +61,16 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
+import java.util.stream.Stream;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -267,6 +275,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private String FORBIDDEN_FILE = resolvePath(CONFIG_DIR, "forbidden.txt");           // forbidden.txt -- forbidden names/words
 	private String MOTD_FILE = resolvePath(MOTD_DIR,        "motd.txt");                // motd.txt -- message of the day/intro screen
 	private String THEME_FILE = resolvePath(THEME_DIR,      "default.thm");             // theme file to load
+	private String ACCOUNT_INDEX_FILE = resolvePath(ACCOUNT_DIR, "accounts.idx");   // accounts.idx -- id and username of each account
 
 	// ???
 	private Integer start_room = 9; // default starting room
@@ -278,8 +287,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	
 	public TimeLoop game_time;   // TimeLoop Object
 	private CommandExec cmdExec; //
-
-	private ConcurrentLinkedQueue<CMD> cmdQueue;
 	
 	final private ChatChanneler chan = new ChatChanneler();
 
@@ -324,15 +331,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private Map<String, Thread> threads = new Hashtable<String, Thread>();
 
 	private final Map<String, Pair<String>> displayColors = new HashMap<String, Pair<String>>(8, 0.75f); // HashMap specifying particular colors for parts of text (dynamic)
+	
+	// compiled color markup, see send(ColorTemplate, ...)
+	private static final ColorTemplate COLORS_ON = ColorTemplate.compile("{rainbow}{0}{/} colors turned on.");
+	private static final ColorTemplate COLORS_USED = ColorTemplate.compile("Using {rainbow}{0}{/} colors.");
+	private static final ColorTemplate TAKE_SIP = ColorTemplate.compile("You take a sip of your {=0}{1}{/}.");
 
 	private final Map<String, String> aliases = new LinkedHashMap<String, String>(20, 0.75f); // HashMap to store command aliases (static)
 	private final Map<Integer, String> Errors = new HashMap<Integer, String>(5, 0.75f);      // HashMap to store error messages for easy retrieval (static)
 	private final Map<String, Date> holidays = new HashMap<String, Date>(10, 0.75f);               // HashMap that holds an in-game date for a "holiday" name string
 	private final Map<Integer, String> years = new HashMap<Integer, String>(50, 0.75f);            // HashMap that holds year names for game themes that supply them (static)
 	private final Map<String, Command> commandMap = new HashMap<String, Command>(20, 0.75f); // HashMap that holds an instance of each command currently (dynamic)
+
+	private final CommandRegistry commands = new CommandRegistry(aliases);      // built-in commands, available once logged in (static)
+	private final CommandRegistry loginCommands = new CommandRegistry(aliases); // built-in commands, available before logging in (static)
 	private final Map<Zone, Integer> zones = new LinkedHashMap<Zone, Integer>(1, 0.75f);   // HashMap that tracks currently "loaded" zones (dynamic)
 	
-	private final Map<Client, Player> sclients = new HashMap<Client, Player>();
+	private final SessionRegistry sessions = new SessionRegistry(); // per connection state, logged in players by client, name and dbref (dynamic)
 	
 	private final PlayerControlMap playerControlMap = new PlayerControlMap();                // HashMap that stores control data for Players controlling NPCs (dynamic)
 	
@@ -346,8 +361,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private Map<String, Spell> spells2 = new HashMap<String, Spell>(); // HashMap to lookup spells by index using name as key (static)
 
 	// Help Files stored as string arrays, indexed by name
-	private Map<String, String[]> helpTable = new Hashtable<String, String[]>();
-	private Map<String, String[]> topicTable = new Hashtable<String, String[]>();
+	private final HelpArchive helpFiles = new HelpArchive(HELP_DIR, ".help", resolvePath(HELP_DIR, "help.pak"));            // help files (memory-mapped)
+	private final HelpArchive topicFiles = new HelpArchive(TOPIC_DIR, ".topic", resolvePath(TOPIC_DIR, "topics.pak"));    // topic files (memory-mapped)
+	
+	private final Map<String, Long> startupTimes = new LinkedHashMap<String, Long>(); // how long each part of startup took (ms)
 
 	// "Security" Stuff
 	private List<String> banlist;        // ArrayList of banned IP addresses
@@ -406,11 +423,16 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	/* global */
 
 	protected ArrayList<Mobile> moving = new ArrayList<Mobile>();  // list of mobiles which are currently moving
-	protected ArrayList<Player> outside = new ArrayList<Player>(); // list of players who are currently outside
+	
+	private final Broadcaster broadcaster = new Broadcaster(); // room and outdoor broadcasts, tracks which players are outside
+	
+	private final RenderCache renderCache = new RenderCache(4096); // descriptions, already wrapped for display
 
 	// public HashMap<Room, List<Player>> listenersLists; // possibly replace per room listener lists? (UNUSED)
 
-	protected Timer timer = new Timer(); // Timer object with thread for executing TimerTask(s) for Spells, Effects
+	protected Timer timer = new Timer(); // Timer object with thread for executing TimerTask(s) for modules
+
+	private final TimingWheel timers = new TimingWheel(512, 100, TimeUnit.MILLISECONDS); // game timers (spells, effects, auctions, etc), advanced by the main loop
 
 	private Hashtable<String, Bank> banks = new Hashtable<String, Bank>(); // banks
 
@@ -442,12 +464,35 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private boolean magic = false;           // use the coded magic system?                                     [default: false]
 	private boolean notify_immediate = true; // notifications using notify(...) are sent immediately            [default: true]
 	private boolean input_hold = false;      // don't accept new input during automatic backups are running     [default: false]   
-	private boolean queued_commands = false; // should we queue commands and process them in order of arrival?  [default: true]
+	private boolean queued_commands = false; // should we queue commands and process them on worker threads?   [default: false]
 	private boolean soft_commands = true;    // will we look at a command map for Command object based commands [default: true]
 	private boolean console_enabled = true;  // is the admin console available                                  [default: true]
 	private boolean echo_enabled = true;     // does the server do echoing ???
+	private boolean use_nio = false;         // use the non-blocking (java.nio) network server                  [default: false]
+	private boolean use_journal = false;     // keep a write-ahead journal of database changes                  [default: false]
+	private boolean lazy_accounts = false;   // load accounts when they are first needed, rather than at startup [default: false]
+	private boolean use_mccp = false;        // offer clients compressed output (MCCP2)                         [default: false]
+	
+	private int tick_ms = 100;               // length of a game tick (chat, notifications and output are handled once per tick)
+	private int cmd_threads = 4;             // number of worker threads executing queued commands
+	private int hash_threads = 2;            // number of worker threads hashing passwords (logins, character creation)
+	private int login_attempts = 5;          // password checks allowed per ip address per minute
+	private int checkpoint_min = 15;         // minutes between database snapshots (when journaling)
+	private int log_max_kb = -1;             // size (in kilobytes) at which a log file is rotated (-1 for no limit)
+	private int log_rotate_min = -1;         // minutes after which a log file is rotated (-1 for no limit)
+	private int desc_pack_length = -1;       // descriptions at least this long are kept packed in memory (-1 to never pack)
+	
+	private Journal journal = null;          // write-ahead journal of database changes (if enabled)
 	
-	// TODO resolve the issue behind enabling queued_commands which results in fairly high CPU usage
+	private PasswordHasher hasher = null;    // hashes passwords off of the game thread
+	
+	private final Map<MUDObject, Integer> jsonVersions = new WeakHashMap<MUDObject, Integer>(); // object versions last written out as JSON
+	
+	// input waiting to be handled by the main loop, and how long the main loop is taking
+	private final BlockingQueue<InputEvent> inputQueue = new LinkedBlockingQueue<InputEvent>();
+	
+	private final Histogram tickTimes = new Histogram("tick (us)");
+	private final Histogram queueWaitTimes = new Histogram("wait (us)");
 	
 	/*
 	 * 'weather' is auto set to true when weather is setup/enabled
@@ -458,18 +503,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 	// TODO config settings for client/server echoing?
 
-	// state data for various client/server interactions
-	private Map<Client, String> clientState = new Hashtable<Client, String>();
-	
-	private Map<Client, LoginData> loginData = new Hashtable<Client, LoginData>();    // holding values for login
-	private Map<Client, ClientData> clientData = new Hashtable<Client, ClientData>(); // used for?
+	// state data for various client/server interactions is kept in each client's session (see sessions)
 	
 	// holds instances of interactive terminal to game that is outside of the game world itself
 	private ConsoleMonitor cmon;
 
-	// Client/Account Table (maps clients to accounts, used for account login/menu)
-	private Map<Client, Account> caTable = new Hashtable<Client, Account>();
-
 	private AccountManager acctMgr = new AccountManager(); // Account Manager, holds and tracks Account objects
 
 	// necessary so that cNames can properly map to player objects
@@ -523,78 +561,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	// list of currently hostile creatures
 	public List<Creature> hostiles = new LinkedList<Creature>();
 
-	// command lists
-	private static final String[] user_cmds = new String[] {
-			"ask", "attack", "auction", "auctions",
-			"balance", "bash", "bid", "boards", "buy",
-			"calendar", "cast", "chargen", "climb",
-			"cls", "colors", "commands", "condition",
-			"describe", "drink", "drop",
-			"effects", "equip", "exits", "exp",
-			"feats",
-			"go", "get", "greet",
-			"help", "home", "housing",
-			"inspect", "interact", "inventory",
-			"levelup", "list", "lock", "look",
-			"lookat",
-			"mail", "map", "money", "motd", "move",
-			"page", "party", "passwd", "pconfig", "pinfo",
-			"push", "put", "prompt",
-			"quests", "quit",
-			"roll", "run",
-			"say", "score", "sell", "sheathe", "skillcheck",
-			"spellinfo", "spells", "stats", "staff",
-			"talk", "take", "target", "tell", "time",
-			"trade", "travel",
-			"unequip", "unlock", "use",
-			"version", "vitals",
-			"walk", "where", "who", "write"
-	};
-
-	private static final String[] build_cmds = new String[] { "@check",
-			"@cedit",                      // @check check to see what exit props aren't set
-			"@describe", "@dig", "@door",  // @describe describe an object, @dig dig a new room, @door create an arbitrary exit
-			"@dungeon",                    // @dungeon dig a new dungeon
-			"@examine", "@fail", "@flags", // @fail set exit fail message, @flags see flags on an object
-			"@iedit",                      // @iedit edit an item
-			"@jump",                       // @jump jump to a different room
-			"@lsedit",                     // @lsedit edit a list
-			"@makehouse",                  // @makehouse make a house
-			"nameref", "@ofail", "@open",  // @ofail set exit ofail message, @open open a new exit (1-way)
-			"@recycle", "@redit",          // @recycle recycle objects
-			"@osucc", "@success"           // @osucc set exit osuccess message, @success set exit success message
-	};
-
-	private static final String[] admin_cmds = new String[] {
-			"@alias",                                                         // @alias setup command aliases
-			"@bb",                                                            // @bb use bulletin board
-			"@config", "@control",                                            // @config change server configuration options, @control control an NPC
-			"@debug",                                                         // @debug show debug information
-			"@hash", "@hedit",                                                // @hash see hash of a string, @hedit edit help files
-			"@give", "@kick", "@listprops",                                   // @listprops list properties on an object
-			"@nextdb", "@npcs",                                               // @nextdb get the next unused dbref number
-			"@pgm",                                                           // @pgm interpret a "script" program
-			"@set", "setcolor", "@setskill",                                  // @set set properties on objects, @setskill set player skill values
-			"@sethp", "@setlevel", "@setmana",
-			"@setxp",
-			"@viewlog", "@zones", "@zoneinfo"                                 // @zones setup,configure,modify zones
-	};
-
-	private static final String[] wiz_cmds = new String[] {
-			"@backup", "@ban",     // @ban ban player
-			"@flag", "@flush",
-			"@setmode", "@start",
-			"@teleport"
-	};
-
-	private static final String[] superuser_cmds = new String[] {
-			"@access",
-			"@broadcast",
-			"@load",
-			"@sethour", "@setminute", "@shutdown",
-			"@unload"
-	};
-
 	private static final int DEFAULT_PORT = 4000;
 	
 	// on-going conversation tracking
@@ -712,6 +678,39 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					else if (param.equals("use-accounts")) {
 						server.use_accounts = true;
 					}
+					else if (param.equals("lazy-accounts")) {
+						server.lazy_accounts = true;
+					}
+					else if (param.equals("nio")) {
+						server.use_nio = true;
+					}
+					else if (param.equals("mccp")) {
+						server.use_mccp = true;
+					}
+					else if (param.equals("queued-commands")) {
+						server.queued_commands = true;
+					}
+					else if (param.equals("cmd-threads")) {
+						server.cmd_threads = Utils.toInt(args[a + 1], 4);
+					}
+					else if (param.equals("hash-threads")) {
+						server.hash_threads = Utils.toInt(args[a + 1], 2);
+					}
+					else if (param.equals("journal")) {
+						server.use_journal = true;
+					}
+					else if (param.equals("checkpoint-interval")) {
+						server.checkpoint_min = Utils.toInt(args[a + 1], 15);
+					}
+					else if (param.equals("log-max-size")) {
+						server.log_max_kb = Utils.toInt(args[a + 1], -1);
+					}
+					else if (param.equals("log-rotate")) {
+						server.log_rotate_min = Utils.toInt(args[a + 1], -1);
+					}
+					else if (param.equals("pack-descriptions")) {
+						server.desc_pack_length = Utils.toInt(args[a + 1], -1);
+					}
 					else if (param.equals("test")) {
 						server.testing_enabled = true;
 						System.out.println("Testing Enabled!");
@@ -902,6 +901,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			logger.addConfigOption("log_chat", log_chat);
 			logger.addConfigOption("log_debug", log_debug);
 			
+			// start new log files when they get too big or too old
+			logger.setRotation( (log_max_kb > 0) ? log_max_kb * 1024L : -1, log_rotate_min, TimeUnit.MINUTES );
+			
 			// instantiate log objects (using no max length, no buffer -- for now)
 			
 			logger.register( new Log("log", false) );   // character actions, etc
@@ -912,7 +914,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			
 			attach( logger );
 			
-			// open log files for writing
+			// open log files for writing (and start the thread that writes to them)
 			this.logger.start();
 			
 			debug("Logs Initialized.");
@@ -958,95 +960,84 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// wise to implement configurable auto db-saving here
 		//
 
-		// error message hashmap loading
-		final String[] errors = Utils.loadStrings(ERRORS_FILE);
-		for (final String e : errors) {
-			final String[] working = e.split(":");
-
-			if (working.length >= 2) {
-				debug("Error(number): " + working[0]);
-				debug("Error(message): " + working[1]);
-				
-				this.Errors.put(Integer.parseInt(working[0]), working[1]);
-			}
-		}
+		long time = System.nanoTime();
 		
-		debug("");
+		final long startup = time;
 		
-		// load spells
-		if (magic) {
-			loadSpells(Utils.loadStrings(SPELLS_FILE));
-			debug("Spells Loaded!");
-		}
-		else debug("Magic Disabled!");
+		// None of these depend on each other (or the database), so read them in while
+		// the database is parsed. Each fills in it's own fields and isn't looked at
+		// until it's joined below (help/topics only once everything else is done).
+		final CompletableFuture<Long> docs = CompletableFuture.supplyAsync(this::loadHelpAndTopics);
 		
-		debug("");
+		final CompletableFuture<Long> errors = CompletableFuture.supplyAsync(() -> background(this::loadErrors));
+		final CompletableFuture<Long> spells = CompletableFuture.supplyAsync(() -> background(this::loadSpells));
+		final CompletableFuture<Long> zones  = CompletableFuture.supplyAsync(() -> background(this::loadZones));
+		final CompletableFuture<Long> races  = CompletableFuture.supplyAsync(() -> background(this::setupRaces));
 		
-		debug("Loading Zones...");
+		// account files only need the database to link to their characters, which is done once it's loaded
+		final CompletableFuture<Map<Account, int[]>> accounts = CompletableFuture.supplyAsync(() -> use_accounts ? readAccounts(ACCOUNT_DIR) : new LinkedHashMap<Account, int[]>());
 		
-		debug("");
+		debug("Loading Database...");
+
+		objectDB.getStrings().setPackLength(desc_pack_length);
 		
-		// TODO be nice to do all these resolutions in one place..
-		// Load Zones (only doing this here, because Rooms may be in a zone, and
-		// so by loading Zones first then rooms can be placed in them by the ObjectLoader
-		//loadZones(WORLD_DIR + world + "\\zones.txt");
-		loadZones( resolvePath(WORLD_DIR, world, "zones.txt") );
+		final ObjectLoader loader = new ObjectLoader(this, objectDB);
 		
-
-		debug("");
-
-		debug("Loading Races...");
+		// items and things need the game module (and wands, spells), players and NPCs races and rooms zones
+		final Runnable ready = () -> {
+			startupTimes.put("errors (background)", TimeUnit.NANOSECONDS.toMillis( errors.join() ));
+			startupTimes.put("spells (background)", TimeUnit.NANOSECONDS.toMillis( spells.join() ));
+			startupTimes.put("zones (background)", TimeUnit.NANOSECONDS.toMillis( zones.join() ));
+			startupTimes.put("races (background)", TimeUnit.NANOSECONDS.toMillis( races.join() ));
+			
+			final long start = System.nanoTime();
+			
+			initModule();
+			
+			timed("module", start);
+		};
 		
-		debug("");
-
-		// TODO get rid of this kludge and deal with JSON stuff
-		boolean test = false;
-
-		if (!test && !firstRun) {
-			loadRaces();
+		// bring the database up to date with any changes journaled since it was written
+		if ( use_journal ) {
+			journal = new Journal(DB_FILE);
+			
+			loader.loadObjects(streamListDatabase(DB_FILE), journal.replayObjects(), ready, logger);
+			
+			debug("Journal: replayed " + journal.getReplayedObjects() + " object records");
 		}
 		else {
-			for (int i = 0; i < 8; i++) {
-				races.add( Races.getRace(i) );
-			}
+			// Load everything from databases by flag
+			loader.loadObjects(streamListDatabase(DB_FILE), Collections.<Integer, String>emptyMap(), ready, logger);
 		}
 		
-		debug("");
-		
-		debug("Module Setup...");
-		
-		// TODO deal with kludgy module issues
-		if ( module != null ) {
-			debug("Module: " + module.getName());
-			
-			// initialize module
-			module.init(DATA_DIR);
-			
-			// "install" ruleset
-			final Ruleset modRS = module.getRuleset();
+		for (final Entry<String, Long> phase : loader.getTimings().entrySet()) {
+			startupTimes.put("database (" + phase.getKey() + ")", phase.getValue());
 		}
 		
-		debug("");
-
-		debug("Loading Database...");
-
-		final ObjectLoader loader = new ObjectLoader(this, objectDB);
-
-		// Load everything from databases by flag
-		loader.loadObjects(loadListDatabase(DB_FILE), logger);
+		time = System.nanoTime();
 
 		debug("Database Loaded!");
 		debug("");
 		
 		debug("Unused DBRefs: " + objectDB.getUnused() );
 		
-		// TODO what do these functions output?
+		// NOTE: exits, things and items are put in their rooms/containers/etc by the loader
+		
+		objectDB.setRenderCache(renderCache); // recycled objects don't keep their renderings
+		objectDB.setBroadcaster(broadcaster); // players moving take their listener (and outdoor status) with them
 		
-		// Post-Room Loading (i.e. place within the game world)
-		loadExits();          // load exits
-		placeThingsInRooms(); // load thing
-		loadItems();          // load items
-		// stackItems(); // put items inside of the objects they belong
+		// start journaling, now that loading is done, and take a snapshot every so often
+		if ( journal != null ) {
+			debug("Journal: replayed " + journal.replayProperties(objectDB) + " property records");
+			
+			objectDB.setJournal(journal);
+			
+			journal.start();
+			
+			timers.scheduleAtFixedRate(this::checkpoint, checkpoint_min, checkpoint_min, TimeUnit.MINUTES);
+			
+			debug("Journal: " + journal.getFilename() + " (checkpoint every " + checkpoint_min + " minutes)");
+		}
 
 		// objectDB.stackItems(); // put items inside of the objects they belong
 
@@ -1096,7 +1087,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		debug("");
 		
-		// for help/topic file loading
+		// wait for the help/topic files, if they aren't done already
+		startupTimes.put("help/topics (background)", TimeUnit.NANOSECONDS.toMillis( docs.join() ));
+		
+		time = timed("help/topics (wait)", time);
+		
+		// for help/topic file listing
 		final StringBuilder sb = new StringBuilder();
 		Counter c = new Counter(0, 0, 3);
 		
@@ -1108,7 +1104,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		//System.out.println("----------------------------------------");
 		System.out.println(Utils.padLeft("", '-', 65));
 		
-		for (final String helpFileName : generateHelpFileIndex()) {
+		for (final String helpFileName : helpFiles.getNames()) {
 			if( c.isMax() ) {
 				System.out.println( sb.toString().trim() );
 				sb.delete(0,  sb.length());
@@ -1118,25 +1114,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				sb.append(Utils.padRight(helpFileName, ' ', 25)).append(" ");
 				c.increment();
 			}
-			
-			// TODO path kludging AGAIN! this vs vague reference to globals?
-			//final String[] helpfile = Utils.loadStrings(this.HELP_DIR + helpFileName);
-			final String[] helpfile = Utils.loadStrings( resolvePath(this.HELP_DIR, helpFileName) );
-			
-			final String key = helpfile[0];
-			
-			helpTable.put(key, helpfile);
-
-			// HelpFile hf = new HelpFile(helpfile[0], helpfile);
-
-			// TODO consider a config option for this
-			// check to see if the mapping made it into the table
-			/*if( helpTable.containsKey(key) && helpTable.get(key) != null ) {
-				debug(Utils.padRight(helpFileName, ' ', 20) + " -- HelpFile Loaded!");
-			}
-			else {
-				
-			}*/
 		}
 
 		// cleanup
@@ -1157,7 +1134,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		//System.out.println("----------------------------------------");
 		System.out.println(Utils.padLeft("", '-', 65));
 		
-		for (final String topicFileName : generateTopicFileIndex()) {
+		for (final String topicFileName : topicFiles.getNames()) {
 			if( c.isMax() ) {
 				System.out.println( sb.toString().trim() );
 				sb.delete(0,  sb.length());
@@ -1167,18 +1144,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				sb.append(Utils.padRight(topicFileName, ' ', 25)).append(" ");
 				c.increment();
 			}
-
-			//final String[] topicfile = Utils.loadStrings(this.TOPIC_DIR + topicFileName);
-			final String[] topicfile = Utils.loadStrings( resolvePath(this.TOPIC_DIR, topicFileName) );
-
-			topicTable.put(topicfile[0], topicfile);
-
-			// TODO consider a config option for this
-			// check to see if the mapping made it into the table
-			/*
-			 * if( topicTable.containsKey( topicfile[0] ) ) {
-			 * debug("Topic Loaded!"); } else debug("Error!");
-			 */
 		}
 		
 		// cleanup
@@ -1240,6 +1205,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		
 		// TODO not sure the best way to store/access aliases for Command objects
 		addAlias("attack", "kill");
+
+		registerCommands();
+		
+		debug("Registered Commands: " + commands.size() + " (login: " + loginCommands.size() + ")");
 		
 		debug("Mapped Commands: " + commandMap.keySet()); // Print out all the command mappings (DEBUG)
 
@@ -1292,7 +1261,13 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		if ( use_accounts ) {
 			debug("Loading Accounts...");
 
-			loadAccounts(ACCOUNT_DIR); // load Player Accounts
+			// load Player Accounts (the files were read in with the database)
+			for (final Map.Entry<Account, int[]> e : accounts.join().entrySet()) {
+				linkAccount(e.getKey(), e.getValue());
+				acctMgr.addAccount(e.getKey());
+			}
+			
+			time = timed("accounts", time);
 
 			debug("Done");
 
@@ -1387,20 +1362,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		// NOTE: if commands are unqueued then an error may hang the game
 		if (queued_commands) {
-			cmdQueue = new ConcurrentLinkedQueue<CMD>();
-			cmdExec = new CommandExec(this, cmdQueue);
+			cmdExec = new CommandExec(this, cmd_threads);
 
-			startThread( cmdExec, "command_exec" );
-
-			debug("Command Execution (Thread) Started!");
+			debug("Command Execution (" + cmdExec.getThreads() + " Threads) Started!");
 		}
 		
+		// password hashing is slow on purpose, so it's kept off of the game thread
+		hasher = new PasswordHasher(hash_threads, 64, login_attempts, 1, TimeUnit.MINUTES);
+		
+		debug("Password Hashing (" + hash_threads + " Threads) Started!");
+		
 		/* Server Initialization (network level) */
 
 		// TODO convert printlns to debug calls
 		
 		// TODO it'd be good to caught server launch failures in here, maybe?
-		this.s = new Server(this, port);
+		if( use_nio ) this.s = new NIOServer(this, port);
+		else          this.s = new Server(this, port);
 		
 		startThread( this.s, "server" );
 		
@@ -1420,6 +1398,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		debug("Server> Setup Done.");
 
 		debug("Next Database Reference: " + objectDB.peekNextId());
+		
+		startupTimes.put("total", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startup));
+		
+		debug("");
+		
+		for (final String line : startupReport()) debug(line);
 
 		debug(Utils.checkMem());
 
@@ -1450,131 +1434,131 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		while( !s.isRunning() );
 		
 		debug("Server? " + s.isRunning()); // tell us whether the underlying socket server is running
+		
+		long nextTick = System.nanoTime();
 
 		while (running) {
-			if (!input_hold) {
-				// try to reduce usage of cpu time
+			final long now = System.nanoTime();
+			
+			// ticks keep going during a hold (timers, output, etc), only input waits
+			if( now - nextTick >= 0 ) {
+				// world state shouldn't change under commands running on other threads
+				if( cmdExec != null ) cmdExec.runExclusive(this::tick);
+				else                  tick();
+				
+				nextTick = now + (tick_ms * 1000000L);
+				
+				continue;
+			}
+			
+			if (input_hold) {
+				// input stays queued until the hold is lifted
 				try {
-					Thread.sleep(500);
+					TimeUnit.NANOSECONDS.sleep(nextTick - now);
 				}
 				catch(final InterruptedException ie) {
 					debug( ie );
 				}
 				
-				for (final Client client : s.getClients()) {
-					runHelper(client);
-				}
+				continue;
+			}
+			
+			// wait for input, but no longer than it is until the next tick
+			InputEvent event = null;
+			
+			try {
+				event = inputQueue.poll(nextTick - now, TimeUnit.NANOSECONDS);
+			}
+			catch(final InterruptedException ie) {
+				debug( ie );
+			}
+			
+			if( event != null ) {
+				final Client client = event.getClient();
 				
-				// execute any relevant main code from the module
-				module.run();
-
-				/* Notification Messages */
-
-				// if we aren't delivering immediate notifications, then they'll be handled here
-				if ( !notify_immediate ) {
-					// grab and send one notification per player this loop iteration (if they have any)
-					for (final Player player : messageQueues.keySet()) {
-						final String message = messageQueues.get(player).poll();
-
-						if (message != null) {
-							send(message, player.getClient());
-						}
-					}
+				queueWaitTimes.record( (System.nanoTime() - event.getTime()) / 1000 );
+				
+				if( client.isRunning() ) {
+					runHelper(client);
+					
+					client.flush();
 				}
+			}
+		}
+	}
+	
+	/**
+	 * One game tick. Handles the periodic work that isn't a response to
+	 * input (module code, notifications, chat) and then sends out any output
+	 * that was queued since the last tick.
+	 */
+	private void tick() {
+		final long start = System.nanoTime();
+		
+		// run any game timers that have expired
+		timers.advance(start);
+		
+		// finish any logins/character creation whose passwords have been hashed
+		hasher.runCompleted();
+		
+		// execute any relevant main code from the module
+		if( module != null ) module.run();
 
-				// TODO resolve major inefficiencies around delivering chat messages that amount to substantial cpu usage
-
-				/* Chat Messages */
-				Client client = null;
-				Message msg = null;
-
-				String chan_name = "";
-				String chan_color = "";
-				String sender_color = "";
-				String text_color = "";
+		/* Notification Messages */
 
-				// for each ChatChannel
-				for (final ChatChannel cc : chan.getChatChannels()) {
-					// debug("CHANNEL: " + cc.getName(), 4);
+		// if we aren't delivering immediate notifications, then they'll be handled here
+		if ( !notify_immediate ) {
+			// grab and send one notification per player this loop iteration (if they have any)
+			for (final Player player : messageQueues.keySet()) {
+				final String message = messageQueues.get(player).poll();
 
-					chan_name = cc.getName();
-					chan_color = cc.getChanColor();
-					sender_color = cc.getSenderColor();
-					text_color = cc.getTextColor();
-					
-					msg = cc.getNextMessage();
-					
-					if (msg == null) {
-						//debug(chan_name + ": No Messages", 4);
-						continue;
-					}
-					
-					Triple<String> colors = new Triple<String>(chan_color, sender_color, text_color);
-					
-					final String cm = buildChatMessage(chan_name, colors , msg, true, false);
-					final String cm_tag = buildChatMessage(chan_name, colors, msg, true, true);
-					final String cm_log = buildChatMessage(chan_name, colors, msg, false, false); // no color for logs
-					
-					// for each listener of this channel, send the message
-					for (final Player player : cc.getListeners()) {
-						try {
-							client = player.getClient();
-
-							if (player.getConfigOption("tagged-chat")) client.write(cm_tag);
-							else                                       client.write(cm);
-							
-							logChat( cm_log );
-
-							debug("chat message sent successfully", 4);
-						}
-						catch (final NullPointerException npe) {
-							debug("Game [chat channel: " + chan_name + "] > Null Message.");
-							debug( npe );
-						}
-					}
+				if (message != null) {
+					send(message, player.getClient());
 				}
 			}
 		}
+
+		/* Chat Messages */
+		deliverChat();
+		
+		// hand database changes made during this tick to the journal
+		if( journal != null ) journal.flush();
+		
+		// send out anything queued during this tick
+		flushClients();
+		
+		tickTimes.record( (System.nanoTime() - start) / 1000 );
+	}
+	
+	// event triggered when a client has input waiting (called from network threads)
+	public void clientInput(final Client someClient) {
+		inputQueue.offer( new InputEvent(someClient) );
 	}
 	
 	private void runHelper(final Client client) {
 		final String client_state = getClientState(client);
 		
 		// telnet command handling?
-		Byte[] msg = client.getTelnetMessage();
+		final TelnetMessage event = client.getTelnetMessage();
 
-		if( msg.length > 0 ) {
-			byte[] ba = new byte[msg.length];
-
-			int index = 0;
-
-			for (Byte b : msg) {
-				ba[index] = b;
-				index++;
-			}
-
-			String message = Telnet.translate(ba);
-
-			System.out.println("] " + message);
+		if( event != null ) {
+			System.out.println("] " + event);
 			
 			System.out.println("TELNET Response");
 			
-			if( message.equals("IAC WILL NAWS") ) {
+			if( event.is(Telnet.WILL, Telnet.NAWS) ) {
 				client.NAWS = true;
 				client.write( Telnet.translate("IAC DONT NAWS") );
 			}
-			
-			/*if( message.equals("IAC SB NAWS") ) {
-				client.tn_cmd = false;
-				client.tn_subneg = true;
-			}
-			
-			if( message.equals("IAC SE") ) {
-				client.tn_cmd = true;
-				client.tn_subneg = false;
+			else if( event.is(Telnet.DO, Telnet.MCCP2) ) {
+				client.MCCP = true;
 				
-				client.tn_neg_seq = false;
-			}*/
+				if( use_mccp ) client.startCompression();
+			}
+			else if( event.is(Telnet.DONT, Telnet.MCCP2) ) {
+				client.MCCP = false;
+				client.stopCompression();
+			}
 		}
 		
 
@@ -1642,7 +1626,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			
 			// If the client is not null and has something to say
 			if (whatClientSaid != null) {
-				System.out.println("what client said: \'" + whatClientSaid + "\'");
+				debug(() -> "what client said: \'" + whatClientSaid + "\'", 2);
 				
 				// TODO fix this, there may not be a player yet and so we can't check their config options
 				/*if( echo_enabled && player.getConfigOption("server_echo") ) {
@@ -1668,13 +1652,15 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 					CMD cmd = new CMD(whatClientSaid.trim(), player, client);
 
-					cmdQueue.add(cmd);
+					cmdExec.submit(cmd);
 				}
 				else {
 					debug("Evaluating command.");
 
 					try {
 						cmd(whatClientSaid.trim(), client);
+						
+						client.flush();
 					}
 					catch (final NullPointerException npe) {
 						debug("runHelper(): command processing issue (exception) [!queued_commands]");
@@ -1686,11 +1672,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// flush players -- clean up broken connections;
 			//flush(); // not sure what the point of this is...
-
-			Thread.sleep(500); // wait 5/10 of a second
-		}
-		catch (final InterruptedException ie) {
-			debug("runHelper(): thread interrupted? (interrupted exception)");
 		}
 		catch (final Exception e) {
 			/*
@@ -1734,7 +1715,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			send("Pausing game!");
 
-			input_hold = true; // Halt Player Input
+			// NOTE: input isn't held here, nothing would ever lift the hold (maintenance mode keeps players out)
 			game_time.pauseLoop(); // Pause the time tracking
 			
 			// Put the game into Maintenance mode (no new logins, except Wizards)
@@ -1751,6 +1732,16 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 	
+	/**
+	 * Have every client send whatever output has been queued for it. Clients
+	 * coalesce output until this (or a full queue) tells them to write it.
+	 */
+	private void flushClients() {
+		for (final Client client : s.getClients()) {
+			client.flush();
+		}
+	}
+	
 	/**
 	 * Immediate Command Processing
 	 * 
@@ -1779,6 +1770,61 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 	
+	/**
+	 * Send out everything written to the chat channels since the last tick.
+	 * 
+	 * Each message is formatted once for each way it is sent (color, tagged,
+	 * and plain for the log) and logged once. A channel's messages go to
+	 * each listener as one batch.
+	 */
+	private void deliverChat() {
+		final List<Message> pending = new ArrayList<Message>();
+		
+		for (final ChatChannel cc : chan.getChatChannels()) {
+			pending.clear();
+			
+			if ( cc.drainMessages(pending) == 0 ) continue;
+			
+			final String chan_name = cc.getName();
+			
+			final Triple<String> colors = new Triple<String>(cc.getChanColor(), cc.getSenderColor(), cc.getTextColor());
+			
+			final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+			final ByteArrayOutputStream batch_tag = new ByteArrayOutputStream();
+			
+			for (final Message msg : pending) {
+				final byte[] cm = buildChatMessage(chan_name, colors, msg, true, false).getBytes();
+				final byte[] cm_tag = buildChatMessage(chan_name, colors, msg, true, true).getBytes();
+				
+				batch.write(cm, 0, cm.length);
+				batch_tag.write(cm_tag, 0, cm_tag.length);
+				
+				logChat( buildChatMessage(chan_name, colors, msg, false, false) ); // no color for logs
+			}
+			
+			final byte[] lines = batch.toByteArray();
+			final byte[] lines_tag = batch_tag.toByteArray();
+			
+			int delivered = 0;
+			
+			// for each listener of this channel, send the messages
+			for (final Player player : cc.getListeners()) {
+				final Client client = player.getClient();
+				
+				if ( client == null || !client.isRunning() ) continue;
+				
+				if (player.getConfigOption("tagged-chat")) client.write(lines_tag);
+				else                                       client.write(lines);
+				
+				delivered += pending.size();
+			}
+			
+			cc.recordDelivery(pending.size(), delivered);
+			
+			debug("chat (" + chan_name + "): " + pending.size() + " messages, " + delivered + " lines", 4);
+		}
+	}
+	
 	private String buildChatMessage(String channelName, Triple<String> colorData, Message msg, Boolean color, Boolean tagged) {
 		final StringBuilder sb = new StringBuilder();
 		
@@ -1794,7 +1840,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		else        sb.append("(" + channelName + ")");
 		
 		sb.append(" ");
-		sb.append("<" + colors((msg.getSender() != null ? msg.getSender().getName() : "System"), senderColor) + ">");
+		final String senderName = (msg.getSender() != null ? msg.getSender().getName() : "System");
+		
+		if( color ) sb.append("<" + colors(senderName, senderColor) + ">");
+		else        sb.append("<" + senderName + ">");
 		sb.append(" ");
 		
 		if( color ) sb.append(colors(msg.getMessage(), textColor));
@@ -2611,11 +2660,373 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				new ScriptedCommand("", pgm, new Script("{list:{&arg},{&this}}")));
 	}
 
-	// Command Parser
-	// needs more general alias support
+	// Command Parser
+	// needs more general alias support
+
+	private boolean moduleLoaded(final String modName) {
+		return module != null && ( module.getName().equals(modName) || module.getShortName().equals(modName) );
+	}
+
+	/**
+	 * Build the command tables used by cmd(...). Each command is registered
+	 * once, with the minimum access level needed to use it, so that looking
+	 * one up is a single hash lookup instead of a walk down a chain of string
+	 * comparisons.
+	 * 
+	 * NOTE: "soft" commands (Command objects in the commandMap) are still
+	 * handled seperately, since they can be loaded and unloaded at runtime.
+	 */
+	private void registerCommands() {
+		/* Login Commands */
+
+		loginCommands.register("connect",  Constants.USER, this::cmd_connect, GameMode.NORMAL, GameMode.WIZARD); // handles wizflag checking itself (since that's player dependent)
+		loginCommands.register("console",  Constants.USER, this::cmd_console, GameMode.NORMAL, GameMode.WIZARD);
+		loginCommands.register("create",   Constants.USER, this::cmd_create, GameMode.NORMAL);
+		loginCommands.register("create",   Constants.USER, (arg, client) -> {
+			send("Sorry, only Wizards are allowed to login at this time.", client);
+		}, GameMode.WIZARD);
+		loginCommands.register("help",     Constants.USER, (arg, client) -> {
+			send("Available Commands: connect, console, create, help, register, quit, who", client);
+		}, GameMode.NORMAL);
+		loginCommands.register("help",     Constants.USER, (arg, client) -> {
+			send("Available Commands: connect, console, create, help, quit, who", client);
+		}, GameMode.WIZARD);
+		loginCommands.register("recover",  Constants.USER, this::cmd_recover, GameMode.NORMAL);
+		loginCommands.register("register", Constants.USER, (arg, client) -> {
+			send("REGISTER", client);
+			cmd_register(arg, client);
+		}, GameMode.NORMAL);
+		loginCommands.register("quit",     Constants.USER, (arg, client) -> disconnect(client), GameMode.NORMAL, GameMode.WIZARD); // just kill the client?
+		loginCommands.register("who",      Constants.USER, this::cmd_who, GameMode.NORMAL);
+
+		/* User Commands */
+
+		commands.register("ask",         Constants.USER, this::cmd_ask);
+		commands.register("aliases",     Constants.USER, this::cmd_aliases);
+		commands.register("auction",     Constants.USER, this::cmd_auction);
+		commands.register("auctions",    Constants.USER, this::cmd_auctions);
+		commands.register("balance",     Constants.USER, this::cmd_balance);
+		commands.register("bash",        Constants.USER, this::cmd_bash);
+		commands.register("bid",         Constants.USER, this::cmd_bid);
+		commands.register("boards",      Constants.USER, this::cmd_boards);
+		commands.register("buy",         Constants.USER, this::cmd_buy);
+		commands.register("calendar",    Constants.USER, this::cmd_calendar);
+		commands.register("cast",        Constants.USER, this::cmd_cast); // cast (a soft command)?
+		commands.register("chargen",     Constants.USER, this::cmd_chargen);
+		commands.register("chat",        Constants.USER, this::cmd_chat);
+		commands.register("climb",       Constants.USER, this::cmd_climb);
+		commands.register("cls",         Constants.USER, this::cmd_cls);
+		commands.register("colors",      Constants.USER, this::cmd_colors);
+		commands.register("commands",    Constants.USER, this::cmd_commands);
+		commands.register("compress",    Constants.USER, this::cmd_compress);
+		commands.register("consider",    Constants.USER, this::cmd_consider);
+		commands.register("condition",   Constants.USER, this::cmd_condition);
+		commands.register("craft",       Constants.USER, this::cmd_craft);
+		commands.register("deposit",     Constants.USER, this::cmd_deposit);
+		commands.register("drink",       Constants.USER, this::cmd_drink);
+		commands.register("drop",        Constants.USER, this::cmd_drop);
+		commands.register("effects",     Constants.USER, this::cmd_effects);
+		commands.register("equip",       Constants.USER, this::cmd_equip);
+		commands.register("exp",         Constants.USER, this::cmd_exp); // TODO CMD 5
+		commands.register("exits",       Constants.USER, this::cmd_exits);
+		commands.register("feats",       Constants.USER, this::cmd_feats);
+		commands.register("fly",         Constants.USER, this::cmd_fly); // TODO CMD 6
+		commands.register("get",         Constants.USER, this::cmd_get);
+		commands.register("go",          Constants.USER, this::cmd_go);
+		commands.register("help",        Constants.USER, this::cmd_help);
+		commands.register("hold",        Constants.USER, this::cmd_hold);
+		commands.register("home",        Constants.USER, this::cmd_home);
+		commands.register("housing",     Constants.USER, this::cmd_housing);
+		commands.register("inspect",     Constants.USER, this::cmd_inspect);
+		commands.register("interact",    Constants.USER, this::cmd_interact);
+		commands.register("inventory",   Constants.USER, this::cmd_inventory);
+		commands.register("land",        Constants.USER, this::cmd_land); // TODO CMD
+		commands.register("levelup",     Constants.USER, this::cmd_levelup); // TODO CMD 8 fix this kludge
+		commands.register("list",        Constants.USER, this::cmd_list);
+		commands.register("lock",        Constants.USER, this::cmd_lock);
+		commands.register("logout",      Constants.USER, this::cmd_logout);
+		commands.register("look",        Constants.USER, this::cmd_look);
+		commands.register("lookat",      Constants.USER, this::cmd_lookat);
+		commands.register("map",         Constants.USER, this::cmd_map);
+		commands.register("mine",        Constants.USER, this::cmd_mine);
+		commands.register("money",       Constants.USER, this::cmd_money);
+		commands.register("motd",        Constants.USER, (arg, client) -> send(messageOfTheDay(), client)); // TODO CMD 11
+		commands.register("move",        Constants.USER, this::cmd_move);
+		commands.register("ooc",         Constants.USER, (arg, client) -> getPlayer(client).setStatus("OOC")); // TODO CMD 12 fix this kludge
+		commands.register("ic",          Constants.USER, (arg, client) -> getPlayer(client).setStatus("IC")); // TODO CMD 13 fix this kludge
+		commands.register("open",        Constants.USER, this::cmd_open2);
+		commands.register("page",        Constants.USER, this::cmd_page);
+		commands.register("pose",        Constants.USER, this::cmd_pose);
+		commands.register("party",       Constants.USER, this::cmd_party);
+		commands.register("passwd",      Constants.USER, this::cmd_passwd);
+		commands.register("pconfig",     Constants.USER, this::cmd_pconfig);
+		commands.register("pinfo",       Constants.USER, this::cmd_pinfo);
+		commands.register("push",        Constants.USER, this::cmd_push);
+		commands.register("put",         Constants.USER, this::cmd_put);
+		commands.register("prompt",      Constants.USER, (arg, client) -> prompt(client));
+		commands.register("quests",      Constants.USER, this::cmd_quests);
+		commands.register("quit",        Constants.USER, this::cmd_quit);
+		commands.register("read",        Constants.USER, this::cmd_read);
+		commands.register("roll",        Constants.USER, this::cmd_roll); // TODO CMD 14
+		commands.register("run",         Constants.USER, (arg, client) -> {
+			final Player player = getPlayer(client);
+
+			player.setSpeed(Constants.RUN);
+			send("You get ready to run.", client);
+		});
+		commands.register("score",       Constants.USER, this::cmd_score);
+		commands.register("sell",        Constants.USER, this::cmd_sell);
+		commands.register("sheathe",     Constants.USER, this::cmd_sheathe);
+		commands.register("skillcheck",  Constants.USER, this::cmd_skillcheck);
+		commands.register("spellinfo",   Constants.USER, this::cmd_spellinfo);
+		commands.register("spells",      Constants.USER, this::cmd_spells);
+		commands.register("stats",       Constants.USER, this::cmd_stats);
+		commands.register("status",      Constants.USER, this::cmd_status);
+		commands.register("talk",        Constants.USER, this::cmd_talk);
+		commands.register("take",        Constants.USER, this::cmd_take);
+		commands.register("target",      Constants.USER, this::cmd_target);
+		commands.register("tell",        Constants.USER, this::cmd_tell);
+		commands.register("time",        Constants.USER, this::cmd_time);
+		commands.register("trade",       Constants.USER, this::cmd_trade);
+		commands.register("travel",      Constants.USER, this::cmd_travel);
+		commands.register("unequip",     Constants.USER, this::cmd_unequip);
+		commands.register("unlock",      Constants.USER, this::cmd_unlock);
+		commands.register("use",         Constants.USER, this::cmd_use);
+		commands.register("value",       Constants.USER, this::cmd_value);
+		commands.register("version",     Constants.USER, this::cmd_version);
+		commands.register("vitals",      Constants.USER, this::cmd_vitals);
+		commands.register("where",       Constants.USER, this::cmd_where);
+		commands.register("who",         Constants.USER, this::cmd_who);
+		commands.register("withdraw",    Constants.USER, this::cmd_withdraw);
+		commands.register("walk",        Constants.USER, (arg, client) -> {
+			final Player player = getPlayer(client);
+
+			if (player.getSpeed() > Constants.WALK) {
+				player.setSpeed(Constants.WALK);
+				send("You slow down to a walking speed.", client);
+			}
+		});
+		commands.register("write",       Constants.USER, (arg, client) -> { // TODO CMD 21
+			// check for something to write in/on (writable things
+			// -- paper, books, scrolls?)
+			// check for writing tool and ink
+			// get stuff and "write" it down
+		});
+
+		/* Builder Commands */
+
+		commands.register("@check",      Constants.BUILD, this::cmd_check);
+		commands.register("@cedit",      Constants.BUILD, (arg, client) -> {
+			// indicate what is parsing commands
+			debug("Command Parser: @cedit");
+
+			// launch the item editor
+			cmd_creatureedit(arg, client);
+		});
+		commands.register("@create_npc", Constants.BUILD, (arg, client) -> {
+			final String[] args = arg.split(" ");
+
+			for (final String s : args) {
+				System.out.println(s);
+			}
+
+			final String npcName = args[0];
+
+			//getRace checks equality, ignoring case
+			//final Race npcRace = getRace(args[1]);
+			final Race npcRace = Races.NONE;
+			//final Integer[] stats = Utils.stringsToIntegers(args[2].split(","));
+			final Integer[] stats = Utils.stringsToIntegers("7,7,7,7,7,7,7".split(","));
+
+			final Room location = getRoom(getPlayer(client).getLocation());
+
+			createNPC(npcName, npcRace, stats, location);
+		});
+		commands.register("@dig",        Constants.BUILD, this::cmd_dig);
+		commands.register("@describe",   Constants.BUILD, this::cmd_describe);
+		commands.register("@door",       Constants.BUILD, this::cmd_door);
+		commands.register("@dungeon",    Constants.BUILD, this::cmd_dungeon);
+		commands.register("@edit",       Constants.BUILD, this::cmd_edit);
+		commands.register("@examine",    Constants.BUILD, this::cmd_examine);
+		commands.register("@fail",       Constants.BUILD, this::cmd_fail);
+		commands.register("@iedit",      Constants.BUILD, (arg, client) -> {
+			// indicate what is parsing commands
+			debug("Command Parser: @iedit");
+
+			// launch the item editor
+			cmd_itemedit(arg, client);
+		});
+		commands.register("@jump",       Constants.BUILD, this::cmd_jump);
+		commands.register("@link",       Constants.BUILD, this::cmd_link);
+		commands.register("@lsedit",     Constants.BUILD, this::cmd_lsedit); // run the list editor
+		commands.register("@nameref",    Constants.BUILD, this::cmd_nameref);
+		commands.register("@ofail",      Constants.BUILD, this::cmd_ofail); // set an ofail message
+		commands.register("@open",       Constants.BUILD, this::cmd_open);
+		commands.register("@osuccess",   Constants.BUILD, this::cmd_osuccess);
+		commands.register("@qedit",      Constants.BUILD, (arg, client) -> {
+			//
+			debug("Command Parser: @qedit");
+
+			// run the list editor
+			cmd_questedit(arg, client);
+		});
+		commands.register("@redit",      Constants.BUILD, (arg, client) -> {
+			//
+			debug("Command Parser: @redit");
+
+			// run the list editor
+			cmd_roomedit(arg, client);
+		});
+		commands.register("@skedit",     Constants.BUILD, (arg, client) -> {
+			//
+			debug("Command Parser: @skilledit");
+
+			// run the skill editor
+			cmd_skilledit(arg, client);
+		});
+		commands.register("@success",    Constants.BUILD, this::cmd_success); // set an exit success message
+		commands.register("@unlink",     Constants.BUILD, this::cmd_unlink);
+		commands.register("@zedit",      Constants.BUILD, this::cmd_zoneedit);
+
+		/* Admin Commands */
+
+		commands.register("@accounts",   Constants.ADMIN, this::cmd_accounts);
+		commands.register("@alias",      Constants.ADMIN, this::cmd_alias);
+		commands.register("@backup",     Constants.ADMIN, this::cmd_backup);
+		commands.register("@bb",         Constants.ADMIN, this::cmd_bb);
+		commands.register("@config",     Constants.ADMIN, this::cmd_config);
+		commands.register("@control",    Constants.ADMIN, this::cmd_control);
+		commands.register("@debug",      Constants.ADMIN, this::cmd_debug);
+		commands.register("@find",       Constants.ADMIN, this::cmd_find);
+		commands.register("@flags",      Constants.ADMIN, this::cmd_flags);
+		commands.register("@give",       Constants.ADMIN, this::cmd_give);
+		commands.register("@hash",       Constants.ADMIN, (arg, client) -> {
+			client.write("Hash of argument: '" + arg + "' is hash: '" + Utils.hash(arg) + "'.");
+		});
+		commands.register("@hedit",      Constants.ADMIN, this::cmd_helpedit);
+		commands.register("@initialize", Constants.ADMIN, this::cmd_initialize);
+		commands.register("@kick",       Constants.ADMIN, this::cmd_kick);
+		commands.register("@listprops",  Constants.ADMIN, this::cmd_listprops);
+		commands.register("@makehouse",  Constants.ADMIN, (arg, client) -> {
+			makeHouse( getPlayer(client) );
+		});
+		commands.register("@name",       Constants.ADMIN, this::cmd_name);
+		commands.register("@nextdb",     Constants.ADMIN, (arg, client) -> {
+			if (arg.equals("")) {
+				send("Next Database Reference Number (DBRef/DBRN): " + objectDB.peekNextId(), client);
+			}
+		});
+		commands.register("@npcs",       Constants.ADMIN, (arg, client) -> {
+			cmd_npcs("", client);
+		});
+		commands.register("@lex",        Constants.ADMIN, (arg, client) -> {
+			final List<String> result = ProgramInterpreter.lex(arg); 
+
+			send(result, client);
+		});
+		commands.register("@pgm",        Constants.ADMIN, (arg, client) -> {
+			final Player player = getPlayer(client);
+
+			// we'll just create a new and temporary instance (debugging enabled)
+			ProgramInterpreter newInterp = new ProgramInterpreter(this, true);
+
+			Script script = new Script(arg);
+
+			// invoke the program interpreter and pass it the argument
+			send("-Result: " + newInterp.interpret(script, player, null), client);
+
+			newInterp = null;
+		});
+		commands.register("@set",        Constants.ADMIN, this::cmd_set);
+		commands.register("@session",    Constants.ADMIN, (arg, client) -> {
+			/*
+			 * notionally this should give data on the current or
+			 * last of the specified player
+			 */
+			cmd_session(arg, client);
+		});
+		commands.register("@sethp",      Constants.ADMIN, this::cmd_sethp); // DM/Debug Command
+		commands.register("@setlevel",   Constants.ADMIN, this::cmd_setlevel); // DM/Debug Command
+		commands.register("@setmana",    Constants.ADMIN, this::cmd_setmana); // DM/Debug Command
+		commands.register("@setskill",   Constants.ADMIN, this::cmd_setskill); // DM/Debug Command
+		commands.register("@setxp",      Constants.ADMIN, this::cmd_setxp); // DM/Debug Command
+		commands.register("@viewlog",    Constants.ADMIN, this::cmd_viewlog);
+		commands.register("@tune",       Constants.ADMIN, (arg, client) -> {
+			String[] args = arg.split(" ");
+
+			if (args[0].equals("cmdDelay")) {
+				final int delay = Utils.toInt(args[1], -1);
+			}
+		});
+		commands.register("@zones",      Constants.ADMIN, this::cmd_zones);
+		commands.register("@zoneinfo",   Constants.ADMIN, this::cmd_zoneinfo);
+
+		/* Wizard Commands */
+
+		commands.register("@ban",        Constants.WIZARD, this::cmd_ban);
+		commands.register("@flag",       Constants.WIZARD, this::cmd_flag);
+		commands.register("@flush",      Constants.WIZARD, (arg, client) -> {
+			flush();
+			send("Dead Connections Flushed!");
+		});
+		commands.register("@recycle",    Constants.WIZARD, this::cmd_recycle);
+		commands.register("@setcolor",   Constants.WIZARD, this::cmd_setcolor);
+		commands.register("@setmode",    Constants.WIZARD, this::cmd_setmode);
+		commands.register("@spawn",      Constants.WIZARD, this::cmd_spawn);
+		commands.register("@teleport",   Constants.WIZARD, (arg, client) -> {
+			getCommand("@teleport").execute(arg, client);
+		});
+
+		/* SuperUser Commands */
+
+		commands.register("@access",     Constants.SUPERUSER, (arg, client) -> {
+			getCommand("@access").execute(arg, client);
+		});
+		commands.register("@broadcast",  Constants.SUPERUSER, (arg, client) -> {
+			final Player player = getPlayer(client);
+
+			write("Game> " + player.getName() + " says, " + arg);
+		});
+		commands.register("@jsonify",    Constants.SUPERUSER, this::cmd_jsonify);
+		commands.register("@load",       Constants.SUPERUSER, (arg, client) -> {
+			send("Game> Command Not Implemented!", client);
+
+			boolean success = cmd_unloadc(arg, client);
+
+			if( success ) {
+				send("Game> Loaded " + commandMap.get(arg) + ".", client);
+			}
+			else {
+				String[] args = arg.split("=");
+
+				send("Game> Failed to load " + args[1] + " with command name " + args[0], client);
+			}
+		});
+		commands.register("@unload",     Constants.SUPERUSER, (arg, client) -> {
+			send("Game> Command Not Implemented!", client);
+
+			boolean success = cmd_unloadc(arg, client);
+
+			if( success ) {
+				send("Game> Unloaded " + arg + ".", client);
+			}
+			else {
+				String[] args = arg.split("=");
 
-	private boolean moduleLoaded(final String modName) {
-		return module != null && ( module.getName().equals(modName) || module.getShortName().equals(modName) );
+				send("Game> Failed to unload " + args[1] + " with command name " + args[0], client);
+			}
+		});
+		commands.register("@reload",     Constants.SUPERUSER, (arg, client) -> {
+			if (arg.equals("")) sys_reload();
+			else                sys_reload(arg);
+		});
+		commands.register("@shutdown",   Constants.SUPERUSER, this::cmd_shutdown);
+		commands.register("@sethour",    Constants.SUPERUSER, this::cmd_sethour);
+		commands.register("@setminute",  Constants.SUPERUSER, this::cmd_setminute);
+		commands.register("@setweather", Constants.SUPERUSER, this::cmd_setweather);
+		
+		// these do too much damage if mistyped, so they can't be abbreviated (i.e. "@shu" for "@shutdown")
+		commands.requireFullName("@ban", "@flush", "@initialize", "@kick", "@load", "@recycle", "@reload", "@shutdown", "@unload");
 	}
 
 	/**
@@ -2644,9 +3055,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		if ( !inputList.isEmpty() ) { // if there was any input
 			cmd = inputList.remove(0); // grab the first element (which should be the command)
 
-			debug("Command: \"" + cmd + "\"", 2);       // print command (pre-trim so we see any extra junk)
-			cmd = cmd.trim();                           // trim the command (remove funny characters)
-			debug("Command(trimmed): \"" + cmd + "\""); // print trimmed command
+			if (isDebugging(2)) debug("Command: \"" + cmd + "\"", 2);       // print command (pre-trim so we see any extra junk)
+			cmd = cmd.trim();                                              // trim the command (remove funny characters)
+			if (isDebugging(1)) debug("Command(trimmed): \"" + cmd + "\""); // print trimmed command
 
 
 			arg = Utils.join(inputList, " "); // get the arguments if there are any
@@ -2657,9 +3068,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				// they contain sensitive user information,
 				// including their name and password
 				if (!cmd.toLowerCase().equals("connect") && !cmd.toLowerCase().equals("create")) {
-					debug("Arguments: \"" + arg + "\"", 2);       // print arguments
-					arg = Utils.trim(arg);                        // trim arguments
-					debug("Arguments(trimmed): \"" + arg + "\""); // print trimmed arguments
+					if (isDebugging(2)) debug("Arguments: \"" + arg + "\"", 2);       // print arguments
+					arg = Utils.trim(arg);                                           // trim arguments
+					if (isDebugging(1)) debug("Arguments(trimmed): \"" + arg + "\""); // print trimmed arguments
 				}
 			}
 		}
@@ -2693,6 +3104,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					break;
 				case "interactive_login":
 					break;
+				case "authenticating":
+					send("Game> Checking your password, please wait...", client);
+					break;
 				default:
 					setClientState(client, ""); // clear any unintended client states
 					break;
@@ -2702,63 +3116,22 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 			else debug("CS is NULL!");
 
-			if (mode == GameMode.NORMAL) // Normal Running Mode (a.k.a. Mode 0)
+			if (mode == GameMode.NORMAL || mode == GameMode.WIZARD) // Normal Running Mode (a.k.a. Mode 0) or Wizard-Only Mode (a.k.a. Mode 1)
 			{
-				if (this.players.size() > this.max_players) {
+				if (mode == GameMode.WIZARD) {
+					send("System is in Wizard-Only Mode.", client);
+				}
+				else if (this.players.size() > this.max_players) {
 					if (cmd.equals("connect") || cmd.equals("create")) {
 						send("Sorry. Maximum number of players are connected. Please try back later.", client);
 						return;
 					}
 				}
 
-				if ( cmdIs(cmd, "connect") ) {
-					cmd_connect(arg, client); // pass arguments to the player connect function
-				}
-				else if ( cmdIs(cmd, "console") ) {
-					cmd_console(arg, client);
-				}
-				else if ( cmdIs(cmd, "create") ) {
-					cmd_create(arg, client); // pass arguments to the player creation function
-				}
-				else if ( cmdIs(cmd, "help") ) {
-					send("Available Commands: connect, console, create, help, register, quit, who", client);
-				}
-				else if ( cmdIs(cmd, "recover") ) {
-					cmd_recover(arg, client);
-				}
-				else if ( cmdIs(cmd, "register") ) {
-					send("REGISTER", client);
-					cmd_register(arg, client);
-				}
-				else if ( cmdIs(cmd, "quit") ) {
-					disconnect(client); // just kill the client?
-				}
-				else if ( cmdIs(cmd, "who") ) {
-					cmd_who(arg, client); // run the who function
-				}
-				else {
-					send("That is not a known command.", client);
-					debug("Command> Unknown Command");
-				}
-			}
-			else if (mode == GameMode.WIZARD) // Wizard-Only Mode (a.k.a. Mode 1)
-			{
-				send("System is in Wizard-Only Mode.", client);
+				final CommandRegistry.Entry entry = loginCommands.lookup(cmd, Constants.USER, mode);
 
-				if ( cmdIs(cmd, "connect") ) {
-					cmd_connect(arg, client); // handles wizflag checking itself (since that's player dependent)
-				}
-				else if ( cmdIs(cmd, "console") ) {
-					cmd_console(arg, client);
-				}
-				else if ( cmdIs(cmd, "create") ) {
-					send("Sorry, only Wizards are allowed to login at this time.", client);
-				}
-				else if (cmd.equals("help")) {
-					send("Available Commands: connect, console, create, help, quit, who", client);
-				}
-				else if ( cmdIs(cmd, "quit") ) {
-					disconnect(client); // just kill the client?
+				if (entry != null) {
+					entry.getHandler().execute(arg, client);
 				}
 				else {
 					send("Huh? That is not a known command.", client);
@@ -2844,7 +3217,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				// evaluate any named references (namerefs) in the arguments
 				arg = nameref_eval(arg, client);
 
-				debug("Argument(evaluated): \"" + arg + "\""); // print the trimmed argument
+				if (isDebugging(1)) debug("Argument(evaluated): \"" + arg + "\""); // print the trimmed argument
 
 				/* Command Logging */
 
@@ -2884,569 +3257,51 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 				/* Command Evaluation */
 
-				boolean buildCmd = false;
-				boolean adminCmd = false;
-				boolean wizCmd = false;
-				boolean superuserCmd = false;
-
-				debug("Entering superuser command loop...", 4);
-				
-				/* SuperUser Commands */
-
-				if (player.getAccess() >= Constants.SUPERUSER) {
-					superuserCmd = true; // begin by assuming we have a superuser command
-
-					if( cmdIs(cmd, "@access") ) {
-						getCommand("@access").execute(arg, client);
-					}
-					else if( cmdIs(cmd, "@alias") ) {
-						cmd_alias(arg, client);
-					}
-					else if( cmdIs(cmd, "@broadcast") ) {
-						write("Game> " + player.getName() + " says, " + arg);
-					}
-					else if( cmdIs(cmd, "@jsonify") ) {
-						cmd_jsonify(arg, client);
-					}
-					else if( cmdIs(cmd, "@load") ) {
-						send("Game> Command Not Implemented!", client);
-
-						boolean success = cmd_unloadc(arg, client);
-
-						if( success ) {
-							send("Game> Loaded " + commandMap.get(arg) + ".", client);
-						}
-						else {
-							String[] args = arg.split("=");
-
-							send("Game> Failed to load " + args[1] + " with command name " + args[0], client);
-						}
-					}
-					else if( cmdIs(cmd, "@unload") ) {
-						send("Game> Command Not Implemented!", client);
-
-						boolean success = cmd_unloadc(arg, client);
-
-						if( success ) {
-							send("Game> Unloaded " + arg + ".", client);
-						}
-						else {
-							String[] args = arg.split("=");
-
-							send("Game> Failed to unload " + args[1] + " with command name " + args[0], client);
-						}
-					}
-					else if( cmdIs(cmd, "@reload") ) {
-						if (arg.equals("")) sys_reload();
-						else                sys_reload(arg);
-					}
-					else if( cmdIs(cmd, "@shutdown") )   cmd_shutdown(arg, client);
-					else if( cmdIs(cmd, "@sethour") )    cmd_sethour(arg, client);
-					else if( cmdIs(cmd, "@setminute") )  cmd_setminute(arg, client);
-					else if( cmdIs(cmd, "@setweather") ) cmd_setweather(arg, client);
-					else {
-						superuserCmd = false; // if our initial assumption was wrong, indicate that
-					}
+				// look for a built-in command (by name or alias) that the player may use
+				CommandRegistry.Entry entry = commands.lookup(cmd, player.getAccess(), mode);
 
-					if (superuserCmd) {
-						return;
-					}
+				if (entry != null) {
+					entry.getHandler().execute(arg, client);
+					return;
 				}
 
-				debug("Exited superuser command loop.", 4);
-
-				debug("Entering build command loop...", 4);
-
-				/* Builder Commands */
-
-				if (player.getAccess() >= Constants.BUILD) {
-					buildCmd = true; // begin by assuming we have a build command
-
-					if ( cmdIs(cmd, "@check") ) {
-						// run the check function
-						cmd_check(arg, client);
-					}
-					else if ( cmdIs(cmd, "@cedit") ) {
-						// indicate what is parsing commands
-						debug("Command Parser: @cedit");
-
-						// launch the item editor
-						cmd_creatureedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@create_npc") ) {
-						final String[] args = arg.split(" ");
-
-						for (final String s : args) {
-							System.out.println(s);
-						}
-
-						final String npcName = args[0];
-						
-						//getRace checks equality, ignoring case
-						//final Race npcRace = getRace(args[1]);
-						final Race npcRace = Races.NONE;
-						//final Integer[] stats = Utils.stringsToIntegers(args[2].split(","));
-						final Integer[] stats = Utils.stringsToIntegers("7,7,7,7,7,7,7".split(","));
-						
-						final Room location = getRoom(getPlayer(client).getLocation());
-
-						createNPC(npcName, npcRace, stats, location);
-					}
-					else if ( cmdIs(cmd, "@dig") ) {
-						cmd_dig(arg, client);
-					}
-					else if ( cmdIs(cmd, "@describe") ) {
-						// run the describe function
-						cmd_describe(arg, client);
-					}
-					else if ( cmdIs(cmd, "@door") ) {
-						// run the door function
-						cmd_door(arg, client);
-					}
-					else if ( cmdIs(cmd, "@dungeon") ) {
-						// run the dungeon function
-						cmd_dungeon(arg, client);
-					}
-					else if ( cmdIs(cmd, "@edit") ) {
-						cmd_edit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@examine") ) {
-						// run the examine function
-						cmd_examine(arg, client);
-					}
-					//
-					else if ( cmdIs(cmd, "@fail") ) {
-						cmd_fail(arg, client);
-					}
-					else if ( cmdIs(cmd, "@iedit") ) {
-						// indicate what is parsing commands
-						debug("Command Parser: @iedit");
-
-						// launch the item editor
-						cmd_itemedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@jump") ) {
-						cmd_jump(arg, client);
-					}
-					else if ( cmdIs(cmd, "@link") ) {
-						cmd_link(arg, client);
-					}
-					else if ( cmdIs(cmd, "@lsedit") ) {
-						cmd_lsedit(arg, client); // run the list editor
-					}
-					else if ( cmdIs(cmd, "@nameref") ) {
-						cmd_nameref(arg, client);
-					}
-					else if ( cmdIs(cmd, "@ofail") ) {
-						cmd_ofail(arg, client); // set an ofail message
-					}
-					else if ( cmdIs(cmd, "@open") ) {
-						// run the open function
-						cmd_open(arg, client);
-					}
-					else if ( cmdIs(cmd, "@osuccess") ) {
-						//
-						cmd_osuccess(arg, client);
-					}
-					else if ( cmdIs(cmd, "@qedit") ) {
-						//
-						debug("Command Parser: @qedit");
-
-						// run the list editor
-						cmd_questedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@redit") ) {
-						//
-						debug("Command Parser: @redit");
-
-						// run the list editor
-						cmd_roomedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@skedit") ) {
-						//
-						debug("Command Parser: @skilledit");
+				// TODO exits first, then soft commands...
+				if (isDebugging(1)) debug("Exit? " + cmd);
 
-						// run the skill editor
-						cmd_skilledit(arg, client);
-					}
-					//
-					else if ( cmdIs(cmd, "@success") ) {
-						cmd_success(arg, client); // set an exit success message
-					}
-					else if ( cmdIs(cmd, "@unlink") ) {
-						cmd_unlink(arg, client);
-					}
-					else if ( cmdIs(cmd, "@zedit") ) {
-						cmd_zoneedit(arg, client);
-					}
-					else {
-						buildCmd = false; // if our initial assumption was wrong, indicate that
-					}
+				final boolean word = cmd.matches("[a-zA-Z_-]+");
 
-					if (buildCmd) {
-						return;
-					}
+				// exit handling
+				// Has the user given an action/exit that is linked to something for which no similarly named command exists?
+				// If so, execute link or move user in the direction/to the room specified by the action/exit
+				if ( word && exitHandler(cmd, client) ) {
+					debug("It was an exit");
+					return;
 				}
 
-				debug("Exited build command loop.", 4);
-
-				debug("Entering admin command loop...", 4);
-
-				/* Admin Commands */
-
-				if (player.getAccess() >= Constants.ADMIN) {
-					adminCmd = true; // begin by assuming we have a admin command
-
-					if ( cmdIs(cmd, "@accounts") ) {
-						cmd_accounts(arg, client);
-					}
-					else if ( cmdIs(cmd, "@alias") ) {
-						cmd_alias(arg, client);
-					}
-					else if ( cmdIs(cmd, "@backup") ) {
-						cmd_backup(arg, client);
-						// send("Game> Backup Functionality Broken. Please stick to manual file saves.");
-					} 
-					else if ( cmdIs(cmd, "@bb") ) {
-						cmd_bb(arg, client);
-					}
-					else if ( cmdIs(cmd, "@config") ) {
-						cmd_config(arg, client);
-					}
-					else if ( cmdIs(cmd, "@control") ) {
-						// run the NPC control/takeover function?
-						cmd_control(arg, client);
-					}
-					else if ( cmdIs(cmd, "@debug") ) {
-						cmd_debug(arg, client);
-					}
-					else if ( cmdIs(cmd, "@find") ) {
-						cmd_find(arg, client);
-					}
-					else if ( cmdIs(cmd, "@flags") ) {
-						cmd_flags(arg, client);
-					}
-					else if ( cmdIs(cmd, "@give") ) {
-						cmd_give(arg, client);
-					}
-					else if ( cmdIs(cmd, "@hash") ) {
-						client.write("Hash of argument: '" + arg + "' is hash: '" + Utils.hash(arg) + "'.");
-					}
-					else if ( cmdIs(cmd, "@hedit") ) {
-						cmd_helpedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@initialize") ) {
-						cmd_initialize(arg, client);
-					}
-					else if ( cmdIs(cmd, "@kick") ) {
-						cmd_kick(arg, client);
-					}
-					else if ( cmdIs(cmd, "@listprops") ) {
-						cmd_listprops(arg, client);
-					}
-					else if ( cmdIs(cmd, "@makehouse") ) {
-						makeHouse( getPlayer(client) );
-					}
-					else if ( cmdIs(cmd, "@name") ) {
-						cmd_name(arg, client);
-					}
-					else if ( cmdIs(cmd, "@nextdb") ) {
-						if (arg.equals("")) {
-							send("Next Database Reference Number (DBRef/DBRN): " + objectDB.peekNextId(), client);
-						}
-					}
-					else if ( cmdIs(cmd, "@npcs") ) {
-						cmd_npcs("", client);
-					}
-					else if ( cmdIs(cmd, "@lex") ) {
-						final List<String> result = ProgramInterpreter.lex(arg); 
-						
-						send(result, client);
-					}
-					else if ( cmdIs(cmd, "@pgm") ) {
-						// we'll just create a new and temporary instance (debugging enabled)
-						ProgramInterpreter newInterp = new ProgramInterpreter(this, true);
-						
-						Script script = new Script(arg);
-						
-						// invoke the program interpreter and pass it the argument
-						send("-Result: " + newInterp.interpret(script, player, null), client);
-
-						newInterp = null;
-					}
-					else if ( cmdIs(cmd, "@set") ) {
-						cmd_set(arg, client);
-					}
-					else if ( cmdIs(cmd, "@session") ) {
-						/*
-						 * notionally this should give data on the current or
-						 * last of the specified player
-						 */
-						cmd_session(arg, client);
-					}
-					else if ( cmdIs(cmd, "@sethp") ) {
-						cmd_sethp(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setlevel") ) {
-						cmd_setlevel(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setmana") ) {
-						cmd_setmana(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setskill") ) {
-						cmd_setskill(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setxp") ) {
-						cmd_setxp(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@viewlog") ) {
-						cmd_viewlog(arg, client);
-					}
-					else if ( cmdIs(cmd, "@tune") ) {
-						String[] args = arg.split(" ");
+				// general case for non-explicitly checked mapped commands ("soft" commands)
+				if ( word && soft_commands && (player.hasCommand(cmd) || commandMap.containsKey(cmd) || commandMap.containsKey(aliases.get(cmd))) ) {
+					debug("Look in CommandMap");
+					final Command command = (player.hasCommand(cmd) ? player.getCommand(cmd) : getCommand(cmd));
 
-						if (args[0].equals("cmdDelay")) {
-							final int delay = Utils.toInt(args[1], -1);
-						}
-					}
-					else if ( cmdIs(cmd, "@zones") ) {
-						cmd_zones(arg, client);
-					}
-					else if ( cmdIs(cmd, "@zoneinfo") ) {
-						cmd_zoneinfo(arg, client);
-					}
-					else {
-						adminCmd = false; // if our initial assumption was wrong, indicate that
+					if ( checkAccess(player, command.getAccessLevel()) ) {
+						command.execute(arg, client);
 					}
+					else send("You may not use that command. (Insufficient Access Level!)", client);
 
-					if (adminCmd) {
-						return;
-					}
+					return;
 				}
 
-				debug("Exited admin command loop.", 4);
-
-				debug("Entered wizard command loop.", 4);
-
-				/* Wizard Commands */
-
-				if (player.getAccess() >= Constants.WIZARD) {
-					wizCmd = true; // begin by assuming we have a wizard command
-
-					if ( cmdIs(cmd, "@ban") ) {
-						cmd_ban(arg, client);
-					}
-					else if ( cmdIs(cmd, "@flag") ) {
-						cmd_flag(arg, client);
-					}
-					else if ( cmdIs(cmd, "@flush") ) {
-						flush();
-						send("Dead Connections Flushed!");
-					}
-					else if ( cmdIs(cmd, "@recycle") ) {
-						cmd_recycle(arg, client);
-					}
-					else if ( cmdIs(cmd, "@setcolor") ) {
-						cmd_setcolor(arg, client);
-					}
-					else if ( cmdIs(cmd, "@setmode") ) {
-						cmd_setmode(arg, client);
-					}
-					else if ( cmdIs(cmd, "@spawn") ) {
-						cmd_spawn(arg, client);
-					}
-					else if ( cmdIs(cmd, "@teleport") ) {
-						getCommand("@teleport").execute(arg, client);
-					}
-					else {
-						wizCmd = false; // if our initial assumption was wrong, indicate that
-					}
+				// last of all, see if it's an abbreviation of exactly one built-in command
+				entry = commands.lookupPrefix(cmd, player.getAccess(), mode);
 
-					if (wizCmd) {
-						return;
-					}
+				if (entry != null) {
+					if (isDebugging(1)) debug("Command> " + cmd + " -> " + entry.getName());
+					entry.getHandler().execute(arg, client);
 				}
-
-				debug("Exited wizard command loop.", 4);
-
-				debug("Entering user commmand loop...", 4);
-
-				/* User Commands */
-
-				// TODO convert player command checks to use CmdIs(...)
-
-				if (player.getAccess() >= Constants.USER) {
-					if ( cmdIs(cmd, "ask") )             cmd_ask(arg, client);
-					// attack (a soft command)
-					else if ( cmdIs(cmd, "aliases") )    cmd_aliases(arg, client);
-					else if ( cmdIs(cmd, "auction") )    cmd_auction(arg, client);
-					else if ( cmdIs(cmd, "auctions") )   cmd_auctions(arg, client);
-					else if ( cmdIs(cmd, "balance") )    cmd_balance(arg, client);
-					else if ( cmdIs(cmd, "bash") )       cmd_bash(arg, client);
-					else if ( cmdIs(cmd, "bid") )        cmd_bid(arg, client);
-					else if ( cmdIs(cmd, "boards") )     cmd_boards(arg, client);
-					else if ( cmdIs(cmd, "buy") )        cmd_buy(arg, client);
-					else if ( cmdIs(cmd, "calendar") )   cmd_calendar(arg, client);
-					else if ( cmdIs(cmd, "cast") )       cmd_cast(arg, client);     // cast (a soft command)?
-					else if ( cmdIs(cmd, "chargen") )    cmd_chargen(arg, client);
-					else if ( cmdIs(cmd, "chat") )       cmd_chat(arg, client);
-					else if ( cmdIs(cmd, "climb") )      cmd_climb(arg, client);
-					else if ( cmdIs(cmd, "cls") )        cmd_cls(arg, client);
-					else if ( cmdIs(cmd, "colors") )     cmd_colors(arg, client);
-					else if ( cmdIs(cmd, "commands") )   cmd_commands(arg, client);
-					else if ( cmdIs(cmd, "consider") )   cmd_consider(arg, client);
-					else if ( cmdIs(cmd, "condition") )  cmd_condition(arg, client);
-					else if ( cmdIs(cmd, "craft") )      cmd_craft(arg, client);
-					else if ( cmdIs(cmd, "deposit") )    cmd_deposit(arg, client);
-					else if ( cmdIs(cmd, "drink") )      cmd_drink(arg, client);
-					else if ( cmdIs(cmd, "drop") )       cmd_drop(arg, client); 
-					else if ( cmdIs(cmd, "effects") )    cmd_effects(arg, client);
-					else if ( cmdIs(cmd, "equip") )      cmd_equip(arg, client);
-					else if ( cmdIs(cmd, "exp") )        cmd_exp(arg, client); // TODO CMD 5
-					else if ( cmdIs(cmd, "exits") )      cmd_exits(arg, client);
-					else if ( cmdIs(cmd, "feats") )      cmd_feats(arg, client);
-					else if ( cmdIs(cmd, "fly") )        cmd_fly(arg, client); // TODO CMD 6
-					else if ( cmdIs(cmd, "get") )        cmd_get(arg, client);
-					else if ( cmdIs(cmd, "go") )         cmd_go(arg, client);
-					// greet (a soft command)
-					else if ( cmdIs(cmd, "help") )       cmd_help(arg, client);
-					else if ( cmdIs(cmd, "hold") )       cmd_hold(arg, client);
-					else if ( cmdIs(cmd, "home") )       cmd_home(arg, client);
-					else if ( cmdIs(cmd, "housing") )    cmd_housing(arg, client);
-					else if ( cmdIs(cmd, "inspect") )    cmd_inspect(arg, client);
-					else if ( cmdIs(cmd, "interact") )   cmd_interact(arg, client);
-					else if ( cmdIs(cmd, "inventory") )  cmd_inventory(arg, client);
-					else if ( cmdIs(cmd, "land") )       cmd_land(arg, client);    // TODO CMD
-					else if ( cmdIs(cmd, "levelup") )    cmd_levelup(arg, client); // TODO CMD 8 fix this kludge
-					else if ( cmdIs(cmd, "list") )       cmd_list(arg, client);
-					else if ( cmdIs(cmd, "lock") )       cmd_lock(arg, client);
-					else if ( cmdIs(cmd, "logout") )     cmd_logout(arg, client);
-					else if ( cmdIs(cmd, "look") )       cmd_look(arg, client);
-					else if ( cmdIs(cmd, "lookat") )     cmd_lookat(arg, client);
-					// mail (a soft command)
-					else if ( cmdIs(cmd, "map") )        cmd_map(arg, client);
-					else if ( cmdIs(cmd, "mine") )       cmd_mine(arg, client);
-					else if ( cmdIs(cmd, "money") )      cmd_money(arg, client);
-					
-					else if ( cmdIs(cmd, "motd") )       send(messageOfTheDay(), client); // TODO CMD 11
-					
-					else if ( cmdIs(cmd, "move") )       cmd_move(arg, client);
-					else if ( cmdIs(cmd, "ooc") )        player.setStatus("OOC"); // TODO CMD 12 fix this kludge
-					else if ( cmdIs(cmd, "ic") )         player.setStatus("IC");  // TODO CMD 13 fix this kludge
-					
-					else if ( cmdIs(cmd, "open") )       cmd_open2(arg, client);
-					else if ( cmdIs(cmd, "page") )       cmd_page(arg, client);
-					else if ( cmdIs(cmd, "pose") )       cmd_pose(arg, client);
-					else if ( cmdIs(cmd, "party") )      cmd_party(arg, client);
-					else if ( cmdIs(cmd, "passwd") )     cmd_passwd(arg, client);
-					else if ( cmdIs(cmd, "pconfig") )    cmd_pconfig(arg, client);
-					else if ( cmdIs(cmd, "pinfo") )      cmd_pinfo(arg, client);
-					else if ( cmdIs(cmd, "push") )       cmd_push(arg, client);
-					else if ( cmdIs(cmd, "put") )        cmd_put(arg, client);
-					
-					else if ( cmdIs(cmd, "prompt") )     prompt(client);
-					
-					else if ( cmdIs(cmd, "quests") )     cmd_quests(arg, client);
-					else if ( cmdIs(cmd, "quit") )       cmd_quit(arg, client);
-					else if ( cmdIs(cmd, "read") )       cmd_read(arg, client);
-					else if ( cmdIs(cmd, "roll") )       cmd_roll(arg, client); // TODO CMD 14
-					else if ( cmdIs(cmd, "run") ) {
-						(new Command("") {
-							@Override
-							public void execute(final String arg, final Client client) {
-								final Player player = getPlayer(client);
-								player.setSpeed(Constants.RUN);
-								send("You get ready to run.", client);
-							}
-						}).execute(arg, client);
-					}
-					else if ( cmdIs(cmd, "score") )      cmd_score(arg, client);
-					else if ( cmdIs(cmd, "sell") )       cmd_sell(arg, client);
-					else if ( cmdIs(cmd, "sheathe") )    cmd_sheathe(arg, client);
-					else if ( cmdIs(cmd, "skillcheck") ) cmd_skillcheck(arg, client);
-					else if ( cmdIs(cmd, "spellinfo") )  cmd_spellinfo(arg, client);
-					else if ( cmdIs(cmd, "spells") )     cmd_spells(arg, client);
-					// staff (a soft command)
-					else if ( cmdIs(cmd, "stats") )      cmd_stats(arg, client);
-					else if ( cmdIs(cmd, "status") )     cmd_status(arg, client);
-					else if ( cmdIs(cmd, "talk") )       cmd_talk(arg, client);
-					else if ( cmdIs(cmd, "take") )       cmd_take(arg, client);
-					else if ( cmdIs(cmd, "target") )     cmd_target(arg, client);
-					else if ( cmdIs(cmd, "tell") )       cmd_tell(arg, client);
-					else if ( cmdIs(cmd, "time") )       cmd_time(arg, client);
-					else if ( cmdIs(cmd, "trade") )      cmd_trade(arg, client);
-					else if ( cmdIs(cmd, "travel") )     cmd_travel(arg, client);
-					else if ( cmdIs(cmd, "unequip") )    cmd_unequip(arg, client);
-					else if ( cmdIs(cmd, "unlock") )     cmd_unlock(arg, client);
-					else if ( cmdIs(cmd, "use") )        cmd_use(arg, client);
-					else if ( cmdIs(cmd, "value") )      cmd_value(arg, client);
-					else if ( cmdIs(cmd, "version") )    cmd_version(arg, client);					
-					else if ( cmdIs(cmd, "vitals") )     cmd_vitals(arg, client);
-					else if ( cmdIs(cmd, "where") )      cmd_where(arg, client);
-					else if ( cmdIs(cmd, "who") )        cmd_who(arg, client);
-					else if ( cmdIs(cmd, "withdraw") )   cmd_withdraw(arg, client);
-					else if ( cmdIs(cmd, "walk") ) {
-						(new Command("") {
-							@Override
-							public void execute(final String arg, final Client client) {
-								final Player player = getPlayer(client);
-								
-								if (player.getSpeed() > Constants.WALK) {
-									player.setSpeed(Constants.WALK);
-									send("You slow down to a walking speed.", client);
-								}
-							}
-						}).execute(arg, client);
-					}
-					else if ( cmdIs(cmd, "write") ) { // TODO CMD 21
-						// check for something to write in/on (writable things
-						// -- paper, books, scrolls?)
-						// check for writing tool and ink
-						// get stuff and "write" it down
-					}
-					else {
-						// TODO exits first, then soft commands...
-						debug("Exit? " + cmd);
-						
-						boolean nothing = false;
-
-						if ( cmd.matches("[a-zA-Z_-]+") ) {
-							// exit handling
-							// Has the user given an action/exit that is linked to something for which no similarly named command exists?
-							// If so, execute link or move user in the direction/to the room specified by the action/exit
-
-							// handle the command as an exit
-							if ( exitHandler(cmd, client) ) {
-								debug("It was an exit");
-							}
-							// general case for non-explicitly checked mapped commands
-							else if (soft_commands) { // "soft" commands enabled?
-								debug("Look in CommandMap");
-								final Command command = (player.hasCommand(cmd) ? player.getCommand(cmd) : getCommand(cmd));
-
-								if (command != null) {
-									if ( checkAccess(player, command.getAccessLevel()) ) {
-										command.execute(arg, client);
-									}
-									else send("You may not use that command. (Insufficient Access Level!)", client);
-								}
-								else send("Command is NULL.", client);
-							}
-							else nothing = true;
-						}
-						else {
-							debug("No match found in '" + cmd + "'");
-							nothing = true;
-						}
-						
-						if( nothing ) {
-							send("Huh? That is not a known command.", client);
-							debug("Command> Unknown Command");
-						}
-					}
+				else {
+					send("Huh? That is not a known command.", client);
+					debug("Command> Unknown Command");
 				}
-
-				debug("Exited user commmand loop.", 4);
 			}
 		}
 	}
@@ -3591,7 +3446,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 						// account = new Account(this.accounts.size(), args[1],
 						// args[2], 5);
-						acctMgr.addAccount(args[1], args[2], 5); // add the account to the account manager
+						// add the account to the account manager, once the password is hashed
+						final boolean queued = hasher.hash(args[2], (hash) -> {
+							acctMgr.addHashedAccount(args[1], hash, 5);
+							
+							send("Account added.", client);
+						});
+						
+						if ( !queued ) send("The server is busy. Please try again in a moment.", client);
 					}
 					else if ( args[0].equals("+link") ) { // @accounts +link 3 Nathan
 						final Account account = acctMgr.getAccount(Utils.toInt(args[1], -1));
@@ -3606,7 +3468,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						else send("No Such Account Exists!", client);
 					}
 					else if ( args[0].equals("+info") ) {
-						final Account account = acctMgr.getAccount(args[1], args[2]);
+						final Account account = acctMgr.getAccount(args[1], Utils.hash(args[2]));
 
 						if (account != null) {
 							send("Account - " + account.getUsername() + " (" + account.getId() + ")", client);
@@ -4037,7 +3899,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * @param client
 	 */
 	private void cmd_backup(final String arg, final Client client) {
-		backup(arg);
+		send(backup(arg), client);
 		send("Finished backing up.", client);
 	}
 
@@ -4783,18 +4645,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						applyEffect(ptarget, e); // apply the effect to the target
 
 						// spell timer with default (60 sec) cooldown
-						final SpellTimer sTimer = new SpellTimer(spell, 60);
-						
-						getSpellTimers(player).add(sTimer);
-						
-						timer.scheduleAtFixedRate(sTimer, 0, 1000);
+						addSpellTimer(player, new SpellTimer(spell, 60));
 						
 						// effect timer with default (30 sec) cooldown
-						final EffectTimer etimer = new EffectTimer(e, 30);
-						
-						getEffectTimers(player).add(etimer);
-						
-						timer.scheduleAtFixedRate(etimer, 0, 1000); // create countdown timer
+						addEffectTimer(player, new EffectTimer(e, 30)); // create countdown timer
 					}
 					else {
 						System.out.println("Target is not Player.");
@@ -4918,11 +4772,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					// is there ever a case where the caster wouldn't be a player here?
 					SpellTimer sTimer = new SpellTimer(spell, 60);     // spell timer with default (60 sec) cooldown
 					addSpellTimer(player, sTimer);
-					scheduleAtFixedRate(sTimer, 0, 1000);
 
 					EffectTimer etimer = new EffectTimer(e, 30);
-					addEffectTimer(player, etimer);
-					scheduleAtFixedRate(etimer, 0, 1000); // create countdown timer
+					addEffectTimer(player, etimer);                    // create countdown timer
 
 					// if our target is a player set timers for us and tell them, otherwise don't bother
 					if(target instanceof Player) {
@@ -5000,7 +4852,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			send(sendList, client);
 		}
-		else if (args.length > 1) {
+		else if (args.length > 1 && args[0].startsWith("#")) {
 			// party #<param> <channel_name>
 			final String param = args[0];
 
@@ -5114,8 +4966,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				chan.send(channelName, player, msg);
 
 				debug("New message (" + channelName + "): " + msg);
-
-				logChat("(" + channelName + ") <" + player.getName() + "> " + arg);
 			}
 			else {
 				send("Chat> No such chat channel.", client);
@@ -5131,6 +4981,51 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 
+	/**
+	 * Command: compress
+	 * 
+	 * Turn compression of output (MCCP2) on or off, or see how much it's saving.
+	 * 
+	 * @param arg
+	 * @param client
+	 */
+	private void cmd_compress(final String arg, final Client client) {
+		if (arg.equalsIgnoreCase("on")) {
+			if (!use_mccp) {
+				send("Game> Compression is not enabled on this server.", client);
+			}
+			else if (client.isCompressing()) {
+				send("Game> Compression is already on.", client);
+			}
+			else if (client.MCCP) {
+				client.startCompression();
+				send("Game> Compression on.", client);
+			}
+			else {
+				// ask again, it'll be turned on if the client agrees
+				client.write( new byte[] { Telnet.IAC, Telnet.WILL, Telnet.MCCP2 } );
+				send("Game> Asking your client to use compression...", client);
+			}
+		}
+		else if (arg.equalsIgnoreCase("off")) {
+			if (client.isCompressing()) {
+				send("Game> Compression off.", client);
+				client.stopCompression();
+			}
+			else send("Game> Compression is already off.", client);
+		}
+		else {
+			final OutputQueue oq = client.getOutputQueue();
+			
+			if (client.isCompressing()) send("Compression: on", client);
+			else                        send("Compression: off", client);
+			
+			if (oq.getCompressedIn() > 0) {
+				send(String.format("%d bytes sent as %d (%.1f%%)", oq.getCompressedIn(), oq.getCompressedOut(), 100.0 * oq.getCompressedOut() / oq.getCompressedIn()), client);
+			}
+		}
+	}
+
 	private void cmd_config(final String arg, final Client client) {
 		// use this to replace 'ansi' and 'msp' commands?
 		// or possibly alias them to it?
@@ -5157,11 +5052,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						color = Constants.ANSI; // enables ansi and disables xterm
 						client.write("\033[;1m"); // tell client to use bright version of ANSI Colors
 						// send("> Using BRIGHT ANSI colors <", client); // indicate the use of bright ansi colors to the client
-						send(Utils.rainbow("ANSI", ANSI) + " colors turned on.", client);
+						send(COLORS_ON, client, "ANSI");
 					}
 					else if (args[1].equalsIgnoreCase("xterm")) {
 						color = Constants.XTERM; // enables xterm and disables ansi
-						send(Utils.rainbow("XTERM256", XTERM256) + " colors turned on.", client);
+						send(COLORS_ON, client, "XTERM256");
 					}
 					else {
 						send("Colors are disabled.", client);
@@ -5190,8 +5085,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 		else if (args.length == 1) {
 			if (args[0].equals("colors")) {
-				if (color == Constants.ANSI)       send("Using " + Utils.rainbow("ANSI", ANSI) + " colors.", client);
-				else if (color == Constants.XTERM) send("Using " + Utils.rainbow("XTERM256", XTERM256) + " colors.", client);
+				if (color == Constants.ANSI)       send(COLORS_USED, client, "ANSI");
+				else if (color == Constants.XTERM) send(COLORS_USED, client, "XTERM256");
 				else                               send("Colors are disabled.", client);
 			}
 			else if (args[0].equals("msp")) {
@@ -5319,6 +5214,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * @param client
 	 */
 	private void cmd_connect(final String arg, final Client client) {
+		cmd_connect(arg, client, null);
+	}
+
+	/**
+	 * Connect to a player or account. Checking the password is done on the
+	 * password hashing threads, so the login may finish on a later tick.
+	 * 
+	 * @param arg
+	 * @param client
+	 * @param after run once the attempt is over, whether or not it worked (may be null)
+	 */
+	private void cmd_connect(final String arg, final Client client, final Runnable after) {
 		// Trim the argument of any additional whitespace
 		final String[] args = Utils.trim(arg).split(" ");
 
@@ -5330,6 +5237,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			//send("such as 'create <character name> <password>' or 'connect <character name> <password>'", client);
 			//send("To connect as a guest simply type 'connect guest'",                                     client);
 			//send("NOTE: Using an valid account name and password will trigger the account options menu",  client);
+			if (after != null) after.run();
 			return;
 		}
 
@@ -5384,91 +5292,126 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			 * 
 			 * Other we will look for a character by the name given.
 			 */
+			
+			if ( !hasher.allow( client.getIPAddress() ) ) {
+				send("Too many login attempts. Please wait a while and try again.", client);
+			}
+			else {
+				// don't accept any other input until we know whether the password is right
+				final String state = getClientState(client);
+				
+				setClientState(client, "authenticating");
+				
+				final boolean queued = hasher.hash(pass, (hash) -> {
+					setClientState(client, (state != null) ? state : "");
+					
+					if ( client.isRunning() ) connect(user, pass, hash, client);
+					
+					if (after != null) after.run();
+				});
+				
+				if ( queued ) return;
+				
+				setClientState(client, (state != null) ? state : "");
+				
+				send("The server is busy. Please try again in a moment.", client);
+			}
+		}
+		
+		if (after != null) after.run();
+	}
+	
+	/**
+	 * The second half of cmd_connect, once the password has been hashed.
+	 * 
+	 * @param user
+	 * @param pass the password as typed (see Account.checkPassword)
+	 * @param hash
+	 * @param client
+	 */
+	private void connect(final String user, final String pass, final String hash, final Client client) {
+		if (use_accounts) {
+			// account check
+			final Account a = acctMgr.getAccount(user);
 
-			if (use_accounts) {
-				// account check
-				final Account a = acctMgr.getAccount(user, pass);
-
-				// debug("CONNECT: Fail");
-				// send("That account does not exist or the password is incorrect!",
-				// client);
-
-				if (a != null) {
-					if (a.getStatus() == Account.Status.ACTIVE) {
-						this.caTable.put(client, a);
-						account_menu(a, client);
-						setClientState(client, "account_menu");
-					}
-					else {
-						final String message = Account.msgmap.get( a.getStatus() );
-						
-						if( message != null ) send(message, client);
-					}
-
-					return;
-				}
-			}
+			// debug("CONNECT: Fail");
+			// send("That account does not exist or the password is incorrect!",
+			// client);
 
-			// character check
-			// NOTE: use DB here too
-			final Player p = objectDB.getPlayer(user);
+			if (a != null && a.checkPassword(pass, hash)) {
+				if (a.getStatus() == Account.Status.ACTIVE) {
+					sessions.open(client).setAccount(a);
+					account_menu(a, client);
+					setClientState(client, "account_menu");
+				}
+				else {
+					final String message = Account.msgmap.get( a.getStatus() );
+					
+					if( message != null ) send(message, client);
+				}
 
-			if (p == null) {
-				debug("CONNECT: Fail");
-				debug("No such player!");
-				send("That player does not exist or the password is incorrect!", client);
 				return;
 			}
+		}
 
-			if (p.getPStatus() == Player.Status.BANNED) {
-				debug("CONNECT: Fail");
-				debug("Player " + p.getName() + " is banned!");
-				send("Player is banned.", client);
-				return;
-			}
-			
-			final String password = p.getPass();
-			final String password_hash = Utils.hash(pass);
+		// character check
+		// NOTE: use DB here too
+		final Player p = objectDB.getPlayer(user);
 
-			//if ( !p.getPass().equals()) {
-			if( !password.equals(password_hash) ) {
-				debug("PASS: Fail");
-				send("That player does not exist or the password is incorrect!", client);
-				return;
-			}
+		if (p == null) {
+			debug("CONNECT: Fail");
+			debug("No such player!");
+			send("That player does not exist or the password is incorrect!", client);
+			return;
+		}
 
-			debug("PASS: Pass"); // report success for password check
-			
-			// TODO how do I handle what amounts to a second login after some kind of pseudo-disconnect 
-			
-			// remove player in case of relogin (this is the not ideal handling)
-			final int playerDBRef = p.getDBRef();
-			final String playerName = p.getName();
-			
-			for (final Player player1 : this.players) {
-				if ( player1.getDBRef() == playerDBRef && player1.getName().equals(playerName) ) {
-					/* won't work because client object vanishes when the player loses connection */
-					init_disconn(player1.getClient(), false);
-					break;
-				}
-			}
-			
-			// connect to the game
-			if (mode == GameMode.NORMAL) {
-				init_conn(p, client, false); // Open Mode
-			}
-			else if (mode == GameMode.WIZARD) {
-				if (p.getFlags().contains("W") || p.getAccess() == Constants.WIZARD) {
-					init_conn(p, client, false); // Wizard-Only Mode
-				}
-				else send("Sorry, only Wizards are allowed to login at this time.", client);
-			}
-			else if (mode == GameMode.MAINTENANCE) {
-				send("Sorry, the mud is currently in maintenance mode.", client);
+		if (p.getPStatus() == Player.Status.BANNED) {
+			debug("CONNECT: Fail");
+			debug("Player " + p.getName() + " is banned!");
+			send("Player is banned.", client);
+			return;
+		}
+		
+		final String password = p.getPass();
+
+		//if ( !p.getPass().equals()) {
+		if( !PasswordHasher.matches(hash, password) ) {
+			debug("PASS: Fail");
+			send("That player does not exist or the password is incorrect!", client);
+			return;
+		}
+
+		debug("PASS: Pass"); // report success for password check
+		
+		// TODO how do I handle what amounts to a second login after some kind of pseudo-disconnect 
+		
+		// remove player in case of relogin (this is the not ideal handling)
+		final int playerDBRef = p.getDBRef();
+		final String playerName = p.getName();
+		
+		for (final Player player1 : this.players) {
+			if ( player1.getDBRef() == playerDBRef && player1.getName().equals(playerName) ) {
+				/* won't work because client object vanishes when the player loses connection */
+				init_disconn(player1.getClient(), false);
+				break;
 			}
-			else {
-				send("Sorry, you cannot connect to the mud at this time. Please try again later.", client);
+		}
+		
+		// connect to the game
+		if (mode == GameMode.NORMAL) {
+			init_conn(p, client, false); // Open Mode
+		}
+		else if (mode == GameMode.WIZARD) {
+			if (p.getFlags().contains("W") || p.getAccess() == Constants.WIZARD) {
+				init_conn(p, client, false); // Wizard-Only Mode
 			}
+			else send("Sorry, only Wizards are allowed to login at this time.", client);
+		}
+		else if (mode == GameMode.MAINTENANCE) {
+			send("Sorry, the mud is currently in maintenance mode.", client);
+		}
+		else {
+			send("Sorry, you cannot connect to the mud at this time. Please try again later.", client);
 		}
 	}
 
@@ -5715,55 +5658,91 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			// indicate the unavailability and/or unsuitability of the chosen name
 			send("That name is not available, please choose another and try again.", client);
 		}
+		else if ( !hasher.allow( client.getIPAddress() ) ) {
+			send("Too many attempts. Please wait a while and try again.", client);
+		}
 		else {
-			// create a new player object for the new player
-			final Player player = new Player(-1, user, Utils.hash(pass), start_room);
+			final String state = getClientState(client);
+			
+			setClientState(client, "authenticating");
+			
+			// the player gets created once the password is hashed
+			final boolean queued = hasher.hash(pass, (hash) -> {
+				setClientState(client, (state != null) ? state : "");
+				
+				if( !client.isRunning() ) return;
+				
+				// someone else may have taken the name in the meantime
+				if( objectDB.hasName(user) ) {
+					send("That name is not available, please choose another and try again.", client);
+				}
+				else create(user, pass, hash, client);
+			});
+			
+			if( !queued ) {
+				setClientState(client, (state != null) ? state : "");
+				
+				send("The server is busy. Please try again in a moment.", client);
+			}
+		}
+	}
+	
+	/**
+	 * The second half of cmd_create, once the password has been hashed.
+	 * 
+	 * @param user
+	 * @param pass
+	 * @param hash
+	 * @param client
+	 */
+	private void create(final String user, final String pass, final String hash, final Client client) {
+		// create a new player object for the new player
+		final Player player = new Player(-1, user, hash, start_room);
 
-			// TODO decide if this is okay or find a better way
-			// sclients.put(client, player);
-			// run character generation (should we do this here?)
+		// TODO decide if this is okay or find a better way
+		// sclients.put(client, player);
+		// run character generation (should we do this here?)
 
+		// does this belong here or in init_conn
+		if (module != null) {
 			debug("");
 			debug("\'" + module.getName() + "\'");
 			debug("");
 
-			// does this belong here or in init_conn
-			if (module != null) {
-				//
-				module.PCInit(player);
-				
-				// TODO how to print this out?
-				//debug(player.getSlots().keySet());
+			//
+			module.PCInit(player);
+			
+			// TODO how to print this out?
+			//debug(player.getSlots().keySet());
 
-				// give them starting equipment?
-				
-				//
-				final Item helpNote = createItem("Note", "Read this note for help with 'read'.", player.getDBRef());
+			// give them starting equipment?
+			
+			//
+			final Item helpNote = createItem("Note", "Read this note for help with 'read'.", player.getDBRef());
 
-				helpNote.setProperty("_game/readable", true);
-				helpNote.setProperty("_game/text","Welcome.\nTo get started you should read the help/lore files and then go through character generation.");
+			helpNote.setProperty("_game/readable", true);
+			helpNote.setProperty("_game/text","Welcome.\nTo get started you should read the help/lore files and then go through character generation.");
 
-				initCreatedItem(helpNote);
+			initCreatedItem(helpNote);
 
-				player.getInventory().add( helpNote );
-			}
+			player.getInventory().add( helpNote );
+		}
+		
+		if( use_accounts ) {
+			//acctMgr.getAccount(user, pass).linkCharacter(player);
+			// TODO figure out how to make sure this account is created before any queries
+			final Account a = acctMgr.addHashedAccount(user, hash, 4);
 			
-			if( use_accounts ) {
-				//acctMgr.getAccount(user, pass).linkCharacter(player);
-				// TODO figure out how to make sure this account is created before any queries
-				final Account a = acctMgr.addAccount(user, pass, 4);
-				
-				a.linkCharacter(player);
-			}
+			a.linkCharacter(player);
+		}
 
-			objectDB.addAsNew(player);
-			objectDB.addPlayer(player); // add player to the auth table
+		objectDB.addAsNew(player);
+		objectDB.addPlayer(player); // add player to the auth table
 
-			send("Welcome to the Game, " + colors(user, getDisplayColor("player")) + ". Your password is: " + colors(pass, "yellow"), client);
+		send("Welcome to the Game, " + colors(user, getDisplayColor("player")) + ". Your password is: " + colors(pass, "yellow"), client);
 
-			// initiate the connection
-			init_conn(player, client, true);
-		}
+		// initiate the connection
+		init_conn(player, client, true);
 	}
 	
 	// TODO write code for cmd_creatureedit(...)
@@ -5900,29 +5879,46 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			c++;
 		}*/
 		
-		send(colors("user commands: ", "green") + Utils.join(user_cmds, ", "), client);
+		send(colors("user commands: ", "green") + listCommands(Constants.USER), client);
 
 		if (access >= Constants.BUILD) {
-			System.out.println( Arrays.asList(build_cmds) );
-			send(colors("builder commands: ", "cyan") + Utils.join(build_cmds, ", "), client);
+			send(colors("builder commands: ", "cyan") + listCommands(Constants.BUILD), client);
 		}
 
 		if (access >= Constants.ADMIN) {
-			System.out.println( Arrays.asList(admin_cmds) );
-			send(colors("admin commands: ", "red") + Utils.join(admin_cmds, ", "), client);
+			send(colors("admin commands: ", "red") + listCommands(Constants.ADMIN), client);
 		}
 
 		if (access >= Constants.WIZARD) {
-			System.out.println( Arrays.asList(wiz_cmds) );
-			send(colors("wizard commands: ", "magenta") + Utils.join(wiz_cmds, ", "), client);
+			send(colors("wizard commands: ", "magenta") + listCommands(Constants.WIZARD), client);
 		}
 
 		if (access >= Constants.SUPERUSER) {
-			System.out.println( Arrays.asList(superuser_cmds) );
-			send( colors("superuser commands: ", "yellow") + Utils.join(superuser_cmds, ", "), client);
+			send( colors("superuser commands: ", "yellow") + listCommands(Constants.SUPERUSER), client);
 		}
 	}
 
+	/**
+	 * Get a comma separated list of the commands, both built-in and "soft",
+	 * that require exactly the given access level.
+	 * 
+	 * @param access
+	 * @return
+	 */
+	private String listCommands(final int access) {
+		final List<String> names = commands.getNames(access);
+
+		for (final Map.Entry<String, Command> entry : commandMap.entrySet()) {
+			if (entry.getValue().getAccessLevel() == access && !commands.hasCommand( entry.getKey() )) {
+				names.add( entry.getKey() );
+			}
+		}
+
+		Collections.sort(names);
+
+		return Utils.join(names, ", ");
+	}
+
 	/**
 	 * Command: Create Item Permissions: Admin?
 	 * 
@@ -6044,7 +6040,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * different information
 	 * 
 	 * on/off/client/clients/colors/creatures/dbdump/holidays/listen/memory/
-	 * position/pos/ portals/seasons/timedata/timers/udbnstack/<a number>
+	 * loop/output/position/pos/ portals/seasons/timedata/timers/udbnstack/<a number>
 	 * 
 	 * @param arg
 	 * @param client
@@ -6104,6 +6100,113 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				cn++;
 			}
 		}
+		else if (param.equals("loop")) {
+			send("Main Loop (tick: " + tick_ms + " ms, queued input: " + inputQueue.size() + ")", client);
+			send( Utils.padLeft("", '-', 77), client);
+			send(tickTimes.toString(), client);
+			send(queueWaitTimes.toString(), client);
+		}
+		else if (param.equals("accounts")) {
+			send(acctMgr.toString(), client);
+		}
+		else if (param.equals("chat")) {
+			for (final ChatChannel cc : chan.getChatChannels()) {
+				send(cc.getName() + ": listeners " + cc.getListeners().size() + " pending " + cc.getPending() + " sent " + cc.getSent() + " delivered " + cc.getDelivered(), client);
+			}
+		}
+		else if (param.equals("broadcast")) {
+			send(broadcaster.toString(), client);
+		}
+		else if (param.equals("sessions")) {
+			send(sessions.toString(), client);
+			
+			for (final ClientSession session : sessions.getSessions()) send(session.toString(), client);
+		}
+		else if (param.equals("hash")) {
+			send(hasher.toString(), client);
+			send(hasher.getWaitTimes().toString(), client);
+			send(hasher.getHashTimes().toString(), client);
+		}
+		else if (param.equals("help")) {
+			send(helpFiles.toString(), client);
+			send(topicFiles.toString(), client);
+		}
+		else if (param.equals("startup")) {
+			for (final String line : startupReport()) send(line, client);
+		}
+		else if (param.equals("journal")) {
+			if (journal != null) send(journal.toString(), client);
+			else                 send("Game> Journaling is not enabled.", client);
+		}
+		else if (param.equals("render")) {
+			send(renderCache.toString(), client);
+		}
+		else if (param.equals("strings")) {
+			send(objectDB.getStrings().toString(), client);
+			send("Saved: " + objectDB.getStrings().getSaved() / 1024 + " KB (approximately)", client);
+		}
+		else if (param.equals("mccp")) {
+			send( String.format("%-4s %-15s %-5s %-10s %-10s %-7s %-8s", "#", "IP Address", "On", "In", "Out", "Ratio", "CPU (ms)"), client);
+			send( Utils.padLeft("", '-', 77), client);
+			
+			int cn = 0;
+			
+			for (final Client c : s.getClients()) {
+				final OutputQueue oq = c.getOutputQueue();
+				
+				final long in = oq.getCompressedIn();
+				final long out = oq.getCompressedOut();
+				
+				send( String.format("%-4d %-15s %-5s %-10d %-10d %-7s %-8.2f",
+						cn, c.getIPAddress(), c.isCompressing() ? "yes" : "no", in, out,
+						(in > 0) ? String.format("%.2f", (double) in / out) : "-", oq.getCompressTime() / 1000000.0), client);
+				
+				cn++;
+			}
+		}
+		else if (param.equals("logs")) {
+			if (logging) {
+				send(logger.toString(), client);
+				send(logger.getLag().toString(), client);
+				
+				for (final Log log : logger.getLogs()) {
+					send(String.format("%-8s %-40s %d lines", log.getName(), log.getFileName(), log.getLinesWritten()), client);
+				}
+			}
+			else send("Game> Logging is not enabled.", client);
+		}
+		else if (param.equals("checkpoint")) {
+			if (journal != null) {
+				checkpoint();
+				send("Game> Checkpoint queued.", client);
+			}
+			else send("Game> Journaling is not enabled.", client);
+		}
+		else if (param.equals("cmdexec")) {
+			if (cmdExec != null) {
+				send("Command Execution (threads: " + cmdExec.getThreads() + ", queued: " + cmdExec.getQueued() + ")", client);
+				send("executed: " + cmdExec.getExecuted() + " (exclusive: " + cmdExec.getExclusive() + ", failed: " + cmdExec.getFailed() + ")", client);
+				send( Utils.padLeft("", '-', 77), client);
+				send(cmdExec.getWaitTimes().toString(), client);
+				send(cmdExec.getRunTimes().toString(), client);
+			}
+			else send("Game> Commands are not queued (queued_commands is off).", client);
+		}
+		else if (param.equals("output")) {
+			send( String.format("%-4s %-15s %-8s %-8s %-10s %-10s %-7s %-8s", "#", "IP Address", "Queued", "Peak", "Total", "Written", "Writes", "Dropped"), client);
+			send( Utils.padLeft("", '-', 77), client);
+			
+			int cn = 0;
+			
+			for (final Client c : s.getClients()) {
+				final OutputQueue oq = c.getOutputQueue();
+				
+				send( String.format("%-4d %-15s %-8d %-8d %-10d %-10d %-7d %-8d",
+						cn, c.getIPAddress(), oq.depth(), oq.getPeakDepth(), oq.getBytesQueued(), oq.getBytesWritten(), oq.getWrites(), oq.getDropped()), client);
+				
+				cn++;
+			}
+		}
 		else if (param.equals("colors")) {
 			if (color == Constants.ANSI) {
 				char c = 'A';
@@ -6227,23 +6330,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 		}
 		else if (param.equals("telnet")) {
-			Byte[] msg = client.getTelnetMessage();
-
-			while( msg.length > 0 ) {
-				byte[] ba = new byte[msg.length];
-
-				int index = 0;
-
-				for (Byte b : msg) {
-					ba[index] = b;
-					index++;
-				}
+			TelnetMessage event = client.getTelnetMessage();
 
-				String message = Telnet.translate(ba);
+			while( event != null ) {
+				System.out.println("] " + event);
 
-				System.out.println("] " + message);
-
-				msg = client.getTelnetMessage();
+				event = client.getTelnetMessage();
 			}
 		}
 		else if (param.equals("timedata")) {
@@ -6293,8 +6385,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			send(Utils.padRight("", '-', 40), client);
 			
 			
-			// TODO check on this, why do I do this here? to make sure their up to date? TimeLoop does this already
-			checkTimers();
+			send(timers.toString(), client);
 
 			// Effect Timers
 			for (EffectTimer etimer : getEffectTimers(getPlayer(client))) {
@@ -6320,7 +6411,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		else if (param.equals("udbnstack")) {
 			send("Functionality Removed", client);
 			client.write("Stack: [ ");
-			Stack<Integer> unusedDBNs = objectDB.getUnused();
+			final IntStack unusedDBNs = objectDB.getUnused();
 
 			for (int i = 0; i < unusedDBNs.size(); i++) {
 
@@ -6770,7 +6861,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					 */
 				}
 				else {
-					send("You take a sip of your " + colors(item.getName(), getDisplayColor("item")) + ".", client);
+					send(TAKE_SIP, client, getDisplayColor("item"), item.getName());
 				}
 
 				// Script s = item.getScript(TriggerType.onUse);
@@ -7769,6 +7860,24 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				notify(player, "Game> Help Files Reloaded!\n");
 			}
 		}
+		else if ( arg.startsWith("@search") ) {
+			final String query = arg.substring(7).trim();
+			
+			if ( !query.equals("") ) {
+				final List<String> found = new LinkedList<String>( helpFiles.search(query) );
+				
+				for (final String name : topicFiles.search(query)) {
+					if( !found.contains(name) ) found.add(name);
+				}
+				
+				if( !found.isEmpty() ) {
+					send("Help files/topics matching '" + query + "': ", client);
+					send(Utils.join(found, ", "), client);
+				}
+				else send("No help files/topics match '" + query + "'.", client);
+			}
+			else send("Syntax: help @search <words>", client);
+		}
 		else {
 			if ( arg.equals("") ) arg = "help";
 
@@ -7872,7 +7981,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		boolean exist = false;
 
 		// test for existence of helpfile?
-		if (helpTable.get(arg) != null) {
+		if (helpFiles.contains(arg)) {
 			exist = true;
 		}
 
@@ -8391,18 +8500,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		// if we found the room, send the player there
 		if (room != null) {
-			getRoom( player.getLocation() ).removeListener(player); // remove listener
-
 			send("Jumping to " + room.getName() + "... ", client);
 
-			player.setLocation(room.getDBRef());
+			player.setLocation(room.getDBRef()); // moves the listener too (see ObjectDB.moved)
 			player.setPosition(0, 0);
 
 			send("Done.", client);
 			
 			look(room, client);
-
-			getRoom( player.getLocation() ).addListener(player); // add listener
 		}
 		else send("Jump failed.", client);
 	}
@@ -8718,7 +8823,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			// remove the player from the game
 			init_disconn(client, true);
 
-			final Account account = caTable.get(client);
+			final Account account = getClientAccount(client);
 
 			// if there is an account associated with the client
 			if (account != null) {
@@ -9790,7 +9895,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 							if (player1 != null) {
 								// is that player logged in
-								if ( sclients.containsValue(player1) ) {
+								if ( sessions.isLoggedIn(player1) ) {
 									// send invite (overwrites previous invites)
 									this.partyInvites.put(player1, getPartyContainingPlayer(player));
 
@@ -10848,11 +10953,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			final String username = args[0];
 			final String password = args[1];
 
-			acctMgr.addAccount(username, password, 3);
+			final Account account = acctMgr.addHashedAccount(username, Utils.hash(password), 3);
 
-			final Account account = acctMgr.getAccount(username, password);
-
-			caTable.put(client, account);
+			sessions.open(client).setAccount(account);
 
 			send("Account Registered!", client);
 			send("Username: \'" + account.getUsername() + "\'", client);
@@ -11018,7 +11121,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 							send("Property \'" + key + "\' with value of \'" + value + "\' set on " + mobj.getName(), client);
 						}
 						else {
-							mobj.getProperties().remove(key);
+							mobj.removeProperty(key);
 							send("Property \'" + key + "\' removed from " + mobj.getName(), client);
 						}
 					}
@@ -13506,7 +13609,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			// send other exit properties
 			send("Exit Type: " + exit.getExitType().getName(), client);
 
-			// set player's location
+			// set player's location (which moves their listener, see ObjectDB.moved)
 			if (exit.getExitType() == ExitType.DOOR) {
 				Door d = (Door) exit;
 
@@ -13525,9 +13628,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				System.out.print("Player location (NEW): " + exit.getDestination()); 
 			}
 
-			// remove listener from room
-			room.removeListener(player);
-
 			// send the osuccess message
 			if (!exit.getMessage("osuccMsg").equals("")) {
 				// TODO check where these messages end up getting sent to
@@ -13549,15 +13649,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			// get new room object
 			final Room room1 = getRoom( player.getLocation() );
 
-			// add listener to room
-			room1.addListener(player);
-			
-			// TODO what is the purpose of the 'outside' list
-            if (room.getRoomType() == RoomType.OUTSIDE && !outside.contains(player)) {
-                outside.add(player);
-            }
-            else outside.remove(player);
-            
 			// execute enter triggers
 			for (final Trigger trigger : room1.getTriggers(TriggerType.onEnter)) {
 				System.out.println(trigger);
@@ -14230,11 +14321,21 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 			else if (hcmd.equals("save") || hcmd.equals("s")) {
 				if (list != null) {
-					// convert the list to a string array
-					this.helpTable.put(list.getName(), list.getLines().toArray(new String[0]));
+					// write out the help file and pick up the change
+					Utils.saveStrings( resolvePath(HELP_DIR, list.getName() + ".help"), list.getLines().toArray(new String[0]) );
 
 					send("< Help File Written Out! >", client);
-					send("< Help File Saved. >", client);
+					
+					try {
+						helpFiles.sync();
+						
+						send("< Help File Saved. >", client);
+					}
+					catch (final IOException ioe) {
+						debug( ioe );
+						
+						send("< Help File could not be indexed! >", client);
+					}
 				}
 			}
 			else if (hcmd.equals("stat") || hcmd.equals("st")) {
@@ -15067,6 +15168,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			room.setName((String) data.getObject("name"));
 			room.setFlags((EnumSet<ObjectFlag>) data.getObject("flags"));
 			room.setDesc((String) data.getObject("desc"));
+			renderCache.invalidate(room);
 			room.setLocation((Integer) data.getObject("location"));
 
 			room.setDimension("x", (Integer) data.getObject("x"));
@@ -15443,6 +15545,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			item.setName((String) data.getObject("name"));
 			item.setDesc((String) data.getObject("desc"));
+			renderCache.invalidate(item);
 
 			// TODO what am I trying to accomplish here exactly, is item type a
 			// changeable thing?
@@ -16103,7 +16206,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				case "account":
 					final Account account = (Account) cd.data.get("account");
 					
-					account.setPassword( newpass );
+					setPassword(account, newpass);
 					
 					break;
 				case "player":
@@ -16170,22 +16273,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				final String username = ld.username;
 				final String password = ld.password;
 
-				acctMgr.addAccount(username, password, 3);
-				
-				// TODO where should hashing occur?
-				final Account account = acctMgr.getAccount(username, Utils.hash(password));
-				
-				if( client == null ) System.out.println("CLIENT IS NULL!");
-				if( account == null ) System.out.println("ACCOUNT IS NULL!");
-				
-				caTable.put(client, account);
-				
-				// TODO this seems a tad insecure
-				send("Account Registered!", client);
-				send("Username: \'" + username + "\'", client);
-				send("Password: \'" + password + "\'", client);
+				// the account gets created once the password is hashed
+				final boolean queued = hasher.allow( client.getIPAddress() ) && hasher.hash(password, (hash) -> {
+					final Account account = acctMgr.addHashedAccount(username, hash, 3);
+					
+					if( !client.isRunning() ) return;
+					
+					sessions.open(client).setAccount(account);
+					
+					// TODO this seems a tad insecure
+					send("Account Registered!", client);
+					send("Username: \'" + username + "\'", client);
+					send("Password: \'" + password + "\'", client);
 
-				send("You may now login using your account credentials as you would those for an ordinary player.", client);
+					send("You may now login using your account credentials as you would those for an ordinary player.", client);
+				});
+				
+				if( !queued ) send("The server is busy. Please try again in a moment.", client);
 			}
 			else {
 				send("Registration Aborted!");
@@ -16202,7 +16306,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		final Player player = getPlayer(client);
 
-		final LoginData data = loginData.get(client);
+		final LoginData data = getLoginData(client);
 
 		// state indicator: is the server responding to our input or spitting
 		// data about what to input next
@@ -16211,7 +16315,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		if (data != null) {
 			// TODO figure out if this test is necessary and why
-			if (data != loginData.get(client)) {
+			if (data != getLoginData(client)) {
 				send("Object in map is not the same as the stored retrieved result???", client);
 			}
 			
@@ -16234,38 +16338,24 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				handle_account_login("", client);
 			}
 			else if ( state.equals(Constants.AUTHENTICATE) ) {
-				loginData.remove(client);
-
-				// TODO create the account handler
-				final Account account1 = acctMgr.getAccount(data.username, Utils.hash( data.password ) );
-
-				if (account1 != null) {
-					// if there is no active player or multiplay is allowed
-					if (account1.getPlayer() == null || multiplay == 1) {
-						caTable.put(client, account1);
-
-						// final Account account = caTable.get(client);
-
-						account_menu(account1, client);
-
-						setClientState(client, "account_menu");
-					}
-					else {
-						send("That account is already logged-in!", client);
+				setLoginData(client, null);
+				
+				if ( !hasher.allow( client.getIPAddress() ) ) {
+					send("Too many login attempts. Please wait a while and try again.", client);
 
-						setClientState(client, "");
-					}
+					setClientState(client, "");
 				}
-				else {
-					send("No Such Account!", client);
+				else if ( !hasher.hash(data.password, (hash) -> authenticate(data.username, data.password, hash, client)) ) {
+					send("The server is busy. Please try again in a moment.", client);
 
 					setClientState(client, "");
 				}
+				else setClientState(client, "authenticating");
 			}
 		}
 		else {
 			if (arg.equals("account")) {
-				loginData.put(client, new LoginData("USERNAME"));
+				setLoginData(client, new LoginData("USERNAME"));
 
 				send("Username? ", client);
 			}
@@ -16274,11 +16364,51 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 		}
 	}
+	
+	/**
+	 * Finish an account login, once the password has been hashed.
+	 * 
+	 * @param username
+	 * @param password the password as typed (see Account.checkPassword)
+	 * @param hash
+	 * @param client
+	 */
+	private void authenticate(final String username, final String password, final String hash, final Client client) {
+		setClientState(client, "");
+		
+		if ( !client.isRunning() ) return;
+		
+		// TODO create the account handler
+		final Account account1 = acctMgr.getAccount(username);
+
+		if (account1 != null && account1.checkPassword(password, hash)) {
+			// if there is no active player or multiplay is allowed
+			if (account1.getPlayer() == null || multiplay == 1) {
+				sessions.open(client).setAccount(account1);
+
+				// final Account account = getClientAccount(client);
+
+				account_menu(account1, client);
+
+				setClientState(client, "account_menu");
+			}
+			else {
+				send("That account is already logged-in!", client);
+
+				setClientState(client, "");
+			}
+		}
+		else {
+			send("No Such Account!", client);
+
+			setClientState(client, "");
+		}
+	}
 
 	private void handle_account_menu(final String input, final Client client) {
 		debug("HANDLE ACCOUNT MENU");
 
-		final Account account = caTable.get(client);
+		final Account account = getClientAccount(client);
 
 		if (account != null) {
 			char ch = input.charAt(0);
@@ -16414,12 +16544,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		return success;
 	}
 
+	/**
+	 * Change an account's password. It's hashed on the hasher's threads if it
+	 * isn't too busy, or right here if it is (the change can't be turned down).
+	 * 
+	 * @param account
+	 * @param password
+	 */
+	private void setPassword(final Account account, final String password) {
+		if ( !hasher.hash(password, account::setPassword) ) account.setPassword( Utils.hash(password) );
+	}
+
 	public void handle_account_action(final Account account, final String action, final Data data, final Client client) {
 		if( account != null && data != null ) {
 			if( action.equals("change_password") ) {
 				final String password = (String) data.getObject("newPass");
 				
-				account.setPassword(password);
+				setPassword(account, password);
 				
 				send("Account Password Changed!", client);
 			}
@@ -16543,14 +16684,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public boolean loginCheck(final Client client) {
 		if (client == null) return false;
 
-		// we only want to go through player references of those who are logged in
-		for (final Player p : players) {
-			if (p.getClient().equals(client)) {
-				return true;
-			}
-		}
-
-		return false;
+		return sessions.isLoggedIn(client);
 	}
 
 	// Object "Retrieval" Functions
@@ -16791,17 +16925,13 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		Player player = null;
 		
 		if( online ) {
-			for (final Player p : this.players) {
-				// TODO: how to handle cnames? how does the command know if they are enabled?
-				//if (player.getName().equals(name) || player.getCName().equals(name)) {
-				// how important is true equality?
-				if ( p.getName().equals(name) ) {
-					debug("Argument:     " + name);
-					debug("Player Name:  " + p.getName());
-					debug("Player CName: " + p.getCName());
-
-					player = p;
-				}
+			// TODO: how to handle cnames? how does the command know if they are enabled?
+			player = sessions.getPlayer(name);
+			
+			if ( player != null ) {
+				debug("Argument:     " + name);
+				debug("Player Name:  " + player.getName());
+				debug("Player CName: " + player.getCName());
 			}
 		}
 		else {
@@ -16827,11 +16957,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		Player player = null;
 		
 		if( online ) {
-			for (final Player p : this.players) {
-				if (p.getDBRef() == dbref) {
-					player = p;
-				}
-			}
+			player = sessions.getPlayer(dbref);
 		}
 		else player = objectDB.getPlayer(dbref);
 		
@@ -16850,7 +16976,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// debug("Searching for player by client...", 3);
 		// debug("\"" + client + "\"", 3);
 
-		final Player p = sclients.get(client);
+		final Player p = sessions.getPlayer(client);
 
 		// ensure that if we are controlling someone, then that
 		// is the player current tied to the client
@@ -16935,7 +17061,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 	/* Data Saving Functions */
 
-	public void saveAccounts() {
+	/**
+	 * Save accounts that have changed since they were last saved.
+	 * 
+	 * @return the number of accounts written
+	 */
+	public int saveAccounts() {
 		/*for (final Account a : acctMgr.getAccounts()) {
 			String[] temp = new String[11];
 
@@ -16976,29 +17107,49 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			System.out.println("");
 		}*/
 
-		FileOutputStream fos;
-		ObjectOutputStream oos;
-		
-		GsonBuilder builder = new GsonBuilder();
-		
-		builder.setPrettyPrinting();
-		
-		Gson gson = builder.create();
+		int count = 0;
 
+		// only write accounts that changed since they were last saved
 		for (final Account acct : acctMgr.getAccounts()) {
-			try {
-				fos = new FileOutputStream( resolvePath(ACCOUNT_DIR, acct.getUsername() + ".acct") );
-				oos = new ObjectOutputStream(fos);
+			if ( !acct.isDirty() ) continue;
+			
+			try (final ObjectOutputStream oos = new ObjectOutputStream( new FileOutputStream( resolvePath(ACCOUNT_DIR, acct.getUsername() + ".acct") ) )) {
+				oos.writeObject(acct);
 				
-				System.out.println( gson.toJson( acct ) );
+				acct.clean();
 				
-				oos.writeObject(acct);
-
-				oos.close();
+				count++;
 			}
 			catch (final FileNotFoundException fnfe) { fnfe.printStackTrace(); }
 			catch (final Exception e)                { e.printStackTrace(); }
 		}
+		
+		// id, username and character dbrefs of every account (id:username:dbref,dbref,...), so that accounts
+		// can be found without reading them all in (see readAccounts)
+		final Map<Integer, int[]> characters = acctMgr.getCharacters();
+		
+		final List<String> lines = new ArrayList<String>();
+		
+		for (final Map.Entry<Integer, String> e : acctMgr.getNames().entrySet()) {
+			final StringBuilder sb = new StringBuilder();
+			
+			for (final int dbref : characters.getOrDefault(e.getKey(), new int[0])) {
+				if ( sb.length() > 0 ) sb.append(',');
+				
+				sb.append(dbref);
+			}
+			
+			lines.add(e.getKey() + ":" + e.getValue() + ":" + sb);
+		}
+		
+		final File indexFile = new File( ACCOUNT_INDEX_FILE );
+		
+		// linking a character changes the account, but an older index won't have any characters in it
+		if ( count > 0 || !indexFile.exists() || !Arrays.asList( Utils.loadStrings(ACCOUNT_INDEX_FILE) ).equals(lines) ) {
+			Utils.saveStrings(ACCOUNT_INDEX_FILE, lines.toArray(new String[0]));
+		}
+		
+		return count;
 	}
 
 	/**
@@ -17019,42 +17170,41 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		send("Done");
 	}
 
-	public void saveJSON() {
+	/**
+	 * Write a JSON file for each object that changed since it was last written.
+	 * Players change in lots of ways that don't go through the MUDObject
+	 * mutators, so they're always written.
+	 * 
+	 * @return the number of objects written
+	 */
+	public int saveJSON() {
 		GsonBuilder builder = new GsonBuilder(); // Or use new GsonBuilder().create();
 
 		builder.setPrettyPrinting();
 
 		Gson gson = builder.create();
+		
+		int count = 0;
+		
+		new File( resolvePath(DATA_DIR, "json") ).mkdirs();
 
 		for(final MUDObject object : objectDB.getObjects()) {
-			System.out.println(object.getDBRef() + " : " + object.getName());
+			final Integer saved = jsonVersions.get(object);
+			
+			if( saved != null && saved == object.getChanges() && !object.isType(TypeFlag.PLAYER) ) continue;
 
 			//final String fileName = DATA_DIR + "json\\" + object.getDBRef() + ".json";
 			final String fileName = object.getDBRef() + ".json";;
 			final String filePath = resolvePath(DATA_DIR, "json", fileName);
 
 			Utils.saveStrings(filePath, new String[] { gson.toJson(object) });
+			
+			jsonVersions.put(object, object.getChanges());
+			
+			count++;
 		}
-	}
-
-	public void saveHelpFiles() {
-		synchronized (this.helpTable) {
-			for (final Entry<String, String[]> hme : this.helpTable.entrySet()) {
-				debug("Saving " + HELP_DIR + hme.getKey() + ".help" + "... ");
-				
-				Utils.saveStrings( resolvePath(HELP_DIR, hme.getKey() + ".help"), hme.getValue() );
-			}
-		}
-	}
-
-	public void saveTopicFiles() {
-		synchronized (this.topicTable) {
-			for (final Entry<String, String[]> tme : this.topicTable.entrySet()) {
-				debug("Saving " + TOPIC_DIR + tme.getKey() + ".topic" + "... ");
-				
-				Utils.saveStrings( resolvePath(TOPIC_DIR, tme.getKey() + ".topic"), tme.getValue() );
-			}
-		}
+		
+		return count;
 	}
 
 	/**
@@ -17119,30 +17269,32 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	/* Data Loading Functions */
 
 	/**
-	 * loadAccounts
+	 * readAccounts
+	 * 
+	 * Read in serialized account data from files in the account directory and
+	 * create account objects. They still need to be linked to their characters
+	 * (see linkAccount) and added to the account manager, which can't be done
+	 * until the database is loaded.
 	 * 
-	 * Read in serialized account data from files in the account directory,
-	 * create account objects, and then add them to the account manager
+	 * If accounts are loaded on demand (lazy_accounts), only the accounts
+	 * missing from the account index are read in now, the rest are just
+	 * registered with the account manager and read in when first looked up.
 	 * 
 	 * @param account_dir
+	 * @return the accounts read in, and the dbrefs of their characters (from the index)
 	 */
-	public void loadAccounts(String account_dir) {
-		// TODO find a more effective way to load account data
+	public Map<Account, int[]> readAccounts(String account_dir) {
+		final Map<Account, int[]> accounts = new LinkedHashMap<Account, int[]>();
+		
 		System.out.println("ACCOUNT_DIR: " + account_dir);
 		
 		final File dir = new File(account_dir);
 		
 		if ( !dir.isDirectory() ) {
 			System.out.println("Invalid Account Directory!");
-			return;
+			return accounts;
 		}
 		
-		System.out.println(dir.listFiles());
-		
-		Account account = null;
-		
-		ObjectInputStream ois;
-		
 		final FilenameFilter af = new FilenameFilter() {
 			@Override
 			public boolean accept(File arg0, String arg1) {
@@ -17150,79 +17302,139 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 		};
 		
-		// TODO use a FilenameFilter to get only .acct files, what is the best listing method?
+		// username -> id, and username -> character dbrefs, for accounts in the index (id:username[:dbref,dbref,...])
+		final Map<String, Integer> index = new HashMap<String, Integer>();
+		final Map<String, int[]> characters = new HashMap<String, int[]>();
+		
+		if ( new File(ACCOUNT_INDEX_FILE).exists() ) {
+			for (final String line : Utils.loadStrings(ACCOUNT_INDEX_FILE)) {
+				final String[] fields = line.split(":", -1);
+				
+				if ( fields.length < 2 || fields[0].isEmpty() ) continue;
+				
+				index.put(fields[1], Utils.toInt(fields[0], -1));
+				
+				if ( fields.length > 2 && !fields[2].isEmpty() ) characters.put(fields[1], Utils.stringsToInts(fields[2].split(",")));
+			}
+		}
+		
+		if ( lazy_accounts ) {
+			acctMgr.setLoader(name -> linkAccount( readAccount( new File(dir, name + ".acct") ), characters.get(name) ));
+		}
+		
+		int deferred = 0;
+		
 		for (final File file : dir.listFiles(af)) {
-			//if (file.isFile() && file.getName().endsWith(".acct")) {
 			if ( file.isFile() ) {
+				final String name = file.getName().substring(0, file.getName().length() - 5);
+				final Integer id = index.get(name);
+				final int[] chars = characters.getOrDefault(name, new int[0]);
+				
+				// an account we know the id of can wait until it's needed
+				if ( lazy_accounts && id != null && id >= 0 ) {
+					acctMgr.addUnloaded(name, id, chars);
+					deferred++;
+					continue;
+				}
+				
 				System.out.println("Account File Found: " + file.getName());
+				
+				final Account account = readAccount(file);
+				
+				if ( account != null ) accounts.put(account, chars);
+			}
+		}
+		
+		if ( lazy_accounts ) {
+			debug("Accounts: " + accounts.size() + " loaded, " + deferred + " on demand");
+		}
+		
+		return accounts;
+	}
+	
+	/**
+	 * Connect an account to its characters: the ones in the account index and
+	 * the one named after the account (which is all an older index has).
+	 * 
+	 * @param account
+	 * @param characters character dbrefs (may be null)
+	 * @return the account
+	 */
+	private Account linkAccount(final Account account, final int[] characters) {
+		if ( account == null ) return null;
+		
+		final List<Player> players = new ArrayList<Player>();
+		
+		if ( characters != null ) {
+			for (final int dbref : characters) {
+				final Player player = objectDB.getPlayer(dbref);
+				
+				if ( player != null ) players.add(player);
+			}
+		}
+		
+		// connect players to their respective account
+		Player player = objectDB.getPlayer(account.getUsername());
+		// NOTE: ^ use DB because players still ought to be account
+		// associated even if not logged in
 
-				try {
-					ois = new ObjectInputStream(new FileInputStream(file));
-
-					account = (Account) ois.readObject();
-
-					System.out.println("ID: " + account.getId());
-					System.out.println("Username: " + account.getUsername());
-
-					final int aId = account.getId();
-					Account.Status aStatus = account.getStatus();
-
-					final Date aCreated = account.getCreated();
-					Date aModified = account.getModified();
+		if ( player != null && !players.contains(player) ) players.add(player);
+		
+		for (final Player p : players) {
+			if ( !account.getCharacters().contains(p) ) account.linkCharacter(p);
+		}
+		
+		// just read from disk, so there's nothing to save yet
+		account.clean();
+		
+		return account;
+	}
+	
+	/**
+	 * Read in a single serialized account.
+	 * 
+	 * @param file
+	 * @return the account, or null if it couldn't be read
+	 */
+	private Account readAccount(final File file) {
+		try (final ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+			final Account account = (Account) ois.readObject();
 
-					String aUsername = account.getUsername();
-					String aPassword = account.getPassword();
+			System.out.println("ID: " + account.getId());
+			System.out.println("Username: " + account.getUsername());
 
-					final int aCharLimit = account.getCharLimit();
+			final int aId = account.getId();
+			Account.Status aStatus = account.getStatus();
 
-					Account account2 = new Account(aId, aStatus, aCreated, aModified, aUsername, aPassword, aCharLimit, new Player[0]);
+			final Date aCreated = account.getCreated();
+			Date aModified = account.getModified();
 
-					// connect players to their respective account
-					Player player = objectDB.getPlayer(account.getUsername());
-					// NOTE: ^ use DB because players still ought to be account
-					// associated even if not logged in
+			String aUsername = account.getUsername();
+			String aPassword = account.getPassword();
 
-					if (player != null) account2.linkCharacter(player);
+			final int aCharLimit = account.getCharLimit();
 
-					acctMgr.addAccount(account2);
+			Account account2 = new Account(aId, aStatus, aCreated, aModified, aUsername, aPassword, aCharLimit, new Player[0]);
 
-					/*
-					 * while( ois.available() > 0 ) { account = (Account)
-					 * ois.readObject();
-					 * 
-					 * for(Player player : players) { // TODO figure out way
-					 * connect players and the accounts they belong to }
-					 * 
-					 * acctMgr.addAccount( account ); }
-					 */
+			// just read from disk, so there's nothing to save yet
+			account2.clean();
 
-					ois.close();
-				}
-				catch (final FileNotFoundException fnfe) {
-					System.out.println("--- Stack Trace ---");
-					fnfe.printStackTrace();
-				}
-				catch (final ClassNotFoundException cnfe) {
-					System.out.println("--- Stack Trace ---");
-					cnfe.printStackTrace();
-				}
-				catch (final IOException ioe) {
-					System.out.println("--- Stack Trace ---");
-					ioe.printStackTrace();
-				}
-			}
+			return account2;
 		}
-
-		/*
-		 * LinkedList<Integer> ids = new LinkedList<Integer>();
-		 * 
-		 * for(Integer i : iamap.keySet()) { System.out.println(i); ids.add(i);
-		 * }
-		 * 
-		 * if( !ids.isEmpty() ) { Collections.sort(ids);
-		 * System.out.println(ids); last_account_id = ids.getLast(); } else
-		 * last_account_id = 0;
-		 */
+		catch (final FileNotFoundException fnfe) {
+			System.out.println("--- Stack Trace ---");
+			fnfe.printStackTrace();
+		}
+		catch (final ClassNotFoundException cnfe) {
+			System.out.println("--- Stack Trace ---");
+			cnfe.printStackTrace();
+		}
+		catch (final IOException ioe) {
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
+		}
+		
+		return null;
 	}
 
 	/**
@@ -17303,91 +17515,26 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 
 	/**
-	 * Go through all the items that exist in the database and place them inside the
-	 * respective object they are located in (Room, Player)
+	 * Like loadListDatabase, but reads lines as they are needed rather than
+	 * all at once. The stream needs to be closed when done with.
+	 * 
+	 * @param filename
+	 * @return
 	 */
-	public void loadItems() {
-		objectDB.addItemsToRooms();
-		objectDB.addItemsToContainers();
-		
-		// add items to players?
-		for (final Entry<Item, Player> entry : objectDB.getItemsHeld().entrySet()) {
-			final Item item = entry.getKey();
-			final Player player = entry.getValue();
-
-			debug(Utils.padRight("" + item.getDBRef(), ' ', 4) + " " + item.getName());
-			debug(Utils.padRight("" + item.getLocation(), ' ', 4) + " " + player.getName());
-
-			if (player instanceof NPC) {
-				final NPC npc = (NPC) player;
-				
-				if (npc instanceof Merchant) {
-					((Merchant) npc).addToStock(item);
-					
-					debug("Merchant (" + npc.getName() + ")");
-				}
-			}
-			else {
-				player.getInventory().add(item);
-			}
-
-			debug("Item Loaded", 2);
+	public Stream<String> streamListDatabase(final String filename) {
+		try {
+			final BufferedReader br = new BufferedReader( new FileReader(filename) );
+			
+			return br.lines().onClose(() -> {
+				try                        { br.close(); }
+				catch (final IOException e) { e.printStackTrace(); }
+			}).filter(line -> !line.isEmpty() && line.charAt(0) != '#');
 		}
-	}
-
-	/**
-	 * Go through all the exits that exist in the database and
-	 * place/attach them in/to the respective rooms they are part of
-	 */
-	public void loadExits() {
-		debug("Loading exits:", 2);
-
-		for (final Exit exit : objectDB.getExits()) {
-			if( exit.getExitType() == ExitType.DOOR ) {
-				final Room room = objectDB.getRoomById(exit.getLocation());
-
-				if (room != null) {
-					room.addExit(exit);
-					debug("Exit " + Utils.padLeft("" + exit.getDBRef(), ' ', 4) + " added to room " + room.getDBRef() + ". (Door)", 2);
-				}
-
-				final Room room1 = objectDB.getRoomById(exit.getDestination());
-
-				if (room1 != null) {
-					room1.addExit(exit);
-					debug("Exit " + Utils.padLeft("" + exit.getDBRef(), ' ', 4) + " added to room " + room1.getDBRef() + ". (Door)", 2);
-				}
-			}
-			else {
-				final Room room = objectDB.getRoomById(exit.getLocation());
-
-				if (room != null) {
-					room.addExit(exit);
-					debug("Exit " + Utils.padLeft("" + exit.getDBRef(), ' ', 4) + " added to room " + room.getDBRef() + ".", 2);
-				}
-				
-				// PORTAL
-				if( exit.getExitType() == ExitType.PORTAL ) {
-					final Portal portal = (Portal) exit;
-					
-					portals.add(portal);
-					
-					switch(portal.getPortalType()) {
-					case STD:
-						getRoom(portal.getOrigin()).addSayEventListener(portal);
-						getRoom(portal.getDestination()).addSayEventListener(portal);
-						break;
-					case RANDOM:
-						getRoom(portal.getOrigin()).addSayEventListener(portal);
-						break;
-					default:
-						break;
-					}
-				}
-			}
+		catch (final FileNotFoundException fnfe) {
+			debug("Error: file not found. (" + filename + ")");
+			
+			return Stream.empty();
 		}
-
-		debug("Done loading exits:", 2);
 	}
 
 	public ArrayList<String> loadListDatabase(String filename) {
@@ -17738,14 +17885,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 
-	/**
-	 * Go through all the things that exist in the database and place them in
-	 * the respective rooms they are located in
-	 */
-	public void placeThingsInRooms() {
-		objectDB.placeThingsInRooms(this);
-	}
-
 	/**
 	 * MOTD - Message of The Day
 	 * 
@@ -17881,6 +18020,22 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			return;
 		}
 
+		// a player can only be logged in on one client, the other one is usually a dropped
+		// connection that hasn't gone away yet so it's kicked (anyone calling this has the password)
+		if ( !sessions.login(client, player) ) {
+			final Client other = sessions.getClient(player);
+			
+			debug(player.getName() + " is already logged in on another client, kicking it!");
+			
+			if ( other != null ) kick(other);
+			
+			if ( !sessions.login(client, player) ) {
+				debug(player.getName() + " is still logged in on another client, login rejected!");
+				send("That player is already logged in.", client);
+				return;
+			}
+		}
+
 		if (use_cnames) {
 			// generate generic name for unknown players based on their class
 			// and the number of players with the same class presently on
@@ -17943,9 +18098,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			account.setOnline(true);
 		}
 
-		/* */
-		sclients.put(client, player);
-
 		player.setClient(client);    // need this set so I can ask for it in various other places
 
 		logConnect(player, time);
@@ -18029,7 +18181,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		/* look at the current room */
 		final Room current = getRoom( player.getLocation() ); // determine the room they are in
-		current.addListener(player);                          // add them to the listeners group for the room
+		broadcaster.enter(player, current);                   // add them to the listeners group for the room
 		look(current, client);                                // show the room
 	}
 
@@ -18060,7 +18212,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		ctl_break( client );
 
 		// remove as listener from room/location
-		getRoom( player.getLocation() ).removeListener(player);
+		broadcaster.leave(player, getRoom( player.getLocation() ));
 		
 		// remove from chat channels
 		for(final ChatChannel ch : chan.getChatChannels()) {
@@ -18164,6 +18316,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		synchronized (players) {
 			players.remove(player); // Remove the player object for the disconnecting player
 		}
+		
+		sessions.logout(player);
 
 		// DEBUG: Tell us which character was disconnected
 		debug(playerName + " removed from play!");
@@ -18175,103 +18329,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 
-	public void telnetNegotiation(Client client) {
-		// client.telnet = true; // mark as client as being negotiated with
-
-		int s = 0; // current sub-negotiation? (0=incomplete,1=complete)
-
-		ArrayList<String> options = new ArrayList<String>();
-
-		// options.add("IAC WILL MCCP");
-		options.add("IAC IAC DO TERMINAL-TYPE");
-
-		// send some telnet negotiation crap
-		// IAC WILL MCCP1
-		// 255 251 85
-		// -- if --
-		// IAC DO MCCP1
-		// 255 253 85
-		// -- then --
-		// IAC SB MCCP1 WILL SE
-		// 255 250 85 251 250
-		// -- else --
-		// IAC DONT MCCP1
-		// 255 254 85
-		// -- then --
-		// IAC SB MCCP1 WONT SE
-		// 255 250 85 252 250
-
-		// IAC DO TERMINAL-TYPE
-		// 255 253 24
-		// -- if --
-		// IAC WILL TERMINAL-TYPE
-		// 255 251 24
-		// -- then --
-
-		for (final String optstr : options) { // all the things we wish to check?
-			// i.e. we're going to use these if we can
-
-			// send a message
-			Telnet.send(optstr, client);
-
-			// deal with reply
-			while (s == 0) {
-
-				// a byte buffer to hold the incoming message (hopefully it's
-				// less than 10 bytes)
-				byte[] byteBuffer1 = new byte[10];
-
-				// capture the response
-				// if (client.available() > 0) {
-				// client.readBytes();
-				// }
-
-				System.out.println("Response Captured");
-
-				System.out.println("Response:");
-
-				for (byte b : byteBuffer1) {
-					System.out.println("Processing...");
-					int value = b;
-					System.out.println(value);
-				}
-
-				// handle the response
-				if (byteBuffer[0] == 255) { // if that byte is 255 (IAC - Is A
-					// Command)
-
-					for (byte b : byteBuffer1) {
-						System.out.println("Processing...");
-						int value = b;
-						System.out.println(value);
-					}
-
-					System.out.println("TELNET NEGOTIATION -- BYTES");
-
-					System.out.println("Response: " + Telnet.translate(byteBuffer1));
-
-					// confirming MCCP1 (if told to do, respond again that I will)
-					if (byteBuffer1[0] == (byte) 255 && byteBuffer1[1] == (byte) 253 && byteBuffer1[2] == (byte) 85) {
-						client.write(new byte[] { (byte) 255, (byte) 85, (byte) 251, (byte) 250 });
-					}
-					else if (byteBuffer1[0] == (byte) 255 && byteBuffer1[1] == (byte) 254 && byteBuffer1[2] == (byte) 85) {
-						client.write(new byte[] { (byte) 255, (byte) 85, (byte) 252, (byte) 250 });
-					}
-					else {
-					}
-
-					/*
-					 * if ( Telnet.translate(byteBuffer1).equals("IAC DO MCCP")
-					 * ) { Telnet.send("IAC MCCP WILL SB", client); } else if (
-					 * Telnet.translate(byteBuffer1).equals("IAC DONT MCCP") ) {
-					 * Telnet.send("IAC MCCP WONT SB", client); }
-					 */
-
-					s = 1;
-				}
-			}
+	/**
+	 * Offer the client the telnet options we support. Nothing waits for the
+	 * replies, they show up as telnet events and are handled (in runHelper)
+	 * whenever the client gets around to answering.
+	 * 
+	 * IAC WILL COMPRESS2 (MCCP2)
+	 * -- if --
+	 * IAC DO COMPRESS2
+	 * -- then --
+	 * IAC SB COMPRESS2 IAC SE, after which all output is compressed
+	 * 
+	 * @param client
+	 */
+	public void telnetNegotiation(final Client client) {
+		if ( use_mccp ) {
+			client.write( new byte[] { Telnet.IAC, Telnet.WILL, Telnet.MCCP2 } );
 		}
-		// client.telnet = true;
 	}
 
 	// EVENT Section
@@ -18279,6 +18353,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 	// event triggered on client connection
 	public void clientConnected(final Client someClient) {
+		// offer telnet options first, so compression can start as early as possible
+		telnetNegotiation(someClient);
+		
 		send("Connecting from " + someClient.getIPAddress(), someClient);
 
 		// decide if a player (or in this case, IP address) will be allowed to
@@ -18349,10 +18426,13 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	// reload system help
 	// public void sys_help_reload() throws NullPointerException
 	public void help_reload() {
-		for (final String helpFileName : generateHelpFileIndex()) {
-			String helpLines[] = Utils.loadStrings( resolvePath(HELP_DIR, helpFileName) );
-			
-			this.helpTable.put(helpLines[0], helpLines);
+		// only files that changed since the archives were built get read
+		try {
+			debug("Help Files: " + helpFiles.sync() + " changed");
+			debug("Topic Files: " + topicFiles.sync() + " changed");
+		}
+		catch (final IOException ioe) {
+			debug( ioe );
 		}
 	}
 
@@ -18376,6 +18456,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		// clear database, etc
 		objectDB.clear();
+		portals.clear(); // the loader adds them back
 
 		final ObjectLoader loader = new ObjectLoader(this, objectDB);
 
@@ -18393,6 +18474,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		// clear database, etc
 		objectDB.clear();
+		portals.clear(); // the loader adds them back
 
 		final ObjectLoader loader = new ObjectLoader(this, objectDB);
 
@@ -18408,21 +18490,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * 
 	 * @param filename
 	 */
-	public void backup(final String filename) {
+	public String backup(final String filename) {
 		// TODO should this be debug or the main log?
+		
+		final long start = System.currentTimeMillis();
 
 		// Accounts
 		log("Backing up Accounts...");
 		
-		saveAccounts();
+		final int accounts = saveAccounts();
 		
-		log("Done.");
+		log("Done (" + accounts + " accounts written).");
 
 		// Database
 		log("Backing up Database...");
 
 		// NOTE: real file modification occurs here
-		boolean using_filename = ( "".equals(filename) );
+		boolean using_filename = !( "".equals(filename) );
 		
 		if( using_filename ) {
 			log("Using specified filename - \'" + filename + "\'");
@@ -18436,9 +18520,13 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// TODO work on this part, maybe write some type adapters?
 		
 		/// JSON
-		saveJSON();
+		final int objects = saveJSON();
+		
+		log("Done (" + objects + " objects written).");
 		
-		log("Done.");
+		final String summary = "Backup: " + accounts + " accounts, " + objects + " objects written (" + (System.currentTimeMillis() - start) + " ms)";
+		
+		log(summary);
 		
 		/* Spells */
 		
@@ -18463,11 +18551,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		//saveTopicFiles();
 		
 		//log("Done.");
+		
+		return summary;
 	}
 	
 	// TODO figure out what I'm trying to accomplish here
 	// non-existent player "flush" function
 	public void flush() {
+		// forget sessions for clients that went away without being disconnected
+		for (final ClientSession session : sessions.getSessions()) {
+			if ( !session.getClient().isRunning() ) sessions.close( session.getClient() );
+		}
+		
 		// iterate over all supposedly connected players
 		for (final Player player : players) {
 			final Client client = player.getClient();
@@ -18478,6 +18573,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 				if (slave == null) {
 					players.remove(player);
+					sessions.logout(player);
 					debug("Player removed.");
 					return;
 				}
@@ -18485,24 +18581,20 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					debug("Player \"idle\", but controlling an npc.");
 				}
 				players.remove(player);
+				sessions.logout(player);
 			}
 			else {
 				// we have a client
 				if( !client.isRunning() ) {
-					s.disconnect( client );
+					disconnect( client );
 				}
 			}
 		}
 	}
 
 	private void restart(int secs) {
-		final TimerTask task = new TimerTask() {
-			public void run() {
-				restart();
-			}
-		};
-		
-		this.timer.schedule(task, secs * 1000);
+		// the restart itself can't run on the main loop, it waits for that to finish
+		this.timers.schedule(() -> new Thread(this::restart, "restart").start(), secs, TimeUnit.SECONDS);
 	}
 	
 	// TODO hot or cold restart
@@ -18524,13 +18616,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 	
 	private void shutdown(int secs) {
-		final TimerTask task = new TimerTask() {
-			public void run() {
-				shutdown();
-			}
-		};
-		
-		this.timer.schedule(task, secs * 1000);
+		// the shutdown itself can't run on the main loop, it waits for that to finish
+		this.timers.schedule(() -> new Thread(this::shutdown, "shutdown").start(), secs, TimeUnit.SECONDS);
 	}
 
 	private void shutdown() {
@@ -18550,10 +18637,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// indicate that the MUD server is no longer running, should cause the main loop to exit
 		running = false;
 		
-		// handle any currently executing commands...
-		if ( true ) {
-			//threads.get("command_exec").st
-			//cmdExec.
+		// let any currently executing commands finish
+		if ( cmdExec != null ) {
+			cmdExec.stop();
+		}
+		
+		// write out any journal records that are still queued
+		if ( journal != null ) {
+			journal.stop();
+		}
+		
+		if ( hasher != null ) {
+			hasher.shutdown();
 		}
 		
 		System.out.println("Done");
@@ -18636,11 +18731,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 		if (telnet == 1 || telnet == 2) {
 			// telnet and mud clients
-			for (char c : data.toCharArray()) {
-				write(c);
-			}
-
-			write("\r\n");
+			write(data + "\r\n");
 		}
 	}
 
@@ -18698,11 +18789,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 			else if (telnet == 1 || telnet == 2) {
 				// telnet and mud clients
-				for (char c : data.toCharArray()) {
-					client.write(c);
-				}
-
-				client.write("\r\n");
+				client.write(data + "\r\n");
 			}
 		}
 		else {
@@ -18724,6 +18811,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		client.write(data);
 	}
 	
+	/**
+	 * Send a message made from a color template (see ColorTemplate), in the
+	 * colors currently in use.
+	 * 
+	 * @param template
+	 * @param client
+	 * @param args     the template's arguments
+	 */
+	private void send(final ColorTemplate template, final Client client, final String... args) {
+		if ( client.isRunning() ) client.write( template.renderLine(getPalette(), args) );
+	}
+	
 	/**
 	 * A wrapper function for the primary debug function that ensures that I can
 	 * send debugging information without a specific debugLevel and it will have
@@ -18762,6 +18861,29 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 	
+	/**
+	 * Like debug(String, int), except that the message is only built if it
+	 * will actually be printed, so expensive messages cost nothing when
+	 * debugging is off or the level is filtered out.
+	 * 
+	 * @param data
+	 * @param tDebugLevel
+	 */
+	public void debug(final Supplier<String> data, final int tDebugLevel) {
+		if ( isDebugging(tDebugLevel) ) debug(data.get(), tDebugLevel);
+	}
+	
+	/**
+	 * Would a debug message of the specified level be printed? Lets callers
+	 * skip building the message when it wouldn't be.
+	 * 
+	 * @param tDebugLevel
+	 * @return
+	 */
+	public boolean isDebugging(final int tDebugLevel) {
+		return debug && debugLevel >= tDebugLevel;
+	}
+	
 	public void debug(final String data, final Boolean test) {
 		if ( debug ) {
 			if ( test ) {
@@ -18834,6 +18956,21 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		log(errorMessage, Constants.ERROR_LOG);
 	}
 	
+	/**
+	 * Log an error, along with the stack trace of the exception behind it.
+	 * 
+	 * @param errorMessage
+	 * @param e
+	 */
+	public void logError(final String errorMessage, final Exception e) {
+		final StringWriter trace = new StringWriter();
+		
+		e.printStackTrace( new PrintWriter(trace) );
+		
+		debug(errorMessage + ": " + e);
+		logError(errorMessage + "\n" + trace);
+	}
+	
 	private void logChat(final String chatString) {
 		if( log_chat ) log(chatString, Constants.CHAT_LOG);
 	}
@@ -19173,13 +19310,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		switch (type) {
 		case BROADCAST:
-			for (final Player player : players) {
-				room = getRoom( player.getLocation() );
-				
-				if (room.getRoomType() == RoomType.OUTSIDE && player.getEditor() == Editors.NONE) {
-					send(message, player.getClient());
-				}
-			}
+			// to everyone outside
+			broadcaster.toOutdoors(message);
 
 			msg.markSent();
 			break;
@@ -19188,17 +19320,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			
 			// just in case the location somehow isn't a room
 			if (room != null) {
-				// send a message to all of the room's listeners
-				for (final Player player : room.getListeners()) {
-					if (true) { // placeholder test condition for awareness of surroundings
-						boolean name = ( message.contains( player.getName() ) );
-						boolean cname = ( message.contains( player.getCName() ) );
-						
-						if ( !name && !cname ) {
-							send(message, player.getClient());
-						}
-					}
-				}
+				// send a message to all of the room's listeners (except whoever it's about)
+				broadcaster.toRoom(room, message);
 			}
 			else {
 				// TODO can't send error message here because we're not dealing directly with the player			//send("You are in a room that doesn't exist?!", 
@@ -19207,16 +19330,13 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			msg.markSent();
 			break;
 		case BROADCAST_PLAYER:
-			room = getRoom(msg.getLocation());
+			// a message without a location comes from wherever the sender is
+			room = getRoom( location != -1 ? location : sender.getLocation() );
 
 			if (room != null) {
 				room.fireEvent(message);
 
-				for (final Player bystander : room.getListeners()) {
-					if (sender != bystander && !(bystander instanceof NPC)) {
-						send(sender.getName() + " says, \"" + message + "\".", bystander.getClient());
-					}
-				}
+				broadcaster.say(room, sender, message);
 			}
 			
 			msg.markSent();
@@ -19601,7 +19721,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		
 		int line_limit = getPlayer(client).getLineLimit();
 		
-		send(parseDesc(mobj.getDesc(), line_limit), client);
+		final RenderCache.Rendered desc = renderCache.get(mobj, line_limit, color, false, d -> parseDesc(d, line_limit));
+		
+		if (client.isRunning()) client.write(desc.getBytes());
 
 		if (mobj instanceof Player) {
 			StringBuilder output = new StringBuilder();
@@ -19651,7 +19773,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			output.add( colors(mobj.getName(), displayColor) );
 		}
 		
-		send(parseDesc(mobj.getDesc(), 80), player.getClient());
+		final Client client = player.getClient();
+		
+		final RenderCache.Rendered desc = renderCache.get(mobj, 80, color, false, d -> parseDesc(d, 80));
+		
+		if (client != null && client.isRunning()) client.write(desc.getBytes());
 
 		if (mobj instanceof Player) {
 			final StringBuilder sb = new StringBuilder();
@@ -19725,17 +19851,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				output.add( "It's too dark to be able to see anything." );
 			}
 			else {
-				// TODO resolve timeOfDay issue
+				// TODO resolve timeOfDay issue (if the time of day is used here, it needs to be part of the render cache key)
 				//final String description = parse(room.getDesc(), room.timeOfDay);
-				final String description = parse(room.getDesc(), "DAY");
 				//final String description = parse(room.getDesc(), timeOfDay(room));
 
-				debug("description (parsed): " + description);
-
-				// TODO make sure the line below doesn't cause issues
-				String tempDescription = check(description);
+				// TODO make sure check(...) doesn't cause issues
+				final RenderCache.Rendered desc = renderCache.get(room, line_limit, color, false, d -> parseDesc(check(parse(d, "DAY")), line_limit));
 				
-				output.addAll( parseDesc(tempDescription, line_limit) );
+				output.addAll( desc.getLines() );
 			}
 
 			//send("", client);
@@ -20488,9 +20611,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public void broadcastWeather() {
 		// old WeatherLoop code, which only ran once per "minute" anyway
 		// loop through all the rooms and broadcast weather messages accordingly
-		for (final Room room : objectDB.getWeatherRooms()) {
-			if (objectDB.getPlayersByRoom( room ).size() == 0) continue;
-
+		for (final Room room : broadcaster.getOutdoorRooms()) {
+			if (room.getWeather() == null) continue;
+			
 			debug("" + room.getDBRef(), 4);
 			
 			String msg = null;
@@ -20616,13 +20739,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 
 	public void handleWeatherEffects() {
-		// for each player
-		for (final Player player : players) {
+		// for each player that's outside
+		for (final Player player : broadcaster.getOutdoors()) {
 			final Room room = (Room) getRoom(player.getLocation());
-			final RoomType roomType = room.getRoomType();
 
-			// if they're outside
-			if (roomType == RoomType.OUTSIDE) {
+			// rooms only have weather if it's enabled
+			if (room != null && room.getWeather() != null) {
 				// simple view:
 				// cold/hot, dry/wet, happy/sad? (character mood) as a spectrum
 				// depending on the weather
@@ -21216,12 +21338,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		if (ws.upDown != 1 && ws.upDown != -1) return;
 
 		String changeText = (( ws.upDown == 1 ) ? ws.transUpText : ws.transDownText);
-
-		for (final Room room : objectDB.getWeatherRooms())  {
-			if (changeText != null) {
-				addMessage( new Message(changeText, room) );
-				debug(changeText);
-			}
+
+		// the weather is the same everywhere, so everyone outside gets the same message
+		if (changeText != null) {
+			broadcaster.toOutdoors(changeText);
+			debug(changeText);
 		}
 		
 		/*for (final Room room : objectDB.getWeatherRooms()) {
@@ -21261,24 +21382,139 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		String command = aliases.get(name);
 
-		if (command != null) {
-			if (helpTable.containsKey(command)) {
-				// System.out.println("Help File Exists!");
-				return helpTable.get(aliases.get(name));
+		if (command != null) return helpFiles.get(command);
+		else                 return helpFiles.get(name);
+	}
+
+	public String[] getTopicFile(final String name) {
+		return topicFiles.get(name);
+	}
+
+	/**
+	 * Open the help and topic archives, rebuilding whatever parts of them are
+	 * out of date with the files in the help directory.
+	 * 
+	 * @return how long it took (in nanoseconds)
+	 */
+	private long loadHelpAndTopics() {
+		final long start = System.nanoTime();
+		
+		try {
+			helpFiles.sync();
+			topicFiles.sync();
+		}
+		catch (final IOException ioe) {
+			System.out.println("Error: problem loading help files. (IOException)");
+			
+			debug( ioe );
+		}
+		
+		return System.nanoTime() - start;
+	}
+	
+	/**
+	 * Run part of startup in the background.
+	 * 
+	 * @param task
+	 * @return how long it took (in nanoseconds)
+	 */
+	private static long background(final Runnable task) {
+		final long start = System.nanoTime();
+		
+		task.run();
+		
+		return System.nanoTime() - start;
+	}
+	
+	/**
+	 * Load the error messages (number:message).
+	 */
+	private void loadErrors() {
+		for (final String e : Utils.loadStrings(ERRORS_FILE)) {
+			final String[] working = e.split(":");
+
+			if (working.length >= 2) {
+				debug("Error(number): " + working[0]);
+				debug("Error(message): " + working[1]);
+				
+				this.Errors.put(Integer.parseInt(working[0]), working[1]);
 			}
-			else return null;
+		}
+	}
+	
+	private void loadSpells() {
+		if (magic) {
+			loadSpells(Utils.loadStrings(SPELLS_FILE));
+			debug("Spells Loaded!");
+		}
+		else debug("Magic Disabled!");
+	}
+	
+	private void loadZones() {
+		debug("Loading Zones...");
+		
+		// TODO be nice to do all these resolutions in one place..
+		// Load Zones (only doing this here, because Rooms may be in a zone, and
+		// so by loading Zones first then rooms can be placed in them by the ObjectLoader
+		//loadZones(WORLD_DIR + world + "\\zones.txt");
+		loadZones( resolvePath(WORLD_DIR, world, "zones.txt") );
+	}
+	
+	private void setupRaces() {
+		debug("Loading Races...");
+		
+		// TODO get rid of this kludge and deal with JSON stuff
+		boolean test = false;
+
+		if (!test && !firstRun) {
+			loadRaces();
 		}
 		else {
-			if (helpTable.containsKey(name)) {
-				// System.out.println("Help File Exists!");
-				return helpTable.get(name);
+			for (int i = 0; i < 8; i++) {
+				races.add( Races.getRace(i) );
 			}
-			else return null;
 		}
 	}
-
-	public String[] getTopicFile(final String name) {
-		return topicTable.containsKey(name) ? topicTable.get(name) : null;
+	
+	private void initModule() {
+		debug("Module Setup...");
+		
+		// TODO deal with kludgy module issues
+		if ( module != null ) {
+			debug("Module: " + module.getName());
+			
+			// initialize module
+			module.init(DATA_DIR);
+			
+			// "install" ruleset
+			final Ruleset modRS = module.getRuleset();
+		}
+	}
+	
+	private long timed(final String phase, final long start) {
+		final long now = System.nanoTime();
+		
+		startupTimes.put(phase, TimeUnit.NANOSECONDS.toMillis(now - start));
+		
+		return now;
+	}
+	
+	/**
+	 * How long each part of starting up took.
+	 * 
+	 * @return
+	 */
+	private List<String> startupReport() {
+		final List<String> report = new LinkedList<String>();
+		
+		report.add("Startup Timing");
+		report.add(Utils.padLeft("", '-', 40));
+		
+		for (final Entry<String, Long> phase : startupTimes.entrySet()) {
+			report.add(Utils.padRight(phase.getKey(), ' ', 30) + Utils.padLeft("" + phase.getValue(), ' ', 6) + " ms");
+		}
+		
+		return report;
 	}
 
 	public String[] generateHelpFileIndex() {
@@ -21803,8 +22039,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// TODO how do I decide idleness
 		checkForIdlePlayers();
 		
-		checkTimers();
-		
 		if( game_time.getSeconds() % 6 == 0 ) {
 			handleCombat();
 		}
@@ -21862,7 +22096,31 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public void onYearIncrement() {
 	}
 
+	/**
+	 * Have the journal write a snapshot of the database. Serializing the
+	 * objects happens here (on the main loop, so nothing changes while
+	 * we're at it), writing them out happens in the background.
+	 */
+	public void checkpoint() {
+		if ( journal != null ) {
+			final long start = System.nanoTime();
+			
+			journal.checkpoint(objectDB);
+			
+			debug("Journal checkpoint queued (" + ((System.nanoTime() - start) / 1000000L) + " ms)");
+		}
+	}
+
 	public void live_backup() {
+		// with a journal, a backup is just a checkpoint (no need to stop anything)
+		if ( journal != null ) {
+			send("Backing up game...");
+			
+			checkpoint();
+			
+			return;
+		}
+		
 		send("Pausing game!");
 
 		// Pause all combat
@@ -22353,114 +22611,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		return this.auctionTimers.get(player);
 	}
 
-	/**
-	 * check for expired timers and clear them (player)
-	 * 
-	 * @param player
-	 */
-	/*public void checkTimers(Player player) {
-		List<EffectTimer> etl = getEffectTimers(player);
-		List<EffectTimer> eff_timers = new LinkedList<EffectTimer>();
-
-		for (final EffectTimer etimer : etl) {
-			if (etimer.getTimeRemaining() <= 0 && !etimer.getEffect().isPermanent()) {
-				eff_timers.add(etimer);
-			}
-		}
-
-		for (final EffectTimer etimer : eff_timers) {
-			removeEffect(player, etimer.getEffect());
-			
-			etl.remove(etimer);
-		}
-
-		eff_timers.clear();
-	}*/
-
-	/**
-	 * check for expired timers and clear them
-	 */
-	public void checkTimers() {
-		// TODO can I genericize this list to TimerTask?
-
-		// Effect Timers (when they expire, effects are removed)
-		final List<EffectTimer> expired_timers = new LinkedList<EffectTimer>();
-
-		// each player has their own list of effect timers
-		for(final Player player : effectTimers.keySet()) {
-			final List<EffectTimer> etl = effectTimers.get(player);
-
-			// add the timers that are expired to the expired list
-			for (final EffectTimer etimer : etl) {
-				if (etimer.getTimeRemaining() <= 0) {
-					expired_timers.add(etimer);
-				}
-			}
-			
-			// remove each timer in eff from the player's list of effect timers
-			for (final EffectTimer etimer : expired_timers) {
-				String effectName = etimer.getEffect().getName();
-
-				//player.removeEffect(effectName);
-				removeEffect(player, effectName);
-
-				send(etimer.getEffect().getName() + " effect removed.", player.getClient());
-
-				etl.remove(etimer);
-			}
-		}
-
-		expired_timers.clear();
-
-		///
-		
-		// Effect Timers (when they expire, effects are removed)
-		final List<SpellTimer> expired_timers2 = new LinkedList<SpellTimer>();
-
-		// each player has their own list of effect timers
-		for(final Player player : spellTimers.keySet()) {
-			final List<SpellTimer> stl = spellTimers.get(player);
-
-			// add the timers that are expired to the expired list
-			for (final SpellTimer stimer : stl) {
-				if (stimer.getTimeRemaining() <= 0) {
-					expired_timers2.add(stimer);
-				}
-			}
-
-			// remove each timer in eff from the player's list of effect timers
-			for (final SpellTimer etimer : expired_timers2) {
-				stl.remove(etimer);
-			}
-		}
-
-		expired_timers2.clear();
-
-		// TODO auction timers -- see below
-		// perhaps a global spin through and decrement task of an internal count on Auctions would
-		// be more practical?
-		List<AuctionTimer> auc_timers = new LinkedList<AuctionTimer>();
-
-		for(final Player player : auctionTimers.keySet()) {
-			final List<AuctionTimer> atl = auctionTimers.get(player);
-
-			for (final AuctionTimer atimer : atl) {
-				if (atimer.getTimeRemaining() <= 0) {
-					auc_timers.add(atimer);
-				}
-			}
-
-			for (final AuctionTimer atimer : auc_timers) {
-				// remove completed auction? marked it ended?
-				send("Your auction of " + atimer.getAuction().getItem().getName() + " ended!", player.getClient());
-
-				atl.remove(atimer);
-			}
-
-			auc_timers.clear();
-		}
-	}
-
 	/**
 	 * Schedule Task (Immediate)
 	 * 
@@ -22670,15 +22820,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public void handleDeath(final Player player) {
 		// Player/NPC Death
 		if ( player.getState() == Player.State.DEAD ) {
-			final TimerTask tt = new TimerTask() {
-				@Override public void run() {
-					respawn(player, player.getLocation());
-				}
-			};
-
 			int respawn_time = 5;
 
-			timer.schedule(tt, respawn_time * 60000);
+			timers.schedule(() -> respawn(player, player.getLocation()), respawn_time, TimeUnit.MINUTES);
 			
 			send("You have died! (5 minutes til respawn)", player.getClient());
 			
@@ -22972,7 +23116,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// just double check that this is a valid guest player and not
 			// currently in use
-			if (temp != null && !sclients.values().contains(temp)) {
+			if (temp != null && !sessions.isLoggedIn(temp)) {
 				return temp;
 			}
 		}
@@ -23168,6 +23312,17 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		else if (color == Constants.XTERM) return XTERM256.getColor(colorName);
 		else                               return "";
 	}
+	
+	/**
+	 * Get the palette for the colors in use.
+	 * 
+	 * @return the palette, or null if colors are disabled
+	 */
+	private Palette getPalette() {
+		if (color == Constants.ANSI)       return ANSI;
+		else if (color == Constants.XTERM) return XTERM256;
+		else                               return null;
+	}
 
 	/**
 	 * Set colors for displaying the names of MUDObject when the game shows
@@ -23537,30 +23692,60 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * @param newState
 	 */
 	public void setClientState(final Client client, final String newState) {
-		if ("".equals(newState)) clientState.remove(client);
-		else                     clientState.put(client, newState);
+		if ("".equals(newState)) {
+			final ClientSession session = sessions.get(client);
+			
+			if (session != null) session.setState(null);
+		}
+		else sessions.open(client).setState(newState);
 	}
 
 	public String getClientState(final Client client) {
-		return clientState.get(client);
+		final ClientSession session = sessions.get(client);
+		
+		return session != null ? session.getState() : null;
 	}
 
 	public void setClientData(final Client client, final ClientData newData) {
-		if ( newData == null )  clientData.remove(client);
-		else                    clientData.put(client, newData);
+		if ( newData == null ) {
+			final ClientSession session = sessions.get(client);
+			
+			if (session != null) session.setClientData(null);
+		}
+		else sessions.open(client).setClientData(newData);
 	}
 
 	public ClientData getClientData(final Client client) {
-		return clientData.get(client);
+		final ClientSession session = sessions.get(client);
+		
+		return session != null ? session.getClientData() : null;
 	}
 	
 	public LoginData getLoginData(final Client client) {
-		return this.loginData.get(client);
+		final ClientSession session = sessions.get(client);
+		
+		return session != null ? session.getLoginData() : null;
 	}
 	
 	public void setLoginData(final Client client, final LoginData newData) {
-		if (!(newData == null)) loginData.put(client, newData);
-		else                    loginData.remove(client);
+		if (!(newData == null)) sessions.open(client).setLoginData(newData);
+		else {
+			final ClientSession session = sessions.get(client);
+			
+			if (session != null) session.setLoginData(null);
+		}
+	}
+	
+	/**
+	 * Get the account in use on a client (account login/menu).
+	 * 
+	 * @param client
+	 * @return the account or null
+	 */
+	public Account getClientAccount(final Client client) {
+		final ClientSession session = sessions.get(client);
+		
+		return session != null ? session.getAccount() : null;
 	}
 
 	/**
@@ -23864,40 +24049,40 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 		}
 		else if ( ld.state.equals(Constants.LOGIN) ) {
-			// try connecting
-			cmd_connect(ld.username + " " + ld.password, client);
-
-			// TODO: FIX NEEDED, clearing client state here breaks account logins
-			// TODO figure out what to do, it seems silly to try a login and then test if it worked
-			
-			boolean conn_success = true;
-			
-			// after attempting a connection
-			if (use_accounts) {
-				if (!caTable.containsKey(client)) {
-					// no such account
-					send("No such player or account.", client);
-					
-					conn_success = false;
+			// try connecting (and check whether it worked once the password has been checked)
+			cmd_connect(ld.username + " " + ld.password, client, () -> {
+				// TODO: FIX NEEDED, clearing client state here breaks account logins
+				// TODO figure out what to do, it seems silly to try a login and then test if it worked
+				
+				boolean conn_success = true;
+				
+				// after attempting a connection
+				if (use_accounts) {
+					if (getClientAccount(client) == null) {
+						// no such account
+						send("No such player or account.", client);
+						
+						conn_success = false;
+					}
 				}
-			}
-			else {
-				if (getPlayer(client) == null) {
-					// no such player
-					send("No such player.", client);
-					
-					conn_success = false;
+				else {
+					if (getPlayer(client) == null) {
+						// no such player
+						send("No such player.", client);
+						
+						conn_success = false;
+					}
 				}
-			}
-			
-			if( !conn_success ) {
-				ld.state = "NAME";
-				handle_interactive_login(client);
-			}
-			else {
-				setClientState(client, ""); // we successfully logged in, clear state
-				setLoginData(client, null); // clear login data
-			}
+				
+				if( !conn_success ) {
+					ld.state = "NAME";
+					handle_interactive_login(client);
+				}
+				else {
+					setClientState(client, ""); // we successfully logged in, clear state
+					setLoginData(client, null); // clear login data
+				}
+			});
 		}
 	}
 
@@ -24176,6 +24361,49 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						case "int-login":
 							if (value.equals("true")) int_login = true;
 							break;
+						case "nio":
+							if (value.equals("true")) use_nio = true;
+							break;
+						case "mccp":
+							if (value.equals("true")) use_mccp = true;
+							break;
+						case "queued-commands":
+							if (value.equals("true")) queued_commands = true;
+							break;
+						case "cmd-threads":
+							n = Utils.toInt(value, -1);
+							if (n > 0) cmd_threads = n;
+							break;
+						case "lazy-accounts":
+							if (value.equals("true")) lazy_accounts = true;
+							break;
+						case "hash-threads":
+							n = Utils.toInt(value, -1);
+							if (n > 0) hash_threads = n;
+							break;
+						case "login-attempts":
+							n = Utils.toInt(value, -1);
+							if (n > 0) login_attempts = n;
+							break;
+						case "journal":
+							if (value.equals("true")) use_journal = true;
+							break;
+						case "checkpoint-interval":
+							n = Utils.toInt(value, -1);
+							if (n > 0) checkpoint_min = n;
+							break;
+						case "log-max-size":
+							n = Utils.toInt(value, -1);
+							if (n > 0) log_max_kb = n;
+							break;
+						case "log-rotate":
+							n = Utils.toInt(value, -1);
+							if (n > 0) log_rotate_min = n;
+							break;
+						case "pack-descriptions":
+							n = Utils.toInt(value, -1);
+							if (n > 0) desc_pack_length = n;
+							break;
 						default:
 							break;
 						}
@@ -24262,7 +24490,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		send("Created New Character, Select it in your character list to login", client);
 
-		// Account account = caTable.get(client);
+		// Account account = getClientAccount(client);
 
 		account_menu(account, client);
 
@@ -24449,8 +24677,16 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 
 	public void addAuctionTimer(final AuctionTimer atimer, final Player player) {
-		auctionTimers.get(player).add(atimer);
-		timer.scheduleAtFixedRate(atimer, 0, 1000);
+		final List<AuctionTimer> atl = auctionTimers.get(player);
+
+		atl.add(atimer);
+
+		atimer.start(timers, () -> {
+			// remove completed auction? marked it ended?
+			send("Your auction of " + atimer.getAuction().getItem().getName() + " ended!", player.getClient());
+
+			atl.remove(atimer);
+		});
 	}
 	
 	/**
@@ -24594,30 +24830,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		else send("No such room!", client);
 	}
 	
-	/**
-	 * Is the specified input the given command name or an alias?
-	 * 
-	 * @param input
-	 * @param commandName
-	 * @return
-	 */
-	private boolean cmdIs(final String input, final String commandName) {
-		boolean aliasExists = false;
-		boolean aliasMatch = false;
-
-		final String alias = this.aliases.get(input);
-
-		if (alias != null) {
-			aliasExists = true;
-
-			if (alias.equals(commandName)) {
-				aliasMatch = true;
-			}
-		}
-
-		return (input.equals(commandName) || (aliasExists && aliasMatch));
-	}
-	
 	/**
 	 * not sure how great a way of doing this it is, maybe classes implementing Lockable
 	 * should have an isKey method so individual instances can decide whether the object passed
@@ -24704,6 +24916,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	// Network Server Call Wrappers
 	private void disconnect(final Client client) {
 		s.disconnect(client);
+		
+		sessions.close(client);
 	}
 	
 	private void write(final char datum) {
@@ -25094,16 +25308,42 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 	
-	private final void addSpellTimer(final Player player, final SpellTimer s) {
-		getSpellTimers(player).add(s);
-	}
-	
-	private final void addEffectTimer(final Player player, final EffectTimer e) {
-		getEffectTimers(player).add(e);
+	/**
+	 * Track a spell timer for the player and start it, the timer is dropped
+	 * when it runs out.
+	 * 
+	 * @param player
+	 * @param s
+	 */
+	protected final void addSpellTimer(final Player player, final SpellTimer s) {
+		final List<SpellTimer> stl = getSpellTimers(player);
+
+		stl.add(s);
+
+		s.start(timers, () -> stl.remove(s));
 	}
 	
-	private final void scheduleAtFixedRate(final TimerTask task, final long delay, final long period) {
-		timer.scheduleAtFixedRate(task, delay, period);
+	/**
+	 * Track an effect timer for the player and start it, when it runs out
+	 * the effect is removed.
+	 * 
+	 * @param player
+	 * @param e
+	 */
+	protected final void addEffectTimer(final Player player, final EffectTimer e) {
+		final List<EffectTimer> etl = getEffectTimers(player);
+
+		etl.add(e);
+
+		e.start(timers, () -> {
+			final String effectName = e.getEffect().getName();
+
+			removeEffect(player, effectName);
+
+			send(effectName + " effect removed.", player.getClient());
+
+			etl.remove(e);
+		});
 	}
 	
 	// generate a dungeon as a rectangular grid of rooms (specific width and length
@@ -3,21 +3,29 @@ package mud;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Random;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import mud.objects.*;
 import mud.objects.exits.Door;
 import mud.objects.items.Arrow;
 import mud.objects.items.Container;
+import mud.utils.IntStack;
+import mud.utils.StringTable;
 import mud.utils.Utils;
 
 import mud.game.PClass;
 import mud.interfaces.ODBI;
+import mud.misc.Broadcaster;
+import mud.misc.RenderCache;
 
 /*
  * Copyright (c) 2012 Jeremy N. Harton, joshgit?
@@ -40,14 +48,26 @@ import mud.interfaces.ODBI;
 public final class ObjectDB implements ODBI {
 	private int nextId = 0;
 
-	// TreeMap allows instant retrieval by id and by name.
-	private final Map<String, MUDObject>  objsByName = new TreeMap<String, MUDObject>();
-	private final Map<Integer, MUDObject> objsById = new TreeMap<Integer, MUDObject>();
+	// TreeMap allows instant retrieval by name, the table allows instant retrieval by id (and type).
+	private final Map<String, MUDObject> objsByName = new TreeMap<String, MUDObject>();
+	private final ObjectTable table = new ObjectTable();
 
 	// holds unused database references, that exist due to "recycled" objects
-	private Stack<Integer> unusedDBNs = new Stack<Integer>();
+	private final IntStack unusedDBNs = new IntStack();
 	private List<Integer> reservedDBNs = new LinkedList<Integer>();
 
+	// write-ahead journal (if any), told about objects being created, moved and recycled
+	private Journal journal = null;
+
+	// rendered descriptions (if any), which are dropped when an object is recycled
+	private RenderCache renderCache = null;
+
+	// room broadcasts (if any), which have to know when a listening player moves
+	private Broadcaster broadcaster = null;
+
+	// names and descriptions, shared between objects
+	private final StringTable strings = new StringTable();
+
 	// Hashtable is used here because it does not permit null values
 	//private Hashtable<Client, LinkedList<Integer>> reservationTable = new Hashtable<Client, LinkedList<Integer>>();
 
@@ -172,7 +192,7 @@ public final class ObjectDB implements ODBI {
 
 	}
 
-	public Stack<Integer> getUnused() {
+	public IntStack getUnused() {
 		return this.unusedDBNs;
 	}
 
@@ -187,16 +207,17 @@ public final class ObjectDB implements ODBI {
     }*/
 
 	public int getSize() {
-		return this.objsById.size();
+		return this.table.size(ObjectTable.MAIN);
 	}
 
 	// Send all objects
 	public List<String> dump() {
 		int i = 0;
 
-		final List<String> output = new ArrayList<String>(this.objsById.size());
+		final List<MUDObject> objects = this.table.getAll(ObjectTable.MAIN);
+		final List<String> output = new ArrayList<String>(objects.size());
 
-		for (final MUDObject obj : objsById.values()) {
+		for (final MUDObject obj : objects) {
 			output.add( String.format("%d: %s (#%d)", i, obj.getName(), obj.getDBRef()) );
 			i += 1;
 		}
@@ -204,21 +225,45 @@ public final class ObjectDB implements ODBI {
 		return output;
 	}
 
+	/**
+	 * Serialize all objects via `toDB`, in dbref order, for a complete copy of
+	 * the database. Unlike save(...) this doesn't need the old file, locked
+	 * NullObjects remember the line they stand in for.
+	 * 
+	 * @return
+	 */
+	public List<String> snapshot() {
+		final List<MUDObject> objects = this.table.getAll(ObjectTable.MAIN);
+		final List<String> lines = new ArrayList<String>(objects.size());
+
+		for (final MUDObject obj : objects) {
+			// new players aren't saved until they've been approved
+			if( obj instanceof Player && ((Player) obj).isNew() ) {
+				lines.add( new NullObject(obj.getDBRef()).toDB() );
+			}
+			else lines.add( obj.toDB() );
+		}
+
+		return lines;
+	}
+
 	// Serialize all objects via `toDB` and save array to file.
 	// TODO fix save method, this one depends on saving over the old database
 	public void save(final String filename) {
-		final String[] old = Utils.loadStrings(filename);         // old (current in file) database
-		final String[] toSave = new String[this.objsById.size()]; // new (save to file) database
+		final List<MUDObject> objects = this.table.getAll(ObjectTable.MAIN);
+
+		final String[] old = Utils.loadStrings(filename);   // old (current in file) database
+		final String[] toSave = new String[objects.size()]; // new (save to file) database
 
 		// TODO sometimes has issues with NullPointerException(s)
 
-		System.out.println("Old Size: " + old.length);
+		System.out.println("Old Size: " + ((old != null) ? old.length : 0));
 		System.out.println("New Size: " + toSave.length);
 
 		int index = 0;
 
 		if( old != null ) {
-			for (final MUDObject obj : this.objsById.values()) {
+			for (final MUDObject obj : objects) {
 				if(obj instanceof NullObject) {
 					NullObject no = (NullObject) obj;
 
@@ -254,7 +299,7 @@ public final class ObjectDB implements ODBI {
 		else {
 			// TODO figure out if this part of save(...) should just go elsewhere. This is essentially
 			// breaking the notion of save since we aren't saving over an existing database
-			for (final MUDObject obj : objsById.values()) {
+			for (final MUDObject obj : objects) {
 				System.out.println(obj.getName());
 
 				toSave[index] = obj.toDB();
@@ -294,11 +339,8 @@ public final class ObjectDB implements ODBI {
 		// if the item dbref doesn't match the next one AND there is no entry for that id...
 
 
-		System.out.println("");
-		System.out.println("ObjectDB " + nextId + ": " + object.getDBRef());
-
-		System.out.println(object.getDBRef() + ": " + object.getName());
-		System.out.println("");
+		// NOTE: this runs for every object when the database loads, so it stays quiet
+		//System.out.println("ObjectDB " + nextId + ": " + object.getDBRef() + " " + object.getName());
 
 		// --
 		if( object.getDBRef() != nextId ) {
@@ -316,7 +358,7 @@ public final class ObjectDB implements ODBI {
 					no.lock();
 
 					// insert NullObject
-					this.objsById.put(no.getDBRef(), no);
+					this.table.put(no, ObjectTable.MAIN);
 
 					System.out.println("Inserted NullObject!");
 					System.out.println("");
@@ -331,7 +373,9 @@ public final class ObjectDB implements ODBI {
 		
 		boolean skip = false;
 
-		this.objsById.put(object.getDBRef(), object);
+		this.table.put(object, ObjectTable.MAIN);
+		
+		index(object);
 
 		/* If there's a null object in the database, let us know.
 		 * If it's just because of an ignored line it will be locked,
@@ -387,8 +431,12 @@ public final class ObjectDB implements ODBI {
 		// TODO adding it is a buggy mess due to conflicting uses of add(...), load vs add new stuff
 		//add(item);
 		
-		this.objsById.put(object.getDBRef(), object);
+		this.table.put(object, ObjectTable.MAIN);
 		this.objsByName.put(object.getName(), object);
+		
+		index(object);
+
+		if( this.journal != null ) this.journal.touched(object);
 
 		// add additional names for exits (conveniences/game/player use)
 		if( object.isType(TypeFlag.EXIT) ) {
@@ -412,12 +460,18 @@ public final class ObjectDB implements ODBI {
 	public void remove(final MUDObject item) {
 		final int DBREF = item.getDBRef();
 		
-		this.objsById.remove( DBREF );
 		this.objsByName.values().remove(item);
 		
+		unindex(item);
+
+		if( this.journal != null ) this.journal.recycled(item);
+
+		if( this.renderCache != null ) this.renderCache.invalidate(item);
+		
 		final NullObject no = new NullObject( DBREF );
 		
-		this.objsById.put(DBREF, no);
+		// NOTE: this also drops the object from the type specific collections that use the table
+		this.table.put(no, ObjectTable.MAIN);
 		this.objsByName.put(no.getName(), no);
 		
 		addUnused( DBREF );
@@ -430,7 +484,7 @@ public final class ObjectDB implements ODBI {
     }*/
 
 	public List<MUDObject> getObjects() {
-		return Collections.unmodifiableList( new ArrayList<MUDObject>(this.objsById.values()) );
+		return Collections.unmodifiableList( this.table.<MUDObject>getAll(ObjectTable.MAIN) );
 	}
 
 	/**
@@ -441,9 +495,7 @@ public final class ObjectDB implements ODBI {
 	 * @return the object with that DBRef (if it exists)
 	 */
 	public MUDObject getById(final int dbref) {
-		if( dbref < 0 ) return null;
-
-		return this.objsById.get(dbref);
+		return this.table.get(dbref, ObjectTable.MAIN);
 	}
 
 	/**
@@ -461,6 +513,9 @@ public final class ObjectDB implements ODBI {
 	 * Gets a List of the object in or attached to the specified
 	 * room.
 	 * 
+	 * NOTE: like the other *ByRoom methods, this only looks at what the
+	 * location index says is in the room, not the whole database.
+	 * 
 	 * @param room
 	 * @return
 	 */
@@ -572,7 +627,7 @@ public final class ObjectDB implements ODBI {
 		
 		final String testName = name.toLowerCase();
 		
-		for (final MUDObject obj : this.objsById.values()) {
+		for (final MUDObject obj : this.table.getAll(ObjectTable.MAIN)) {
 			String objectName = obj.getName().toLowerCase();
 			
 			if( objectName.startsWith( testName ) ) {
@@ -596,8 +651,8 @@ public final class ObjectDB implements ODBI {
 		final int[] counts = new int[letters.length];
 		Arrays.fill(counts, 0);
 
-		// objsById returns more objects than objsByName
-		for (final MUDObject obj : this.objsById.values()) {
+		// the table holds more objects than objsByName
+		for (final MUDObject obj : this.table.getAll(ObjectTable.MAIN)) {
 			for (int i = 0; i < letters.length; i++) {
 				if (obj.type.toString().startsWith(letters[i])) {
 					counts[i] += 1;
@@ -608,20 +663,177 @@ public final class ObjectDB implements ODBI {
 		return counts;
 	}
 
+	////////////// LOCATION INDEX
+	// location (dbref) -> objects there, in the order they arrived (kept up to date by MUDObject.setLocation)
+	private final Map<Integer, Set<MUDObject>> contents = new ConcurrentHashMap<Integer, Set<MUDObject>>();
+
+	/**
+	 * Start tracking the location of an object. Doing this more than once
+	 * for the same object is harmless.
+	 * 
+	 * @param object
+	 */
+	private void index(final MUDObject object) {
+		object.compact(strings);
+		object.db = this;
+
+		place(object, object.getLocation());
+	}
+
+	private void unindex(final MUDObject object) {
+		if( object.db == this ) {
+			object.db = null;
+
+			displace(object, object.getLocation());
+		}
+	}
+
+	/**
+	 * Called when an indexed object's location changes. Players who were
+	 * listening in the room they left are moved to the listeners of the room
+	 * they arrived in (through the broadcaster, if there is one, so it knows
+	 * whether they are outside now).
+	 * 
+	 * @param object
+	 * @param oldLocation
+	 * @param newLocation
+	 */
+	void moved(final MUDObject object, final Integer oldLocation, final Integer newLocation) {
+		displace(object, oldLocation);
+		place(object, newLocation);
+
+		if( this.journal != null ) this.journal.touched(object);
+
+		if( object instanceof Player ) {
+			final Player player = (Player) object;
+
+			final Room from = (oldLocation != null) ? getRoomById(oldLocation) : null;
+			final Room to = (newLocation != null) ? getRoomById(newLocation) : null;
+
+			if( from != null && from.getListeners().contains(player) ) {
+				if( this.broadcaster != null ) this.broadcaster.moved(player, from, to);
+				else {
+					from.removeListener(player);
+
+					if( to != null ) to.addListener(player);
+				}
+			}
+		}
+	}
+
+	// called when an indexed object is modified (see MUDObject.changed)
+	void changed(final MUDObject object) {
+		if( this.journal != null ) this.journal.touched(object);
+	}
+
+	// called when a property is set on an indexed object
+	void propertySet(final MUDObject object, final String key, final String value) {
+		if( this.journal != null ) this.journal.propertySet(object, key, value);
+	}
+
+	// called when a property is removed from an indexed object
+	void propertyRemoved(final MUDObject object, final String key) {
+		if( this.journal != null ) this.journal.propertyRemoved(object, key);
+	}
+
+	/**
+	 * Have changes to the database recorded in the specified journal (null to stop).
+	 * 
+	 * @param journal
+	 */
+	public void setJournal(final Journal journal) {
+		this.journal = journal;
+	}
+
+	public Journal getJournal() {
+		return this.journal;
+	}
+
+	/**
+	 * Have the renderings of an object's description dropped from the specified
+	 * cache when the object is recycled (null to stop).
+	 * 
+	 * @param renderCache
+	 */
+	public void setRenderCache(final RenderCache renderCache) {
+		this.renderCache = renderCache;
+	}
+
+	/**
+	 * Have players that move between rooms moved between the listeners of
+	 * those rooms by the specified broadcaster (null to stop).
+	 * 
+	 * @param broadcaster
+	 */
+	public void setBroadcaster(final Broadcaster broadcaster) {
+		this.broadcaster = broadcaster;
+	}
+
+	/**
+	 * Get the table that object names and descriptions are kept in.
+	 * 
+	 * @return
+	 */
+	public StringTable getStrings() {
+		return this.strings;
+	}
+
+	private void place(final MUDObject object, final Integer location) {
+		if( location == null ) return;
+
+		Set<MUDObject> set = this.contents.get(location);
+
+		if( set == null ) {
+			final Set<MUDObject> temp = Collections.synchronizedSet(new LinkedHashSet<MUDObject>());
+
+			set = this.contents.putIfAbsent(location, temp);
+
+			if( set == null ) set = temp;
+		}
+
+		set.add(object);
+	}
+
+	private void displace(final MUDObject object, final Integer location) {
+		if( location == null ) return;
+
+		final Set<MUDObject> set = this.contents.get(location);
+
+		if( set != null ) set.remove(object);
+	}
+
+	/**
+	 * Get everything the database knows to be at the specified location,
+	 * regardless of type.
+	 * 
+	 * @param loc the dbref of a location
+	 * @return a copy of the contents of the location
+	 */
+	public List<MUDObject> getContents(final int loc) {
+		final Set<MUDObject> set = this.contents.get(loc);
+
+		if( set == null ) return new LinkedList<MUDObject>();
+
+		synchronized(set) {
+			return new LinkedList<MUDObject>(set);
+		}
+	}
+
 	////////////// ROOMS
-	private final Map<Integer, Room> roomsById   = new HashMap<Integer, Room>();
-	private final Map<String, Room>  roomsByName = new HashMap<String, Room>();
+	private final Map<String, Room> roomsByName = new HashMap<String, Room>();
 
 	// must add room to both maps
 	public void addRoom(final Room room) {
 		this.roomsByName.put(room.getName(), room);
-		this.roomsById.put(room.getDBRef(), room);
+		this.table.put(room, ObjectTable.ROOM);
+
+		index(room);
 	}
 
 	// must remove room from both maps
 	public void removeRoom(final Room r) {
 		this.roomsByName.values().remove(r);
-		this.roomsById.values().remove(r);
+		this.table.remove(r, ObjectTable.ROOM);
 	}
 
 	public Room getRoomByName(final String name) {
@@ -634,24 +846,17 @@ public final class ObjectDB implements ODBI {
 	 * NOTE: dbref #s <0 are considered invalid
 	 */
 	public Room getRoomById(final int id) {
-		//return roomsById.get(id);
-		Room room = null;
-
-		if( id >= 0) {
-			room = this.roomsById.get(id);
-		}
-
-		return room;
+		return (Room) this.table.get(id, ObjectTable.ROOM);
 	}
 
 	public List<Room> getRooms() {
-		return Collections.unmodifiableList( new ArrayList<Room>(this.roomsById.values()) );
+		return Collections.unmodifiableList( this.table.<Room>getAll(ObjectTable.ROOM) );
 	}
 
 	public List<Room> getRoomsByType(final RoomType type) {
 		final List<Room> acc = new LinkedList<Room>();
 
-		for (final Room r : this.roomsById.values()) {
+		for (final Room r : this.table.<Room>getAll(ObjectTable.ROOM)) {
 			if (r.getRoomType() == type) {
 				acc.add(r);
 			}
@@ -667,7 +872,7 @@ public final class ObjectDB implements ODBI {
 	public List<Room> getRoomsByParentLocation(final int loc) {
 		final List<Room> acc = new LinkedList<Room>();
 
-		for (final Room r : this.roomsById.values()) {
+		for (final Room r : this.table.<Room>getAll(ObjectTable.ROOM)) {
 			if (r.getParent() == loc) {
 				acc.add(r);
 			}
@@ -679,9 +884,9 @@ public final class ObjectDB implements ODBI {
 	public List<Room> getRoomsByLocation(final int loc) {
 		final List<Room> acc = new LinkedList<Room>();
 
-		for (final Room r : this.roomsById.values()) {
-			if (r.getLocation() == loc) {
-				acc.add(r);
+		for (final MUDObject obj : getContents(loc)) {
+			if (this.table.contains(obj, ObjectTable.ROOM)) {
+				acc.add((Room) obj);
 			}
 		}
 
@@ -689,13 +894,10 @@ public final class ObjectDB implements ODBI {
 	}
 
 	/////////////// EXITS
-	private final Map<Integer, Exit> exitsById   = new HashMap<Integer, Exit>();
-	private final Map<String, Exit>  exitsByName = new HashMap<String, Exit>();
+	private final Map<String, Exit> exitsByName = new HashMap<String, Exit>();
 
 	public Exit getExit(final int dbref) {
-		if( dbref < 0 ) return null;
-
-		return this.exitsById.get(dbref);
+		return (Exit) this.table.get(dbref, ObjectTable.EXIT);
 	}
 
 	public Exit getExit(final String name) {
@@ -703,17 +905,15 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Exit> getExits() {
-		return Collections.unmodifiableList( new ArrayList<Exit>(this.exitsById.values()) );
+		return Collections.unmodifiableList( this.table.<Exit>getAll(ObjectTable.EXIT) );
 	}
 
 	public List<Exit> getExitsByRoom(final Room room) {
 		final List<Exit> acc = new LinkedList<Exit>();
 
-		int loc = room.getDBRef();
-
-		for (final Exit e : this.exitsById.values()) {
-			if (e.getLocation() == loc) {
-				acc.add(e);
+		for (final MUDObject obj : getContents(room.getDBRef())) {
+			if (this.table.contains(obj, ObjectTable.EXIT)) {
+				acc.add((Exit) obj);
 			}
 		}
 
@@ -721,7 +921,9 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public void addExit(final Exit exit) {
-		this.exitsById.put(exit.getDBRef(), exit);
+		this.table.put(exit, ObjectTable.EXIT);
+
+		index(exit);
 
 		if( exit.getExitType() == ExitType.DOOR ) {
 			String[] names = exit.getName().split("/");
@@ -735,7 +937,7 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public void removeExit(final Exit e) {
-		this.exitsById.values().remove(e.getDBRef());
+		this.table.remove(e, ObjectTable.EXIT);
 
 		if( e.getExitType() == ExitType.DOOR ) {
 			String[] temp = e.getName().split(";");
@@ -755,6 +957,9 @@ public final class ObjectDB implements ODBI {
 
 	public void addCreature(final Creature c) {
 		this.creeps.add(c);
+		this.table.put(c, ObjectTable.CREATURE);
+
+		index(c);
 	}
 
 	public List<Creature> getCreatures() {
@@ -764,11 +969,9 @@ public final class ObjectDB implements ODBI {
 	public List<Creature> getCreaturesByRoom(final Room room) {
 		final List<Creature> acc = new LinkedList<Creature>();
 
-		int loc = room.getDBRef();
-
-		for (final Creature c : this.creeps) {
-			if (c.getLocation() == loc) {
-				acc.add(c);
+		for (final MUDObject obj : getContents(room.getDBRef())) {
+			if (this.table.contains(obj, ObjectTable.CREATURE)) {
+				acc.add((Creature) obj);
 			}
 		}
 
@@ -776,19 +979,18 @@ public final class ObjectDB implements ODBI {
 	}
 
 	////////////////// NPCs
-	private final Map<Integer, NPC> npcsById   = new HashMap<Integer, NPC>();
-	private final Map<String, NPC>  npcsByName = new HashMap<String, NPC>();
+	private final Map<String, NPC> npcsByName = new HashMap<String, NPC>();
 
 	public void addNPC(final NPC npc) {
-		this.npcsById.put(npc.getDBRef(), npc);
+		this.table.put(npc, ObjectTable.NPC);
 		this.npcsByName.put(npc.getName(), npc);
 		this.npcsByName.put(npc.getCName(), npc);
+
+		index(npc);
 	}
 
 	public NPC getNPC(final int dbref) {
-		if( dbref < 0 ) return null;
-
-		return this.npcsById.get(dbref);
+		return (NPC) this.table.get(dbref, ObjectTable.NPC);
 	}
 
 	/**
@@ -806,17 +1008,15 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<NPC> getNPCs() {
-		return new ArrayList<NPC>(this.npcsById.values());
+		return this.table.getAll(ObjectTable.NPC);
 	}
 
 	public List<NPC> getNPCsByRoom(final Room room) {
 		final List<NPC> acc = new LinkedList<NPC>();
 
-		int loc = room.getDBRef();
-
-		for (final NPC n : this.npcsById.values()) {
-			if (n.getLocation() == loc) {
-				acc.add(n);
+		for (final MUDObject obj : getContents(room.getDBRef())) {
+			if (this.table.contains(obj, ObjectTable.NPC)) {
+				acc.add((NPC) obj);
 			}
 		}
 
@@ -825,17 +1025,17 @@ public final class ObjectDB implements ODBI {
 
 	////////////////// ITEMS
 	private final List<Item> items = new ArrayList<Item>();
-	
-	private final Map<Integer, Item> itemsById   = new HashMap<Integer, Item>();
 
 	public void addItem(final Item item) {
 		this.items.add(item);
-		this.itemsById.put(item.getDBRef(), item);
+		this.table.put(item, ObjectTable.ITEM);
+
+		index(item);
 	}
 
 	public void removeItem(final Item item) {
 		this.items.remove(item);
-		this.itemsById.remove(item.getDBRef());
+		this.table.remove(item, ObjectTable.ITEM);
 	}
 
 	public void addItemsToRooms() {
@@ -863,9 +1063,7 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public Item getItem(final int dbref) {
-		if( dbref < 0 ) return null;
-
-		return this.itemsById.get(dbref);
+		return (Item) this.table.get(dbref, ObjectTable.ITEM);
 	}
 
 	// somewhat pointless, since items are more likely to have the same name than most other objects
@@ -882,7 +1080,7 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Item> getItems() {
-		return Collections.unmodifiableList( new ArrayList<Item>(this.itemsById.values()) );
+		return Collections.unmodifiableList( this.table.<Item>getAll(ObjectTable.ITEM) );
 	}
 
 	/**
@@ -914,9 +1112,9 @@ public final class ObjectDB implements ODBI {
 	public List<Item> getItemsByLoc(final int loc) {
 		final List<Item> acc = new LinkedList<Item>();
 
-		for (final Item item : this.items) {
-			if (item.getLocation() == loc) {
-				acc.add(item);
+		for (final MUDObject obj : getContents(loc)) {
+			if (this.table.contains(obj, ObjectTable.ITEM)) {
+				acc.add((Item) obj);
 			}
 		}
 
@@ -946,22 +1144,21 @@ public final class ObjectDB implements ODBI {
 
 	///////////// THINGS
 	private final List<Thing> things = new ArrayList<Thing>();
-	private final Map<Integer, Thing> thingsById = new HashMap<Integer, Thing>();
 
 	public void addThing(final Thing thing) {
 		this.things.add(thing);
-		this.thingsById.put(thing.getDBRef(), thing);
+		this.table.put(thing, ObjectTable.THING);
+
+		index(thing);
 	}
 
 	public void removeThing(final Thing thing) {
 		this.things.remove(thing);
-		this.thingsById.remove(thing.getDBRef());
+		this.table.remove(thing, ObjectTable.THING);
 	}
 
 	public Thing getThing(int dbref) {
-		if( dbref < 0 ) return null;
-
-		return this.thingsById.get(dbref);
+		return (Thing) this.table.get(dbref, ObjectTable.THING);
 	}
 
 	public Thing getThing(final String name) {
@@ -975,17 +1172,15 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Thing> getThings() {
-		return new ArrayList<Thing>(this.thingsById.values());
+		return this.table.getAll(ObjectTable.THING);
 	}
 
 	public List<Thing> getThingsForRoom(final Room room) {
 		final List<Thing> acc = new LinkedList<Thing>();
 
-		int roomId = room.getDBRef();
-
-		for (final Thing t : this.things) {
-			if (t.getLocation() == roomId) {
-				acc.add(t);
+		for (final MUDObject obj : getContents(room.getDBRef())) {
+			if (this.table.contains(obj, ObjectTable.THING)) {
+				acc.add((Thing) obj);
 			}
 		}
 
@@ -1005,19 +1200,17 @@ public final class ObjectDB implements ODBI {
 	}
 
 	///////////////////////////// PLAYERS
-	private final Map<Integer, Player> playersById = new HashMap<Integer, Player>();
 	private final Map<String, Player> playersByName = new HashMap<String, Player>();
 
 	public void addPlayer(final Player p) {
-		this.playersById.put(p.getDBRef(), p);
+		this.table.put(p, ObjectTable.PLAYER);
 		this.playersByName.put(p.getName(), p);
+
+		index(p);
 	}
 
 	public Player getPlayer(final int dbref) {
-		if( dbref < 0 ) return null;
-
-		return this.playersById.get(dbref);
-
+		return (Player) this.table.get(dbref, ObjectTable.PLAYER);
 	}
 	
 	public Player getPlayer(final String name) {
@@ -1051,11 +1244,9 @@ public final class ObjectDB implements ODBI {
 	public List<Player> getPlayersByRoom(final Room room) {
 		final List<Player> acc = new LinkedList<Player>();
 
-		int loc = room.getDBRef();
-
-		for (final Player p : this.playersByName.values()) {
-			if (p.getLocation() == loc) {
-				acc.add(p);
+		for (final MUDObject obj : getContents(room.getDBRef())) {
+			if (this.table.contains(obj, ObjectTable.PLAYER)) {
+				acc.add((Player) obj);
 			}
 		}
 
@@ -1063,7 +1254,7 @@ public final class ObjectDB implements ODBI {
 	}
 	
 	public List<Player> getPlayers() {
-		return new ArrayList<Player>(this.playersById.values());
+		return this.table.getAll(ObjectTable.PLAYER);
 	}
 
 	/**
@@ -1076,21 +1267,152 @@ public final class ObjectDB implements ODBI {
 
 		this.creeps.clear();
 
-		this.npcsById.clear();
 		this.npcsByName.clear();
 
 		this.playersByName.clear();
 
-		this.exitsById.clear();
 		this.exitsByName.clear();
 
-		this.roomsById.clear();
 		this.roomsByName.clear();
 
-		this.objsById.clear();
 		this.objsByName.clear();
 
+		for (final Set<MUDObject> set : this.contents.values()) {
+			synchronized(set) {
+				for (final MUDObject obj : set) obj.db = null;
+			}
+		}
+
+		this.contents.clear();
+
+		this.table.clear();
+
 		this.unusedDBNs.clear();
 		this.reservedDBNs.clear();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Build a synthetic world and compare finding what's in a room through
+	 * the location index to the way it used to be done (going through every
+	 * exit, item and thing and checking it's location), making sure both
+	 * find the same things. Moving objects around (which keeps the index up
+	 * to date) is timed as well.
+	 * 
+	 * usage: java mud.ObjectDB [objects] [lookups]
+	 * 
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		final int lookups = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+
+		final int rooms = Math.max(count / 20, 1);
+
+		final ObjectDB db = new ObjectDB();
+		final Random random = new Random(42);
+
+		final EnumSet<ObjectFlag> none = EnumSet.noneOf(ObjectFlag.class);
+
+		for(int dbref = 0; dbref < count; dbref++) {
+			final int loc = (dbref < rooms) ? 0 : random.nextInt(rooms);
+
+			if( dbref < rooms ) {
+				final Room room = new Room(dbref, "Room " + dbref, none, "A room.", 0);
+
+				db.add(room);
+				db.addRoom(room);
+			}
+			else if( dbref % 3 == 0 ) {
+				final Exit exit = new Exit(dbref, "Exit " + dbref, none, "An exit.", loc, random.nextInt(rooms));
+
+				db.add(exit);
+				db.addExit(exit);
+			}
+			else if( dbref % 3 == 1 ) {
+				final Item item = new Item(dbref, "Item " + dbref, none, "An item.", loc);
+
+				db.add(item);
+				db.addItem(item);
+			}
+			else {
+				final Thing thing = new Thing(dbref, "Thing " + dbref, none, "A thing.", loc);
+
+				db.add(thing);
+				db.addThing(thing);
+			}
+		}
+
+		System.out.println("Synthetic world: " + count + " objects, " + rooms + " rooms");
+
+		final int[] targets = new int[lookups];
+
+		for(int n = 0; n < lookups; n++) targets[n] = random.nextInt(rooms);
+
+		long scanTime = 0;
+		long indexTime = 0;
+		long found = 0;
+
+		for(int pass = 0; pass < 2; pass++) {
+			// (the first pass is warm up)
+			long start = System.nanoTime();
+			long a = 0;
+
+			for(final int target : targets) a += scan(db, target);
+
+			if( pass > 0 ) scanTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			long b = 0;
+
+			for(final int target : targets) {
+				final Room room = db.getRoomById(target);
+
+				b += db.getExitsByRoom(room).size() + db.getItemsByLoc(target).size() + db.getThingsForRoom(room).size();
+			}
+
+			if( pass > 0 ) indexTime = System.nanoTime() - start;
+
+			if( a != b ) {
+				System.out.println("FAIL: scanning found " + a + " objects, the index found " + b);
+				System.exit(1);
+			}
+
+			found = b;
+		}
+
+		System.out.println(String.format("room contents (%d lookups, %d objects found)", lookups, found));
+		System.out.println(String.format("  scan:  %8.1f us/lookup", scanTime / 1000.0 / lookups));
+		System.out.println(String.format("  index: %8.1f us/lookup (%.0fx)", indexTime / 1000.0 / lookups, (double) scanTime / indexTime));
+
+		final List<Item> items = db.getItems();
+
+		final long start = System.nanoTime();
+
+		for(int n = 0; n < lookups; n++) {
+			items.get(random.nextInt(items.size())).setLocation( random.nextInt(rooms) );
+		}
+
+		final long moveTime = System.nanoTime() - start;
+
+		System.out.println(String.format("moves: %8.2f us/move", moveTime / 1000.0 / lookups));
+	}
+
+	// what getExitsByRoom, getItemsByLoc and getThingsForRoom used to do
+	private static int scan(final ObjectDB db, final int loc) {
+		int found = 0;
+
+		for (final Exit e : db.getExits()) {
+			if (e.getLocation() == loc) found++;
+		}
+
+		for (final Item item : db.items) {
+			if (item.getLocation() == loc) found++;
+		}
+
+		for (final Thing thing : db.things) {
+			if (thing.getLocation() == loc) found++;
+		}
+
+		return found;
+	}
+}
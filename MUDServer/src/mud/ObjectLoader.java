@@ -2,9 +2,19 @@ package mud;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.gson.JsonArray;
 
@@ -20,7 +30,9 @@ import mud.objects.npcs.Merchant;
 import mud.objects.things.Box;
 import mud.rulesets.d20.Classes;
 import mud.rulesets.d20.Races;
+import mud.utils.StringTable;
 import mud.utils.Utils;
+import mud.game.Race;
 import mud.interfaces.GameModule;
 import mud.magic.Spell;
 import mud.misc.Coins;
@@ -62,7 +74,9 @@ public class ObjectLoader {
 	private final ObjectDB objectDB;
 	
 	private boolean loaded = false;
-	
+
+	private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
 	public ObjectLoader(final MUDServer parent, final ObjectDB objectDB) {
 		this.parent = parent;
 		this.objectDB = objectDB;
@@ -79,374 +93,659 @@ public class ObjectLoader {
 	
 	// TODO fix this so I actually us the logger
 	public void loadObjects(final List<String> in, final Logger logger) {
-		for (final String oInfo : in) {
-			Integer oDBRef = 0, oLocation = 0;
-			String oName = "", oFlags = "", oDesc = "";
-			char oTypeFlag;
-
-			if (oInfo.charAt(0) == '&') { // means to ignore that line
-				debug("`loadObjects` ignoring line: ");
-				debug(oInfo);
-				debug("");
+		loadObjects(in.stream(), logger);
+	}
+	
+	public void loadObjects(final Stream<String> in, final Logger logger) {
+		loadObjects(in, Collections.<Integer, String>emptyMap(), () -> {}, logger);
+	}
+	
+	/**
+	 * Load the database from a stream of lines.
+	 * 
+	 * Loading happens in four phases:
+	 * - parse (in parallel, since lines don't depend on one another) turns
+	 * each line into an object. Nothing outside the line is looked at, so items
+	 * and things (whose types may belong to the game module, and a wand needs
+	 * it's spell) are kept as lines and players and NPCs get their race later.
+	 * - build waits for whatever those need (see ready), then makes the items
+	 * and things, sets races and parses any objects only found in replace
+	 * - register adds everything to the database, in dbref order
+	 * - link resolves the references that need other objects to exist first:
+	 * door keys, zones, exits into their rooms, things into rooms and items
+	 * into rooms, containers, inventories and shops
+	 * 
+	 * @param in        the lines of the database
+	 * @param replace   dbref -> line to use instead of the one in the database (i.e. from the journal)
+	 * @param ready     run before the build phase, should return once the races, spells, zones and game module are loaded
+	 * @param logger
+	 */
+	public void loadObjects(final Stream<String> in, final Map<Integer, String> replace, final Runnable ready, final Logger logger) {
+		final ForkJoinPool pool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+		
+		// dbrefs in replace that were found in the database
+		final Set<Integer> replaced = ConcurrentHashMap.newKeySet();
+		
+		long time = System.nanoTime();
+		
+		final List<Loaded> objects;
+		
+		try {
+			objects = pool.submit(() -> in.parallel().map(line -> replace(line, replace, replaced)).map(this::parse).filter(Objects::nonNull).collect(Collectors.toList())).join();
+		}
+		finally {
+			pool.shutdown();
+			in.close();
+		}
+		
+		time = timed("parse", time);
+		
+		ready.run();
+		
+		time = timed("wait", time);
+		
+		// objects that are only in replace are new, so they go on the end
+		for (final Map.Entry<Integer, String> e : replace.entrySet()) {
+			if ( !replaced.contains(e.getKey()) ) {
+				final Loaded l = parse(e.getValue());
 				
-				// grab the dbref number and remove the prefixing & character
-				oDBRef = Integer.parseInt(oInfo.split("#")[0].replace('&', ' ').trim());
+				if ( l != null ) objects.add(l);
+			}
+		}
+		
+		objects.removeIf(l -> !build(l));
+		
+		time = timed("build", time);
+		
+		for (final Loaded l : objects) register(l.object);
+		
+		time = timed("register", time);
+		
+		for (final Loaded l : objects) link(l);
+		
+		timed("link", time);
+		
+		debug("Loaded " + objects.size() + " objects (" + timings + ")");
+		
+		loaded = true;
+	}
+	
+	private static String replace(final String line, final Map<Integer, String> replace, final Set<Integer> replaced) {
+		if ( replace.isEmpty() ) return line;
+		
+		final int end = line.indexOf('#');
+		final int dbref = Utils.toInt(line.substring(0, (end != -1) ? end : line.length()).replace('&', ' ').trim(), -1);
+		final String line2 = replace.get(dbref);
+		
+		if ( line2 == null ) return line;
+		
+		replaced.add(dbref);
+		
+		return line2;
+	}
+	
+	/**
+	 * Turn one line of the database into an object, without touching the
+	 * database or anything else that's shared.
+	 * 
+	 * @param oInfo
+	 * @return the object and anything it still needs linked, or null if the line isn't valid
+	 */
+	private Loaded parse(final String oInfo) {
+		Integer oDBRef = 0, oLocation = 0;
+		String oName = "", oFlags = "", oDesc = "";
+		char oTypeFlag;
 
-				NullObject no = new NullObject(oDBRef);
-				no.lock(); // lock the NullObject
-				
-				//debug("NULLObject (" + oDBRef + ") Locked?: " + no.isLocked()); // print out the lock state
-				//debug("");
+		if (oInfo.charAt(0) == '&') { // means to ignore that line
+			debug("`loadObjects` ignoring line: " + oInfo, 2);
+			
+			// grab the dbref number and remove the prefixing & character
+			oDBRef = Integer.parseInt(oInfo.split("#")[0].replace('&', ' ').trim());
 
-				objectDB.add(no);
-				
-				continue;
+			NullObject no = new NullObject(oDBRef);
+			no.lock(oInfo); // lock the NullObject (keeping the line)
+			
+			//debug("NULLObject (" + oDBRef + ") Locked?: " + no.isLocked()); // print out the lock state
+			//debug("");
+
+			return new Loaded(no);
+		}
+
+		try {
+			String[] attr = oInfo.split("#");
+			
+			// share names and descriptions with any identical ones already loaded
+			final StringTable strings = objectDB.getStrings();
+			
+			oDBRef = Integer.parseInt(attr[0]);
+			oName = strings.intern(attr[1]);
+			oTypeFlag = attr[2].charAt(0);
+			oFlags = attr[2].substring(1, attr[2].length());
+			oDesc = strings.intern(attr[3]);
+			oLocation = Integer.parseInt(attr[4]);
+			
+			// one call, so lines from different objects don't get mixed together
+			debug("---- Database Object\n" +
+					"DBRef: " + oDBRef + "\n" +
+					"Name: " + oName + "\n" +
+					"Flags: " + oFlags + "\n" +
+					"Description: " + oDesc + "\n" +
+					"Location: " + oLocation + "\n", 3);
+
+			if (oTypeFlag == 'C') {
+				/*
+				 * int cType = Integer.parseInt(attr[6]);
+				 * 
+				 * CreatureType ct = CreatureType.values()[cType];
+				 * 
+				 * if (ct == CreatureType.HORSE) { final Horse horse = new
+				 * Horse(); //final Creature cre = new Creature(oDBRef,
+				 * oName, ObjectFlag.getFlagsFromString(oFlags), oDesc,
+				 * oLocation); horse.setCreatureType( ct );
+				 * 
+				 * // add the creature to the in-memory database and to the
+				 * list of creatures objectDB.add(horse);
+				 * objectDB.addCreature(horse); } else { final Creature cre
+				 * = new Creature(oDBRef, oName,
+				 * ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
+				 * 
+				 * // add the creature to the in-memory database and to the
+				 * list of creatures objectDB.add(cre);
+				 * objectDB.addCreature(cre); }
+				 */
+
+				final Creature cre = new Creature(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
+
+				// add the creature to the in-memory database and to the
+				// list of creatures
+				return new Loaded(cre);
 			}
+			else if (oTypeFlag == 'P') {
+				// Player
+				Player player = loadPlayer(oInfo);
+				
+				debug("log.debug (db entry): " + player.toDB(), 2);
 
-			try {
-				String[] attr = oInfo.split("#");
+				// races aren't loaded yet
+				final Loaded loaded = new Loaded(player);
 				
-				oDBRef = Integer.parseInt(attr[0]);
-				oName = attr[1];
-				oTypeFlag = attr[2].charAt(0);
-				oFlags = attr[2].substring(1, attr[2].length());
-				oDesc = attr[3];
-				oLocation = Integer.parseInt(attr[4]);
+				loaded.race = Utils.toInt(attr[9], Races.NONE.getId());
 				
-				debug("---- Database Object");
-				debug("DBRef: " + oDBRef);
-				debug("Name: " + oName);
-				debug("Flags: " + oFlags);
-				debug("Description: " + oDesc);
-				debug("Location: " + oLocation);
-				debug("");
-
-				if (oTypeFlag == 'C') {
-					/*
-					 * int cType = Integer.parseInt(attr[6]);
-					 * 
-					 * CreatureType ct = CreatureType.values()[cType];
-					 * 
-					 * if (ct == CreatureType.HORSE) { final Horse horse = new
-					 * Horse(); //final Creature cre = new Creature(oDBRef,
-					 * oName, ObjectFlag.getFlagsFromString(oFlags), oDesc,
-					 * oLocation); horse.setCreatureType( ct );
-					 * 
-					 * // add the creature to the in-memory database and to the
-					 * list of creatures objectDB.add(horse);
-					 * objectDB.addCreature(horse); } else { final Creature cre
-					 * = new Creature(oDBRef, oName,
-					 * ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
-					 * 
-					 * // add the creature to the in-memory database and to the
-					 * list of creatures objectDB.add(cre);
-					 * objectDB.addCreature(cre); }
-					 */
-
-					final Creature cre = new Creature(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
-
-					// add the creature to the in-memory database and to the
-					// list of creatures
-					objectDB.add(cre);
-					objectDB.addCreature(cre);
-				}
-				else if (oTypeFlag == 'P') {
-					// Player
-					Player player = loadPlayer(oInfo);
+				return loaded;
+			}
+			else if (oFlags.equals("IKV")) {
+				// NPC - Innkeeper
+				Innkeeper ik = new Innkeeper(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, "Merchant",
+						"VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
+
+				debug("log.debug (db entry): " + ik.toDB(), 2);
+				debug("Innkeeper", 2);
+
+				return new Loaded(ik);
+			}
+			
+			// Exit(String tempName, String tempFlags, String tempDesc, int
+			// tempLoc, int tempDBREF, int tempDestination)
+			else if (oTypeFlag == 'E') {
+				// Exit
+				//String oDest = attr[5];
+				int eType = Integer.parseInt(attr[6]);
+
+				ExitType et = ExitType.values()[eType];
+
+				if (et == ExitType.STD) {
+					// Standard
+					int oDest = Integer.parseInt(attr[5]);
+					
+					// [A]bsolutely [E]verything/[Leave];ae/leave
+					String oAlias = "";
 					
-					debug("log.debug (db entry): " + player.toDB(), 2);
+					if( oName.indexOf(';') != -1 ) {
+						final String[] temp = oName.split(";");
+						
+						oName = oName.substring(0, oName.indexOf(';'));
+						
+						if( temp.length > 1 ) {
+							oAlias = temp[1];
+						}
+					}
 
-					objectDB.add(player);
-					objectDB.addPlayer(player);
-				}
-				else if (oFlags.equals("IKV")) {
-					// NPC - Innkeeper
-					Innkeeper ik = new Innkeeper(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, "Merchant",
-							"VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
+					Exit exit = new Exit(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
+					
+					if( !oAlias.equals("") ) exit.addAlias(oAlias);
 
-					debug("log.debug (db entry): " + ik.toDB(), 2);
-					debug("Innkeeper", 2);
+					debug("log.debug (db entry): " + exit.toDB(), 2);
 
-					objectDB.add(ik);
-					objectDB.addNPC(ik);
+					return new Loaded(exit);
 				}
-				
-				// Exit(String tempName, String tempFlags, String tempDesc, int
-				// tempLoc, int tempDBREF, int tempDestination)
-				else if (oTypeFlag == 'E') {
-					// Exit
-					//String oDest = attr[5];
-					int eType = Integer.parseInt(attr[6]);
+				else if (et == ExitType.DOOR) {
+					// Door
+					int oDest = Integer.parseInt(attr[5]);
+					
+					int lockState = Utils.toInt(attr[7], 0); //valid lock states are: 0, 1
+					int keyDBRef = Utils.toInt(attr[8], -1);
+					
+					debug("   Location: " + oLocation, 3);
+					debug("Destination: "  + oDest, 3);
+					
+					String[] temp = oName.split(";");
+					
+					debug(Arrays.asList(temp).toString(), 3);
+					
+					oName = temp[0];
 
-					ExitType et = ExitType.values()[eType];
+					Door door = new Door(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
 
-					if (et == ExitType.STD) {
-						// Standard
-						int oDest = Integer.parseInt(attr[5]);
+					if (temp.length == 2) {
+						String[] names = temp[0].split("/");
+						String[] aliases = temp[1].split("/");
 						
-						// [A]bsolutely [E]verything/[Leave];ae/leave
-						String oAlias = "";
+						debug("  Names: " + Arrays.asList(names), 3);
+						debug("Aliases: " + Arrays.asList(aliases), 3);
 						
-						if( oName.indexOf(';') != -1 ) {
-							final String[] temp = oName.split(";");
-							
-							oName = oName.substring(0, oName.indexOf(';'));
-							
-							if( temp.length > 1 ) {
-								oAlias = temp[1];
+						// set up any aliases
+						if (aliases.length > 0) {
+							for (final String a : aliases[0].split(",")) door.addAlias(names[0] + "|" + a);
+
+							if (aliases.length == 2) {
+								for (String a : aliases[1].split(",")) door.addAlias(names[1] + "|" + a);
 							}
 						}
+					}
+					
+					if ( lockState == 1 ) door.lock();
+					
+					door.init();
+					
+					debug( "exit (origin): " + door.getName(oLocation), 3 );
+					debug( "exit (dest): " + door.getName(oDest), 3 );
+					
+					debug( door.side1.toString(), 3 );
+					debug( door.side2.toString(), 3 );
+					
+					debug("log.debug (db entry): " + door.toDB(), 2);
 
-						Exit exit = new Exit(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
-						
-						if( !oAlias.equals("") ) exit.addAlias(oAlias);
+					// the key is just another item, which may not exist yet
+					final Loaded loaded = new Loaded(door);
+					
+					loaded.key = keyDBRef;
+					
+					return loaded;
+				}
+				else if (et == ExitType.PORTAL) {
+					// Portal
+					Portal portal;
 
-						debug("log.debug (db entry): " + exit.toDB(), 2);
+					int pType = Utils.toInt(attr[7], -1);
+					PortalType oPortalType = PortalType.values()[pType];
 
-						objectDB.add(exit);
-						objectDB.addExit(exit);
-					}
-					else if (et == ExitType.DOOR) {
-						// Door
-						int oDest = Integer.parseInt(attr[5]);
-						
-						int lockState = Utils.toInt(attr[7], 0); //valid lock states are: 0, 1
-						int keyDBRef = Utils.toInt(attr[8], -1);
-						
-						System.out.println("   Location: " + oLocation);
-						System.out.println("Destination: "  + oDest);
-						
-						String[] temp = oName.split(";");
-						
-						System.out.println(Arrays.asList(temp));
-						
-						oName = temp[0];
-
-						Door door = new Door(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
-
-						if (temp.length == 2) {
-							String[] names = temp[0].split("/");
-							String[] aliases = temp[1].split("/");
-							
-							System.out.println("  Names: " + Arrays.asList(names));
-							System.out.println("Aliases: " + Arrays.asList(aliases));
-							
-							// set up any aliases
-							if (aliases.length > 0) {
-								for (final String a : aliases[0].split(",")) door.addAlias(names[0] + "|" + a);
-
-								if (aliases.length == 2) {
-									for (String a : aliases[1].split(",")) door.addAlias(names[1] + "|" + a);
-								}
-							}
-						}
+					// here we assume a typed but unkeyed portal
+					if (oPortalType == PortalType.STD) {
+						// Standard
+						int oDestination = Integer.parseInt(attr[5]);
+
+						portal = new Portal(PortalType.STD, oLocation, oDestination);
 						
-						if ( lockState == 1 ) door.lock();
+						portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
+						portal.setDesc(oDesc);
+
+						portal.name = attr[1]; // name
+						portal.setPosition(0, 0); // set x and y coordinate of position
 						
-						if ( keyDBRef != -1 ) {
-							final Item item = objectDB.getItem(keyDBRef);
-							
-							if( item != null ) door.setKey(item);
-						}
+						portal.setKey("test");
 						
-						door.init();
+						debug("log.debug (db entry): " + portal.toDB(), 2);
 						
-						debug( "exit (origin): " + door.getName(oLocation) );
-						debug( "exit (dest): " + door.getName(oDest) );
+						return new Loaded(portal);
+					}
+					else if (oPortalType == PortalType.RANDOM) {
+						// Random
+						int[] oDestinations = Utils.stringsToInts(attr[5].split(","));
+
+						portal = new Portal(PortalType.RANDOM, oLocation, oDestinations);
 						
-						debug( door.side1.toString() );
-						debug( door.side2.toString() );
+						portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
+						portal.setDesc(oDesc);
 						
-						debug("log.debug (db entry): " + door.toDB(), 2);
+						portal.name = attr[1]; // name
+						portal.setPosition(0, 0); // set x and y coordinate of position
 
-						objectDB.add(door);
-						objectDB.addExit(door);
-					}
-					else if (et == ExitType.PORTAL) {
-						// Portal
-						Portal portal;
-
-						int pType = Utils.toInt(attr[7], -1);
-						PortalType oPortalType = PortalType.values()[pType];
-
-						// here we assume a typed but unkeyed portal
-						if (oPortalType == PortalType.STD) {
-							// Standard
-							int oDestination = Integer.parseInt(attr[5]);
-
-							portal = new Portal(PortalType.STD, oLocation, oDestination);
-							
-							portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
-							portal.setDesc(oDesc);
-
-							portal.name = attr[1]; // name
-							portal.setPosition(0, 0); // set x and y coordinate of position
-							
-							portal.setKey("test");
-							
-							debug("log.debug (db entry): " + portal.toDB(), 2);
-							
-							objectDB.add(portal);
-							objectDB.addExit(portal);
-						}
-						else if (oPortalType == PortalType.RANDOM) {
-							// Random
-							int[] oDestinations = Utils.stringsToInts(attr[5].split(","));
-
-							portal = new Portal(PortalType.RANDOM, oLocation, oDestinations);
-							
-							portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
-							portal.setDesc(oDesc);
-							
-							portal.name = attr[1]; // name
-							portal.setPosition(0, 0); // set x and y coordinate of position
-
-							portal.setKey("test");
-
-							debug("log.debug (db entry): " + portal.toDB(), 2);
-							
-							objectDB.add(portal);
-							objectDB.addExit(portal);
-						}
-						else {
-							debug("log.debug (error): Problem with object #" + oDBRef + " - invalid PortalType", 2);
-						}
+						portal.setKey("test");
+
+						debug("log.debug (db entry): " + portal.toDB(), 2);
+						
+						return new Loaded(portal);
 					}
 					else {
-						debug("log.debug (error): Problem with object #" + oDBRef, 2);
+						debug("log.debug (error): Problem with object #" + oDBRef + " - invalid PortalType", 2);
 					}
 				}
-				else if (oTypeFlag == 'N') {
-					// NPC
-					if (oFlags.contains("M")) {
-						Merchant merchant = new Merchant(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), "A merchant.",
-								"Merchant", "VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
+				else {
+					debug("log.debug (error): Problem with object #" + oDBRef, 2);
+				}
+			}
+			else if (oTypeFlag == 'N') {
+				// NPC
+				if (oFlags.contains("M")) {
+					Merchant merchant = new Merchant(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), "A merchant.",
+							"Merchant", "VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
 
-						debug("log.debug (db entry): " + merchant.toDB(), 2);
-						debug("Merchant", 2);
+					debug("log.debug (db entry): " + merchant.toDB(), 2);
+					debug("Merchant", 2);
 
-						objectDB.add(merchant);
-						objectDB.addNPC(merchant);
-					}
-					else {
+					return new Loaded(merchant);
+				}
+				else {
 
-						// NPC npc = new NPC(oDBRef, oName, oDesc, oLocation,
-						// "npc");
-						NPC npc = loadNPC(oInfo);
-						npc.setCName("npc");
+					// NPC npc = new NPC(oDBRef, oName, oDesc, oLocation,
+					// "npc");
+					NPC npc = loadNPC(oInfo);
+					npc.setCName("npc");
 
-						// npc.addQuest(new Quest("Test", "Test", new
-						// Task("Test")));
+					// npc.addQuest(new Quest("Test", "Test", new
+					// Task("Test")));
 
-						debug("log.debug (db entry): " + npc.toDB(), 2);
+					debug("log.debug (db entry): " + npc.toDB(), 2);
 
-						objectDB.add(npc);
-						objectDB.addNPC(npc);
-					}
+					final Loaded loaded = new Loaded(npc);
+					
+					// races aren't loaded yet (an invalid race number is Races.NONE already)
+					try                                      { loaded.race = Integer.parseInt(attr[9]); }
+					catch (final NumberFormatException nfe) { loaded.race = -1; }
+					
+					return loaded;
 				}
-				else if (oTypeFlag == 'R') {
-					// Room
-					String roomType = attr[5];
-					int[] dimensions = Utils.stringsToInts(attr[6].split(","));
-					int zoneId = Utils.toInt(attr[8], -1);
+			}
+			else if (oTypeFlag == 'R') {
+				// Room
+				String roomType = attr[5];
+				int[] dimensions = Utils.stringsToInts(attr[6].split(","));
+				int zoneId = Utils.toInt(attr[8], -1);
 
-					final Room room = new Room(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
+				final Room room = new Room(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
 
-					room.setRoomType(RoomType.fromLetter(roomType.charAt(0)));
+				room.setRoomType(RoomType.fromLetter(roomType.charAt(0)));
 
-					// set room dimensions (x, y, z)
-					room.setDimensions(dimensions[0], dimensions[1], dimensions[2]);
+				// set room dimensions (x, y, z)
+				room.setDimensions(dimensions[0], dimensions[1], dimensions[2]);
 
-					// set zone
-					if (zoneId != -1) {
-						debug("Zone ID: " + zoneId);
+				if (room.getRoomType().equals(RoomType.OUTSIDE)) {
+					room.getProperties().put("sky", "The sky is clear and flecked with stars.");
+				}
+				
+				debug("log.debug (db entry): " + room.toDB(), 2);
 
-						final Zone zone = parent.getZone(zoneId);
-						
-						if( zone != null ) {
-							room.setZone(zone);
-							zone.addRoom(room);
-							
-							//room.setZone(parent.getZone(zoneId));
-							//parent.getZone(zoneId).addRoom(room);
-						}
-						
-						debug((zone == null) ? "Zone is NULL." : "Zone in NOT NULL.");
-					}
+				// zones get rooms added to them, so that waits for linking
+				final Loaded loaded = new Loaded(room);
+				
+				loaded.zone = zoneId;
+				
+				return loaded;
+			}
+			else if (oTypeFlag == 'T' || oTypeFlag == 'I') {
+				// Thing/Item (made in the build phase)
+				return new Loaded(oInfo, oTypeFlag);
+			}
+			else if (oTypeFlag == 'Z') { // Zone
+				// not sure about this bit, for some reason I made 'Z' a
+				// TypeFlag
+				// for a Zone, but Zone isn't presently a MUDObject and I'm
+				// a little
+				// uncertain as to whether it should be.
+				//
+				// i'd like to load them on startup, but MUDObjects chiefly
+				// handle "real" objects
+				// in the world rather than abstract concepts. Of course,
+				// Room kind of bends
+				// the boundary in that defines an abstract space and Zone
+				// is kind of like a super room...
+				/*
+				 * Zone zone = loadZone();
+				 * 
+				 * objectDB.add(zone);
+				 */
 
-					if (room.getRoomType().equals(RoomType.OUTSIDE)) {
-						room.getProperties().put("sky", "The sky is clear and flecked with stars.");
-					}
-					
-					debug("log.debug (db entry): " + room.toDB(), 2);
+			}
+			
+			else if ( oName.equals("null") ) {
+				NullObject Null = new NullObject(oDBRef);
+				
+				debug("log.debug (db entry): " + Null.toDB() + " [Found NULLObject]", 2);
+				
+				return new Loaded(Null);
+			}
+		}
+		catch (ConcurrentModificationException cme)   { cme.printStackTrace();    }
+		catch (ArrayIndexOutOfBoundsException aioobe) { aioobe.printStackTrace(); }
 
-					objectDB.add(room);
-					objectDB.addRoom(room);
-				}
-				else if (oTypeFlag == 'T') {
-					// Thing
-					try {
-						final Thing thing = loadThing(oInfo);
-						
-						debug("log.debug (db entry): " + thing.toDB(), 2);
-						
-						objectDB.add(thing);
-						objectDB.addThing(thing);
-					}
-					catch (final InvalidThingTypeException itte) {
-						itte.printStackTrace();
-						debug("log.debug (error): " + itte.getMessage());
-					}
-				}
-				else if (oTypeFlag == 'I') {
-					// Item
-					try {
-						final Item item = loadItem(oInfo);
-						
-						debug("log.debug (db entry): " + item.toDB(), 2);
-						
-						objectDB.add(item);
-						objectDB.addItem(item);
-					}
-					catch(final InvalidItemTypeException iite) {
-						iite.printStackTrace();
-						debug("log.debug (error): " + iite.getMessage());
-					}
-				}
-				else if (oTypeFlag == 'Z') { // Zone
-					// not sure about this bit, for some reason I made 'Z' a
-					// TypeFlag
-					// for a Zone, but Zone isn't presently a MUDObject and I'm
-					// a little
-					// uncertain as to whether it should be.
-					//
-					// i'd like to load them on startup, but MUDObjects chiefly
-					// handle "real" objects
-					// in the world rather than abstract concepts. Of course,
-					// Room kind of bends
-					// the boundary in that defines an abstract space and Zone
-					// is kind of like a super room...
-					/*
-					 * Zone zone = loadZone();
-					 * 
-					 * objectDB.add(zone);
-					 */
+		return null;
+	}
 
-				}
+	/**
+	 * Finish making a parsed object, now that the races, spells, zones and
+	 * game module are loaded.
+	 * 
+	 * @param l
+	 * @return false if there's nothing to load (the line wasn't valid)
+	 */
+	private boolean build(final Loaded l) {
+		if ( l.type == 'T' ) {
+			try {
+				l.object = loadThing(l.line);
 				
-				else if ( oName.equals("null") ) {
-					NullObject Null = new NullObject(oDBRef);
-					
-					debug("log.debug (db entry): " + Null.toDB() + " [Found NULLObject]", 2);
-					
-					objectDB.add(Null);
-				}
+				debug("log.debug (db entry): " + l.object.toDB(), 2);
+			}
+			catch (final InvalidThingTypeException itte) {
+				itte.printStackTrace();
+				debug("log.debug (error): " + itte.getMessage());
+			}
+		}
+		else if ( l.type == 'I' ) {
+			try {
+				l.object = loadItem(l.line);
+				
+				debug("log.debug (db entry): " + l.object.toDB(), 2);
+			}
+			catch(final InvalidItemTypeException iite) {
+				iite.printStackTrace();
+				debug("log.debug (error): " + iite.getMessage());
+			}
+			catch (final ArrayIndexOutOfBoundsException aioobe) {
+				aioobe.printStackTrace();
 			}
-			catch (ConcurrentModificationException cme)   { cme.printStackTrace();    }
-			catch (ArrayIndexOutOfBoundsException aioobe) { aioobe.printStackTrace(); }
 		}
 		
-		loaded = true;
+		if ( l.race != -1 && l.object instanceof Player ) {
+			final Race race = parent.getRace(l.race);
+			
+			if ( race != null ) ((Player) l.object).setRace(race);
+			
+			debug("Race: " + l.race + " ( " + (race != null ? race.getName() : "null") + " )", 3);
+		}
+		
+		return l.object != null;
+	}
+
+	/**
+	 * Add a parsed object to the database and to the list for it's type.
+	 *
+	 * @param object
+	 */
+	private void register(final MUDObject object) {
+		objectDB.add(object);
+
+		// NOTE: NPC extends Player, so it needs to be checked first
+		if      (object instanceof NPC)      objectDB.addNPC((NPC) object);
+		else if (object instanceof Player)   objectDB.addPlayer((Player) object);
+		else if (object instanceof Creature) objectDB.addCreature((Creature) object);
+		else if (object instanceof Exit)     objectDB.addExit((Exit) object);
+		else if (object instanceof Room)     objectDB.addRoom((Room) object);
+		else if (object instanceof Thing)    objectDB.addThing((Thing) object);
+		else if (object instanceof Item)     objectDB.addItem((Item) object);
+	}
+
+	/**
+	 * Resolve the references a parsed object has to others, now that everything
+	 * is in the database.
+	 *
+	 * @param l
+	 */
+	private void link(final Loaded l) {
+		if ( l.key != -1 && l.object instanceof Door ) {
+			final Item item = objectDB.getItem(l.key);
+
+			if( item != null ) ((Door) l.object).setKey(item);
+		}
+
+		// set zone
+		if ( l.zone != -1 && l.object instanceof Room ) {
+			final Room room = (Room) l.object;
+			final Zone zone = parent.getZone(l.zone);
+
+			debug("Zone ID: " + l.zone, 2);
+
+			if( zone != null ) {
+				room.setZone(zone);
+				zone.addRoom(room);
+			}
+
+			debug((zone == null) ? "Zone is NULL." : "Zone in NOT NULL.", 2);
+		}
+		
+		if ( l.object instanceof Exit )  linkExit((Exit) l.object);
+		if ( l.object instanceof Thing ) linkThing((Thing) l.object);
+		if ( l.object instanceof Item )  linkItem((Item) l.object);
+	}
+	
+	/**
+	 * Attach an exit to the room(s) it's part of. A door is in both the rooms
+	 * it connects, any other exit only the one it's in. Portals also listen to
+	 * what's said in their room(s).
+	 * 
+	 * @param exit
+	 */
+	private void linkExit(final Exit exit) {
+		final Room room = objectDB.getRoomById(exit.getLocation());
+		
+		if (room != null) {
+			room.addExit(exit);
+			debug("Exit " + Utils.padLeft("" + exit.getDBRef(), ' ', 4) + " added to room " + room.getDBRef() + ".", 2);
+		}
+		
+		if ( exit.getExitType() == ExitType.DOOR ) {
+			final Room room1 = objectDB.getRoomById(exit.getDestination());
+			
+			if (room1 != null) {
+				room1.addExit(exit);
+				debug("Exit " + Utils.padLeft("" + exit.getDBRef(), ' ', 4) + " added to room " + room1.getDBRef() + ". (Door)", 2);
+			}
+		}
+		else if ( exit.getExitType() == ExitType.PORTAL ) {
+			final Portal portal = (Portal) exit;
+			
+			parent.getPortals().add(portal);
+			
+			switch(portal.getPortalType()) {
+			case STD:
+				addSayEventListener(portal.getOrigin(), portal);
+				addSayEventListener(portal.getDestination(), portal);
+				break;
+			case RANDOM:
+				addSayEventListener(portal.getOrigin(), portal);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+	
+	private void addSayEventListener(final int dbref, final Portal portal) {
+		final Room room = objectDB.getRoomById(dbref);
+		
+		if (room != null) room.addSayEventListener(portal);
+	}
+	
+	/**
+	 * Put a thing in the room it's located in.
+	 * 
+	 * @param thing
+	 */
+	private void linkThing(final Thing thing) {
+		final Room room = objectDB.getRoomById(thing.getLocation());
+		
+		if (room != null) room.addThing( thing );
+	}
+	
+	/**
+	 * Put an item in whatever it's located in: a room, a container or a
+	 * player's inventory (a merchant's stock, for NPCs).
+	 * 
+	 * @param item
+	 */
+	private void linkItem(final Item item) {
+		final MUDObject obj = objectDB.getById(item.getLocation());
+		
+		if (obj instanceof Room) {
+			((Room) obj).addItem(item);
+		}
+		else if (obj instanceof Container) {
+			((Container) obj).insert(item);
+		}
+		else if (obj instanceof Player) {
+			if (obj instanceof Merchant) {
+				((Merchant) obj).addToStock(item);
+				
+				debug("Merchant (" + obj.getName() + ")", 2);
+			}
+			else if ( !(obj instanceof NPC) ) {
+				((Player) obj).getInventory().add(item);
+			}
+			
+			debug("Item Loaded", 2);
+		}
+	}
+
+	private long timed(final String phase, final long start) {
+		final long now = System.nanoTime();
+
+		timings.put(phase, TimeUnit.NANOSECONDS.toMillis(now - start));
+
+		return now;
+	}
+
+	/**
+	 * How long each phase of the last load took (in milliseconds).
+	 *
+	 * @return
+	 */
+	public Map<String, Long> getTimings() {
+		return Collections.unmodifiableMap(timings);
+	}
+
+	/**
+	 * An object fresh out of the parser, plus the dbrefs of things it needs
+	 * linked to once the whole database is loaded. Items and things are just
+	 * the line until the build phase.
+	 */
+	private static final class Loaded {
+		private MUDObject object;
+
+		private String line = null; // database line (items, things)
+		private char type = 0;      // type flag (items, things)
+
+		private int key = -1;  // key (doors)
+		private int zone = -1; // zone (rooms)
+		private int race = -1; // race (players, npcs)
+
+		private Loaded(final MUDObject object) {
+			this.object = object;
+		}
+
+		private Loaded(final String line, final char type) {
+			this.object = null;
+			this.line = line;
+			this.type = type;
+		}
 	}
 
 	/*
@@ -507,22 +806,21 @@ public class ObjectLoader {
 
 		Player player = new Player(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, "", oPassword, "IC", oStats, Coins.fromArray(oMoney));
 
-		int access, raceNum, classNum, player_status;
+		int access, classNum, player_status;
 
 		/* Set Player Permissions */
 		access = Utils.toInt(attr[8], Constants.USER);
 		player.setAccess(access);
 
 		/* Set Player Race */
-		raceNum = Utils.toInt(attr[9], Races.NONE.getId());
-		//player.setRace(Races.getRace(raceNum));
-		player.setRace(parent.getRace(raceNum));
-		System.out.println("Race: " + raceNum + " ( " + parent.getRace(raceNum).getName() + " )");
+		// NOTE: done when loading (see build), races may not be loaded yet
+		//raceNum = Utils.toInt(attr[9], Races.NONE.getId());
+		//player.setRace(parent.getRace(raceNum));
 
 		/* Set Player Class */
 		classNum = Utils.toInt(attr[10], Classes.NONE.getId());
 		player.setPClass(Classes.getClass(classNum));
-		System.out.println("Class: " + classNum + " ( " + Classes.getClass(classNum).getName() + " )");
+		debug("Class: " + classNum + " ( " + Classes.getClass(classNum).getName() + " )", 3);
 
 		/* Set Status */
 		player.setStatus(attr[11]);
@@ -589,10 +887,9 @@ public class ObjectLoader {
 		//raceNum = Utils.toInt(attr[9], alt);
 		
 		// TODO resolve issue
+		// NOTE: a valid race number is set when loading (see build), races may not be loaded yet
 		try {
 			raceNum = Integer.parseInt(attr[9]);
-			//npc.setRace(Races.getRace(raceNum));
-			npc.setRace(parent.getRace(raceNum));
 		}
 		catch (final NumberFormatException nfe) {
 			nfe.printStackTrace();
@@ -620,9 +917,7 @@ public class ObjectLoader {
 	final private Item loadItem(final String itemData) throws InvalidItemTypeException {
 		String[] attr = itemData.split("#");
 		
-		System.out.println("");
-		System.out.println("debug(itemData): " + itemData);
-		System.out.println("");
+		debug("debug(itemData): " + itemData, 3);
 		
 		Integer oDBRef = Integer.parseInt(attr[0]);
 		String oName = attr[1];
@@ -639,26 +934,23 @@ public class ObjectLoader {
 		final ItemType it = getItemType(itemType);
 		final SlotType st = getSlotType(slotType);
 		
-		System.out.println("ItemType ID: " + itemType);
-		System.out.println("SlotType ID: " + slotType);
+		debug("ItemType ID: " + itemType, 3);
+		debug("SlotType ID: " + slotType, 3);
 		
 		if( it != null ) {
-			System.out.println("ItemType: " + it.getName());
-			System.out.println("");
+			debug("ItemType: " + it.getName(), 3);
 		}
 		else throw new InvalidItemTypeException("No such ItemType (" + itemType + ")");
 		
 		if( st != null ) {
-			System.out.println("SlotType: " + st.getName());
-			System.out.println("");
+			debug("SlotType: " + st.getName(), 3);
 		}
 		
 		// module level itemtype handling...
 		if( it.getId() >= 16 ) {
 			final Item item = parent.getGameModule().loadItem(itemData);
 
-			System.out.println("Item DBRef: " + item.getDBRef());
-			System.out.println("");
+			debug("Item DBRef: " + item.getDBRef(), 3);
 
 			return item;
 		}
@@ -794,9 +1086,7 @@ public class ObjectLoader {
 	private final Thing loadThing(final String thingData) throws InvalidThingTypeException {
 		String[] attr = thingData.split("#");
 		
-		System.out.println("");
-		System.out.println("debug(thingData): " + thingData);
-		System.out.println("");
+		debug("debug(thingData): " + thingData, 3);
 		
 		Integer oDBRef = Integer.parseInt(attr[0]);
 		String oName = attr[1];
@@ -813,11 +1103,10 @@ public class ObjectLoader {
 		
 		final ThingType tt = getThingType(thingType);
 		
-		System.out.println("ThingType ID: " + thingType);
+		debug("ThingType ID: " + thingType, 3);
 		
 		if( tt != null ) {
-			System.out.println("ThingType: " + tt.getName());
-			System.out.println("");
+			debug("ThingType: " + tt.getName(), 3);
 		}
 		else throw new InvalidThingTypeException("No such ThingType ( " + thingType + ")");
 
@@ -825,8 +1114,7 @@ public class ObjectLoader {
 		if( tt.getId() >= 16 ) {
 			final Thing thing = parent.getGameModule().loadThing(thingData);
 			
-			System.out.println("Thing DBRef: " + thing.getDBRef());
-			System.out.println("");
+			debug("Thing DBRef: " + thing.getDBRef(), 3);
 			
 			return thing;
 		}
@@ -0,0 +1,173 @@
+package mud;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The storage behind ObjectDB. Since dbrefs are handed out in order (and
+ * reused when objects are recycled) they are dense, so objects are kept in
+ * an array indexed by dbref instead of a map keyed by boxed Integers.
+ * 
+ * Each slot also has a set of tags saying which of ObjectDB's collections
+ * the object belongs to (the database as a whole, rooms, exits, etc), which
+ * replaces having a separate dbref -> object map for each type.
+ * 
+ * @author Jeremy
+ *
+ */
+final class ObjectTable {
+	// tags
+	static final int MAIN     = 1;   // in the database itself (getById)
+	static final int ROOM     = 2;
+	static final int EXIT     = 4;
+	static final int CREATURE = 8;
+	static final int NPC      = 16;
+	static final int ITEM     = 32;
+	static final int THING    = 64;
+	static final int PLAYER   = 128;
+
+	private static final int TAGS = 8;
+
+	private MUDObject[] objects = new MUDObject[256];
+	private byte[] tags = new byte[256];
+
+	private int limit = 0; // one past the highest occupied slot
+
+	private final int[] counts = new int[TAGS]; // number of slots with each tag
+
+	/**
+	 * Get the object with the given dbref, if it has the given tag.
+	 * 
+	 * @param dbref
+	 * @param tag
+	 * @return the object, or null
+	 */
+	MUDObject get(final int dbref, final int tag) {
+		if( dbref < 0 || dbref >= limit ) return null;
+
+		return ((tags[dbref] & tag) != 0) ? objects[dbref] : null;
+	}
+
+	/**
+	 * Is this exact object in the table with the given tag?
+	 * 
+	 * @param object
+	 * @param tag
+	 * @return
+	 */
+	boolean contains(final MUDObject object, final int tag) {
+		final int dbref = object.getDBRef();
+
+		return get(dbref, tag) == object;
+	}
+
+	/**
+	 * Put an object into it's slot with the given tag. If the slot held a
+	 * different object, that object (and all of it's tags) are replaced.
+	 * 
+	 * @param object
+	 * @param tag
+	 */
+	void put(final MUDObject object, final int tag) {
+		final int dbref = object.getDBRef();
+
+		if( dbref < 0 ) return;
+
+		ensureCapacity(dbref + 1);
+
+		if( objects[dbref] != object ) {
+			setTags(dbref, 0);
+
+			objects[dbref] = object;
+		}
+
+		setTags(dbref, (tags[dbref] & 0xFF) | tag);
+
+		if( dbref >= limit ) limit = dbref + 1;
+	}
+
+	/**
+	 * Remove a tag from an object. Once it has no tags left the slot
+	 * is emptied.
+	 * 
+	 * @param object
+	 * @param tag
+	 * @return true if the object was in the table with that tag
+	 */
+	boolean remove(final MUDObject object, final int tag) {
+		if( !contains(object, tag) ) return false;
+
+		final int dbref = object.getDBRef();
+
+		setTags(dbref, (tags[dbref] & 0xFF) & ~tag);
+
+		if( tags[dbref] == 0 ) {
+			objects[dbref] = null;
+
+			while( limit > 0 && objects[limit - 1] == null ) limit--;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get all the objects with the given tag, in dbref order.
+	 * 
+	 * @param tag
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends MUDObject> List<T> getAll(final int tag) {
+		final List<T> result = new ArrayList<T>( size(tag) );
+
+		for(int i = 0; i < limit; i++) {
+			if( (tags[i] & tag) != 0 ) result.add( (T) objects[i] );
+		}
+
+		return result;
+	}
+
+	int size(final int tag) {
+		return counts[ Integer.numberOfTrailingZeros(tag) ];
+	}
+
+	void clear() {
+		Arrays.fill(objects, 0, limit, null);
+		Arrays.fill(tags, 0, limit, (byte) 0);
+		Arrays.fill(counts, 0);
+
+		limit = 0;
+	}
+
+	private void setTags(final int dbref, final int newTags) {
+		final int changed = (tags[dbref] & 0xFF) ^ newTags;
+
+		for(int t = 0; t < TAGS; t++) {
+			if( (changed & (1 << t)) != 0 ) {
+				counts[t] += ((newTags & (1 << t)) != 0) ? 1 : -1;
+			}
+		}
+
+		tags[dbref] = (byte) newTags;
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if( capacity > objects.length ) {
+			final int newLength = Math.max(capacity, objects.length * 2);
+
+			objects = Arrays.copyOf(objects, newLength);
+			tags = Arrays.copyOf(tags, newLength);
+		}
+	}
+}
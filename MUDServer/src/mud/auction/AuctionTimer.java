@@ -1,35 +1,25 @@
 package mud.auction;
 
-import java.util.TimerTask;
-
 import mud.auction.Auction;
-import mud.utils.Counter;
+import mud.utils.GameTimer;
 
-public class AuctionTimer extends TimerTask {
+public class AuctionTimer extends GameTimer {
 	private Auction auction;
-	private Counter time;
 	
 	public AuctionTimer(final Auction auction) {
-		super();
+		super( auction.duration );
 		this.auction = auction;
-		this.time = new Counter( auction.duration );
 	}
 	
 	public Auction getAuction() {
 		return this.auction;
 	}
 	
-	public int getTimeRemaining() {
-		return this.time.getValue();
-	}
-
 	@Override
-	public void run() {
-		if( this.time.getValue() > 0 ) {
-			// decrement time
-			this.time.decrement(); // count down a "second"
-			this.auction.remaining--;
-		}
-		else { cancel(); }
+	public int getTimeRemaining() {
+		// keep the auction's idea of the time left current
+		this.auction.remaining = super.getTimeRemaining();
+		
+		return this.auction.remaining;
 	}
-}
\ No newline at end of file
+}
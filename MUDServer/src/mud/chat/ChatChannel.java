@@ -18,9 +18,10 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 */
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import mud.objects.Player;
@@ -44,7 +45,11 @@ public class ChatChannel {
 	private String text_color;    // the color of the channel text
 	
 	private List<Player> listeners;  // players who are listening to the channel
-	private Queue<Message> messages; // messages 'written' to the channel
+	private BlockingQueue<Message> messages; // messages 'written' to the channel
+	
+	// throughput
+	private long sent = 0;      // messages sent out
+	private long delivered = 0; // lines written to listeners
 	
 	public ChatChannel(final String name) {
 		this(name, "magenta", "orange", "green");
@@ -220,4 +225,42 @@ public class ChatChannel {
 	public Message getNextMessage() {
 		return this.messages.poll();
 	}
+	
+	/**
+	 * Take every message waiting to be sent.
+	 * 
+	 * @param into collection to put them in
+	 * @return the number of messages taken
+	 */
+	public int drainMessages(final Collection<Message> into) {
+		return this.messages.drainTo(into);
+	}
+	
+	/**
+	 * Number of messages waiting to be sent.
+	 * 
+	 * @return
+	 */
+	public int getPending() {
+		return this.messages.size();
+	}
+	
+	/**
+	 * Count messages that were sent out.
+	 * 
+	 * @param messages number of messages
+	 * @param lines number of lines written to listeners
+	 */
+	public synchronized void recordDelivery(final int messages, final int lines) {
+		this.sent += messages;
+		this.delivered += lines;
+	}
+	
+	public synchronized long getSent() {
+		return this.sent;
+	}
+	
+	public synchronized long getDelivered() {
+		return this.delivered;
+	}
 }
\ No newline at end of file
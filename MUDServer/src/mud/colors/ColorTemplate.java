@@ -0,0 +1,543 @@
+package mud.colors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mud.utils.Pair;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Text with color markup, compiled once and then rendered straight to bytes
+ * for whatever colors a client is using.
+ *
+ * Markup:
+ *
+ * {red}      switch to a color (any color in the palette)
+ * {/}        back to white (the same "reset" colors(...) uses)
+ * {0}, {1}.. an argument, given when rendering
+ * {=0}       switch to the color named by an argument
+ * {rainbow}  color each character after this in turn (until {/})
+ * {{         a '{'
+ *
+ * i.e. "You take a sip of your {=0}{1}{/}."
+ *
+ * Compiling turns the markup into a flat array of operations on literal
+ * text (already converted to bytes) and color ids. Rendering walks that
+ * array once, copying literals and the palette's color codes (also kept
+ * as bytes) into a buffer, so nothing is looked up by name and no strings
+ * are built along the way. With colors disabled (or no palette), the color
+ * operations write nothing.
+ *
+ * @author Jeremy
+ *
+ */
+public final class ColorTemplate {
+	public static final byte[] NONE = new byte[0];
+
+	private static final byte[] CRLF = { '\r', '\n' };
+
+	// operations (the kind is in the top byte, the rest is the value)
+	private static final int LITERAL   = 0; // value: literal index
+	private static final int COLOR     = 1; // value: color id
+	private static final int RESET     = 2;
+	private static final int ARG       = 3; // value: argument index
+	private static final int ARG_COLOR = 4; // value: argument index
+	private static final int RAINBOW   = 5;
+
+	private static final int KIND_SHIFT = 24;
+	private static final int VALUE_MASK = (1 << KIND_SHIFT) - 1;
+
+	// color ids, shared by all templates and palettes
+	private static final Map<String, Integer> colorIds = new ConcurrentHashMap<String, Integer>();
+	private static final List<String> colorNames = new ArrayList<String>();
+
+	private static final int WHITE = getColorId("white");
+
+	// the same colors, in the same order, as Utils.rainbow(...)
+	private static final int[] RAINBOW_ANSI = ids("red", "yellow", "green", "blue");
+	private static final int[] RAINBOW_XTERM = ids("red", "orange", "yellow", "green", "blue", "purple");
+
+	private final String markup;
+
+	private final int[] ops;
+	private final byte[][] literals;
+	private final String[] text;   // the literals as text (only needed for {rainbow})
+
+	private final int size;        // bytes of literal text
+
+	private ColorTemplate(final String markup, final int[] ops, final byte[][] literals, final String[] text) {
+		this.markup = markup;
+		this.ops = ops;
+		this.literals = literals;
+		this.text = text;
+
+		int total = 0;
+
+		for(final byte[] literal : literals) total += literal.length;
+
+		this.size = total;
+	}
+
+	/**
+	 * Compile markup into a template.
+	 *
+	 * Anything in braces that isn't valid markup (i.e. "{ not a color }") and
+	 * braces without a partner are left as they are.
+	 *
+	 * @param markup
+	 * @return
+	 */
+	public static ColorTemplate compile(final String markup) {
+		final List<Integer> ops = new ArrayList<Integer>();
+		final List<String> text = new ArrayList<String>();
+
+		final StringBuilder literal = new StringBuilder();
+
+		int i = 0;
+
+		while( i < markup.length() ) {
+			final char c = markup.charAt(i);
+
+			if( c == '{' ) {
+				if( i + 1 < markup.length() && markup.charAt(i + 1) == '{' ) {
+					literal.append('{');
+					i += 2;
+					continue;
+				}
+
+				final int end = markup.indexOf('}', i + 1);
+
+				final int op = (end != -1) ? parse( markup.substring(i + 1, end) ) : -1;
+
+				if( op != -1 ) {
+					if( literal.length() > 0 ) {
+						ops.add( (LITERAL << KIND_SHIFT) | text.size() );
+						text.add( literal.toString() );
+
+						literal.setLength(0);
+					}
+
+					ops.add(op);
+
+					i = end + 1;
+					continue;
+				}
+			}
+
+			literal.append(c);
+			i++;
+		}
+
+		if( literal.length() > 0 ) {
+			ops.add( (LITERAL << KIND_SHIFT) | text.size() );
+			text.add( literal.toString() );
+		}
+
+		final int[] o = new int[ops.size()];
+
+		for(int n = 0; n < o.length; n++) o[n] = ops.get(n);
+
+		final String[] t = text.toArray(new String[0]);
+		final byte[][] l = new byte[t.length][];
+
+		for(int n = 0; n < t.length; n++) l[n] = t[n].getBytes(); // the same way Client.write(String) does
+
+		return new ColorTemplate(markup, o, l, t);
+	}
+
+	// turn what's between the braces into an operation (-1 if it isn't one)
+	private static int parse(final String tag) {
+		if( tag.equals("/") )       return RESET << KIND_SHIFT;
+		if( tag.equals("rainbow") ) return RAINBOW << KIND_SHIFT;
+
+		if( tag.startsWith("=") ) {
+			final int arg = number(tag.substring(1));
+
+			return (arg != -1) ? (ARG_COLOR << KIND_SHIFT) | arg : -1;
+		}
+
+		final int arg = number(tag);
+
+		if( arg != -1 ) return (ARG << KIND_SHIFT) | arg;
+
+		if( tag.isEmpty() ) return -1;
+
+		for(int n = 0; n < tag.length(); n++) {
+			final char c = tag.charAt(n);
+
+			if( !Character.isLetterOrDigit(c) && c != '_' ) return -1;
+		}
+
+		return (COLOR << KIND_SHIFT) | getColorId(tag);
+	}
+
+	private static int number(final String s) {
+		if( s.isEmpty() || s.length() > 3 ) return -1;
+
+		int n = 0;
+
+		for(int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+
+			if( c < '0' || c > '9' ) return -1;
+
+			n = (n * 10) + (c - '0');
+		}
+
+		return n;
+	}
+
+	/**
+	 * Render the template.
+	 *
+	 * @param palette the client's colors (null for none)
+	 * @param args
+	 * @return the bytes to send
+	 */
+	public byte[] render(final Palette palette, final String... args) {
+		final Buffer buffer = new Buffer( estimate(args) );
+
+		render(buffer, palette, args);
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Render the template, followed by a newline (CRLF), as send(...) would.
+	 *
+	 * @param palette the client's colors (null for none)
+	 * @param args
+	 * @return the bytes to send
+	 */
+	public byte[] renderLine(final Palette palette, final String... args) {
+		final Buffer buffer = new Buffer( estimate(args) + 2 );
+
+		render(buffer, palette, args);
+
+		buffer.write(CRLF);
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Render the template into a buffer (adding to what's there).
+	 *
+	 * @param buffer
+	 * @param palette the client's colors (null for none)
+	 * @param args
+	 */
+	public void render(final Buffer buffer, final Palette palette, final String... args) {
+		final boolean colors = palette != null && palette.getType() != Palette.DISABLED;
+
+		int[] rainbow = null;
+		int next = 0;
+
+		for(final int op : ops) {
+			final int value = op & VALUE_MASK;
+
+			switch(op >>> KIND_SHIFT) {
+			case LITERAL:
+				if( rainbow != null ) next = rainbow(buffer, palette, text[value], rainbow, next);
+				else                  buffer.write(literals[value]);
+				break;
+			case COLOR:
+				if( colors ) buffer.write( palette.getCode(value) );
+				break;
+			case RESET:
+				if( colors ) buffer.write( palette.getCode(WHITE) );
+				rainbow = null;
+				break;
+			case ARG:
+				if( value < args.length && args[value] != null ) {
+					if( rainbow != null ) next = rainbow(buffer, palette, args[value], rainbow, next);
+					else                  buffer.write(args[value]);
+				}
+				break;
+			case ARG_COLOR:
+				if( colors && value < args.length && args[value] != null ) {
+					buffer.write( palette.getCode( getColorId(args[value]) ) );
+				}
+				break;
+			case RAINBOW:
+				if( colors ) {
+					if( palette.getType() == Palette.ANSI )       rainbow = RAINBOW_ANSI;
+					else if( palette.getType() == Palette.XTERM ) rainbow = RAINBOW_XTERM;
+
+					next = 0;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	// write text with each character in the next color of the rainbow
+	private static int rainbow(final Buffer buffer, final Palette palette, final String s, final int[] rainbow, int next) {
+		for(int i = 0; i < s.length(); i++) {
+			buffer.write( palette.getCode( rainbow[next] ) );
+			buffer.write( s.charAt(i) );
+
+			next = (next + 1) % rainbow.length;
+		}
+
+		return next;
+	}
+
+	// a (usually generous) guess at the rendered size, so the buffer rarely has to grow
+	private int estimate(final String[] args) {
+		int total = size + (16 * ops.length);
+
+		for(final String arg : args) {
+			if( arg != null ) total += arg.length();
+		}
+
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return this.markup;
+	}
+
+	/**
+	 * Get the id for a color name, giving it one if it doesn't have one yet.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static int getColorId(final String name) {
+		final Integer id = colorIds.get(name);
+
+		if( id != null ) return id;
+
+		synchronized(colorNames) {
+			final Integer existing = colorIds.get(name);
+
+			if( existing != null ) return existing;
+
+			colorNames.add(name);
+			colorIds.put(name, colorNames.size() - 1);
+
+			return colorNames.size() - 1;
+		}
+	}
+
+	private static int[] ids(final String...names) {
+		final int[] result = new int[names.length];
+
+		for(int n = 0; n < names.length; n++) result[n] = getColorId(names[n]);
+
+		return result;
+	}
+
+	/**
+	 * Get a palette's colors as bytes, indexed by color id (for
+	 * Palette.getCode(...)).
+	 *
+	 * @param palette
+	 * @return
+	 */
+	static byte[][] getCodes(final Palette palette) {
+		final String[] names;
+
+		synchronized(colorNames) {
+			names = colorNames.toArray(new String[0]);
+		}
+
+		final byte[][] codes = new byte[names.length][];
+
+		for(int n = 0; n < names.length; n++) {
+			final String code = (palette.getType() != Palette.DISABLED) ? palette.getColor(names[n]) : null;
+
+			codes[n] = (code != null) ? code.getBytes() : NONE;
+		}
+
+		return codes;
+	}
+
+	/**
+	 * A growable buffer of bytes, that can be reused (see clear()).
+	 */
+	public static final class Buffer {
+		private byte[] data;
+		private int length = 0;
+
+		public Buffer(final int capacity) {
+			this.data = new byte[Math.max(capacity, 16)];
+		}
+
+		private void ensure(final int count) {
+			if( length + count > data.length ) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+			}
+		}
+
+		public void write(final byte[] bytes) {
+			ensure(bytes.length);
+
+			System.arraycopy(bytes, 0, data, length, bytes.length);
+
+			length += bytes.length;
+		}
+
+		public void write(final char c) {
+			if( c < 0x80 ) {
+				ensure(1);
+
+				data[length++] = (byte) c;
+			}
+			else write( String.valueOf(c).getBytes() );
+		}
+
+		public void write(final String s) {
+			final int count = s.length();
+
+			ensure(count);
+
+			for(int i = 0; i < count; i++) {
+				final char c = s.charAt(i);
+
+				// anything but plain ASCII is converted the same way Client.write(String) does
+				if( c >= 0x80 ) {
+					write( s.substring(i).getBytes() );
+					return;
+				}
+
+				data[length++] = (byte) c;
+			}
+		}
+
+		public int length() {
+			return this.length;
+		}
+
+		public void clear() {
+			this.length = 0;
+		}
+
+		public byte[] toByteArray() {
+			return (length == data.length) ? data : Arrays.copyOf(data, length);
+		}
+	}
+
+	/**
+	 * Compare rendering a colored message with a template to the way it's
+	 * done now (colors(...)/colorCode(...) and a display color lookup, then
+	 * String.getBytes()), checking that both give the same bytes.
+	 *
+	 * usage: java mud.colors.ColorTemplate [iterations]
+	 *
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+
+		// the same colors as MUDServer
+		final Palette ansi = new Palette("ansi", Palette.ANSI);
+		final Palette xterm = new Palette("xterm256", Palette.XTERM);
+
+		final String[] names = { "black", "red", "green", "yellow", "blue", "magenta", "cyan", "white" };
+
+		for(int n = 0; n < names.length; n++) ansi.addColor(names[n], 30 + n);
+
+		xterm.addColor("red", 9);
+		xterm.addColor("green", 10);
+		xterm.addColor("yellow", 11);
+		xterm.addColor("blue", 12);
+		xterm.addColor("magenta", 13);
+		xterm.addColor("cyan", 14);
+		xterm.addColor("white", 15);
+		xterm.addColor("orange", 208);
+
+		final Map<String, Pair<String>> displayColors = new HashMap<String, Pair<String>>();
+
+		displayColors.put("item", new Pair<String>("yellow", "orange"));
+
+		final String[] items = { "Potion of Healing", "Rusty Dagger", "Torch", "Waterskin" };
+
+		final ColorTemplate template = ColorTemplate.compile("You take a sip of your {=0}{1}{/}.");
+
+		System.out.println("Template: " + template + " (" + template.ops.length + " ops)");
+
+		for(final Palette palette : new Palette[] { ansi, xterm, null }) {
+			final String mode = (palette != null) ? palette.getName() : "none";
+
+			// check that the output is the same
+			for(final String item : items) {
+				final byte[] a = current(palette, displayColors, item);
+				final byte[] b = template.renderLine(palette, display(palette, displayColors), item);
+
+				if( !Arrays.equals(a, b) ) {
+					System.out.println("FAIL (" + mode + "): output differs for " + item);
+					System.out.println("current:  " + Arrays.toString(a));
+					System.out.println("template: " + Arrays.toString(b));
+					System.exit(1);
+				}
+			}
+
+			long sink = 0;
+
+			// warm up
+			for(int i = 0; i < iterations / 4; i++) {
+				sink += current(palette, displayColors, items[i & 3]).length;
+				sink += template.renderLine(palette, display(palette, displayColors), items[i & 3]).length;
+			}
+
+			long start = System.nanoTime();
+
+			for(int i = 0; i < iterations; i++) {
+				sink += current(palette, displayColors, items[i & 3]).length;
+			}
+
+			final long currentTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+
+			for(int i = 0; i < iterations; i++) {
+				sink += template.renderLine(palette, display(palette, displayColors), items[i & 3]).length;
+			}
+
+			final long templateTime = System.nanoTime() - start;
+
+			System.out.println(String.format("%-10s current: %6.1f ns/msg  template: %6.1f ns/msg  (%.1fx) [%d]", mode,
+					(double) currentTime / iterations, (double) templateTime / iterations, (double) currentTime / templateTime, sink));
+		}
+	}
+
+	// send("You take a sip of your " + colors(item.getName(), getDisplayColor("item")) + ".", client)
+	private static byte[] current(final Palette palette, final Map<String, Pair<String>> displayColors, final String item) {
+		final String color = display(palette, displayColors);
+
+		final String message = "You take a sip of your " + colorCode(palette, color) + item + colorCode(palette, "white") + ".";
+
+		return (message + "\r\n").getBytes();
+	}
+
+	private static String colorCode(final Palette palette, final String colorName) {
+		if( palette != null && palette.getType() != Palette.DISABLED ) return palette.getColor(colorName);
+		else                                                          return "";
+	}
+
+	private static String display(final Palette palette, final Map<String, Pair<String>> displayColors) {
+		final Pair<String> colors = displayColors.get("item");
+
+		if( palette == null )                         return "white";
+		else if( palette.getType() == Palette.ANSI )  return colors.one;
+		else if( palette.getType() == Palette.XTERM ) return colors.two;
+		else                                          return "white";
+	}
+}
@@ -16,6 +16,9 @@ public class Palette {
 	private Map<String, String> colors;
 
 	private final int type;
+	
+	// color codes as bytes, by template color id (see ColorTemplate), built when first needed
+	private volatile byte[][] codes = null;
 
 	public Palette(final String name) {
 		this(name, DISABLED);
@@ -49,6 +52,8 @@ public class Palette {
 		else {
 			this.colors.put(name, "" + number);
 		}
+		
+		this.codes = null;
 	}
 	
 	public String getColor(final String name) {
@@ -57,5 +62,26 @@ public class Palette {
 	
 	public void removeColor(final String name) {
 		this.colors.remove(name);
+		
+		this.codes = null;
+	}
+	
+	/**
+	 * Get the code for a color, as the bytes to send.
+	 * 
+	 * @param id a color id (see ColorTemplate.getColorId(...))
+	 * @return the code, or nothing (an empty array) if there is no such color
+	 */
+	public byte[] getCode(final int id) {
+		byte[][] c = this.codes;
+		
+		// colors have been added (to the palette or ColorTemplate) since they were built
+		if( c == null || id >= c.length ) {
+			c = ColorTemplate.getCodes(this);
+			
+			this.codes = c;
+		}
+		
+		return (id < c.length) ? c[id] : ColorTemplate.NONE;
 	}
 }
\ No newline at end of file
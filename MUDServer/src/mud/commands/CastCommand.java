@@ -124,11 +124,9 @@ public class CastCommand extends Command {
 					// is there ever a case where the caster wouldn't be a player here?
 					SpellTimer sTimer = new SpellTimer(spell, 60);     // spell timer with default (60 sec) cooldown
 					addSpellTimer(player, sTimer);
-					scheduleAtFixedRate(sTimer, 0, 1000);
 					
 					EffectTimer etimer = new EffectTimer(e, 30);
-					addEffectTimer(player, etimer);
-					scheduleAtFixedRate(etimer, 0, 1000); // create countdown timer
+					addEffectTimer(player, etimer);                    // create countdown timer
 					
 					// if our target is a player set timers for us and tell them, otherwise don't bother
 					if(target instanceof Player) {
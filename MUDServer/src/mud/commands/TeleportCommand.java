@@ -33,7 +33,6 @@ public class TeleportCommand extends Command {
 	@Override
 	public void execute(final String arg, final Client client) {
 		final Player player = getPlayer(client);
-		final Room room = getRoom( player.getLocation() );
 		
 		String[] args = arg.split("=");
 		
@@ -71,16 +70,12 @@ public class TeleportCommand extends Command {
 		// if we found the room, send the player there
 		if ( destination_exists ) {
 			if( no_target ) {
-				room.removeListener(player); // remove listener
-
 				send("Teleporting to " + dest.getName() + "... ", client);
 				
 				player.setLocation( dest.getDBRef() );
 				player.setPosition(0, 0);
 				
 				send("Done.", client);
-
-				dest.addListener(player); // add listener
 			}
 			else if( valid_target ) {
 				if( target != null ) {
@@ -88,17 +83,9 @@ public class TeleportCommand extends Command {
 					
 					if( target.isType(TypeFlag.PLAYER) ) {
 						final Player p = (Player) target;
-						final Room r = getRoom( p.getLocation() );
-						
-						r.removeListener(p);
-						
-						target.setLocation( dest.getDBRef() );
+						target.setLocation( dest.getDBRef() ); // moves the listener too (see ObjectDB.moved)
 						target.setPosition(0, 0);
 						
-						final Room r2 = getRoom( p.getLocation() );
-						
-						r2.addListener(p);
-						
 						send("You were teleported.", p.getClient());
 					}
 					else {
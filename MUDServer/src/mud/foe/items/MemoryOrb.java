@@ -31,7 +31,7 @@ public class MemoryOrb extends Item {
 	}
 	
 	protected MemoryOrb(final MemoryOrb template) {
-		super(-1, template.name, template.desc);
+		super(-1, template.name, template.getDesc());
 		
 		this.item_type = FOEItemTypes.MEMORY_ORB;
 		this.slot_type = FOESlotTypes.NONE;
@@ -0,0 +1,24 @@
+package mud.interfaces;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import mud.net.Client;
+
+/**
+ * Something that can be run as a command, either a Command object or
+ * one of the server's cmd_x methods.
+ * 
+ * @author Jeremy
+ *
+ */
+public interface CommandHandler {
+	public void execute(final String arg, final Client client);
+}
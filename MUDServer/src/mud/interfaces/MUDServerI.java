@@ -14,4 +14,12 @@ import mud.net.Client;
 
 public interface MUDServerI {
     void clientConnected(final Client someClient);
+    
+    /**
+     * Called (from the client's i/o thread) when a client has new input
+     * waiting, i.e. a complete line or a telnet command.
+     * 
+     * @param someClient
+     */
+    void clientInput(final Client someClient);
 }
\ No newline at end of file
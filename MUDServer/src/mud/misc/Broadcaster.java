@@ -0,0 +1,213 @@
+package mud.misc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mud.net.Client;
+import mud.objects.NPC;
+import mud.objects.Player;
+import mud.objects.Room;
+import mud.objects.RoomType;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Sends messages to everyone in a room, or everyone outside. Each message is
+ * turned into bytes once and the same bytes are queued for every listener,
+ * instead of building and encoding the line again for each of them.
+ *
+ * Players should be placed in and taken out of rooms through enter(...) and
+ * leave(...), which keep the room's listeners and the set of players that are
+ * outside up to date, so broadcasts to the outdoors (time of day, weather)
+ * don't have to look up every player's room. Once a player is in a room, the
+ * database calls moved(...) whenever their location changes, however it was
+ * changed.
+ *
+ * @author Jeremy
+ *
+ */
+public final class Broadcaster {
+	private final Map<Player, Room> outdoors = new ConcurrentHashMap<Player, Room>(); // players outside -> room they are in
+
+	// metrics
+	private long messages = 0;   // messages broadcast
+	private long deliveries = 0; // lines queued for clients
+
+	/**
+	 * Put a player in a room.
+	 *
+	 * @param player
+	 * @param room
+	 */
+	public void enter(final Player player, final Room room) {
+		if( room == null ) return;
+
+		room.addListener(player);
+
+		if( room.getRoomType() == RoomType.OUTSIDE ) outdoors.put(player, room);
+		else                                         outdoors.remove(player);
+	}
+
+	/**
+	 * Take a player out of a room.
+	 *
+	 * @param player
+	 * @param room
+	 */
+	public void leave(final Player player, final Room room) {
+		if( room != null ) room.removeListener(player);
+
+		outdoors.remove(player);
+	}
+
+	/**
+	 * Move a player, who was listening in one room, to another.
+	 *
+	 * @param player
+	 * @param from
+	 * @param to     (may be null)
+	 */
+	public void moved(final Player player, final Room from, final Room to) {
+		leave(player, from);
+		enter(player, to);
+	}
+
+	/**
+	 * Is the player outside?
+	 *
+	 * @param player
+	 * @return
+	 */
+	public boolean isOutdoors(final Player player) {
+		return outdoors.containsKey(player);
+	}
+
+	/**
+	 * Get the players that are outside.
+	 *
+	 * @return
+	 */
+	public Collection<Player> getOutdoors() {
+		return Collections.unmodifiableCollection(outdoors.keySet());
+	}
+
+	/**
+	 * Get the outdoor rooms that have someone in them.
+	 *
+	 * @return
+	 */
+	public Set<Room> getOutdoorRooms() {
+		return new HashSet<Room>(outdoors.values());
+	}
+
+	/**
+	 * Send a message to everyone outside, except those in an editor.
+	 *
+	 * @param message
+	 * @return the number of players it was sent to
+	 */
+	public int toOutdoors(final String message) {
+		final byte[] line = encode(message);
+
+		int count = 0;
+
+		for (final Player player : outdoors.keySet()) {
+			if( player.getEditor() == Editors.NONE && write(player, line) ) count++;
+		}
+
+		return sent(count);
+	}
+
+	/**
+	 * Send a message to everyone in a room, except anyone the message names
+	 * (they are presumably the subject of it, and are told separately).
+	 *
+	 * A player is named if their name (or cname) appears anywhere in the
+	 * message, even inside a longer word ("Al" is named by "Alisare arrives."),
+	 * as it always has been. An empty cname doesn't name anyone.
+	 *
+	 * @param room
+	 * @param message
+	 * @return the number of players it was sent to
+	 */
+	public int toRoom(final Room room, final String message) {
+		final byte[] line = encode(message);
+
+		int count = 0;
+
+		for (final Player player : room.getListeners()) {
+			if( player instanceof NPC ) continue;
+
+			if( names(message, player.getName()) || names(message, player.getCName()) ) continue;
+
+			if( write(player, line) ) count++;
+		}
+
+		return sent(count);
+	}
+
+	/**
+	 * Send something a player said to everyone else in the room.
+	 *
+	 * @param room
+	 * @param sender
+	 * @param message
+	 * @return the number of players it was sent to
+	 */
+	public int say(final Room room, final Player sender, final String message) {
+		final byte[] line = encode(sender.getName() + " says, \"" + message + "\".");
+
+		int count = 0;
+
+		for (final Player bystander : room.getListeners()) {
+			if( bystander != sender && !(bystander instanceof NPC) && write(bystander, line) ) count++;
+		}
+
+		return sent(count);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Broadcaster outdoors: " + outdoors.size() + " messages: " + messages + " delivered: " + deliveries;
+	}
+
+	private synchronized int sent(final int count) {
+		messages++;
+		deliveries += count;
+
+		return count;
+	}
+
+	private static byte[] encode(final String message) {
+		return (message + "\r\n").getBytes();
+	}
+
+	private static boolean write(final Player player, final byte[] line) {
+		final Client client = player.getClient();
+
+		if( client == null || !client.isRunning() ) return false;
+
+		client.write(line);
+
+		return true;
+	}
+
+	// does the message mention the name?
+	private static boolean names(final String message, final String name) {
+		if( name == null || name.isEmpty() ) return false;
+
+		return message.contains(name);
+	}
+}
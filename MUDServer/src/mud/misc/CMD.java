@@ -30,6 +30,8 @@ import mud.objects.Player;
 public class CMD {
 	private Status status;
 	private String cmdString;
+
+	private final long[] times = new long[Status.values().length]; // when each status was entered (System.nanoTime())
 	private Player player;
 	private Client client;
 	
@@ -53,6 +55,7 @@ public class CMD {
 
 	public CMD(final String string, final Player player, final Client client) {
 		this.status = Status.WAITING;
+		this.times[Status.WAITING.ordinal()] = System.nanoTime();
 		this.cmdString = string;
 		this.player = player;
         this.client = client;
@@ -69,6 +72,23 @@ public class CMD {
 	
 	public void setStatus(final Status newStatus) {
 		this.status = newStatus;
+		this.times[newStatus.ordinal()] = System.nanoTime();
+	}
+	
+	/**
+	 * Get the time between entering one status and entering another.
+	 * 
+	 * @param from
+	 * @param to
+	 * @return elapsed time in nanoseconds (0 if either hasn't happened yet)
+	 */
+	public long getTime(final Status from, final Status to) {
+		final long start = this.times[from.ordinal()];
+		final long end = this.times[to.ordinal()];
+		
+		if( start == 0 || end == 0 ) return 0;
+		
+		return end - start;
 	}
 
 	public String getCmdString() {
@@ -0,0 +1,109 @@
+package mud.misc;
+
+import mud.net.Client;
+import mud.objects.Player;
+import mud.utils.Account;
+import mud.utils.LoginData;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Everything the server keeps about one connection: the player logged in on
+ * it (if any), the account in use, the current login/menu state and any
+ * data held for a multi-step interaction.
+ * 
+ * Sessions are created and indexed by a SessionRegistry, the player should
+ * only be changed through it (login/logout).
+ * 
+ * @author Jeremy
+ *
+ */
+public final class ClientSession {
+	private final Client client;
+	private final long connected;
+	
+	private volatile Player player = null;   // the player logged in on this connection
+	private volatile Account account = null; // the account in use (account login/menu)
+	
+	private volatile String state = null;    // state of an interaction in progress, null if there isn't one
+	
+	private volatile LoginData loginData = null;   // input collected during an interactive login
+	private volatile ClientData clientData = null;
+	
+	ClientSession(final Client client) {
+		this.client = client;
+		this.connected = System.currentTimeMillis();
+	}
+	
+	public Client getClient() {
+		return this.client;
+	}
+	
+	/**
+	 * When the session was created.
+	 * 
+	 * @return time in ms
+	 */
+	public long getConnected() {
+		return this.connected;
+	}
+	
+	public Player getPlayer() {
+		return this.player;
+	}
+	
+	void setPlayer(final Player player) {
+		this.player = player;
+	}
+	
+	public boolean isLoggedIn() {
+		return this.player != null;
+	}
+	
+	public Account getAccount() {
+		return this.account;
+	}
+	
+	public void setAccount(final Account account) {
+		this.account = account;
+	}
+	
+	public String getState() {
+		return this.state;
+	}
+	
+	public void setState(final String state) {
+		this.state = state;
+	}
+	
+	public LoginData getLoginData() {
+		return this.loginData;
+	}
+	
+	public void setLoginData(final LoginData data) {
+		this.loginData = data;
+	}
+	
+	public ClientData getClientData() {
+		return this.clientData;
+	}
+	
+	public void setClientData(final ClientData data) {
+		this.clientData = data;
+	}
+	
+	@Override
+	public String toString() {
+		final Player p = this.player;
+		
+		return "ClientSession (" + client.getIPAddress() + ") player: " + (p != null ? p.getName() : "-") + " state: " + (state != null ? state : "-");
+	}
+}
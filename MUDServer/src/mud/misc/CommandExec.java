@@ -17,132 +17,318 @@ package mud.misc;
   SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 */
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import mud.Constants;
 import mud.MUDServer;
 import mud.misc.CMD.Status;
 import mud.net.Client;
 import mud.objects.Player;
+import mud.utils.Histogram;
 
 /**
- * A class which implements the Runnable interface as a means of
- * being itself a thread. This "thread" is used to execute commands sent by the user
- * independent of those commands being sent so that slow command execution doesn't in
- * any way slow the actual command input;
+ * Executes commands sent by users on a pool of worker threads, independent
+ * of those commands being received so that slow command execution doesn't in
+ * any way slow the actual command input.
+ * 
+ * Each client gets it's own queue, which is only ever drained by one worker
+ * at a time, so a player's commands always run in the order they were sent
+ * while different players' commands run in parallel.
+ * 
+ * Locking:
+ * - commands that only look at the world (or change nothing but the player
+ * and what's said in their room) hold the "world" lock shared and lock the
+ * room the player is in (rooms are spread across a fixed set of lock
+ * stripes)
+ * - everything else, including anything that might create, recycle or move
+ * an object (the database isn't thread-safe, and a move touches two rooms),
+ * and the main loop's tick hold the world lock exclusively
  * 
  * @author Jeremy
  *
  */
-public class CommandExec implements Runnable {
-	private MUDServer parent;
-	private ConcurrentLinkedQueue<CMD> cmdQueue;
-	private int sleepTime = 500; // 250ms, 0.25s
-	
-	private CMD newCmd;
-	
-	private boolean running = false;
-
-	public CommandExec(MUDServer parent, ConcurrentLinkedQueue<CMD> cmdQueue) {
-		this.parent = parent;
-		this.cmdQueue = cmdQueue;
+public class CommandExec {
+	private static final int LOCK_STRIPES = 64;
+
+	// commands (and their usual aliases) that can share the world: these don't create,
+	// recycle or move objects, or change anything shared between rooms (chat is left out,
+	// joining or leaving a channel changes it's listeners). Anything not listed here
+	// (including exits) runs alone.
+	private static final Set<String> SHARED = new HashSet<String>(Arrays.asList(
+			"look", "l", "lookat", "inspect", "consider", "cons", "exits", "map",
+			"inventory", "inv", "i", "score", "stats", "status", "vitals", "vit", "condition", "cond",
+			"exp", "effects", "feats", "spells", "spellinfo", "quests", "pinfo", "sheet", "money",
+			"who", "where", "time", "calendar", "help", "commands", "cmds", "aliases", "version", "motd",
+			"pose", "*", "ooc", "tell", "page", "p", "roll"
+	));
+
+	private final MUDServer parent;
+	private final ExecutorService workers;
+	private final int threads;
+
+	private final Map<Client, Strand> strands = new ConcurrentHashMap<Client, Strand>();
+
+	private final ReentrantReadWriteLock worldLock = new ReentrantReadWriteLock();
+	private final Lock[] roomLocks = new Lock[LOCK_STRIPES];
+
+	// metrics
+	private final Histogram waitTimes = new Histogram("wait (us)"); // WAITING -> ACTIVE
+	private final Histogram runTimes = new Histogram("run (us)");   // ACTIVE -> FINISHED
+
+	private final AtomicLong executed = new AtomicLong(0);
+	private final AtomicLong exclusive = new AtomicLong(0);
+	private final AtomicLong failed = new AtomicLong(0);
+
+	private volatile boolean running = false;
+
+	/**
+	 * A client's queue of commands, plus a flag saying whether a worker
+	 * has already been asked to drain it.
+	 */
+	private class Strand implements Runnable {
+		private final Client client;
+		private final ConcurrentLinkedQueue<CMD> queue = new ConcurrentLinkedQueue<CMD>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		Strand(final Client client) {
+			this.client = client;
+		}
+
+		void add(final CMD cmd) {
+			queue.add(cmd);
+
+			if( scheduled.compareAndSet(false, true) ) {
+				workers.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			CMD cmd;
+
+			while( running && (cmd = queue.poll()) != null ) {
+				execute(cmd);
+			}
+
+			scheduled.set(false);
+
+			// once the client is gone, so is it's queue
+			if( !client.isRunning() ) {
+				strands.remove(client, this);
+				return;
+			}
+
+			// a command may have been added after we stopped polling, but before we cleared the flag
+			if( running && !queue.isEmpty() && scheduled.compareAndSet(false, true) ) {
+				workers.execute(this);
+			}
+		}
 	}
 
-	@Override
-	public void run() {
+	public CommandExec(final MUDServer parent, final int threads) {
+		this.parent = parent;
+		this.threads = Math.max(threads, 1);
+
+		for(int i = 0; i < LOCK_STRIPES; i++) {
+			roomLocks[i] = new ReentrantLock();
+		}
+
+		final AtomicInteger count = new AtomicInteger(0);
+
+		this.workers = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "command_exec-" + count.getAndIncrement());
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
 		this.running = true;
-		
-		while ( this.running ) {
-			if ( !this.cmdQueue.isEmpty() ) {
-				try {
-					newCmd = this.cmdQueue.poll();
-					
-					// should it be set to WAITING before it's put in the queue in the first place?
-					newCmd.setStatus(CMD.Status.WAITING);
-					
-					// parse out stored data
-					final String command = newCmd.getCmdString();
-					final Client client = newCmd.getClient();
-					
-					final Player player = parent.getPlayer(client);
-					
-					// verify that client is still connected
-					if( client.isRunning() ) {
-						newCmd.setStatus(CMD.Status.ACTIVE); // mark command as being processed
-						
-						// try to capture errors
-						try {
-							// handle command permissions
-							if ( parent.checkAccess(player, newCmd.getPermissions()) )
-							{
-								// interpret command
-								parent.cmd(command, client);
-							}
-							else {
-								// TODO write "error" to player?
-								System.out.println("Insufficient Access Permissions");
-							}
-						}
-						catch(final NullPointerException npe) {
-							System.out.println("--- Stack Trace ---");
-							npe.printStackTrace();
-						}
-						
-						newCmd.setStatus(CMD.Status.FINISHED);
-						
-						// clear the processed command
-						newCmd = null;
-						
-						if ( parent.loginCheck( client ) ) {
-							parent.prompt(client); // buggy, especially when you're not logged on yet
-						}
-						
-						// if the queue isn't empty, print out a list of the unresolved commands
-						/*if ( !this.cmdQueue.isEmpty() ) {
-							System.out.println("Queue");
-							System.out.println("------------------------------");
-							
-							for (final CMD c : this.cmdQueue) {
-								System.out.println( c.getCmdString().trim() );
-							}
-						}*/
-						
-						// sleep between executing commands
-						Thread.sleep(sleepTime);
-					}
-					else continue;
-				}
-				catch (final InterruptedException ie) {
-					// if interrupted when we are processing a command
-					System.out.println("Command Execution: Interrupted!");
-					
-					System.out.println("--- Stack Trace ---");
-					ie.printStackTrace();
-					
-					if (newCmd != null) {
-						if (newCmd.getStatus() == Status.WAITING) {
-							// if the command is still waiting (i.e. we never got to try to execute it)
-							this.cmdQueue.add(newCmd);
-						}
-						else {
-							parent.notify(parent.getPlayer(newCmd.getClient()), "Error: Failed Command Execution!");
-						}
-						
-						newCmd = null; // null our reference to it
-					}
-				}
-				catch(final NullPointerException npe) {
-					System.out.println("--- Stack Trace ---");
-					npe.printStackTrace();
-				}
+	}
+
+	/**
+	 * Queue a command for execution. It will run after any commands
+	 * already queued from the same client.
+	 * 
+	 * @param cmd
+	 */
+	public void submit(final CMD cmd) {
+		if( !this.running ) return;
+
+		Strand strand = strands.get(cmd.getClient());
+
+		if( strand == null ) {
+			final Strand temp = new Strand( cmd.getClient() );
+
+			strand = strands.putIfAbsent(cmd.getClient(), temp);
+
+			if( strand == null ) strand = temp;
+		}
+
+		strand.add(cmd);
+	}
+
+	/**
+	 * Run some code while no commands are executing.
+	 * 
+	 * @param task
+	 */
+	public void runExclusive(final Runnable task) {
+		worldLock.writeLock().lock();
+
+		try {
+			task.run();
+		}
+		finally {
+			worldLock.writeLock().unlock();
+		}
+	}
+
+	private void execute(final CMD newCmd) {
+		// parse out stored data
+		final String command = newCmd.getCmdString();
+		final Client client = newCmd.getClient();
+
+		// verify that client is still connected
+		if( !client.isRunning() ) return;
+
+		final Player player = parent.getPlayer(client);
+
+		final boolean global = isGlobal(command, player);
+
+		final Lock worldHeld = global ? worldLock.writeLock() : worldLock.readLock();
+		final Lock roomHeld = global ? null : roomLocks[ Math.abs(player.getLocation() % LOCK_STRIPES) ];
+
+		worldHeld.lock();
+
+		if( roomHeld != null ) roomHeld.lock();
+
+		newCmd.setStatus(CMD.Status.ACTIVE); // mark command as being processed
+
+		try {
+			// handle command permissions
+			if ( parent.checkAccess(player, newCmd.getPermissions()) ) {
+				// interpret command
+				parent.cmd(command, client);
+			}
+			else {
+				// TODO write "error" to player?
+				parent.debug("Insufficient Access Permissions (" + command + ")");
+			}
+
+			if ( parent.loginCheck( client ) ) {
+				parent.prompt(client); // buggy, especially when you're not logged on yet
 			}
 		}
+		catch(final Exception e) {
+			failed.incrementAndGet();
+
+			parent.logError("Command Execution: " + command + " failed", e);
+
+			client.writeln("Error: Failed Command Execution!");
+		}
+		finally {
+			newCmd.setStatus(CMD.Status.FINISHED);
+
+			if( roomHeld != null ) roomHeld.unlock();
+
+			worldHeld.unlock();
+		}
+
+		client.flush();
+
+		waitTimes.record( newCmd.getTime(Status.WAITING, Status.ACTIVE) / 1000 );
+		runTimes.record( newCmd.getTime(Status.ACTIVE, Status.FINISHED) / 1000 );
+
+		executed.incrementAndGet();
+
+		if( global ) exclusive.incrementAndGet();
 	}
-	
-	public int getCommandDelay() {
-		return this.sleepTime;
+
+	/**
+	 * Does this command need the whole world to itself?
+	 * 
+	 * @param command
+	 * @param player
+	 * @return
+	 */
+	private boolean isGlobal(final String command, final Player player) {
+		// logins, account handling, etc
+		if( player == null ) return true;
+
+		// editors
+		if( player.getStatus().equals(Constants.ST_EDIT) ) return true;
+
+		// builder/admin/wizard commands and anything else that may change the database
+		final int space = command.indexOf(' ');
+
+		return !SHARED.contains( (space != -1) ? command.substring(0, space) : command );
+	}
+
+	public void stop() {
+		this.running = false;
+
+		workers.shutdown();
+
+		try {
+			workers.awaitTermination(5, TimeUnit.SECONDS);
+		}
+		catch (final InterruptedException ie) {
+			System.out.println("Command Execution: Interrupted!");
+		}
+
+		strands.clear();
+	}
+
+	public int getThreads() {
+		return this.threads;
+	}
+
+	public int getQueued() {
+		int queued = 0;
+
+		for(final Strand strand : strands.values()) {
+			queued += strand.queue.size();
+		}
+
+		return queued;
+	}
+
+	public Histogram getWaitTimes() {
+		return this.waitTimes;
+	}
+
+	public Histogram getRunTimes() {
+		return this.runTimes;
+	}
+
+	public long getExecuted() {
+		return this.executed.get();
 	}
-	
-	public void setCommandDelay(int ms) {
-		this.sleepTime = ms;
+
+	public long getExclusive() {
+		return this.exclusive.get();
+	}
+
+	public long getFailed() {
+		return this.failed.get();
 	}
-}
\ No newline at end of file
+}
@@ -129,7 +129,7 @@ public class Effect
 		this.id = id;
 	}
 
-	private static int nextID() {
+	private static synchronized int nextID() {
 		return lastId++;
 	}
 	
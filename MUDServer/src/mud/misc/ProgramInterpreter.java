@@ -1,10 +1,14 @@
 package mud.misc;
 
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import mud.MUDObject;
 import mud.MUDServer;
@@ -49,6 +53,12 @@ public final class ProgramInterpreter {
 
 	private final Hashtable<String, String> vars;
 
+	// compiled scripts, shared by all interpreters
+	private static final int CACHE_SIZE = 1024;
+	private static final Map<String, Node> compiled = new ConcurrentHashMap<String, Node>();
+
+	private static final Set<String> MATH = new HashSet<String>( Arrays.asList("add", "sub", "mul", "and", "eq", "lt", "le", "gt", "ge") );
+
 	public ProgramInterpreter(final MUDServer parent) {
 		this(parent, false);
 	}
@@ -59,10 +69,9 @@ public final class ProgramInterpreter {
 	}
 	public ProgramInterpreter(final MUDServer parent, final boolean enable_debug, final EnumSet<Perms> perms) {
 		this.parent = parent;
-		this.database = parent.getDBInterface();
+		this.database = (parent != null) ? parent.getDBInterface() : null; // no server when benchmarking
 
-		//this.debug_enabled = enable_debug;
-		this.debug_enabled = true;
+		this.debug_enabled = enable_debug;
 		
 		this.permissions = EnumSet.copyOf(perms);
 		
@@ -122,7 +131,14 @@ public final class ProgramInterpreter {
 	}
 
 	public String interpret(final Script script, final Player player, final MUDObject object) {
-		return interpret( script.getText(), player, object );
+		Node node = script.getCompiled();
+
+		if( node == null ) {
+			node = compile( script.getText() );
+			script.setCompiled(node);
+		}
+
+		return node.eval(this, player, object).toString();
 	}
 
 	/**
@@ -131,579 +147,546 @@ public final class ProgramInterpreter {
 	 * @param script
 	 * @return
 	 */
-	private String interpret(final String script, final Player player, final MUDObject object) {	
-		//System.out.println("PGM: <" + script + ">");
-		//System.out.println("pArg: " + script);
-		String result = "";
+	private Value interpret(final String script, final Player player, final MUDObject object) {
+		return compile(script).eval(this, player, object);
+	}
 
-		if ( isValidScript( script ) ) {
-			if( debug_enabled ) System.out.println("Interpret: " + script);
+	/**
+	 * compile
+	 * 
+	 * Get the node tree for a piece of script text, parsing it only if
+	 * we haven't seen that text before. Nodes are immutable, so one tree
+	 * can be shared by every interpreter (and thread) that runs the script.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	static Node compile(final String script) {
+		Node node = compiled.get(script);
 
-			// no script function equals no script
-			if( script.indexOf(":") != -1 ) {
-				// TODO fix this, we are assuming it's all one nested script...
-				String work = script.substring(1, script.length() - 1); // strip off the outermost squiggly braces ( {} )
+		if( node == null ) {
+			node = parse(script);
 
-				if( debug_enabled ) System.out.println("work: " + work);
+			// crude bound, @pgm and friends can feed us arbitrary text
+			if( compiled.size() >= CACHE_SIZE ) compiled.clear();
 
-				final String[] temp = work.split(":", 2);
+			compiled.put(script, node);
+		}
 
-				String functionName = temp[0]; // FUNCTION NAME
+		return node;
+	}
 
-				if( debug_enabled ) System.out.println("Function: " + functionName); // tell us the script function used
+	/**
+	 * parse
+	 * 
+	 * Break script text down into nodes. This does the same splitting
+	 * the interpreter always did ( strip braces, split the function name
+	 * off on the first ':', split the parameters on ',' and then fix the
+	 * breaks ), it just does it once instead of on every run.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	private static Node parse(final String script) {
+		if( !isValidScript( script ) ) return new Invalid();
 
-				List<String> params = null;    // FUNCTION PARAMETERS 
+		// no script function equals no script
+		if( script.indexOf(":") == -1 ) return new Atom(script);
 
-				// find the parameters if there are any
-				if( temp.length > 1 ) {
-					params = Utils.mkList(temp[1].split(",")); // split the arguments on commas ( , )
+		// TODO fix this, we are assuming it's all one nested script...
+		final String work = script.substring(1, script.length() - 1); // strip off the outermost squiggly braces ( {} )
 
-					if( debug_enabled ) System.out.println("Fixing Params");
+		final String[] temp = work.split(":", 2);
 
-					ProgramInterpreter.fixParams( params ); // sort of fixes the params
+		final String functionName = temp[0]; // FUNCTION NAME
 
-					//if( debug_enabled ) System.out.println("Params: " + params);
+		final List<String> params = Utils.mkList(temp[1].split(",")); // split the arguments on commas ( , )
 
-					if( debug_enabled ) {
-						System.out.println("Params:");
+		ProgramInterpreter.fixParams( params ); // sort of fixes the params
 
-						for(final String param : params) {
-							System.out.println(param);
-						}
-					}
+		// 'if', 'with' and 'do' decide for themselves when (and whether) to evaluate their parameters
+		final boolean lazy = functionName.equals("if") || functionName.equals("with") || functionName.equals("do");
 
-					// evaluate parameters
-					int index = 0;
+		final String[] raw = params.toArray(new String[params.size()]);
+		final Node[] nodes = new Node[raw.length];
 
-					// whenever the function called isn't 'if' or 'with' or 'do', we want to evaluate all parameters as we get them
-					if( !functionName.equals("if") && !functionName.equals("with") && !functionName.equals("do") ) {
-						for(final String param : params) {
-							// evaluate parameters if they are valid sub scripts							
-							if( isValidScript( param ) ) {
-								params.set(index, interpret(param, player, object));
-							}
+		for(int index = 0; index < raw.length; index++) {
+			// evaluate parameters if they are valid sub scripts
+			if( lazy || isValidScript( raw[index] ) ) nodes[index] = compile( raw[index] );
+			else                                      nodes[index] = new Literal( raw[index] );
+		}
 
-							index++;
-						}
-					}
+		return new Call(functionName, raw, nodes, lazy);
+	}
 
-					if( debug_enabled ) {
-						System.out.println("EVALUATE");
-						System.out.println("Evaluate: <" + functionName + "> with " + params);
-					}
+	private Value call(final Call call, final Player player, final MUDObject object) {
+		final String functionName = call.name;
+		final Node[] nodes = call.nodes;
 
-					result = evaluate(functionName, params.toArray(new String[params.size()]), player, object);
+		// whenever the function called isn't 'if' or 'with' or 'do', we want to evaluate all parameters as we get them
+		final Value[] params = new Value[nodes.length];
 
-					if( debug_enabled ) System.out.println("Result: " + result);
-				}
-				else result = "Incomplete function statement, no parameters!";
-			}
-			else {
-				if( debug_enabled ) {
-					System.out.println("EVALUATE");
-					System.out.println("Evaluate: <" + script.substring(1, script.length() - 1) + "> ");
-				}
-				
-				result = evaluate(script, new String[0], player, object);
-				
-				if( debug_enabled ) System.out.println("Result: " + result);
+		if( !call.lazy ) {
+			for(int index = 0; index < nodes.length; index++) {
+				params[index] = nodes[index].eval(this, player, object);
 			}
 		}
-		else {
-			int p_dbref = (( player != null ) ? player.getDBRef() : 1);
-			int o_dbref = (( object != null ) ? object.getDBRef() : 1);
-			
-			result = "Invalid Script! (" + p_dbref + "," + o_dbref + ")";
-		}
-		
-		return result;
-	}
 
-	private String evaluate(final String functionName, final String[] params, final Player player, final MUDObject object) {
-		
-		// TODO fix kludge?
-		// what should cmd, arg, how be set to?
-		addVar("cmd", "");
-		addVar("arg", "");
-		addVar("how", "");
-		addVar("player", "" + player.getDBRef());
-		addVar("this", "" + object.getDBRef());
-		
+		setContext(player, object);
+
 		if( debug_enabled ) {
-			System.out.println("# Params: " + params.length);
-			System.out.println("");
-			
-			System.out.println("Params:");
-			
-			for(final String param : params) System.out.println(param);
+			System.out.println("Evaluate: <" + functionName + "> with " + Arrays.toString(call.lazy ? call.raw : params));
 		}
 
-		if( params.length > 0 ) {
-			/*
-			 * TODO: resolve this kludge and figure out a way to ensure that each
-			 * function doesn't have to worry about receiving the correct number
-			 * of parameters.
-			 */
-			// this a kludge, since a do function call may contain 1 or more parameters/sub scripts.
-			if ( functionName.equals("do") ) {
-				// {do:script1, script2, ...}
-				String temp;
+		/*
+		 * TODO: resolve this kludge and figure out a way to ensure that each
+		 * function doesn't have to worry about receiving the correct number
+		 * of parameters.
+		 */
+		// this a kludge, since a do function call may contain 1 or more parameters/sub scripts.
+		if ( functionName.equals("do") ) {
+			// {do:script1, script2, ...}
+			for(final Node node : nodes) {
+				final Value temp = node.eval(this, player, object);
+
+				if( debug_enabled ) System.out.println("(DO) Result: " + temp);
+			}
 
-				for(final String param : params) {
-					if( debug_enabled ) System.out.println("(DO) INTERPRET: " + param);
+			return Value.EMPTY;
+		}
 
-					temp = interpret(param, player, object);
+		// Functions that take 1 parameter
+		if( params.length == 1 ) {
+			if(functionName.equals("create_item")) {
+				// {create_item:identifier}
+				final Item item = parent.createItem(params[0].toString(), true);
 
-					if( debug_enabled ) System.out.println("(DO) Result: " + temp);
-				}
+				if( item != null ) return Value.of( item.getDBRef() );
+				else               return Value.of( -1 );
+			}
+			else if (functionName.equals("dbref")) {
+				// {dbref:object}
+				final MUDObject mobj = database.getByName(params[0].toString());
 
-				return "";
+				if( mobj != null ) return Value.of( mobj.getDBRef() ); 
+				else               return Value.of( -1 );
 			}
+			else if (functionName.equals("rainbow")) {
+				return Value.of( Utils.rainbow(params[0].toString(), parent.getColors()) );
+			}
+			else if ( functionName.equals("test") ) {
+				parent.cmd("interact " + ((NPC) object).getName(), player.getClient());
+				parent.cmd("list", player.getClient());
 
-			// Functions that take 1 parameter
-			if( params.length == 1 ) {
-				if( debug_enabled ) System.out.println("Parameter (1): " + params[0]);
+				return Value.NONE;
+			}
+			else { return Value.of("PGM: No such function!"); }
+		}
 
-				if(functionName.equals("create_item")) {
-					// {create_item:identifier}
-					final Item item = parent.createItem(params[0], true);
+		// Functions that take 2 parameters
+		else if( params.length == 2 ) {
+			int first = 0;
+			int second = 0;
 
-					if( item != null ) return "" + item.getDBRef();
-					else               return "" + -1;
-				}
-				else if (functionName.equals("dbref")) {
-					// {dbref:object}
-					final MUDObject mobj = database.getByName(params[0]);
+			boolean failNumParse = false;
 
-					if( mobj != null ) return "" + mobj.getDBRef(); 
-					else               return "" + -1;
-				}
-				else if (functionName.equals("rainbow")) {
-					if( debug_enabled ) System.out.println(params[0]);
-					
-					return Utils.rainbow(params[0], parent.getColors());
-				}
-				else if ( functionName.equals("test") ) {
-					final Integer i = Utils.toInt(params[0], -1);
-					
-					parent.cmd("interact " + ((NPC) object).getName(), player.getClient());
-					parent.cmd("list", player.getClient());
-					
-					return NONE;
+			// cover some stuff for certain parts here
+			if( MATH.contains(functionName) ) {
+				if( params[0].isScript() ) params[0] = interpret(params[0].toString(), player, object);
+				if( params[1].isScript() ) params[1] = interpret(params[1].toString(), player, object);
+
+				// pre-evaluate parameters here for functions which are basically math (trigger for comparing string equivalent)
+				if( !functionName.equals("and") ) {
+					if( params[0].isNumber() && params[1].isNumber() ) {
+						first = params[0].intValue();
+						second = params[1].intValue();
+					}
+					else failNumParse = true;
 				}
-				else { return "PGM: No such function!"; }
-				//else { return "Incomplete function statement, no parameters!"; }
-				//else { return "PGM: Error!"; }
 			}
 
-			// Functions that take 2 parameters
-			else if( params.length == 2 ) {
-				if( debug_enabled ) {
-					System.out.println("Parameter (1): " + params[0]);
-					System.out.println("Parameter (2): " + params[1]);
-				}
+			final String arg1 = params[0].toString();
+			final String arg2 = params[1].toString();
 
-				Integer first = null;
-				Integer second = null;
+			if( functionName.equals("colors") ) {
+				// {colors:color, string}
+				return Value.of( parent.colorCode(arg1) + arg2 + parent.colorCode("white") );
+			}
+			else if( functionName.equals("cmp") ) {
+				// {cmp:string1, string2}
+				return Value.of( arg1.equals(arg2) );
+			}
+			else if( functionName.equals("add") ) {
+				// {add:first, second}
+				if( failNumParse ) return Value.of( -1 );
 
-				boolean failNumParse = false;
+				return Value.of(first + second);
+			}
+			else if( functionName.equals("sub") ) {
+				// {sub:first, second}
+				if( failNumParse ) return Value.of( -1 );
 
-				// cover some stuff for certain parts here
-				if( Utils.mkList("add", "sub", "mul", "and", "eq", "lt", "le", "gt", "ge").contains(functionName) ) {
-					if( params[0].startsWith("{") && params[0].endsWith("}") ) {
-						params[0] = interpret(params[0], player, object);
-					}
+				return Value.of(first - second);
+			}
+			else if( functionName.equals("and") ) {
+				// {and:a, b}
+				return Value.of( params[0].isTrue() && params[1].isTrue() );
+			}
+			else if( functionName.equals("eq") ) {
+				// {eq:first, second}
+				if( arg1.equals(arg2) ) return Value.TRUE;
+				if( failNumParse )      return Value.FALSE;
 
-					if( params[1].startsWith("{") && params[1].endsWith("}") ) {
-						params[1] = interpret(params[1], player, object);
-					}
+				return Value.of( first == second );
+			}
+			else if( functionName.equals("lt") ) {
+				// {lt:first, second}
+				if( failNumParse ) return Value.FALSE;
 
-					// try to pre-evaluate parameters here for functions which are basically math (trigger for comparing string equivalent)
-					if( !functionName.equals("and") ) {
-						try {
-							first = Integer.parseInt(params[0]);
-							second = Integer.parseInt(params[1]);
-						}
-						catch(NumberFormatException nfe) {
-							if( debug_enabled ) System.out.println("-- Stack Trace --");
+				return Value.of( first < second );
+			}
+			else if( functionName.equals("le") ) {
+				// {le:first, second}
+				if( failNumParse ) return Value.FALSE;
 
-							nfe.printStackTrace();
+				return Value.of( first <= second );
+			}
+			else if( functionName.equals("gt") ) {
+				// {gt:first, second}
+				if( failNumParse ) return Value.FALSE;
 
-							failNumParse = true;
-						}
+				return Value.of( first > second );
+			}
+			else if( functionName.equals("ge") ) {
+				// {ge:first, second}
+				if( failNumParse ) return Value.FALSE;
 
-						//System.out.println("first: " + first);
-						//System.out.println("Second: " + second);
-					}
+				return Value.of( first >= second );
+			}
+			else if( functionName.equals("give") ) {
+				// {give:player, item}
+				final Player p = parent.getPlayer(params[0].intValue(-1));
+				final Item i = database.getItem(params[1].intValue(-1));
+
+				if( p != null && i != null ) {
+					i.setLocation(p.getDBRef());
+					p.getInventory().add(i);
 				}
 
-				if( functionName.equals("colors") ) {
-					// {colors:color, string}
+				return Value.EMPTY;
+			}
+			else if( functionName.equals("list") ) {
+				// {list:listname, object}
+				return Value.of( list(arg1, params[1].intValue(-1)) );
+			}
+			else if( functionName.equals("mul") ) {
+				// {mul:factor1, factor2}
+				if( failNumParse ) return Value.of( -1 );
 
-					if (params.length >= 2) {
-						// TODO consider how debug messages will be transmitted
-						if( debug_enabled)  {
-							System.out.println("Color: " + params[0]);
-							System.out.println("Text: " + params[1]);
-						}
+				return Value.of(first * second);
+			}
+			else if( functionName.equals("prop") ) {
+				// {prop:name, object}
+				return Value.of( prop(arg1, params[1].intValue(-1)) );
+			}
+			else if( functionName.equals("propdir") ) {
+				// {propdir:name, object}
+				return Value.of( propdir(arg1, params[1].intValue(-1)) );
+			}
+			else if( functionName.equals("set") ) {
+				if( hasVar(arg1) ) setVar(arg1, arg2);
+				else               addVar(arg1, arg2);
 
-						return parent.colorCode(params[0]) + params[1] + parent.colorCode("white");
-					}
-					else { return "PGM: Error!"; }
-				}
-				else if( functionName.equals("cmp") ) {
-					// {cmp:string1, string2}
-					if( params[0].equals(params[1]) ) {
-						return TRUE;
-					}
-					else {
-						return FALSE;
-					}
-				}
-				else if( functionName.equals("add") ) {
-					// {add:first, second}
-					if( failNumParse ) return "-1";
+				return params[1];
+			}
+			else if( functionName.equals("tell") ) {
+				// {tell:message, player}
 
-					return "" + (first + second);
-				}
-				else if( functionName.equals("sub") ) {
-					// {sub:first, second}
-					if( failNumParse ) return "-1";
+				// TODO resolve this kludge, since I may need to parse for hidden formatting data
+				final String message = arg1.replace("#c", ",");
+				final Player p = parent.getPlayer(params[1].intValue(-1));
 
-					return "" + (first - second);
-				}
-				else if( functionName.equals("and") ) {
-					// {and:a, b}
-					if( params[0].equals(TRUE) && params[1].equals(TRUE) ) {
-						return TRUE;
-					}
-					else {
-						return FALSE;
-					}
+				if( p != null ) {
+					// TODO figure out if there's a problem with this method of transmitting info
+					parent.addMessage( new Message(null, p, message) );
 				}
-				else if( functionName.equals("eq") ) {
-					// {eq:first, second}
-					if( params[0].equals(params[1]) ) {
-						return TRUE;
-					}
-					else {	
-						if( failNumParse )   return FALSE;
 
-						if (first == second) return TRUE;
-						else                 return FALSE;
-					}
-				}
-				else if( functionName.equals("lt") ) {
-					// {lt:first, second}
-					if( failNumParse )   return FALSE;
+				return Value.EMPTY;
+			}
+			else if( functionName.equals("equip") ) {
+				// {equip:player, item}
 
-					if (first < second)  return TRUE;
-					else                 return FALSE;
-				}
-				else if( functionName.equals("le") ) {
-					// {le:first, second}
-					if( failNumParse )   return FALSE;
+				// TODO items to equip should come out of the character's inventory
+				final Player p = parent.getPlayer(params[0].intValue(-1));
+				final Item i = database.getItem(params[1].intValue(-1));
 
-					if (first <= second) return TRUE;
-					else                 return FALSE;
-				}
-				else if( functionName.equals("gt") ) {
-					// {gt:first, second}
-					if( failNumParse )   return FALSE;
+				if( p != null && i != null ) {
+					// equip the specified item
+					// TODO implement programmatic equip
 
-					if (first > second)  return TRUE;
-					else                 return FALSE;
+					// change location?
+					p.getInventory().remove(i);
 				}
-				else if( functionName.equals("ge") ) {
-					// {ge:first, second}
-					if( failNumParse )   return FALSE;
 
-					if (first >= second) return TRUE;
-					else                 return FALSE;
-				}
-				//else { return "Incomplete function statement, no parameters!"; }
-				else if( functionName.equals("give") ) {
-					// {give:player, item}
-					final Player p = parent.getPlayer(Utils.toInt(params[0], -1));
-					final Item i = database.getItem(Utils.toInt(params[1], -1));
-
-					if( p != null && i != null ) {
-						i.setLocation(p.getDBRef());
-						p.getInventory().add(i);
-					}
+				return Value.EMPTY;
+			}
+			else if( functionName.equals("or") ) {
+				// {or:<condition1>,<condition2>}
+				return Value.of( params[0].isTrue() || params[1].isTrue() );
+			}
+			else { return Value.of("PGM: No such function! ( " + functionName + " )"); }
+		}
 
-					return "";
-				}
-				else if( functionName.equals("list") ) {
-					// {list:listname, object}
-					final String property = params[0];
-					final int dbref = Utils.toInt(params[1], -1);
-					
-					return list(property, dbref);
-				}
-				else if( functionName.equals("mul") ) {
-					// {mul:factor1, factor2}
+		// Functions that take 3 parameters
+		else if( params.length == 3 ) {
+			if( functionName.equals("if") ) {
+				// {if: test condition, true: do this, false: do this}
+				final Value result = nodes[0].eval(this, player, object);
 
-					if( failNumParse ) return "-1";
+				if( debug_enabled ) System.out.println("result: " + result);
 
-					return "" + (first * second);
-				}
-				else if( functionName.equals("prop") ) {
-					// {prop:name, object}
-					final String property = params[0];
-					final int dbref = Utils.toInt(params[1], -1);
-					
-					return prop(property, dbref);
-				}
-				else if( functionName.equals("propdir") ) {
-					// {prop:name, object}
-					final String property = params[0];
-					final int dbref = Utils.toInt(params[1], -1);
-					
-					return propdir(property, dbref);
-				}
-				else if( functionName.equals("set") ) {
-					final String var = params[0];
-					final String val = params[1];
-					
-					if( hasVar(var) ) setVar(var, val);
-					else              addVar(var, val);
-					
-					return val;
-				}
-				else if( functionName.equals("tell") ) {
-					// {tell:message, player}
+				if( result.isTrue() )       return nodes[1].eval(this, player, object);
+				else if( result.isFalse() ) return nodes[2].eval(this, player, object);
+			}
+			else if( functionName.equals("store") ) {
+				// {store: propname, object, value }
+				final String property = params[0].toString();
 
-					// TODO resolve this kludge, since I may need to parse for hidden formatting data
-					final String message = params[0].replace("#c", ",");
-					final Player p = parent.getPlayer(Utils.toInt(params[1], -1));
+				final MUDObject object1 = database.getById(params[1].intValue(-1));
 
-					if( message != null && p != null ) {
-						// TODO figure out if there's a problem with this method of transmitting info
-						parent.addMessage( new Message(null, p, message) );
-						//return message;
-					}
+				if( object1 != null ) {
+					if( debug_enabled ) System.out.println("Object: " + object1.getName());
 
-					return "";
+					object1.setProperty(property, params[2].toString());
+
+					return Value.of( "" + object1.getProperty(property) );
 				}
-				else if( functionName.equals("equip") ) {
-					// {equip:player, item}
+				else return Value.EMPTY;
+			}
+			else if( functionName.equals("with") ) {
+				// {with: name, value, script }
+				final String varName = call.raw[0];
 
-					// TODO items to equip should come out of the character's inventory
-					final Player p = parent.getPlayer(Utils.toInt(params[0], -1));
-					final Item i = database.getItem(Utils.toInt(params[1], -1));
+				addVar(varName, call.raw[1]);
 
-					if( p != null && i != null ) {
-						// equip the specified item
-						// TODO implement programmatic equip
+				final Value result = nodes[2].eval(this, player, object);
 
-						// change location?
-						p.getInventory().remove(i);
-					}
+				delVar(varName);
 
-					return "";
-				}
-				else if( functionName.equals("or") ) {
-					// {or:<condition1>,<condition2>}
+				return result;
+			}
 
-					if( params[0].equals(TRUE) || params[1].equals(TRUE) ) {
-						return TRUE;
-					}
-					else {
-						return FALSE;
-					}
-				}
-				/*else if( functionName.equals("write") ) {
-					// {write:message, player}
+			return Value.EMPTY;
+		}
 
-					final String message = params[0];
-					final Player p = parent.getPlayer(Utils.toInt(params[1], -1));
+		// functions that take some arbitrary number of parameters
+		else {
+			if( functionName.equals("distance") ) {
+				/*
+				 * parameters:
+				 * 	2d/3d
+				 *  one or two points
+				 */
+				final String[] args = new String[params.length];
 
-					if( message != null && p != null ) {
-						player.getClient().write( message );
-					}
+				for(int index = 0; index < params.length; index++) args[index] = params[index].toString();
 
-					return "";
+				List<Point> ptList = Utils.toPoints(Utils.join(args, ","));
+
+				if( ptList != null ) {
+					return Value.of( String.format("%.1f", Utils.distance(ptList.get(0), ptList.get(1))) );
 				}
-				else if( functionName.equals("writeln") ) {
-					// {writeln:message, player}
+				else { return Value.of("PGM: Error!"); }
+			}
+			else { return Value.of("PGM: No such function!"); }
+		}
+	}
 
-					final String message = params[0];
-					final Player p = parent.getPlayer(Utils.toInt(params[1], -1));
+	/* all ZERO parameter functions */
+	private Value atom(final Atom atom, final Player player, final MUDObject object) {
+		setContext(player, object);
+
+		switch(atom.text) {
+		case "{name}":
+			return Value.of( parent.getServerName() );
+		case "{version}":
+			return Value.of( MUDServer.getVersion() );
+		default:
+			// e.g. {&arg}
+			if( atom.var != null ) {
+				/*
+				 * special
+				 * &cmd - command that started this
+				 * &arg - function argument?
+				 * &this - object code is executing from?
+				 * &player - player context of executing code?
+				 */
+				final String value = getVar(atom.var);
+
+				if( value != null ) return Value.of(value);
+				else                return Value.EMPTY;
+			}
+			else return atom.value;
+		}
+	}
 
-					if( message != null && p != null ) {
-						player.getClient().writeln( message );
-					}
+	private void setContext(final Player player, final MUDObject object) {
+		// TODO fix kludge?
+		// what should cmd, arg, how be set to?
+		addVar("cmd", "");
+		addVar("arg", "");
+		addVar("how", "");
+		addVar("player", "" + (( player != null ) ? player.getDBRef() : -1));
+		addVar("this", "" + (( object != null ) ? object.getDBRef() : -1));
+	}
 
-					return "";
-				}*/
-				else { return "PGM: No such function! ( " + functionName + " )"; }
-			}
+	/* Compiled Scripts */
 
-			// Functions that take 3 parameters
-			else if( params.length == 3 ) {
-				if( debug_enabled ) {
-					System.out.println("Parameter (1): " + params[0]);
-					System.out.println("Parameter (2): " + params[1]);
-					System.out.println("Parameter (3): " + params[2]);
-				}
+	/**
+	 * A script value. To everything outside the interpreter it's still
+	 * text, but the number it holds (if any) is worked out at most once,
+	 * and literals get theirs at compile time.
+	 */
+	static final class Value {
+		static final Value EMPTY = new Value("");
+		static final Value TRUE = new Value(ProgramInterpreter.TRUE);
+		static final Value FALSE = new Value(ProgramInterpreter.FALSE);
+		static final Value NONE = new Value(ProgramInterpreter.NONE);
 
-				if( functionName.equals("if") ) {
-					// {if: test condition, true: do this, false: do this}
+		private final String text;
 
-					final String result = interpret(params[0], player, object);
+		private int number;
+		private byte numeric; // 0 = not checked, 1 = number, -1 = not a number
 
-					if( debug_enabled ) System.out.println("result: " + result);
+		private Value(final String text) {
+			this.text = text;
+		}
 
-					if( result.equals(TRUE) ) {
-						return interpret(params[1], player, object);
+		private Value(final int number) {
+			this.text = Integer.toString(number);
+			this.number = number;
+			this.numeric = 1;
+		}
 
-					}
-					else if( result.equals(FALSE) ) {
-						return interpret(params[2], player, object);
-					}
-				}
-				else if( functionName.equals("store") ) {
-					// {store: propname, object, value }
+		static Value of(final String text) {
+			return new Value(text);
+		}
 
-					final String property = params[0];
-					final int dbref = Utils.toInt(params[1], -1);
+		static Value of(final int number) {
+			return new Value(number);
+		}
 
-					final MUDObject object1 = database.getById(dbref);
+		static Value of(final boolean test) {
+			return test ? TRUE : FALSE;
+		}
 
-					final String value = params[2];
+		boolean isNumber() {
+			if( numeric == 0 ) {
+				try {
+					number = Integer.parseInt(text);
+					numeric = 1;
+				}
+				catch(final NumberFormatException nfe) {
+					numeric = -1;
+				}
+			}
 
-					if( object1 != null ) {
-						if( debug_enabled ) System.out.println("Object: " + object1.getName());
+			return numeric == 1;
+		}
 
-						object1.setProperty(property, value);
+		int intValue() {
+			return number;
+		}
 
-						return "" +  object1.getProperty(property);
-					}
-					else return "";
-				}
-				else if( functionName.equals("with") ) {
-					String result = "";
-					
-					final String varName = params[0];
-					final String varValue = params[1];
+		int intValue(final int alt) {
+			return isNumber() ? number : alt;
+		}
 
-					addVar(varName, varValue);
+		boolean isTrue() {
+			return text.equals(ProgramInterpreter.TRUE);
+		}
 
-					result = interpret(params[2], player, object);
+		boolean isFalse() {
+			return text.equals(ProgramInterpreter.FALSE);
+		}
 
-					delVar(varName);
+		boolean isScript() {
+			return text.startsWith("{") && text.endsWith("}");
+		}
 
-					return result;
-				}
+		@Override
+		public String toString() {
+			return this.text;
+		}
+	}
 
-				return "";
-			}
+	/**
+	 * A node in a compiled script. Nodes hold nothing but what the parser
+	 * found, all the run-time state lives in the interpreter.
+	 */
+	static abstract class Node {
+		abstract Value eval(final ProgramInterpreter pgm, final Player player, final MUDObject object);
+	}
 
-			// functions that take some arbitrary number of parameters
-			else {
-				if( functionName.equals("distance") ) {
-					/*
-					 * parameters:
-					 * 	2d/3d
-					 *  one or two points
-					 */
+	// a parameter that isn't a script, e.g. the 1 in {add:1,2}
+	private static final class Literal extends Node {
+		private final Value value;
 
-					if( debug_enabled ) System.out.println("PGM -distance-");
+		Literal(final String text) {
+			this.value = Value.of(text);
+			this.value.isNumber();
+		}
 
-					List<Point> ptList = Utils.toPoints(Utils.join(params, ","));
+		Value eval(final ProgramInterpreter pgm, final Player player, final MUDObject object) {
+			return value;
+		}
+	}
 
-					if( ptList != null ) {
-						return String.format("%.1f", Utils.distance(ptList.get(0), ptList.get(1)));
-						//return ptList + "; distance is " + String.format("%.1f", Utils.distance(ptList.get(0), ptList.get(1)));
-					}
-					else { return "PGM: Error!"; }
-					//else { return "Incomplete function statement, no parameters!"; }
-				}
-				else if ( functionName.equals("do") ) {
-					String temp;
+	// a script with no function, e.g. {name} or {&arg}
+	private static final class Atom extends Node {
+		private final String text;
+		private final String var;
+		private final Value value;
 
-					for(final String param : params) {
-						if( debug_enabled ) System.out.println("(DO) INTERPRET: " + param);
+		Atom(final String text) {
+			final String temp = text.substring(1, text.length() - 1);
 
-						temp = interpret(param, player, object);
+			this.text = text;
+			this.var = temp.startsWith("&") ? temp.substring(1) : null;
+			this.value = Value.of(text);
+		}
 
-						if( debug_enabled ) System.out.println("(DO) Result: " + temp);
+		Value eval(final ProgramInterpreter pgm, final Player player, final MUDObject object) {
+			return pgm.atom(this, player, object);
+		}
+	}
 
-						if( temp.equals(ERROR) ) {
-							return ""; // return early if we encounter an error
-						}
-					}
+	// a function call, e.g. {add:1,2}
+	private static final class Call extends Node {
+		private final String name;
+		private final String[] raw;
+		private final Node[] nodes;
+		private final boolean lazy;
+
+		Call(final String name, final String[] raw, final Node[] nodes, final boolean lazy) {
+			this.name = name;
+			this.raw = raw;
+			this.nodes = nodes;
+			this.lazy = lazy;
+		}
 
-					return "";
-				}
-				else { return "PGM: No such function!"; }
-			}
+		Value eval(final ProgramInterpreter pgm, final Player player, final MUDObject object) {
+			return pgm.call(this, player, object);
 		}
-		else {
-			//return functionName.substring(2, functionName.length() - 2) + ": Incomplete function statement, insufficient parameters!";
-			/* all ZERO parameter functions */
-			switch(functionName) {
-			case "{name}":
-				return parent.getServerName();
-			case "{version}":
-				return MUDServer.getVersion();
-			default:
-				String temp = functionName.substring(1, functionName.length() - 1);
-
-				// e.g. {&arg}
-				if( temp.startsWith("&") ) {
-					/*
-					 * special
-					 * &cmd - command that started this
-					 * &arg - function argument?
-					 * &this - object code is executing from?
-					 * &player - player context of executing code?
-					 */
-
-					final String varName = temp.substring(1);
-					final String value = getVar(varName);
-
-					if( value != null ) {
-						return value;
-					}
-					else return "";
-				}
-				else return functionName;
-			}
-			
-			// TODO convert all & 'functions' to var retrievals and store data in vars
-			// TODO consider making a separate area for protected/static vars
-			/*switch(functionName) {
-			case "{&arg}":
-				return vars.get("arg");
-			case "{&cmd}":
-				return "";
-			case "{&how}":
-				return "";
-			case "{&this}":
-				return "" + object.getDBRef();
-			case "{name}":
-				return parent.getServerName();
-			case "{&player}":
-				return "" + player.getDBRef();
-			case "{version}":
-				return MUDServer.getVersion();
-			default:
-				String temp = functionName.substring(1, functionName.length() - 1);
-				
-				//if( functionName.startsWith("&") ) {
-				if( temp.startsWith("&") ) {
-					final String varName = temp.substring(1);
-					final String value = getVar(varName);
+	}
 
-					if( value != null ) {
-						return value;
-					}
-					else return "";
-				}
-				else return functionName;
-			}*/
+	// text that isn't a well-formed script
+	private static final class Invalid extends Node {
+		Value eval(final ProgramInterpreter pgm, final Player player, final MUDObject object) {
+			int p_dbref = (( player != null ) ? player.getDBRef() : 1);
+			int o_dbref = (( object != null ) ? object.getDBRef() : 1);
+
+			return Value.of("Invalid Script! (" + p_dbref + "," + o_dbref + ")");
 		}
 	}
 	
@@ -715,7 +698,7 @@ public final class ProgramInterpreter {
 		final MUDObject object = database.getById(objDBREF);
 		
 		if( object != null ) {
-			if( listName.endsWith("#/") && propdir(listName, objDBREF).equals(TRUE) ) {
+			if( listName.endsWith("#/") && object.hasProperties(listName) ) {
 				final Map<String, String> props = object.getProperties(listName);
 				
 				final String[] strings = new String[props.size()];
@@ -783,10 +766,8 @@ public final class ProgramInterpreter {
 		final MUDObject object = database.getById(objDBREF);
 		
 		if( object != null ) {
-			Map<String, String> propdir = object.getProperties(propName);
-			
-			if( propdir != null && propdir.size() > 0) retval = TRUE;
-			else                                       retval = FALSE;
+			if( object.hasProperties(propName) ) retval = TRUE;
+			else                                 retval = FALSE;
 			
 		}
 		else retval = FALSE;
@@ -983,18 +964,144 @@ public final class ProgramInterpreter {
 			else sb.append(ch);
 		}
 
-		/*if( debug_enabled ) {
-				for( final String token : tokens) {
-					System.out.println(token);
-				}
+		return tokens;
+	}
+
+	/**
+	 * Compare running scripts from their compiled (and cached) node trees
+	 * with the way the interpreter used to run them: splitting the text up
+	 * and parsing numbers out of strings again on every run. Both have to
+	 * give the same results.
+	 * 
+	 * NOTE: the old way is reproduced below for the functions the benchmark
+	 * scripts use, since the interpreter itself no longer works that way.
+	 * 
+	 * usage: java mud.misc.ProgramInterpreter [iterations]
+	 * 
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
 
-				//System.out.println("Tokens: " + tokens);
-			}*/
+		final String[] texts = {
+				"{add:{sub:100,{add:1,2}},{add:3,4}}",
+				"{and:{lt:1,2},{ge:5,{add:2,3}}}",
+				"{cmp:hello,hello}",
+				"{gt:{add:{add:1,1},{add:1,1}},{sub:10,7}}"
+		};
 
-		for( final String token : tokens) {
-			System.out.println(token);
+		final Script[] scripts = new Script[texts.length];
+
+		for(int n = 0; n < texts.length; n++) scripts[n] = new Script(texts[n]);
+
+		final ProgramInterpreter pgm = new ProgramInterpreter(null);
+
+		for(int n = 0; n < texts.length; n++) {
+			final String a = pgm.interpretOld(texts[n]);
+			final String b = pgm.interpret(scripts[n], null, null);
+
+			System.out.println(texts[n] + " = " + b);
+
+			if( !a.equals(b) ) {
+				System.out.println("FAIL: the old way gives " + a);
+				System.exit(1);
+			}
 		}
 
-		return tokens;
+		long oldTime = 0;
+		long newTime = 0;
+		long sink = 0;
+
+		for(int pass = 0; pass < 2; pass++) {
+			// (the first pass is warm up)
+			long start = System.nanoTime();
+
+			for(int i = 0; i < iterations; i++) sink += pgm.interpretOld( texts[i % texts.length] ).length();
+
+			if( pass > 0 ) oldTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+
+			for(int i = 0; i < iterations; i++) sink += pgm.interpret( scripts[i % scripts.length], null, null ).length();
+
+			if( pass > 0 ) newTime = System.nanoTime() - start;
+		}
+
+		System.out.println(String.format("old:      %8.1f ns/script", (double) oldTime / iterations));
+		System.out.println(String.format("compiled: %8.1f ns/script (%.1fx) [%d]", (double) newTime / iterations, (double) oldTime / newTime, sink));
+	}
+
+	// the old interpret(String, Player, MUDObject), less the debugging output
+	private String interpretOld(final String script) {
+		if( !isValidScript( script ) ) return "Invalid Script! (1,1)";
+
+		if( script.indexOf(":") == -1 ) return evaluateOld(script, new String[0]);
+
+		final String work = script.substring(1, script.length() - 1);
+
+		final String[] temp = work.split(":", 2);
+
+		final String functionName = temp[0];
+
+		if( temp.length < 2 ) return "Incomplete function statement, no parameters!";
+
+		final List<String> params = Utils.mkList(temp[1].split(","));
+
+		ProgramInterpreter.fixParams( params );
+
+		if( !functionName.equals("if") && !functionName.equals("with") && !functionName.equals("do") ) {
+			int index = 0;
+
+			for(final String param : params) {
+				if( isValidScript( param ) ) params.set(index, interpretOld(param));
+
+				index++;
+			}
+		}
+
+		return evaluateOld(functionName, params.toArray(new String[params.size()]));
+	}
+
+	// the old evaluate(...), for just the two parameter comparison and math functions
+	private String evaluateOld(final String functionName, final String[] params) {
+		addVar("cmd", "");
+		addVar("arg", "");
+		addVar("how", "");
+		addVar("player", "" + 1);
+		addVar("this", "" + 1);
+
+		if( params.length == 2 ) {
+			Integer first = null;
+			Integer second = null;
+
+			boolean failNumParse = false;
+
+			if( Utils.mkList("add", "sub", "mul", "and", "eq", "lt", "le", "gt", "ge").contains(functionName) ) {
+				if( params[0].startsWith("{") && params[0].endsWith("}") ) params[0] = interpretOld(params[0]);
+				if( params[1].startsWith("{") && params[1].endsWith("}") ) params[1] = interpretOld(params[1]);
+
+				if( !functionName.equals("and") ) {
+					try {
+						first = Integer.parseInt(params[0]);
+						second = Integer.parseInt(params[1]);
+					}
+					catch(final NumberFormatException nfe) {
+						failNumParse = true;
+					}
+				}
+			}
+
+			if( functionName.equals("cmp") )      return params[0].equals(params[1]) ? TRUE : FALSE;
+			else if( functionName.equals("add") ) return failNumParse ? "-1" : "" + (first + second);
+			else if( functionName.equals("sub") ) return failNumParse ? "-1" : "" + (first - second);
+			else if( functionName.equals("and") ) return (params[0].equals(TRUE) && params[1].equals(TRUE)) ? TRUE : FALSE;
+			else if( functionName.equals("eq") )  return (params[0].equals(params[1]) || (!failNumParse && first.equals(second))) ? TRUE : FALSE;
+			else if( functionName.equals("lt") )  return (!failNumParse && first < second) ? TRUE : FALSE;
+			else if( functionName.equals("le") )  return (!failNumParse && first <= second) ? TRUE : FALSE;
+			else if( functionName.equals("gt") )  return (!failNumParse && first > second) ? TRUE : FALSE;
+			else if( functionName.equals("ge") )  return (!failNumParse && first >= second) ? TRUE : FALSE;
+		}
+
+		return "PGM: No such function!";
 	}
 }
\ No newline at end of file
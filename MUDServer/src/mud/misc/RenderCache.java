@@ -0,0 +1,205 @@
+package mud.misc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import mud.MUDObject;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Keeps descriptions that have already been word wrapped (and colored) for
+ * display, so that looking at something doesn't mean splitting and wrapping
+ * its description all over again. Descriptions rarely change, but look is
+ * the most used command there is.
+ *
+ * A rendering is kept for each combination of line width, color mode and
+ * MXP that's been asked for, and is only good for the version of the
+ * description it was made from (see MUDObject.getDescVersion()), so a
+ * changed description is never shown out of date. Editors should still
+ * call invalidate(...) when they save, so the old renderings don't hang
+ * around.
+ *
+ * Renderings are kept by object (MUDObject doesn't override equals, so that
+ * is by identity) rather than by dbref, since a recycled dbref is handed to
+ * a new object and objects that aren't in the database all have dbref -1.
+ * The database invalidates an object's renderings when it is recycled.
+ *
+ * Descriptions with markup in them ('{' ... '}') are evaluated every time
+ * they're shown and so are never cached.
+ *
+ * @author Jeremy
+ *
+ */
+public final class RenderCache {
+	private static final int MAX_VARIANTS = 4; // renderings kept per object
+
+	private final Map<MUDObject, Renderings> entries;
+
+	// metrics
+	private long hits = 0;
+	private long misses = 0;
+	private long bypassed = 0; // descriptions that couldn't be cached
+	private long invalidated = 0;
+
+	/**
+	 *
+	 * @param maxObjects number of objects to keep renderings for (the least recently used are dropped)
+	 */
+	public RenderCache(final int maxObjects) {
+		this.entries = new LinkedHashMap<MUDObject, Renderings>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<MUDObject, Renderings> eldest) {
+				return size() > maxObjects;
+			}
+		};
+	}
+
+	/**
+	 * Get an object's description, rendered for display.
+	 *
+	 * @param object
+	 * @param width     line width
+	 * @param colorMode color mode (Constants.ANSI, etc)
+	 * @param mxp       MXP enabled?
+	 * @param render    makes the lines from the description, if there isn't a rendering already
+	 * @return
+	 */
+	public Rendered get(final MUDObject object, final int width, final int colorMode, final boolean mxp, final Function<String, List<String>> render) {
+		final int version = object.getDescVersion(); // before getting the description, so a change made meanwhile isn't missed
+
+		synchronized(this) {
+			final Renderings entry = entries.get(object);
+
+			if( entry != null && entry.version == version ) {
+				for(final Rendered r : entry.variants) {
+					if( r != null && r.width == width && r.colorMode == colorMode && r.mxp == mxp ) {
+						hits++;
+						return r;
+					}
+				}
+			}
+		}
+
+		final String desc = object.getDesc();
+
+		final Rendered rendered = new Rendered(render.apply(desc), width, colorMode, mxp);
+
+		synchronized(this) {
+			if( desc.indexOf('{') != -1 ) {
+				bypassed++;
+				return rendered;
+			}
+
+			misses++;
+
+			Renderings entry = entries.get(object);
+
+			if( entry == null || entry.version != version ) {
+				entry = new Renderings(version);
+				entries.put(object, entry);
+			}
+
+			entry.add(rendered);
+		}
+
+		return rendered;
+	}
+
+	/**
+	 * Forget the renderings of an object's description.
+	 *
+	 * @param object
+	 */
+	public synchronized void invalidate(final MUDObject object) {
+		if( entries.remove(object) != null ) invalidated++;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final long total = hits + misses + bypassed;
+
+		return "RenderCache objects: " + entries.size() + " hits: " + hits + " misses: " + misses + " bypassed: " + bypassed +
+				" (hit rate " + ((total > 0) ? (100 * hits / total) : 0) + "%) invalidated: " + invalidated;
+	}
+
+	/**
+	 * A description, wrapped and ready to send.
+	 */
+	public static final class Rendered {
+		private final List<String> lines;
+		private final byte[] bytes;
+
+		private final int width;
+		private final int colorMode;
+		private final boolean mxp;
+
+		private Rendered(final List<String> lines, final int width, final int colorMode, final boolean mxp) {
+			this.lines = Collections.unmodifiableList(lines);
+
+			final StringBuilder sb = new StringBuilder();
+
+			for(final String line : lines) sb.append(line).append("\r\n");
+
+			this.bytes = sb.toString().getBytes(); // the same way Client.write(String) does
+
+			this.width = width;
+			this.colorMode = colorMode;
+			this.mxp = mxp;
+		}
+
+		/**
+		 * @return the lines (unmodifiable)
+		 */
+		public List<String> getLines() {
+			return this.lines;
+		}
+
+		/**
+		 * @return the lines, each ending with CRLF, as they'd be sent to a client
+		 */
+		public byte[] getBytes() {
+			return this.bytes;
+		}
+	}
+
+	private static final class Renderings {
+		private final int version;
+		private final Rendered[] variants = new Rendered[MAX_VARIANTS];
+		private int next = 0;
+
+		private Renderings(final int version) {
+			this.version = version;
+		}
+
+		private void add(final Rendered rendered) {
+			variants[next] = rendered;
+			next = (next + 1) % MAX_VARIANTS;
+		}
+	}
+}
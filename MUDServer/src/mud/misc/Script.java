@@ -10,6 +10,9 @@ package mud.misc;
 public class Script {
 	private String text;
 	
+	// parsed form, filled in by the ProgramInterpreter the first time the script runs
+	private volatile ProgramInterpreter.Node compiled = null;
+	
 	public Script(String scriptText) {
 		this.text = scriptText;
 	}
@@ -17,4 +20,12 @@ public class Script {
 	public String getText() {
 		return this.text;
 	}
+	
+	ProgramInterpreter.Node getCompiled() {
+		return this.compiled;
+	}
+	
+	void setCompiled(final ProgramInterpreter.Node node) {
+		this.compiled = node;
+	}
 }
\ No newline at end of file
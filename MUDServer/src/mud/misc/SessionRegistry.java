@@ -0,0 +1,241 @@
+package mud.misc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mud.net.Client;
+import mud.objects.Player;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Keeps a ClientSession for each connection and indexes the logged in ones
+ * by player name (ignoring case) and dbref, so finding the player for a
+ * client, or a client for a player, never means looking through everyone
+ * who is online.
+ * 
+ * Lookups don't lock, logging in and out do, so each of those either happens
+ * completely (every index changed) or not at all.
+ * 
+ * @author Jeremy
+ *
+ */
+public final class SessionRegistry {
+	private final Map<Client, ClientSession> byClient = new ConcurrentHashMap<Client, ClientSession>();
+	
+	// logged in sessions only
+	private final Map<String, ClientSession> byName = new ConcurrentHashMap<String, ClientSession>();    // lower case player name -> session
+	private final Map<Integer, ClientSession> byDBRef = new ConcurrentHashMap<Integer, ClientSession>(); // player dbref -> session
+	
+	private long logins = 0;
+	private long logouts = 0;
+	
+	/**
+	 * Get the session for a client, creating it if there isn't one.
+	 * 
+	 * @param client
+	 * @return
+	 */
+	public ClientSession open(final Client client) {
+		return byClient.computeIfAbsent(client, ClientSession::new);
+	}
+	
+	/**
+	 * Get the session for a client, if there is one.
+	 * 
+	 * @param client
+	 * @return the session or null
+	 */
+	public ClientSession get(final Client client) {
+		if( client == null ) return null;
+		
+		return byClient.get(client);
+	}
+	
+	/**
+	 * Forget a client entirely (it disconnected), logging out whoever was
+	 * logged in on it.
+	 * 
+	 * @param client
+	 * @return the player that was logged in, if any
+	 */
+	public synchronized Player close(final Client client) {
+		final Player player = logout(client);
+		
+		byClient.remove(client);
+		
+		return player;
+	}
+	
+	/**
+	 * Mark a player as logged in on a client.
+	 * 
+	 * @param client
+	 * @param player
+	 * @return false if the player is already logged in on another client
+	 */
+	public synchronized boolean login(final Client client, final Player player) {
+		final ClientSession current = byDBRef.get( player.getDBRef() );
+		
+		if( current != null && current.getClient() != client ) return false;
+		
+		final ClientSession session = open(client);
+		
+		// replacing a different player on this client
+		if( session.getPlayer() != null && session.getPlayer() != player ) unindex(session.getPlayer());
+		
+		session.setPlayer(player);
+		
+		byName.put( key(player.getName()), session );
+		byDBRef.put( player.getDBRef(), session );
+		
+		logins++;
+		
+		return true;
+	}
+	
+	/**
+	 * Log out whoever is logged in on a client. The session itself stays, since
+	 * the client may still be connected (account menu, etc).
+	 * 
+	 * @param client
+	 * @return the player that was logged in, if any
+	 */
+	public synchronized Player logout(final Client client) {
+		final ClientSession session = get(client);
+		
+		if( session == null || session.getPlayer() == null ) return null;
+		
+		final Player player = session.getPlayer();
+		
+		unindex(player);
+		
+		session.setPlayer(null);
+		
+		logouts++;
+		
+		return player;
+	}
+	
+	/**
+	 * Log out a player, whichever client they are on.
+	 * 
+	 * @param player
+	 * @return true if the player was logged in
+	 */
+	public synchronized boolean logout(final Player player) {
+		final ClientSession session = byDBRef.get( player.getDBRef() );
+		
+		if( session == null ) return false;
+		
+		return logout( session.getClient() ) != null;
+	}
+	
+	/**
+	 * Get the player logged in on a client.
+	 * 
+	 * @param client
+	 * @return the player or null
+	 */
+	public Player getPlayer(final Client client) {
+		final ClientSession session = get(client);
+		
+		return session != null ? session.getPlayer() : null;
+	}
+	
+	/**
+	 * Get a logged in player by name (ignoring case).
+	 * 
+	 * @param name
+	 * @return the player or null
+	 */
+	public Player getPlayer(final String name) {
+		if( name == null ) return null;
+		
+		final ClientSession session = byName.get( key(name) );
+		
+		return session != null ? session.getPlayer() : null;
+	}
+	
+	/**
+	 * Get a logged in player by dbref.
+	 * 
+	 * @param dbref
+	 * @return the player or null
+	 */
+	public Player getPlayer(final Integer dbref) {
+		if( dbref == null ) return null;
+		
+		final ClientSession session = byDBRef.get(dbref);
+		
+		return session != null ? session.getPlayer() : null;
+	}
+	
+	/**
+	 * Get the client a player is logged in on.
+	 * 
+	 * @param player
+	 * @return the client or null
+	 */
+	public Client getClient(final Player player) {
+		final ClientSession session = byDBRef.get( player.getDBRef() );
+		
+		return session != null ? session.getClient() : null;
+	}
+	
+	public boolean isLoggedIn(final Client client) {
+		return getPlayer(client) != null;
+	}
+	
+	public boolean isLoggedIn(final Player player) {
+		return player != null && byDBRef.get( player.getDBRef() ) != null;
+	}
+	
+	public Collection<ClientSession> getSessions() {
+		return Collections.unmodifiableCollection(byClient.values());
+	}
+	
+	/**
+	 * Number of sessions (connections).
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return byClient.size();
+	}
+	
+	/**
+	 * Number of players logged in.
+	 * 
+	 * @return
+	 */
+	public int numLoggedIn() {
+		return byDBRef.size();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "SessionRegistry sessions: " + byClient.size() + " logged in: " + byDBRef.size() + " (names: " + byName.size() + ")" +
+				" logins: " + logins + " logouts: " + logouts;
+	}
+	
+	// always called with the lock held
+	private void unindex(final Player player) {
+		byName.remove( key(player.getName()) );
+		byDBRef.remove( player.getDBRef() );
+	}
+	
+	private static String key(final String name) {
+		return name.toLowerCase();
+	}
+}
@@ -16,35 +16,41 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import mud.interfaces.MUDServerI;
 import mud.protocols.Telnet;
-import mud.utils.Utils;
+import mud.protocols.TelnetDecoder;
+import mud.protocols.TelnetMessage;
 
 public class Client implements Runnable {
-	public static final int TELNET_COMMAND_LENGTH = 3;
 	public static final int BUF_SIZE = 4096;
 	
 	private final Socket socket;
 	private final InputStream input;
 	private final OutputStream output;
 
-	private boolean running = false;
+	protected volatile boolean running = false;
 	private boolean debug = false;
 	
-	public boolean tn_neg_seq = false; // indicates if the bytes currently being received are part of a negotiation sequence
-	public boolean tn_cmd = false;
-	public boolean tn_subneg = false;
+	// input parsing (state is carried between reads)
+	private final TelnetDecoder decoder;
 
-	// temporary storage
-	private final StringBuffer sb = new StringBuffer(80);
-	private List<Byte> buffer = new LinkedList<Byte>();
+	// notified when input arrives
+	private MUDServerI listener = null;
+
+	// output waiting to be sent
+	protected final OutputQueue outputQueue = new OutputQueue();
+	private volatile boolean flushRequested = false;
 
 	// received data
-	private final Queue<Byte[]> received_telnet_msgs;
+	private final Queue<TelnetMessage> received_telnet_msgs;
 	private final Queue<String> queuedLines;
 	
 	// response
@@ -52,6 +58,7 @@ public class Client implements Runnable {
 	private boolean response_expected = false;
 	
 	public boolean NAWS = false;
+	public boolean MCCP = false; // has the client agreed to compression (MCCP2)?
 
 	public Client(final String host, final int port) throws IOException, UnknownHostException {
 		this(new Socket(host, port));
@@ -65,210 +72,53 @@ public class Client implements Runnable {
 
 		this.input = socket.getInputStream();
 		this.output = socket.getOutputStream();
+
+		this.running = true; // usable as soon as the streams are open, even before run() starts
 		
-		this.received_telnet_msgs = new LinkedList<Byte[]>();
+		this.received_telnet_msgs = new ConcurrentLinkedQueue<TelnetMessage>();
 		this.queuedLines = new ConcurrentLinkedQueue<String>();
+
+		this.decoder = new TelnetDecoder( new InputHandler() );
 	}
 
-	public void run() {
-		// TODO refine code
-		int readValue;
-		int bytes;
-		int last_ch = ' ';
+	/**
+	 * Constructor for clients whose i/o is driven externally (i.e. the NIO
+	 * engine) rather than by blocking streams, so no streams are opened here.
+	 * 
+	 * @param channel the (non-blocking) channel for this connection
+	 */
+	protected Client(final SocketChannel channel) {
+		this.socket = channel.socket();
 
-		boolean received_line = false;
+		this.input = null;
+		this.output = null;
+
+		this.received_telnet_msgs = new ConcurrentLinkedQueue<TelnetMessage>();
+		this.queuedLines = new ConcurrentLinkedQueue<String>();
+
+		this.decoder = new TelnetDecoder( new InputHandler() );
+	}
+
+	public void run() {
+		final byte[] buf = new byte[BUF_SIZE];
+		int count;
 
 		this.running = true;
 		this.debug = true;   // start out with debug enabled
 
 		try {
 			while( running ) {
-				readValue = 0;
-				bytes = 0;
-
 				while( input.available() > 0 ) {
-					// read in a value
-					readValue = input.read();
-					
-					// output what we read
-					//debug("Read: " + readValue);
-					
-					// if we are in a TELNET NEGOTIATON SEQUENCE
-					if( tn_neg_seq ) {
-						if( tn_cmd ) {
-							if( bytes < TELNET_COMMAND_LENGTH ) {
-								debug("Read: " + readValue);
-								
-								buffer.add( (byte) readValue );
-								bytes++;
-							}
-							
-							if( bytes == TELNET_COMMAND_LENGTH ) {
-								/*  response section -- properly belongs in the server end
-								 * 
-								 *  would be wise probably just to send a nice, fixed size array to the server and let it deal with the bytes
-								 */
-
-								received_telnet_msgs.add( buffer.toArray(new Byte[0]) );
-
-								/* end response section */
-
-								buffer.clear();
-								bytes = 0;
-								
-								tn_neg_seq = false;
-								tn_cmd = false;
-							}
-						}
-						else if( tn_subneg ) {
-							if( (byte) readValue == Telnet.IAC ) {
-								received_telnet_msgs.add( buffer.toArray(new Byte[0]) );
-								
-								buffer.clear();
-								bytes = 0;
-
-								debug("TELNET Command");
-							}
-							
-							debug("Read: " + readValue);
-							
-							buffer.add( (byte) readValue );
-							bytes++;
-							
-							if( (byte) readValue == Telnet.IAC ) {
-								//tn_cmd = true;
-								//tn_subneg = false;
-
-								continue;
-							}
-						}
-					}
-					else {
-						// if we see a TELNET COMMAND BYTE (take notice and enter TELNET NEGOTIATION SEQUENCE)
-						if( (byte) readValue == Telnet.IAC ) {
-							buffer.clear();
-
-							debug("TELNET Command");
-							
-							debug("Read: " + readValue);
-							
-							buffer.add( (byte) readValue );
-							bytes++;
-
-							tn_neg_seq = true;
-							tn_cmd = true;
-
-							continue;
-						}
-
-						final Character ch = (char) readValue;
-
-						// LF+CR, LFCR, CR+LF, CRLF
-						// the above combinations are detected and the cr after the nl or the nl after the cr
-						// are ignored because it introduces an extra line into the command
-
-						if (ch == '\012') {
-							// newline (\n)
-							if( last_ch == '\015' ) sb.delete(0, sb.length());
-							else                    received_line = true;
-						}
-						else if(ch == '\015') {
-							// carriage-return (\r)
-							if( last_ch == '\012' ) sb.delete(0, sb.length());
-							else                    received_line = true;
-						}
-						else if (ch == '\010') {
-							// backspace
-							if( sb.length() != 0 ) sb.deleteCharAt( sb.length() - 1 );
-						}
-						else {
-							// any other character
-							debug("Read: " + ch + "(" + readValue + ")");
-
-							sb.append(ch);
-
-							debug("current telnet input: " + Utils.stringToList( sb.toString() )); // tell us the whole string
-						}
-
-						last_ch = ch;
-
-						if( received_line ) {
-							final String line = sb.toString().trim();
-
-							if( !response_expected ) this.queuedLines.add(line);
-							else                     this.response = line;
-
-							sb.delete(0, sb.length());
-
-							received_line = false;     // reset received line indicator
-						}
-					}
-
-					// ---------------------------------------------------------------------------------
-
-					/*
-
-					// can't use BufferedReader here - we need access to the buffer for telnet commands, 
-					// which won't be followed by a newline
-					final byte buf[] = new byte[BUF_SIZE];
-
-					int numRead = 0;
-					int numParsed = 0;
-
-					while (running) {
-						final int lastNumRead = input.read(buf, numRead, BUF_SIZE - numRead);
-
-						numRead += lastNumRead;
-
-						for(int n = numParsed; n < numRead - 1; n++) {
-							// test for telnet bytes?
-							if( 1 == 0 ) {
-								// if it's a telnet byte append it to the current telnet messagee
-							}
-							else {
-								// if we read more than one character total and we found a carriage-return ('\r)
-								// or a newline (\n) character, turn the input into a string and dump it into
-								// queued lines
-
-								if( buf[n] == '\r' || buf[n] == '\n' ) {
-									final String input = sb.toString();
-
-									queuedLines.add( sb.toString() );
-
-									sb.delete(0, sb.length());
-								}
-								else {
-									sb.append((char) buf[n]);
-								}
-
-								numParsed++;
-							}
-						}
-
-						if( numParsed == BUF_SIZE ) {
-							numParsed = 0;
-
-							if( BUF_SIZE - numRead == 0 ) {
-								numRead = 0;   // TODO be careful with this one
-							}
-						}
-					}
-
-					 */
+					// read in whatever is available (up to the size of the buffer)
+					count = input.read(buf, 0, Math.min(input.available(), BUF_SIZE));
 
-					/*if (numRead > 1 && (buf[numRead - 1] == '\r' || buf[numRead - 1] == '\n')) {
-						final String input = new String(buf, 0, numRead); // convert read characters into string
-
-						numRead = 0; // clear count of read characters
+					if( count > 0 ) decoder.decode(buf, 0, count);
+				}
 
-						// handles possibility of multiple lines in input (mud client, probably)
-						for (final String line : input.split("(\r\n|\n|\r)")) {
-							if (line != null && !"".equals(line)) {
-								queuedLines.add(line);
-							}
-						}
-					}*/
-					//}
+				// write out any queued output
+				if( flushRequested ) {
+					flushRequested = false;
+					outputQueue.drainTo(output);
 				}
 
 				try {
@@ -299,6 +149,69 @@ public class Client implements Runnable {
 		}
 	}
 
+	/**
+	 * Process a chunk of input from the client that was pulled off the
+	 * network by something other than run() (i.e. the NIO engine). The
+	 * buffer is consumed completely; partial lines and telnet sequences
+	 * are held over until the next call.
+	 * 
+	 * @param data
+	 */
+	protected void receive(final ByteBuffer data) {
+		decoder.decode(data);
+	}
+
+	/**
+	 * Takes decoded input and queues it for the server. Lines are either
+	 * queued as commands or held as the response to a prompt.
+	 */
+	private class InputHandler implements TelnetDecoder.Handler {
+		public void line(final byte[] data, final int length) {
+			// bytes are mapped directly to chars (as they always have been)
+			final String line = new String(data, 0, length, StandardCharsets.ISO_8859_1).trim();
+
+			debug("Read line: " + line);
+
+			if( !response_expected ) queuedLines.add(line);
+			else                     response = line;
+
+			notifyListener();
+		}
+
+		public void command(final byte command, final byte option) {
+			final TelnetMessage event = new TelnetMessage(command, option);
+
+			debug("TELNET Command: " + event);
+
+			received_telnet_msgs.add(event);
+
+			notifyListener();
+		}
+
+		public void subnegotiation(final byte option, final byte[] data, final int length) {
+			final TelnetMessage event = new TelnetMessage(Telnet.SB, option, Arrays.copyOf(data, length));
+
+			debug("TELNET Command: " + event);
+
+			received_telnet_msgs.add(event);
+
+			notifyListener();
+		}
+	}
+
+	/**
+	 * Set who should be told when this client has input waiting.
+	 * 
+	 * @param listener
+	 */
+	public void setListener(final MUDServerI listener) {
+		this.listener = listener;
+	}
+
+	private void notifyListener() {
+		if( listener != null ) listener.clientInput(this);
+	}
+
 	public Socket getSocket() {
 		return this.socket;
 	}
@@ -316,6 +229,14 @@ public class Client implements Runnable {
 
 		// clean up after ourselves
 		try {
+			// end the compressed stream (if any), so anything left can still be read
+			outputQueue.stopCompression();
+
+			// send anything left (i.e. a goodbye message), unless it's a backlog we shouldn't wait on
+			if( output != null && outputQueue.depth() < OutputQueue.FLUSH_THRESHOLD ) {
+				outputQueue.drainTo(output);
+			}
+
 			if( input != null )  this.input.close();
 			if( output != null ) this.output.close();
 			if( socket != null ) this.socket.close();
@@ -330,34 +251,76 @@ public class Client implements Runnable {
 	}
 
 	public void write(final char ch) {
-		try {
-			output.write(ch);
-		}
-		catch (final IOException ioe) {
-			ioe.printStackTrace();
-			stopRunning();
-		}
+		write( new byte[] { (byte) ch } );
 	}
 
 	public void write(final byte b) {
-		try {
-			output.write(b);
-		}
-		catch (final IOException ioe) {
-			ioe.printStackTrace();
-			stopRunning();
-		}
+		write( new byte[] { b } );
 	}
 
+	/**
+	 * Queue data to be sent to the client. Nothing is written to the network
+	 * here; the data is sent when flush() is called or enough output has
+	 * accumulated to pass the flush threshold.
+	 * 
+	 * @param data
+	 */
 	public void write(final byte data[]) {
-		try {
-			output.write(data);
-			output.flush();
+		if( !outputQueue.add(data) ) {
+			// the client isn't keeping up with it's output
+			if( outputQueue.getPolicy() == OutputQueue.Policy.DISCONNECT ) {
+				debug("Client: output queue full, disconnecting");
+				
+				outputQueue.clear();
+				
+				stopRunning();
+			}
+
+			return;
 		}
-		catch (final IOException ioe) {
-			ioe.printStackTrace();
-			stopRunning();
+
+		if( outputQueue.depth() >= OutputQueue.FLUSH_THRESHOLD ) flush();
+	}
+
+	/**
+	 * Have any queued output sent. This doesn't block, the writing is done
+	 * by the thread that handles this client's connection.
+	 */
+	public void flush() {
+		this.flushRequested = true;
+	}
+
+	public OutputQueue getOutputQueue() {
+		return this.outputQueue;
+	}
+
+	/**
+	 * Start compressing output to this client (MCCP2). Should only be done
+	 * once the client has agreed to it (IAC DO COMPRESS2).
+	 * 
+	 * @return false if output was already being compressed
+	 */
+	public boolean startCompression() {
+		if( !outputQueue.startCompression( new byte[] { Telnet.IAC, Telnet.SB, Telnet.MCCP2, Telnet.IAC, Telnet.SE } ) ) {
+			return false;
 		}
+
+		flush();
+
+		return true;
+	}
+
+	/**
+	 * Stop compressing output to this client.
+	 */
+	public void stopCompression() {
+		outputQueue.stopCompression();
+
+		flush();
+	}
+
+	public boolean isCompressing() {
+		return outputQueue.isCompressing();
 	}
 
 	public void write(final String data) {
@@ -401,11 +364,13 @@ public class Client implements Runnable {
 		}
 	}
 	
-	public Byte[] getTelnetMessage() {
-		boolean haveMsg = !this.received_telnet_msgs.isEmpty();
-		
-		if( haveMsg ) return this.received_telnet_msgs.poll();
-		else          return new Byte[0];                         
+	/**
+	 * Get the next telnet command received from the client.
+	 * 
+	 * @return a TelnetMessage or null if there are none waiting
+	 */
+	public TelnetMessage getTelnetMessage() {
+		return this.received_telnet_msgs.poll();
 	}
 
 	public boolean isAlive() {
@@ -0,0 +1,39 @@
+package mud.net;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Notice that a client has input waiting, along with when that was
+ * noticed (so we can tell how long it waited to be handled).
+ * 
+ * @author Jeremy
+ *
+ */
+public class InputEvent {
+	private final Client client;
+	private final long time;
+
+	public InputEvent(final Client client) {
+		this.client = client;
+		this.time = System.nanoTime();
+	}
+
+	public Client getClient() {
+		return this.client;
+	}
+
+	/**
+	 * @return the time (System.nanoTime()) this event was created
+	 */
+	public long getTime() {
+		return this.time;
+	}
+}
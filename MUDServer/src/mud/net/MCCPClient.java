@@ -0,0 +1,290 @@
+package mud.net;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import mud.protocols.Telnet;
+
+/**
+ * A bare bones client for checking compressed output (MCCP2). It agrees to
+ * compression when the server offers it, decompresses everything after
+ * IAC SB COMPRESS2 IAC SE, prints the text it gets and sends each of the
+ * given commands once the server has gone quiet.
+ *
+ * It fails (exits with 1) if the compressed stream is corrupt, if the
+ * server sends compressed data that can't be decompressed yet when it has
+ * nothing more to send (the stream wasn't flushed), or if the server never
+ * started compressing at all.
+ *
+ * usage: java mud.net.MCCPClient host port [command...]
+ *
+ * @author Jeremy
+ *
+ */
+public final class MCCPClient {
+	private static final int QUIET_MS = 750; // how long the server has to be quiet before we send the next command
+
+	private final Socket socket;
+	private final InputStream input;
+	private final OutputStream output;
+
+	private final Inflater inflater = new Inflater();
+	private boolean inflating = false;
+
+	// telnet parsing
+	private int state = 0; // 0 = text, 1 = IAC, 2 = IAC <command>, 3 = IAC SB ..., 4 = IAC SB ... IAC
+	private byte command = 0;
+	private final ByteArrayOutputStream sub = new ByteArrayOutputStream();
+
+	private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+	// counts
+	private long raw = 0;        // bytes received
+	private long compressed = 0; // bytes received while compressing
+	private long inflated = 0;   // bytes they were decompressed to
+	private int streams = 0;     // compressed streams started
+
+	private MCCPClient(final String host, final int port) throws IOException {
+		this.socket = new Socket(host, port);
+		this.socket.setSoTimeout(50);
+
+		this.input = socket.getInputStream();
+		this.output = socket.getOutputStream();
+	}
+
+	private void run(final String[] commands) throws IOException, DataFormatException {
+		final byte[] buf = new byte[4096];
+
+		int next = 0;
+		long last = System.currentTimeMillis();
+
+		while( true ) {
+			int count;
+
+			try {
+				count = input.read(buf);
+			}
+			catch(final SocketTimeoutException ste) {
+				count = 0;
+			}
+
+			if( count < 0 ) break; // disconnected
+
+			if( count > 0 ) {
+				raw += count;
+
+				receive(buf, 0, count);
+
+				last = System.currentTimeMillis();
+			}
+			else if( System.currentTimeMillis() - last > QUIET_MS ) {
+				// everything sent so far should be readable by now
+				if( inflating && !inflater.needsInput() ) {
+					throw new DataFormatException("compressed output was not flushed");
+				}
+
+				if( next < commands.length ) {
+					System.out.println(">>> " + commands[next]);
+
+					output.write( (commands[next++] + "\r\n").getBytes(StandardCharsets.ISO_8859_1) );
+					output.flush();
+
+					last = System.currentTimeMillis();
+				}
+				else break;
+			}
+		}
+
+		socket.close();
+	}
+
+	// handle bytes straight off the network
+	private void receive(final byte[] data, final int offset, final int length) throws DataFormatException {
+		if( inflating ) {
+			inflate(data, offset, length);
+			return;
+		}
+
+		for(int i = offset; i < offset + length; i++) {
+			if( parse(data[i]) ) {
+				// compression starts with the very next byte
+				inflating = true;
+				streams++;
+
+				inflate(data, i + 1, offset + length - (i + 1));
+				return;
+			}
+		}
+	}
+
+	private void inflate(final byte[] data, final int offset, final int length) throws DataFormatException {
+		if( length == 0 ) return;
+
+		compressed += length;
+
+		inflater.setInput(data, offset, length);
+
+		final byte[] out = new byte[4096];
+
+		while( !inflater.finished() ) {
+			final int count = inflater.inflate(out);
+
+			if( count == 0 ) {
+				if( inflater.needsDictionary() ) throw new DataFormatException("unexpected dictionary");
+				break;
+			}
+
+			inflated += count;
+
+			for(int i = 0; i < count; i++) {
+				if( parse(out[i]) ) throw new DataFormatException("compression started inside of a compressed stream");
+			}
+		}
+
+		// the server stopped compressing, whatever is left over isn't compressed
+		if( inflater.finished() ) {
+			final int remaining = inflater.getRemaining();
+
+			compressed -= remaining;
+
+			inflater.reset();
+			inflating = false;
+
+			System.out.println("[compression stopped]");
+
+			receive(data, offset + length - remaining, remaining);
+		}
+	}
+
+	/**
+	 * Feed a byte of (decompressed) output through the telnet parser.
+	 *
+	 * @param b
+	 * @return true if it ended IAC SB COMPRESS2 IAC SE
+	 */
+	private boolean parse(final byte b) {
+		switch(state) {
+		case 0:
+			if( b == Telnet.IAC ) state = 1;
+			else {
+				if( b == '\n' ) {
+					System.out.println( new String(text.toByteArray(), StandardCharsets.ISO_8859_1).replace("\r", "") );
+					text.reset();
+				}
+				else text.write(b);
+			}
+			break;
+		case 1:
+			if( b == Telnet.SB ) {
+				sub.reset();
+				state = 3;
+			}
+			else if( b == Telnet.WILL || b == Telnet.WONT || b == Telnet.DO || b == Telnet.DONT ) {
+				command = b;
+				state = 2;
+			}
+			else {
+				if( b == Telnet.IAC ) text.write(b); // escaped 255
+				state = 0;
+			}
+			break;
+		case 2:
+			if( command == Telnet.WILL && b == Telnet.MCCP2 ) {
+				System.out.println("[server offered compression]");
+				reply( new byte[] { Telnet.IAC, Telnet.DO, Telnet.MCCP2 } );
+			}
+			state = 0;
+			break;
+		case 3:
+			if( b == Telnet.IAC ) state = 4;
+			else                  sub.write(b);
+			break;
+		case 4:
+			if( b == Telnet.SE ) {
+				state = 0;
+
+				final byte[] option = sub.toByteArray();
+
+				if( option.length == 1 && option[0] == Telnet.MCCP2 ) {
+					System.out.println("[compression started]");
+					return true;
+				}
+			}
+			else {
+				sub.write(b);
+				state = 3;
+			}
+			break;
+		default:
+			break;
+		}
+
+		return false;
+	}
+
+	private void reply(final byte[] data) {
+		try {
+			output.write(data);
+			output.flush();
+		}
+		catch(final IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	public static void main(final String[] args) {
+		if( args.length < 2 ) {
+			System.out.println("usage: java mud.net.MCCPClient host port [command...]");
+			System.exit(2);
+		}
+
+		final String[] commands = new String[args.length - 2];
+
+		System.arraycopy(args, 2, commands, 0, commands.length);
+
+		try {
+			final MCCPClient client = new MCCPClient(args[0], Integer.parseInt(args[1]));
+
+			client.run(commands);
+
+			System.out.println();
+			System.out.println("received: " + client.raw + " bytes (" + client.compressed + " compressed, " + client.streams + " streams)");
+
+			if( client.compressed > 0 ) {
+				System.out.println(String.format("decompressed: %d bytes (ratio %.2f)", client.inflated, (double) client.inflated / client.compressed));
+			}
+
+			if( client.streams == 0 ) {
+				System.out.println("FAIL: server never started compressing");
+				System.exit(1);
+			}
+
+			System.out.println("OK");
+		}
+		catch(final DataFormatException dfe) {
+			System.out.println("FAIL: " + dfe.getMessage());
+			System.exit(1);
+		}
+		catch(final IOException ioe) {
+			ioe.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
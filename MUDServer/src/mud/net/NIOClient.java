@@ -0,0 +1,137 @@
+package mud.net;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A client connection serviced by NIOServer. There is no thread per client,
+ * the server's selector thread calls read() and flush() when the channel is
+ * ready and everything else (parsing, the input queues) is inherited from
+ * Client.
+ * 
+ * Writes never touch the socket directly, they are appended to the output
+ * queue and the server drains it when the channel is writable.
+ * 
+ * @author Jeremy
+ *
+ */
+public class NIOClient extends Client {
+	private final NIOServer server;
+	private final SocketChannel channel;
+
+	private SelectionKey key;
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(BUF_SIZE);
+
+	public NIOClient(final NIOServer server, final SocketChannel channel) {
+		super(channel);
+
+		this.server = server;
+		this.channel = channel;
+
+		this.running = true;
+	}
+
+	/**
+	 * Does nothing, an NIOClient has no thread of its own.
+	 */
+	@Override
+	public void run() {
+	}
+
+	void setKey(final SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Read whatever is available on the channel and feed it through
+	 * the input parser.
+	 * 
+	 * @return the number of bytes read, -1 if the connection was closed
+	 * @throws IOException
+	 */
+	int read() throws IOException {
+		final int count = channel.read(readBuffer);
+
+		if( count > 0 ) {
+			readBuffer.flip();
+
+			receive(readBuffer);
+
+			readBuffer.clear();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Write as much of the queued output to the channel as it will take.
+	 * 
+	 * @return true if all queued output was written
+	 * @throws IOException
+	 */
+	boolean drain() throws IOException {
+		final boolean done = outputQueue.drainTo(channel);
+
+		updateInterest(done);
+
+		return done;
+	}
+
+	/**
+	 * Set the channel's interest ops to reflect whether there is
+	 * output waiting to be written. Called from the selector thread.
+	 */
+	void updateInterest() {
+		updateInterest( outputQueue.isEmpty() );
+	}
+
+	private void updateInterest(final boolean empty) {
+		if( key != null && key.isValid() ) {
+			if( empty ) key.interestOps(SelectionKey.OP_READ);
+			else        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * Have the selector thread write out any queued output.
+	 */
+	@Override
+	public void flush() {
+		if( running && !outputQueue.isEmpty() ) server.requestFlush(this);
+	}
+
+	@Override
+	public void stopRunning() {
+		this.running = false;
+
+		// end the compressed stream (if any), so anything left can still be read
+		outputQueue.stopCompression();
+
+		// one last (non-blocking) attempt to send anything left
+		try {
+			if( channel.isOpen() ) outputQueue.drainTo(channel);
+		}
+		catch (final IOException ioe) {
+			System.out.println("could not send remaining output: " + ioe.getMessage());
+		}
+
+		server.close(this);
+	}
+
+	SocketChannel getChannel() {
+		return this.channel;
+	}
+}
@@ -0,0 +1,216 @@
+package mud.net;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import mud.interfaces.MUDServerI;
+
+/**
+ * A non-blocking network server using a single java.nio Selector thread
+ * to accept connections and service reads/writes for every client, instead
+ * of a thread (and busy polling loop) per client as Server does.
+ * 
+ * Clients are NIOClient(s), which behave like any other Client as far as
+ * MUDServer is concerned.
+ * 
+ * @author Jeremy
+ *
+ */
+public class NIOServer extends Server {
+	private static final long ACCEPT_RETRY_MS = 100; // how long to wait after accept() fails
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+
+	// clients with output waiting to be flushed (interest ops must be changed on the selector thread)
+	private final Queue<NIOClient> pendingWrites = new ConcurrentLinkedQueue<NIOClient>();
+
+	public NIOServer(final MUDServerI p, final int port) {
+		super(p, port);
+	}
+
+	@Override
+	public boolean init() {
+		boolean success = true;
+
+		try {
+			this.selector = Selector.open();
+
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.configureBlocking(false);
+			this.serverChannel.socket().bind( new InetSocketAddress(port) );
+			this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch (final IOException ioe) {
+			success = false;
+
+			System.out.println("could not open server socket");
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
+		}
+
+		return success;
+	}
+
+	@Override
+	public void run() {
+		try {
+			if( init() ) {
+				this.running = true;
+			}
+
+			while (this.running) {
+				this.selector.select();
+
+				// apply any interest changes requested by other threads
+				NIOClient pending;
+
+				while( (pending = pendingWrites.poll()) != null ) {
+					pending.updateInterest();
+				}
+
+				final Iterator<SelectionKey> iter = this.selector.selectedKeys().iterator();
+
+				while( iter.hasNext() ) {
+					final SelectionKey key = iter.next();
+
+					iter.remove();
+
+					if( !key.isValid() ) continue;
+
+					if( key.isAcceptable() ) {
+						try {
+							accept();
+						}
+						catch (final IOException ioe) {
+							// i.e. out of file descriptors, which doesn't stop us serving the clients we have
+							System.out.println("could not accept client socket: " + ioe.getMessage());
+
+							// the connection is still waiting, so don't spin on it
+							pause(ACCEPT_RETRY_MS);
+						}
+					}
+					else {
+						final NIOClient client = (NIOClient) key.attachment();
+
+						try {
+							if( key.isReadable() && client.read() < 0 ) {
+								disconnect(client);
+								continue;
+							}
+
+							if( key.isValid() && key.isWritable() ) {
+								client.drain();
+							}
+						}
+						catch (final IOException ioe) {
+							// connection reset or similar, drop the client
+							disconnect(client);
+						}
+					}
+				}
+			}
+		}
+		catch (final IOException ioe) {
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
+		}
+		finally {
+			this.running = false;
+
+			for (final Client c : getClients()) c.stopRunning();
+
+			try {
+				if( this.serverChannel != null ) this.serverChannel.close();
+				if( this.selector != null )      this.selector.close();
+			}
+			catch (final IOException ioe) {
+				ioe.printStackTrace();
+			}
+		}
+	}
+
+	private static void pause(final long ms) {
+		try {
+			Thread.sleep(ms);
+		}
+		catch (final InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = this.serverChannel.accept();
+
+		if( channel == null ) return;
+
+		channel.configureBlocking(false);
+
+		System.out.println("Accepted client socket.");
+
+		final NIOClient client = new NIOClient(this, channel);
+
+		client.setListener(parent);
+
+		client.setKey( channel.register(this.selector, SelectionKey.OP_READ, client) );
+
+		this.clients.add(client);
+
+		parent.clientConnected(client);
+	}
+
+	/**
+	 * Note that a client has output waiting, so that the selector thread
+	 * will start watching it's channel for writability.
+	 * 
+	 * @param client
+	 */
+	void requestFlush(final NIOClient client) {
+		this.pendingWrites.add(client);
+
+		if( this.selector != null ) this.selector.wakeup();
+	}
+
+	/**
+	 * Close a client's channel. Cancelling the key and closing the channel
+	 * are both safe to do from a thread other than the selector thread.
+	 * 
+	 * @param client
+	 */
+	void close(final NIOClient client) {
+		try {
+			final SelectionKey key = client.getChannel().keyFor(this.selector);
+
+			if( key != null ) key.cancel();
+
+			client.getChannel().close();
+		}
+		catch (final IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	@Override
+	public void stopRunning() {
+		this.running = false;
+
+		if( this.selector != null ) this.selector.wakeup();
+	}
+}
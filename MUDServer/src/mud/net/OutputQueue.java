@@ -0,0 +1,347 @@
+package mud.net;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Deflater;
+
+/**
+ * Per client output queue. Messages are appended (coalesced) into a single
+ * growable buffer which is written out in as few calls as possible by the
+ * thread that owns the connection, rather than by whichever thread produced
+ * the output.
+ * 
+ * If more than the high-water mark is waiting (i.e. the client isn't reading)
+ * further output is either dropped or refused, depending on the policy, so
+ * that one slow consumer can't grow the heap without bound.
+ * 
+ * Output can be compressed (MCCP2). Once compression is started, everything
+ * added is run through a zlib stream and only the compressed bytes are queued.
+ * The stream is flushed whenever the queue is drained, rather than for every
+ * message, so the client can decompress everything it has been sent so far
+ * without paying for a flush on each line.
+ * 
+ * @author Jeremy
+ *
+ */
+public class OutputQueue {
+	public enum Policy { DROP, DISCONNECT };
+
+	public static final int INITIAL_SIZE = 4096;
+
+	public static final int FLUSH_THRESHOLD = 8 * 1024;   // 8 KB waiting and we want it written now
+	public static final int HIGH_WATER_MARK = 256 * 1024; // 256 KB waiting and the client is considered stalled
+
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_SIZE);
+
+	private final int highWaterMark;
+	private final Policy policy;
+
+	// held across copying out and writing, so that two threads draining (i.e. the
+	// client's thread and one stopping it) can't write their chunks out of order
+	private final Object writeLock = new Object();
+
+	// compression (MCCP2)
+	private Deflater deflater = null;
+	private byte[] deflated = null;   // compressed output, before it's queued
+	private boolean pending = false;  // is there input that hasn't been flushed out of the deflater?
+
+	// metrics
+	private long bytesQueued = 0;
+	private long bytesWritten = 0;
+	private long writes = 0;
+	private long dropped = 0;
+	private int peak = 0;
+
+	private long compressedIn = 0;  // bytes given to the deflater
+	private long compressedOut = 0; // bytes it produced
+	private long compressTime = 0;  // time spent compressing (ns)
+
+	public OutputQueue() {
+		this(HIGH_WATER_MARK, Policy.DROP);
+	}
+
+	public OutputQueue(final int highWaterMark, final Policy policy) {
+		this.highWaterMark = highWaterMark;
+		this.policy = policy;
+	}
+
+	/**
+	 * Append data to the queue.
+	 * 
+	 * @param data
+	 * @return false if the data would put us over the high-water mark (the data is not queued)
+	 */
+	public synchronized boolean add(final byte[] data) {
+		return add(data, 0, data.length);
+	}
+
+	public synchronized boolean add(final byte[] data, final int offset, final int length) {
+		if( buffer.position() + length > highWaterMark ) {
+			dropped += length;
+			return false;
+		}
+
+		if( deflater != null ) deflate(data, offset, length, Deflater.NO_FLUSH);
+		else                   put(data, offset, length);
+
+		bytesQueued += length;
+
+		if( buffer.position() > peak ) peak = buffer.position();
+
+		return true;
+	}
+
+	private void put(final byte[] data, final int offset, final int length) {
+		if( buffer.remaining() < length ) {
+			// grow the buffer to fit (doubling, so repeated small writes don't keep reallocating)
+			int capacity = buffer.capacity();
+
+			while( capacity - buffer.position() < length ) capacity *= 2;
+
+			final ByteBuffer temp = ByteBuffer.allocate(capacity);
+
+			buffer.flip();
+			temp.put(buffer);
+
+			buffer = temp;
+		}
+
+		buffer.put(data, offset, length);
+	}
+
+	// run data through the deflater and queue whatever comes out
+	private void deflate(final byte[] data, final int offset, final int length, final int flush) {
+		final long start = System.nanoTime();
+
+		if( length > 0 ) {
+			deflater.setInput(data, offset, length);
+
+			pending = true;
+		}
+
+		int count;
+
+		do {
+			count = deflater.deflate(deflated, 0, deflated.length, flush);
+
+			put(deflated, 0, count);
+
+			compressedOut += count;
+		}
+		while( !deflater.needsInput() || count == deflated.length );
+
+		compressedIn += length;
+		compressTime += System.nanoTime() - start;
+	}
+
+	// make sure everything added so far has come out of the deflater
+	private void flushCompressed() {
+		if( deflater != null && pending ) {
+			deflate(deflated, 0, 0, Deflater.SYNC_FLUSH);
+
+			pending = false;
+		}
+	}
+
+	/**
+	 * Start compressing. The marker (i.e. IAC SB COMPRESS2 IAC SE) is queued as
+	 * is, everything added after it is compressed.
+	 * 
+	 * @param marker
+	 * @return false if we were already compressing
+	 */
+	public synchronized boolean startCompression(final byte[] marker) {
+		if( deflater != null ) return false;
+
+		put(marker, 0, marker.length);
+
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		deflated = new byte[INITIAL_SIZE];
+
+		pending = false;
+
+		return true;
+	}
+
+	/**
+	 * Stop compressing. The compressed stream is ended properly, so the client
+	 * knows that anything after it isn't compressed.
+	 */
+	public synchronized void stopCompression() {
+		if( deflater == null ) return;
+
+		final long start = System.nanoTime();
+
+		deflater.finish();
+
+		while( !deflater.finished() ) {
+			final int count = deflater.deflate(deflated);
+
+			put(deflated, 0, count);
+
+			compressedOut += count;
+		}
+
+		compressTime += System.nanoTime() - start;
+
+		deflater.end();
+
+		deflater = null;
+		deflated = null;
+	}
+
+	public synchronized boolean isCompressing() {
+		return deflater != null;
+	}
+
+	/**
+	 * Write as much of the queued data to the channel as it will take
+	 * without blocking (assuming a non-blocking channel).
+	 * 
+	 * @param channel
+	 * @return true if the queue is now empty
+	 * @throws IOException
+	 */
+	public synchronized boolean drainTo(final WritableByteChannel channel) throws IOException {
+		flushCompressed();
+
+		buffer.flip();
+
+		final int count = channel.write(buffer);
+
+		buffer.compact();
+
+		if( count > 0 ) {
+			bytesWritten += count;
+			writes++;
+		}
+
+		shrink();
+
+		return buffer.position() == 0;
+	}
+
+	/**
+	 * Write all of the queued data to the stream in a single call.
+	 * 
+	 * The data is copied out first, so that other threads can keep
+	 * queueing output while a (blocking) write is in progress. Only one
+	 * thread drains at a time though, from the copy until the write is
+	 * done, so chunks always go out in the order they were queued (which
+	 * the compressed stream depends on).
+	 * 
+	 * @param output
+	 * @throws IOException
+	 */
+	public void drainTo(final OutputStream output) throws IOException {
+		synchronized(writeLock) {
+			final byte[] data;
+
+			synchronized(this) {
+				flushCompressed();
+
+				if( buffer.position() == 0 ) return;
+
+				data = new byte[buffer.position()];
+
+				buffer.flip();
+				buffer.get(data);
+				buffer.clear();
+
+				shrink();
+			}
+
+			output.write(data);
+			output.flush();
+
+			synchronized(this) {
+				bytesWritten += data.length;
+				writes++;
+			}
+		}
+	}
+
+	// drop back to the initial size once a burst has been written out
+	private void shrink() {
+		if( buffer.position() == 0 && buffer.capacity() > INITIAL_SIZE ) {
+			buffer = ByteBuffer.allocate(INITIAL_SIZE);
+		}
+	}
+
+	public synchronized void clear() {
+		buffer.clear();
+		shrink();
+	}
+
+	/**
+	 * @return the number of bytes waiting to be written
+	 */
+	public synchronized int depth() {
+		return buffer.position();
+	}
+
+	public synchronized boolean isEmpty() {
+		return buffer.position() == 0;
+	}
+
+	public Policy getPolicy() {
+		return this.policy;
+	}
+
+	public int getHighWaterMark() {
+		return this.highWaterMark;
+	}
+
+	public synchronized long getBytesQueued() {
+		return this.bytesQueued;
+	}
+
+	public synchronized long getBytesWritten() {
+		return this.bytesWritten;
+	}
+
+	public synchronized long getWrites() {
+		return this.writes;
+	}
+
+	public synchronized long getDropped() {
+		return this.dropped;
+	}
+
+	public synchronized int getPeakDepth() {
+		return this.peak;
+	}
+
+	/**
+	 * @return bytes of output that have been compressed
+	 */
+	public synchronized long getCompressedIn() {
+		return this.compressedIn;
+	}
+
+	/**
+	 * @return bytes that output was compressed to
+	 */
+	public synchronized long getCompressedOut() {
+		return this.compressedOut;
+	}
+
+	/**
+	 * @return time spent compressing, in nanoseconds
+	 */
+	public synchronized long getCompressTime() {
+		return this.compressTime;
+	}
+}
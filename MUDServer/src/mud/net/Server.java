@@ -23,14 +23,14 @@ import java.util.Vector;
 import mud.interfaces.MUDServerI;
 
 public class Server implements Runnable {
-	final private MUDServerI parent;
+	final protected MUDServerI parent;
 
 	private ServerSocket server;
-	private Integer port;
+	protected Integer port;
 
-	final private Vector<Client> clients;
+	final protected Vector<Client> clients;
 
-	private boolean running;
+	protected volatile boolean running;
 
 	public Server(final MUDServerI p, final int port) {
 		this.parent = p;
@@ -73,6 +73,8 @@ public class Server implements Runnable {
 
 				final Client client = new Client(socket);
 				
+				client.setListener(parent);
+				
 				new Thread(client).start();
 
 				this.clients.add(client);
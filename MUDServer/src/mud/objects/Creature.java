@@ -71,7 +71,7 @@ public class Creature extends MUDObject implements Mobile {
 		
 		this.name = template.name;
 		this.flags = template.flags;
-		this.desc = template.desc;
+		this.desc = template.getDesc();
 		this.location = template.location;
 		
 		this.type = TypeFlag.CREATURE;
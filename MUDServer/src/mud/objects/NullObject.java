@@ -25,6 +25,7 @@ import mud.utils.Utils;
 public class NullObject extends MUDObject {
 	
 	private boolean locked = false;
+	private String data = null; // the database line a locked NullObject stands in for
 	
 	public NullObject(int dbref) {
 		super(dbref);
@@ -48,6 +49,17 @@ public class NullObject extends MUDObject {
 		this.locked = true;
 	}
 	
+	/**
+	 * lock, keeping the database line that isn't being loaded so that
+	 * it can be written back out as is.
+	 * 
+	 * @param data
+	 */
+	public void lock(final String data) {
+		this.locked = true;
+		this.data = data;
+	}
+	
 	public boolean isLocked() {
 		return this.locked;
 	}
@@ -64,6 +76,8 @@ public class NullObject extends MUDObject {
 	
 	@Override
 	public String toDB() {
+		if( this.data != null ) return this.data;
+		
 		String[] output = new String[5];
 		
 		output[0] = getDBRef() + "";                   // database reference number
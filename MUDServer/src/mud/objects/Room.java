@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import mud.ObjectFlag;
 import mud.MUDObject;
@@ -72,8 +73,8 @@ public class Room extends MUDObject implements EventSource, Instance
 	
 	public transient char[] tiles;
 	
-	private transient List<Player> listeners;               // Player(s) in the Room listening to what is being said
-	private transient List<SayEventListener> _listeners;    // Other things listening to say events? 
+	private transient CopyOnWriteArrayList<Player> listeners; // Player(s) in the Room listening to what is being said
+	private transient List<SayEventListener> _listeners;      // Other things listening to say events? 
 
 	private transient Map<TriggerType, List<Trigger>> triggers; //
 	
@@ -108,7 +109,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.items = new ArrayList<Item>();
 		this.things = new ArrayList<Thing>();
 		
-		this.listeners = new ArrayList<Player>();
+		this.listeners = new CopyOnWriteArrayList<Player>();
 		this._listeners = new ArrayList<SayEventListener>();
 		
 		this.triggers = new HashMap<TriggerType, List<Trigger>>();
@@ -141,7 +142,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.items = new ArrayList<Item>();
 		this.things = new ArrayList<Thing>();
 		
-		this.listeners = new ArrayList<Player>();
+		this.listeners = new CopyOnWriteArrayList<Player>();
 		this._listeners = new ArrayList<SayEventListener>();
 		
 		this.triggers = new HashMap<TriggerType, List<Trigger>>();
@@ -178,7 +179,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.items = new ArrayList<Item>();
 		this.things = new ArrayList<Thing>();
 		
-		this.listeners = new ArrayList<Player>();
+		this.listeners = new CopyOnWriteArrayList<Player>();
 		this._listeners = new ArrayList<SayEventListener>();
 		
 		this.triggers = new HashMap<TriggerType, List<Trigger>>();
@@ -342,7 +343,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	}
 
 	public void addListener(Player player) {
-		this.listeners.add(player);
+		this.listeners.addIfAbsent(player);
 	}
 
 	public void removeListener(Player player) {
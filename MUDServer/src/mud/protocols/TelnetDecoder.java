@@ -0,0 +1,383 @@
+package mud.protocols;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * An incremental decoder for telnet input (see IETF RFC 854).
+ * 
+ * Bytes are fed in as they arrive, in chunks of any size, and the decoder
+ * keeps enough state to resume in the middle of a line, a command, or a
+ * subnegotiation. Complete lines and telnet commands are passed to a
+ * Handler as they are recognized.
+ * 
+ * The decoder works from fixed byte arrays it owns, so no objects are created
+ * per byte or per line; the arrays passed to the handler are only valid for
+ * the duration of the call.
+ * 
+ * @author Jeremy
+ *
+ */
+public class TelnetDecoder {
+	public static final int MAX_LINE = 4096;
+	public static final int MAX_SUBNEG = 1024;
+
+	/**
+	 * Receives the output of the decoder.
+	 */
+	public interface Handler {
+		/**
+		 * A complete line of input (line ending not included).
+		 * 
+		 * @param data   buffer holding the line
+		 * @param length number of valid bytes in the buffer
+		 */
+		public void line(final byte[] data, final int length);
+
+		/**
+		 * A telnet command. For WILL/WONT/DO/DONT the option is
+		 * the option code, for anything else it will be 0.
+		 * 
+		 * @param command
+		 * @param option
+		 */
+		public void command(final byte command, final byte option);
+
+		/**
+		 * A subnegotiation (IAC SB option ... IAC SE)
+		 * 
+		 * @param option the option being negotiated
+		 * @param data   buffer holding the payload (IAC IAC unescaped)
+		 * @param length number of valid bytes in the buffer
+		 */
+		public void subnegotiation(final byte option, final byte[] data, final int length);
+	}
+
+	private enum State { DATA, IAC, OPTION, SB_OPTION, SB_DATA, SB_IAC };
+
+	private final Handler handler;
+
+	private State state = State.DATA;
+
+	private final byte[] line = new byte[MAX_LINE];
+	private int lineLength = 0;
+
+	private final byte[] subneg = new byte[MAX_SUBNEG];
+	private int subnegLength = 0;
+
+	private byte command;  // the command (WILL/WONT/DO/DONT) waiting for an option byte
+	private byte option;   // the option of the current subnegotiation
+
+	private byte last = 0; // last data byte seen, to collapse CR LF / LF CR into one line ending
+
+	public TelnetDecoder(final Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Decode everything remaining in the buffer. The buffer's position is
+	 * advanced to it's limit.
+	 * 
+	 * @param buffer
+	 */
+	public void decode(final ByteBuffer buffer) {
+		while( buffer.hasRemaining() ) {
+			decode( buffer.get() );
+		}
+	}
+
+	/**
+	 * Decode the specified portion of an array.
+	 * 
+	 * @param data
+	 * @param offset
+	 * @param length
+	 */
+	public void decode(final byte[] data, final int offset, final int length) {
+		for(int i = offset; i < offset + length; i++) {
+			decode( data[i] );
+		}
+	}
+
+	/**
+	 * Decode a single byte.
+	 * 
+	 * @param b
+	 */
+	public void decode(final byte b) {
+		switch(state) {
+		case DATA:
+			if( b == Telnet.IAC ) state = State.IAC;
+			else                  data(b);
+			break;
+		case IAC:
+			if( b == Telnet.IAC ) {
+				// escaped 255, which is data
+				state = State.DATA;
+				data(b);
+			}
+			else if( b == Telnet.WILL || b == Telnet.WONT || b == Telnet.DO || b == Telnet.DONT ) {
+				command = b;
+				state = State.OPTION;
+			}
+			else if( b == Telnet.SB ) {
+				state = State.SB_OPTION;
+			}
+			else {
+				state = State.DATA;
+				handler.command(b, (byte) 0);
+			}
+			break;
+		case OPTION:
+			state = State.DATA;
+			handler.command(command, b);
+			break;
+		case SB_OPTION:
+			option = b;
+			subnegLength = 0;
+			state = State.SB_DATA;
+			break;
+		case SB_DATA:
+			if( b == Telnet.IAC ) state = State.SB_IAC;
+			else                  subneg(b);
+			break;
+		case SB_IAC:
+			if( b == Telnet.SE ) {
+				state = State.DATA;
+				handler.subnegotiation(option, subneg, subnegLength);
+				subnegLength = 0;
+			}
+			else {
+				// IAC IAC is an escaped 255, anything else is a protocol error we tolerate by keeping the byte
+				state = State.SB_DATA;
+				subneg(b);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void data(final byte b) {
+		// LF+CR, LFCR, CR+LF, CRLF
+		// the second half of any of the above pairs is ignored, because it would otherwise
+		// introduce an extra (empty) line into the input
+		if( b == '\n' || b == '\r' ) {
+			if( (last == '\r' && b == '\n') || (last == '\n' && b == '\r') ) {
+				last = 0;
+				return;
+			}
+
+			handler.line(line, lineLength);
+			lineLength = 0;
+		}
+		else if( b == '\b' ) {
+			// backspace
+			if( lineLength > 0 ) lineLength--;
+		}
+		else if( lineLength < MAX_LINE ) {
+			line[lineLength++] = b;
+		}
+
+		last = b;
+	}
+
+	private void subneg(final byte b) {
+		if( subnegLength < MAX_SUBNEG ) subneg[subnegLength++] = b;
+	}
+
+	/**
+	 * Discard any partial input and return to the initial state.
+	 */
+	public void reset() {
+		state = State.DATA;
+		lineLength = 0;
+		subnegLength = 0;
+		last = 0;
+	}
+
+	/**
+	 * Compare decoding a stream of typical input (commands, with the odd
+	 * telnet negotiation mixed in) with the decoder to the way Client used to
+	 * do it: a byte at a time from the stream, building lines in a
+	 * StringBuffer and telnet commands in a list of Byte. Both have to find
+	 * the same lines and commands.
+	 * 
+	 * NOTE: the old code also printed debugging output for every byte, which
+	 * isn't included here, so the old numbers are if anything too good.
+	 * 
+	 * usage: java mud.protocols.TelnetDecoder [lines] [iterations]
+	 * 
+	 * @param args
+	 */
+	public static void main(final String[] args) throws IOException {
+		final int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		final int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+		final String[] commands = { "look", "say Hello there, how is everyone doing today?", "get sword", "north",
+				"tell Nathan meet me at the inn", "inventory", "cast fireball at goblin", "@debug render" };
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		int expectedCommands = 0;
+
+		for(int n = 0; n < lines; n++) {
+			if( n % 50 == 0 ) {
+				out.write( new byte[] { Telnet.IAC, Telnet.WILL, Telnet.NAWS } );
+				expectedCommands++;
+			}
+
+			out.write( (commands[n % commands.length] + "\r\n").getBytes(StandardCharsets.ISO_8859_1) );
+		}
+
+		final byte[] input = out.toByteArray();
+
+		System.out.println("Input: " + lines + " lines, " + expectedCommands + " telnet commands, " + input.length + " bytes");
+
+		long oldTime = 0;
+		long newTime = 0;
+
+		for(int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+
+			final int[] a = decodeOld( new ByteArrayInputStream(input) );
+
+			if( i > 0 ) oldTime += System.nanoTime() - start; // the first time around is warm up
+
+			start = System.nanoTime();
+
+			final int[] b = decodeNew( new ByteArrayInputStream(input) );
+
+			if( i > 0 ) newTime += System.nanoTime() - start;
+
+			if( a[0] != lines || b[0] != lines || a[1] != expectedCommands || b[1] != expectedCommands ) {
+				System.out.println("FAIL: old found " + a[0] + " lines/" + a[1] + " commands, new found " + b[0] + " lines/" + b[1] + " commands");
+				System.exit(1);
+			}
+		}
+
+		final int runs = Math.max(iterations - 1, 1);
+
+		System.out.println(String.format("old:     %8.2f ms (%6.1f ns/byte)", oldTime / 1e6 / runs, (double) oldTime / runs / input.length));
+		System.out.println(String.format("decoder: %8.2f ms (%6.1f ns/byte)", newTime / 1e6 / runs, (double) newTime / runs / input.length));
+		System.out.println(String.format("%.1fx", (double) oldTime / newTime));
+	}
+
+	// the decoder, fed 4KB reads, producing the same strings Client does
+	private static int[] decodeNew(final InputStream input) throws IOException {
+		final Queue<String> queuedLines = new LinkedList<String>();
+		final int[] commands = { 0 };
+
+		final TelnetDecoder decoder = new TelnetDecoder(new Handler() {
+			public void line(final byte[] data, final int length) {
+				queuedLines.add( new String(data, 0, length, StandardCharsets.ISO_8859_1).trim() );
+			}
+
+			public void command(final byte command, final byte option) {
+				commands[0]++;
+			}
+
+			public void subnegotiation(final byte option, final byte[] data, final int length) {
+				commands[0]++;
+			}
+		});
+
+		final byte[] buf = new byte[4096];
+
+		int count;
+
+		while( (count = input.read(buf)) > 0 ) decoder.decode(buf, 0, count);
+
+		return new int[] { queuedLines.size(), commands[0] };
+	}
+
+	// Client's old per byte parsing (less the debugging output)
+	private static int[] decodeOld(final InputStream input) throws IOException {
+		final Queue<String> queuedLines = new LinkedList<String>();
+		final Queue<Byte[]> received = new LinkedList<Byte[]>();
+
+		final StringBuffer sb = new StringBuffer(80);
+		final List<Byte> buffer = new LinkedList<Byte>();
+
+		boolean tn_neg_seq = false;
+		boolean received_line = false;
+
+		int bytes = 0;
+		int last_ch = ' ';
+
+		while( input.available() > 0 ) {
+			final int readValue = input.read();
+
+			if( tn_neg_seq ) {
+				if( bytes < 3 ) {
+					buffer.add( (byte) readValue );
+					bytes++;
+				}
+
+				if( bytes == 3 ) {
+					received.add( buffer.toArray(new Byte[0]) );
+
+					buffer.clear();
+					bytes = 0;
+
+					tn_neg_seq = false;
+				}
+			}
+			else {
+				if( (byte) readValue == Telnet.IAC ) {
+					buffer.clear();
+					buffer.add( (byte) readValue );
+					bytes++;
+
+					tn_neg_seq = true;
+
+					continue;
+				}
+
+				final Character ch = (char) readValue;
+
+				if( ch == '\012' ) {
+					if( last_ch == '\015' ) sb.delete(0, sb.length());
+					else                    received_line = true;
+				}
+				else if( ch == '\015' ) {
+					if( last_ch == '\012' ) sb.delete(0, sb.length());
+					else                    received_line = true;
+				}
+				else if( ch == '\010' ) {
+					if( sb.length() != 0 ) sb.deleteCharAt( sb.length() - 1 );
+				}
+				else sb.append(ch);
+
+				last_ch = ch;
+
+				if( received_line ) {
+					queuedLines.add( sb.toString().trim() );
+
+					sb.delete(0, sb.length());
+
+					received_line = false;
+				}
+			}
+		}
+
+		return new int[] { queuedLines.size(), received.size() };
+	}
+}
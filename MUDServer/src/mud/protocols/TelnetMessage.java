@@ -0,0 +1,83 @@
+package mud.protocols;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A telnet command received from a client, as recognized by TelnetDecoder.
+ * 
+ * The command is one of the Telnet constants (WILL, WONT, DO, DONT, SB, ...),
+ * the option is the option code (0 if there isn't one) and the payload holds
+ * subnegotiation data (empty except for SB).
+ * 
+ * @author Jeremy
+ *
+ */
+public class TelnetMessage {
+	private static final byte[] EMPTY = new byte[0];
+
+	private final byte command;
+	private final byte option;
+	private final byte[] payload;
+
+	public TelnetMessage(final byte command, final byte option) {
+		this(command, option, EMPTY);
+	}
+
+	public TelnetMessage(final byte command, final byte option, final byte[] payload) {
+		this.command = command;
+		this.option = option;
+		this.payload = payload;
+	}
+
+	public byte getCommand() {
+		return this.command;
+	}
+
+	public byte getOption() {
+		return this.option;
+	}
+
+	public byte[] getPayload() {
+		return this.payload;
+	}
+
+	/**
+	 * Check whether this is a particular command/option pair,
+	 * e.g. is(Telnet.WILL, Telnet.NAWS)
+	 * 
+	 * @param command
+	 * @param option
+	 * @return
+	 */
+	public boolean is(final byte command, final byte option) {
+		return this.command == command && this.option == option;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("IAC ");
+
+		sb.append( Telnet.getMap1(command) );
+
+		if( command == Telnet.SB ) {
+			sb.append(" ").append( Telnet.getMap1(option) );
+			sb.append(" ").append( Arrays.toString(payload) );
+			sb.append(" IAC SE");
+		}
+		else if( option != 0 ) {
+			sb.append(" ").append( Telnet.getMap1(option) );
+		}
+
+		return sb.toString();
+	}
+}
@@ -110,6 +110,10 @@ public class Account implements Serializable {
 	
 	private transient boolean online; // is there a Player in-game from this account/is the account logged in
 	
+	private transient boolean dirty = true; // changed since it was last saved? (accounts read from disk start out clean)
+	
+	private transient AccountManager manager = null; // the manager indexing this account (if any)
+	
 	/**
 	 * 
 	 * @param aId
@@ -189,6 +193,7 @@ public class Account implements Serializable {
 	 */
 	private void setModified(final Date modDate) {
 		this.modified = modDate;
+		this.dirty = true;
 	}
 	
 	/**
@@ -264,10 +269,32 @@ public class Account implements Serializable {
 		return this.password;
 	}
 	
+	/**
+	 * Check a password against the account's. An account saved with a
+	 * plain-text password (from before they were hashed) is upgraded to the
+	 * hash the first time the right password is given, and so will be saved
+	 * again.
+	 * 
+	 * @param password the password, as typed
+	 * @param hash     it's hash (see PasswordHasher)
+	 * @return true if the password is right
+	 */
+	public boolean checkPassword(final String password, final String hash) {
+		if( PasswordHasher.matches(hash, this.password) ) return true;
+		
+		if( !PasswordHasher.isHash(this.password) && PasswordHasher.matches(password, this.password) ) {
+			setPassword(hash);
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
 	/**
 	 * Set account password
 	 * 
-	 * @param newPassword the password to set on the account 
+	 * @param newPassword the password to set on the account (already hashed, see PasswordHasher)
 	 */
 	public void setPassword(final String newPassword) {
 		this.password = newPassword;
@@ -291,6 +318,7 @@ public class Account implements Serializable {
 	
 	public void setLastIPAddress(final String ipAddress) {
 		this.lastIPAddress = ipAddress;
+		this.dirty = true;
 	}
 	
 	public String getRecoveryKey() {
@@ -299,6 +327,7 @@ public class Account implements Serializable {
 	
 	public void setRecoveryKey(final String k) {
 		this.recoveryKey = k;
+		this.dirty = true;
 	}
 	/**
 	 * Link an existing character to this account
@@ -314,6 +343,8 @@ public class Account implements Serializable {
 			
 			if( success ) {
 				setModified( Utils.getDate() );
+				
+				if( manager != null ) manager.linked(this, newCharacter);
 			}
 		}
 
@@ -334,16 +365,38 @@ public class Account implements Serializable {
 			
 			if( success ) {
 				setModified( Utils.getDate() );
+				
+				if( manager != null ) manager.unlinked(this, currCharacter);
 			}
 		}
 
 		return success;
 	}
 	
+	/**
+	 * Has the account changed since it was last saved?
+	 * 
+	 * @return
+	 */
+	public boolean isDirty() {
+		return this.dirty;
+	}
+	
+	/**
+	 * Note that the account has been saved.
+	 */
+	public void clean() {
+		this.dirty = false;
+	}
+	
 	public List<Player> getCharacters() {
 		return Collections.unmodifiableList(this.characters);
 	}
 	
+	void setManager(final AccountManager manager) {
+		this.manager = manager;
+	}
+	
 
 	/**
 	 * 
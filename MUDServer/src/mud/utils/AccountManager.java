@@ -13,19 +13,48 @@ package mud.utils;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import mud.objects.Player;
 
+/**
+ * Keeps track of accounts, indexed by id, by username (ignoring case) and by
+ * the dbref of each linked character, so none of the lookups have to look at
+ * every account.
+ * 
+ * Accounts can also be loaded on demand. Accounts that exist (on disk) but
+ * haven't been loaded yet are registered with addUnloaded(...), along with
+ * the dbrefs of their characters, and the first lookup that wants one of them
+ * (by id, username or character) asks the loader to read it in.
+ * 
+ * @author Jeremy
+ *
+ */
 public final class AccountManager {
 	private Integer last_account_id = -1;
 	
 	private final Hashtable<Integer, Account> iamap; // integer account map
 	
+	// indexes
+	private final Map<String, Account> byName = new ConcurrentHashMap<String, Account>();       // lower case username -> account
+	private final Map<Integer, Account> byCharacter = new ConcurrentHashMap<Integer, Account>(); // character dbref -> account
+	
+	// on demand loading
+	private final Map<String, Unloaded> unloaded = new ConcurrentHashMap<String, Unloaded>(); // lower case username -> not yet loaded account
+	private final Map<Integer, Unloaded> unloadedByCharacter = new ConcurrentHashMap<Integer, Unloaded>(); // character dbref -> not yet loaded account
+	
+	private Function<String, Account> loader = null;
+	
+	private int loaded = 0; // number of accounts loaded on demand
+	
 	public AccountManager() {
 		this.iamap = new Hashtable<Integer, Account>();
 	}
 	
-	public int nextId() {
+	public synchronized int nextId() {
 		return ++(this.last_account_id);
 	}
 	
@@ -35,14 +64,39 @@ public final class AccountManager {
 		//this.iamap.put( aId, new Account(aId, name, password, char_limit) );
 		this.iamap.put( aId, account );
 		
+		index(account);
+		
+		return account;
+	}
+	
+	/**
+	 * Add a new account whose password has already been hashed (see
+	 * PasswordHasher).
+	 * 
+	 * @param name
+	 * @param passwordHash
+	 * @param char_limit
+	 * @return
+	 */
+	public synchronized Account addHashedAccount(final String name, final String passwordHash, final int char_limit) {
+		final Date now = Utils.getDate();
+		
+		final Account account = new Account(nextId(), Account.Status.ACTIVE, now, new Date(now), name, passwordHash, char_limit);
+		
+		this.iamap.put( account.getId(), account );
+		
+		index(account);
+		
 		return account;
 	}
 	
-	public void addAccount(final Account account) {
+	public synchronized void addAccount(final Account account) {
 		// if we don't already have an account with that ID
 		if( !this.iamap.containsKey( account.getId() ) ) {
 			this.iamap.put( account.getId(), account );
 			
+			index(account);
+			
 			// if this account has an id later than our current last, update that
 			if( account.getId() > this.last_account_id ) {
 				this.last_account_id = account.getId();
@@ -51,7 +105,17 @@ public final class AccountManager {
 	}
 	
 	public void removeAccount(final Account toRemove) {
-		this.iamap.remove(toRemove);
+		if( toRemove == null ) return;
+		
+		this.iamap.remove( toRemove.getId() );
+		
+		this.byName.remove( key(toRemove.getUsername()), toRemove );
+		
+		for(final Player player : toRemove.getCharacters()) {
+			this.byCharacter.remove( player.getDBRef(), toRemove );
+		}
+		
+		toRemove.setManager(null);
 	}
 	
 	public void removeAccount(final Integer id) {
@@ -59,19 +123,68 @@ public final class AccountManager {
 		
 		removeAccount(toRemove);
 	}
+	
+	/**
+	 * Register an account that exists but hasn't been loaded. It will be
+	 * loaded (see setLoader) the first time it's looked up.
+	 * 
+	 * @param name
+	 * @param id
+	 * @param characters the dbrefs of the account's characters
+	 */
+	public synchronized void addUnloaded(final String name, final int id, final int... characters) {
+		if( byName.containsKey( key(name) ) ) return;
+		
+		final Unloaded u = new Unloaded(name, id, characters);
+		
+		this.unloaded.put( key(name), u );
+		
+		for(final int dbref : characters) {
+			this.unloadedByCharacter.put( dbref, u );
+		}
+		
+		// reserve the id, so new accounts won't reuse it
+		if( id > this.last_account_id ) {
+			this.last_account_id = id;
+		}
+	}
+	
+	/**
+	 * Set the function used to load an account on demand, given its username.
+	 * 
+	 * @param loader
+	 */
+	public void setLoader(final Function<String, Account> loader) {
+		this.loader = loader;
+	}
 
 	public Account getAccount(int accountId) {
-		return iamap.get(accountId);
+		final Account account = iamap.get(accountId);
+		
+		if( account == null ) {
+			for(final Unloaded u : unloaded.values()) {
+				if( u.id == accountId ) return load(u.name);
+			}
+		}
+		
+		return account;
 	}
 
 	public Account getAccount(final Player player) {
-		Account a = null;
+		if( player == null ) return null;
 		
-		// TODO properly fix this, without kludging
-		for(final Account account : iamap.values()) {
-			if( account.getCharacters().contains(player) ) {
-				a = account;
-				break;
+		Account a = byCharacter.get( player.getDBRef() );
+		
+		if( a == null ) {
+			final Unloaded u = unloadedByCharacter.get( player.getDBRef() );
+			
+			// no characters recorded (an older index), but a character's account is named after it when first created
+			final String name = (u != null) ? u.name : player.getName();
+			
+			if( unloaded.containsKey( key(name) ) ) {
+				load( name );
+				
+				a = byCharacter.get( player.getDBRef() );
 			}
 		}
 		
@@ -79,36 +192,147 @@ public final class AccountManager {
 	}
 	
 	public Account getAccount(final String name) {
-		Account a = null;
+		if( name == null ) return null;
 		
-		for (final Account account : iamap.values()) {
-			if (account.getUsername().equals(name) ) {
-				a = account;
-				break;
-			}
-		}
+		final Account a = byName.get( key(name) );
+		
+		if( a == null ) return load(name);
 		
 		return a;
 	}
 	
 	public Account getAccount(final String name, final String pass) {
-		Account a = null;
+		final Account a = getAccount(name);
 		
-		for (final Account account : iamap.values()) {
-			if (account.getUsername().equals(name) && account.getPassword().equals(pass)) {
-				a = account;
-				break;
-			}
+		if( a != null && PasswordHasher.matches(pass, a.getPassword()) ) {
+			return a;
 		}
 		
-		return a;
+		return null;
 	}
 	
+	/**
+	 * Get the accounts that are loaded.
+	 * 
+	 * @return
+	 */
 	public Collection<Account> getAccounts() {
 		return Collections.unmodifiableCollection(iamap.values());
 	}
 	
+	/**
+	 * Get the id and username of every account, loaded or not.
+	 * 
+	 * @return
+	 */
+	public Map<Integer, String> getNames() {
+		final Map<Integer, String> names = new TreeMap<Integer, String>();
+		
+		for(final Account account : iamap.values()) names.put(account.getId(), account.getUsername());
+		for(final Unloaded u : unloaded.values())    names.put(u.id, u.name);
+		
+		return names;
+	}
+	
+	/**
+	 * Get the dbrefs of the characters of every account, loaded or not.
+	 * 
+	 * @return account id -> character dbrefs
+	 */
+	public Map<Integer, int[]> getCharacters() {
+		final Map<Integer, int[]> characters = new TreeMap<Integer, int[]>();
+		
+		for(final Account account : iamap.values()) {
+			characters.put( account.getId(), account.getCharacters().stream().mapToInt(Player::getDBRef).toArray() );
+		}
+		
+		for(final Unloaded u : unloaded.values()) characters.put(u.id, u.characters);
+		
+		return characters;
+	}
+	
 	public int numAccounts() {
+		return this.iamap.size() + this.unloaded.size();
+	}
+	
+	public int numLoaded() {
 		return this.iamap.size();
 	}
+	
+	@Override
+	public String toString() {
+		return "AccountManager accounts: " + numAccounts() + " loaded: " + iamap.size() + " (on demand: " + loaded + ")" +
+				" names: " + byName.size() + " characters: " + byCharacter.size();
+	}
+	
+	// called by Account when a character is linked/unlinked
+	void linked(final Account account, final Player player) {
+		this.byCharacter.put( player.getDBRef(), account );
+	}
+	
+	void unlinked(final Account account, final Player player) {
+		this.byCharacter.remove( player.getDBRef(), account );
+	}
+	
+	private void index(final Account account) {
+		account.setManager(this);
+		
+		this.byName.put( key(account.getUsername()), account );
+		
+		forget( account.getUsername() );
+		
+		for(final Player player : account.getCharacters()) {
+			this.byCharacter.put( player.getDBRef(), account );
+		}
+	}
+	
+	private synchronized Account load(final String name) {
+		final Unloaded u = unloaded.get( key(name) );
+		
+		if( u == null || loader == null ) return null;
+		
+		// it may have been loaded while we were waiting
+		final Account existing = byName.get( key(name) );
+		
+		if( existing != null ) return existing;
+		
+		final Account account = loader.apply( u.name );
+		
+		forget( name );
+		
+		if( account != null ) {
+			addAccount(account);
+			
+			loaded++;
+		}
+		
+		return account;
+	}
+	
+	// no longer an unloaded account
+	private void forget(final String name) {
+		final Unloaded u = this.unloaded.remove( key(name) );
+		
+		if( u == null ) return;
+		
+		for(final int dbref : u.characters) {
+			this.unloadedByCharacter.remove( dbref, u );
+		}
+	}
+	
+	private static String key(final String name) {
+		return name.toLowerCase();
+	}
+	
+	private static final class Unloaded {
+		private final String name;
+		private final int id;
+		private final int[] characters;
+		
+		private Unloaded(final String name, final int id, final int[] characters) {
+			this.name = name;
+			this.id = id;
+			this.characters = characters;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package mud.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * A countdown (in seconds) that runs on a TimingWheel and calls back
+ * when it runs out. Nothing happens in between, the time remaining is
+ * worked out when someone asks for it.
+ * 
+ * @author Jeremy
+ *
+ */
+public abstract class GameTimer {
+	private final int duration;
+
+	private TimingWheel.Timeout timeout = null;
+
+	protected GameTimer(final int duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Start counting down.
+	 * 
+	 * @param wheel    the wheel to run on
+	 * @param onExpire what to do when time runs out
+	 */
+	public final void start(final TimingWheel wheel, final Runnable onExpire) {
+		this.timeout = wheel.schedule(onExpire, this.duration, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop the timer without running the expiry callback.
+	 * 
+	 * @return true if the timer was still running
+	 */
+	public final boolean cancel() {
+		return this.timeout != null && this.timeout.cancel();
+	}
+
+	public final int getDuration() {
+		return this.duration;
+	}
+
+	public int getTimeRemaining() {
+		if( this.timeout == null ) return this.duration;
+
+		// round up, so a timer reads 0 only once it's actually done
+		return (int) ((this.timeout.getRemaining(TimeUnit.MILLISECONDS) + 999) / 1000);
+	}
+
+	public final boolean isExpired() {
+		return this.timeout != null && this.timeout.isExpired();
+	}
+}
@@ -0,0 +1,530 @@
+package mud.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * A packed archive of help (or topic) files. Every page is stored in one file
+ * along with an index of where each page starts and an inverted index of the
+ * words in them. The archive is memory-mapped, so only the index lives on
+ * the heap and pages are read out of the mapping when someone asks for them.
+ *
+ * The loose files in the directory are still the source, sync() brings the
+ * archive up to date with them, re-reading only the ones whose size or
+ * modification time has changed.
+ *
+ * Each sync that changes anything writes a new generation of the archive
+ * (help.pak.1, help.pak.2, ...) and swaps the index over to it, rather than
+ * replacing the file that is mapped (which Windows won't allow). Older
+ * generations are deleted once they can be; one that is still mapped is
+ * left for a later sync to clean up.
+ *
+ * Layout: magic, version, pages..., index, offset of index (last 8 bytes)
+ *
+ * @author Jeremy
+ *
+ */
+public final class HelpArchive {
+	private static final int MAGIC = 0x48454c50; // 'HELP'
+	private static final int VERSION = 1;
+
+	private static final int HEADER = 8;  // magic + version
+	private static final int TRAILER = 8; // offset of the index
+
+	private final File dir;
+	private final String extension;
+	private final File file; // the archive's name, less the generation
+
+	private volatile Index index = Index.EMPTY;
+	private volatile int generation = 0; // of the archive that's mapped (0 = none yet)
+
+	private int read = 0;   // pages read from source files by the last sync
+	private int reused = 0; // pages carried over from the archive by the last sync
+
+	/**
+	 *
+	 * @param dir directory holding the source files
+	 * @param extension extension of the source files (e.g. ".help")
+	 * @param file the archive (the generation is added to the end of this)
+	 */
+	public HelpArchive(final String dir, final String extension, final String file) {
+		this.dir = new File(dir);
+		this.extension = extension.toLowerCase();
+		this.file = new File(file);
+	}
+
+	/**
+	 * Bring the archive up to date with the source files, loading the existing
+	 * archive first if it hasn't been yet. Pages that haven't changed are
+	 * copied over from the old archive as is.
+	 *
+	 * @return the number of pages that had to be read from their source file
+	 * @throws IOException
+	 */
+	public synchronized int sync() throws IOException {
+		if( index == Index.EMPTY ) {
+			final int newest = newest();
+
+			if( newest > 0 ) {
+				try {
+					index = Index.map(archive(newest));
+					generation = newest;
+				}
+				catch(final IOException ioe) {
+					System.out.println("HelpArchive: " + archive(newest).getName() + " is unreadable, rebuilding it");
+				}
+			}
+		}
+
+		final Index old = index;
+
+		// (empty files have no name to file them under, so they are left out)
+		final File[] sources = dir.listFiles(f -> f.isFile() && f.length() > 0 && f.getName().toLowerCase().endsWith(extension));
+
+		if( sources == null ) throw new IOException("invalid directory: " + dir.getPath());
+
+		Arrays.sort(sources);
+
+		// is there anything to do?
+		boolean changed = sources.length != old.byFile.size();
+
+		for(int s = 0; s < sources.length && !changed; s++) {
+			changed = !old.isCurrent(sources[s]);
+		}
+
+		this.read = 0;
+		this.reused = sources.length;
+
+		if( !changed ) return 0;
+
+		this.reused = 0;
+
+		final Map<Integer, List<String>> oldTerms = old.termsById();
+
+		final List<Entry> entries = new ArrayList<Entry>(sources.length);
+		final Map<String, List<Integer>> postings = new TreeMap<String, List<Integer>>();
+
+		final File temp = new File(file.getPath() + ".tmp");
+
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			int offset = HEADER;
+
+			for(final File source : sources) {
+				final Entry prev = old.byFile.get(source.getName());
+
+				final String name;
+				final byte[] bytes;
+				final Iterable<String> terms;
+
+				if( prev != null && old.isCurrent(source) ) {
+					name = prev.name;
+					bytes = old.bytes(prev);
+					terms = oldTerms.getOrDefault(prev.id, Collections.<String>emptyList());
+
+					this.reused++;
+				}
+				else {
+					final String[] lines = Utils.loadStrings(source.getPath());
+
+					if( lines == null || lines.length == 0 ) continue;
+
+					name = lines[0];
+					bytes = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+					terms = tokenize(lines);
+
+					this.read++;
+				}
+
+				final Entry entry = new Entry(entries.size(), name, source.getName(), source.lastModified(), source.length(), offset, bytes.length);
+
+				out.write(bytes);
+
+				offset += bytes.length;
+
+				entries.add(entry);
+
+				for(final String term : terms) {
+					List<Integer> ids = postings.get(term);
+
+					if( ids == null ) postings.put(term, ids = new ArrayList<Integer>(4));
+
+					ids.add(entry.id);
+				}
+			}
+
+			// index
+			out.writeInt(entries.size());
+
+			for(final Entry entry : entries) {
+				out.writeUTF(entry.name);
+				out.writeUTF(entry.file);
+				out.writeLong(entry.modified);
+				out.writeLong(entry.size);
+				out.writeInt(entry.offset);
+				out.writeInt(entry.length);
+			}
+
+			out.writeInt(postings.size());
+
+			for(final Map.Entry<String, List<Integer>> posting : postings.entrySet()) {
+				out.writeUTF(posting.getKey());
+				out.writeInt(posting.getValue().size());
+
+				for(final Integer id : posting.getValue()) out.writeInt(id);
+			}
+
+			out.writeLong(offset);
+		}
+
+		// a new file, so nothing that's mapped is replaced
+		final int next = Math.max(generation, newest()) + 1;
+		final File archive = archive(next);
+
+		try {
+			Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(final AtomicMoveNotSupportedException amnse) {
+			Files.move(temp.toPath(), archive.toPath());
+		}
+
+		index = Index.map(archive);
+		generation = next;
+
+		deleteOld();
+
+		return this.read;
+	}
+
+	// the archive file for a generation
+	private File archive(final int generation) {
+		return new File(file.getPath() + "." + generation);
+	}
+
+	// the generation a file in the archive's directory is (-1 if it isn't one, e.g. the temporary file)
+	private int generationOf(final String name) {
+		final String prefix = file.getName() + ".";
+
+		if( !name.startsWith(prefix) || name.length() == prefix.length() || name.length() - prefix.length() > 9 ) return -1;
+
+		int generation = 0;
+
+		for(int c = prefix.length(); c < name.length(); c++) {
+			final char ch = name.charAt(c);
+
+			if( ch < '0' || ch > '9' ) return -1;
+
+			generation = 10 * generation + (ch - '0');
+		}
+
+		return generation;
+	}
+
+	// the newest generation of the archive on disk (0 if there isn't one)
+	private int newest() {
+		final File parent = file.getAbsoluteFile().getParentFile();
+		final String[] names = (parent != null) ? parent.list() : null;
+
+		int newest = 0;
+
+		if( names != null ) {
+			for(final String name : names) newest = Math.max(newest, generationOf(name));
+		}
+
+		return newest;
+	}
+
+	// delete the generations before the current one (and an unversioned archive, from before there were generations)
+	private void deleteOld() {
+		final File parent = file.getAbsoluteFile().getParentFile();
+		final File[] files = (parent != null) ? parent.listFiles() : null;
+
+		if( files == null ) return;
+
+		for(final File f : files) {
+			final String name = f.getName();
+
+			final int g = generationOf(name);
+
+			final boolean old = name.equals(file.getName()) || (g != -1 && g < generation);
+
+			// a generation that's still mapped can't be deleted on some systems, the next sync will try again
+			if( old && !f.delete() ) System.out.println("HelpArchive: couldn't delete " + name + " (still in use?)");
+		}
+	}
+
+	/**
+	 * Get a page by name (the first line of it's source file).
+	 *
+	 * @param name
+	 * @return the lines of the page or null if there isn't one
+	 */
+	public String[] get(final String name) {
+		final Index current = index;
+		final Entry entry = current.byName.get(name);
+
+		if( entry == null ) return null;
+
+		return new String(current.bytes(entry), StandardCharsets.UTF_8).split("\n", -1);
+	}
+
+	public boolean contains(final String name) {
+		return index.byName.containsKey(name);
+	}
+
+	/**
+	 * The names of all the pages, in alphabetical order.
+	 *
+	 * @return
+	 */
+	public Set<String> getNames() {
+		return new TreeSet<String>(index.byName.keySet());
+	}
+
+	/**
+	 * Find the pages that contain every word in the query. Pages whose name
+	 * matches one of the words come first.
+	 *
+	 * @param query
+	 * @return the names of the matching pages
+	 */
+	public List<String> search(final String query) {
+		final Index current = index;
+
+		final Set<String> terms = tokenize(new String[] { query });
+
+		if( terms.isEmpty() ) return Collections.emptyList();
+
+		Set<Integer> found = null;
+
+		for(final String term : terms) {
+			final int[] ids = current.keywords.get(term);
+
+			if( ids == null ) return Collections.emptyList();
+
+			final Set<Integer> matches = new TreeSet<Integer>();
+
+			for(final int id : ids) {
+				if( found == null || found.contains(id) ) matches.add(id);
+			}
+
+			found = matches;
+		}
+
+		final List<String> first = new LinkedList<String>();
+		final List<String> rest = new LinkedList<String>();
+
+		for(final Integer id : found) {
+			final String name = current.entries[id].name;
+
+			if( terms.contains(name.toLowerCase()) ) first.add(name);
+			else                                     rest.add(name);
+		}
+
+		first.addAll(rest);
+
+		return first;
+	}
+
+	public int size() {
+		return index.entries.length;
+	}
+
+	public String getFilename() {
+		return archive(generation).getName();
+	}
+
+	@Override
+	public synchronized String toString() {
+		final Index current = index;
+
+		return "HelpArchive (" + getFilename() + ") pages: " + current.entries.length + " keywords: " + current.keywords.size() +
+				" mapped: " + current.data.capacity() + " bytes, last sync: " + read + " read, " + reused + " reused";
+	}
+
+	/**
+	 * Break text up into lowercase words for the keyword index. Very short
+	 * words aren't worth indexing.
+	 *
+	 * @param lines
+	 * @return
+	 */
+	private static Set<String> tokenize(final String[] lines) {
+		final Set<String> terms = new LinkedHashSet<String>();
+
+		for(final String line : lines) {
+			for(final String word : line.toLowerCase().split("[^a-z0-9@_]+")) {
+				if( word.length() > 2 ) terms.add(word);
+			}
+		}
+
+		return terms;
+	}
+
+	private static final class Entry {
+		private final int id;
+
+		private final String name; // what it's looked up by
+		private final String file; // source file name
+
+		private final long modified;
+		private final long size;
+
+		private final int offset;
+		private final int length;
+
+		private Entry(final int id, final String name, final String file, final long modified, final long size, final int offset, final int length) {
+			this.id = id;
+			this.name = name;
+			this.file = file;
+			this.modified = modified;
+			this.size = size;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * A mapped archive and it's index. Never changed once built, a sync just
+	 * swaps in a new one.
+	 */
+	private static final class Index {
+		private static final Index EMPTY = new Index(ByteBuffer.allocate(0), new Entry[0], Collections.<String, int[]>emptyMap());
+
+		private final ByteBuffer data;
+
+		private final Entry[] entries;
+
+		private final Map<String, Entry> byName = new HashMap<String, Entry>();
+		private final Map<String, Entry> byFile = new HashMap<String, Entry>();
+
+		private final Map<String, int[]> keywords;
+
+		private Index(final ByteBuffer data, final Entry[] entries, final Map<String, int[]> keywords) {
+			this.data = data;
+			this.entries = entries;
+			this.keywords = keywords;
+
+			for(final Entry entry : entries) {
+				byName.put(entry.name, entry);
+				byFile.put(entry.file, entry);
+			}
+		}
+
+		private static Index map(final File file) throws IOException {
+			final ByteBuffer data;
+
+			try (final FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				data = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			}
+
+			if( data.capacity() < HEADER + TRAILER || data.getInt(0) != MAGIC || data.getInt(4) != VERSION ) {
+				throw new IOException("not a help archive (or an old one)");
+			}
+
+			final long start = data.getLong(data.capacity() - TRAILER);
+
+			if( start < HEADER || start > data.capacity() - TRAILER ) throw new IOException("bad index offset");
+
+			// only the index gets copied out of the mapping
+			final byte[] raw = new byte[(int) (data.capacity() - TRAILER - start)];
+
+			final ByteBuffer view = data.duplicate();
+
+			view.position((int) start);
+			view.get(raw);
+
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+
+			final Entry[] entries = new Entry[in.readInt()];
+
+			for(int e = 0; e < entries.length; e++) {
+				entries[e] = new Entry(e, in.readUTF(), in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readInt());
+			}
+
+			final int count = in.readInt();
+
+			final Map<String, int[]> keywords = new HashMap<String, int[]>(count * 2);
+
+			for(int k = 0; k < count; k++) {
+				final String term = in.readUTF();
+				final int[] ids = new int[in.readInt()];
+
+				for(int i = 0; i < ids.length; i++) ids[i] = in.readInt();
+
+				keywords.put(term, ids);
+			}
+
+			return new Index(data, entries, keywords);
+		}
+
+		private boolean isCurrent(final File source) {
+			final Entry entry = byFile.get(source.getName());
+
+			return entry != null && entry.modified == source.lastModified() && entry.size == source.length();
+		}
+
+		private byte[] bytes(final Entry entry) {
+			final byte[] bytes = new byte[entry.length];
+
+			final ByteBuffer view = data.duplicate();
+
+			view.position(entry.offset);
+			view.get(bytes);
+
+			return bytes;
+		}
+
+		// turn the inverted index back around, so a sync can keep the words of unchanged pages
+		private Map<Integer, List<String>> termsById() {
+			final Map<Integer, List<String>> terms = new HashMap<Integer, List<String>>();
+
+			for(final Map.Entry<String, int[]> keyword : keywords.entrySet()) {
+				for(final int id : keyword.getValue()) {
+					List<String> list = terms.get(id);
+
+					if( list == null ) terms.put(id, list = new ArrayList<String>());
+
+					list.add(keyword.getKey());
+				}
+			}
+
+			return terms;
+		}
+	}
+}
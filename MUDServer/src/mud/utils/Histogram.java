@@ -0,0 +1,112 @@
+package mud.utils;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * A simple histogram for timing data. Values are counted in power of two
+ * buckets (bucket n holds values from 2^(n-1) up to 2^n - 1), which is plenty
+ * of resolution for "how long does this usually take" and costs a fixed,
+ * small amount of memory no matter how many values are recorded.
+ * 
+ * Units are up to the caller (typically microseconds).
+ * 
+ * @author Jeremy
+ *
+ */
+public class Histogram {
+	private static final int BUCKETS = 40;
+
+	private final String name;
+
+	private final long[] buckets = new long[BUCKETS];
+
+	private long count = 0;
+	private long total = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+
+	public Histogram(final String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public synchronized void record(final long value) {
+		final long v = Math.max(value, 0);
+
+		final int bucket = Math.min(64 - Long.numberOfLeadingZeros(v), BUCKETS - 1);
+
+		buckets[bucket]++;
+
+		count++;
+		total += v;
+
+		if( v < min ) min = v;
+		if( v > max ) max = v;
+	}
+
+	public synchronized long getCount() {
+		return this.count;
+	}
+
+	public synchronized long getMin() {
+		return (count == 0) ? 0 : this.min;
+	}
+
+	public synchronized long getMax() {
+		return this.max;
+	}
+
+	public synchronized long getMean() {
+		return (count == 0) ? 0 : (total / count);
+	}
+
+	/**
+	 * Get an (upper bound) estimate of the specified percentile.
+	 * 
+	 * @param p percentile (0-100)
+	 * @return
+	 */
+	public synchronized long getPercentile(final double p) {
+		if( count == 0 ) return 0;
+
+		final long target = (long) Math.ceil( count * (p / 100.0) );
+
+		long seen = 0;
+
+		for(int b = 0; b < BUCKETS; b++) {
+			seen += buckets[b];
+
+			if( seen >= target ) {
+				return Math.min( (b == 0) ? 0 : (1L << b) - 1, max );
+			}
+		}
+
+		return max;
+	}
+
+	public synchronized void reset() {
+		for(int b = 0; b < BUCKETS; b++) buckets[b] = 0;
+
+		count = 0;
+		total = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%-12s n=%-8d min=%-6d mean=%-6d p50=%-6d p90=%-6d p99=%-6d max=%d",
+				name, count, getMin(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), max);
+	}
+}
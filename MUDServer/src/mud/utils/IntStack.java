@@ -0,0 +1,100 @@
+package mud.utils;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * A growable stack of primitive ints, so that keeping a stack of numbers
+ * doesn't mean boxing every one of them.
+ * 
+ * @author Jeremy
+ *
+ */
+public class IntStack {
+	private int[] data;
+	private int size = 0;
+
+	public IntStack() {
+		this(16);
+	}
+
+	public IntStack(final int capacity) {
+		this.data = new int[Math.max(capacity, 1)];
+	}
+
+	public void push(final int value) {
+		if( size == data.length ) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+
+		data[size++] = value;
+	}
+
+	public int pop() {
+		if( size == 0 ) throw new EmptyStackException();
+
+		return data[--size];
+	}
+
+	public int peek() {
+		if( size == 0 ) throw new EmptyStackException();
+
+		return data[size - 1];
+	}
+
+	/**
+	 * Get the value at the given position, counting up from
+	 * the bottom of the stack.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int get(final int index) {
+		if( index < 0 || index >= size ) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		return data[index];
+	}
+
+	public boolean contains(final int value) {
+		for(int i = 0; i < size; i++) {
+			if( data[i] == value ) return true;
+		}
+
+		return false;
+	}
+
+	public boolean empty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+
+		for(int i = 0; i < size; i++) {
+			if( i > 0 ) sb.append(", ");
+
+			sb.append(data[i]);
+		}
+
+		return sb.append("]").toString();
+	}
+}
@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
+import mud.Logger;
+
 /**
  * Log Class
  * 
@@ -39,6 +41,11 @@ import java.util.TimeZone;
  * parameter will have a max length of -1 (infinite) which may result in very large
  * log files if the game does not crash or is not shutdown/restarted.
  * 
+ * NOTE3: a log registered with a Logger that has been started doesn't write
+ * anything itself, writeln(...) formats the line and hands it to the Logger, whose
+ * writer thread calls append(...) and flush(). The Logger also decides when the log
+ * is rotated (see setRotation).
+ * 
  * @author Jeremy N. Harton
  *
  */
@@ -48,6 +55,9 @@ public class Log {
 	private static final Integer BUFFER_SIZE = 1000;
 	private static final Integer MAX_LOG_SIZE = 100000;
 	
+	private static final TimeZone TZ = TimeZone.getTimeZone("America/New_York");
+	private static final Locale LC = new Locale("ENGLISH", "US");
+	
 	private String LOG_DIR;
 	
 	private String name;
@@ -55,6 +65,8 @@ public class Log {
 	private Type type;
 	private PrintWriter output;
 	
+	private Logger logger = null; // the logger whose writer thread does our writing (if any)
+	
 	// status
 	private boolean isOpen = false;
 	private boolean isFull = false;
@@ -64,9 +76,16 @@ public class Log {
 	private boolean useTimestamp = true;
 	
 	// other
-	private int lines_written;
+	private volatile int lines_written;
 	private int log_num = 1;
 	
+	// rotation
+	private long maxBytes = -1;    // start a new file once this many bytes have been written (-1 = no limit)
+	private long maxAge = -1;      // start a new file once the current one is this old, in ms (-1 = no limit)
+	
+	private long bytes_written = 0; // written to the current file
+	private long opened = 0;        // when the current file was opened
+	
 	private List<String> buffer = null;
 
 	// time, date, filename, etc
@@ -97,26 +116,8 @@ public class Log {
 	}
 	
 	public Log(final String name, final boolean buffer, final boolean timestamp) {
-		// TODO reduce redundant timestamp code
-		final TimeZone tz = TimeZone.getTimeZone("America/New_York");
-		final Locale lc = new Locale("ENGLISH", "US");
-		
-		final Calendar cal = Calendar.getInstance(tz, lc);
-		
-		int month = cal.get(Calendar.MONTH);
-		int day = cal.get(Calendar.DAY_OF_MONTH);
-		int year = cal.get(Calendar.YEAR);
-		
-		int hour = cal.get(Calendar.HOUR);
-		int minute = cal.get(Calendar.MINUTE);
-		
-		getTimeString('-');
-		
-		final String date = (month + 1) + "-" + day + "-" + year;
-		final String time = hour + "-" + minute;
-		
 		this.name = name;
-		this.filename = name + "_" + date + "_" + time + ".txt";
+		this.filename = makeFilename("");
 		
 		this.useBuffer = buffer;
 		this.useTimestamp = timestamp;
@@ -130,6 +131,27 @@ public class Log {
 		this.LOG_DIR = dir;
 	}
 	
+	/**
+	 * Have the logger's writer thread do our writing. The logger should be started
+	 * (see Logger.start()) before anything is logged.
+	 * 
+	 * @param logger the logger, or null to go back to writing directly
+	 */
+	public void setLogger(final Logger logger) {
+		this.logger = logger;
+	}
+	
+	/**
+	 * Set when a new log file is started.
+	 * 
+	 * @param maxBytes size limit of a file, in bytes (-1 for none)
+	 * @param maxAge age limit of a file, in ms (-1 for none)
+	 */
+	public void setRotation(final long maxBytes, final long maxAge) {
+		this.maxBytes = maxBytes;
+		this.maxAge = maxAge;
+	}
+	
 	public String getName() {
 		return this.name;
 	}
@@ -176,6 +198,10 @@ public class Log {
 				
 				this.output = new PrintWriter(file);
 				this.isOpen = true;
+				this.isFull = false;
+				
+				this.bytes_written = 0;
+				this.opened = System.currentTimeMillis();
 			}
 			catch (final FileNotFoundException fnfe) {
 				System.out.println("File not found!");
@@ -200,65 +226,95 @@ public class Log {
 	public void writeln(final String message)
 	{
 		if ( this.isOpen ) {
-			if ( !this.isFull ) {
-				final String timeString = getTimeString();
-				
-				String logString = "";
-				
-				if( useTimestamp ) logString = "[" + timeString + "] " + message;
-				else               logString = message;
-
-				logString.trim();
-
-				if( this.useBuffer ) {
-					// flush buffer to file if full
-					if( this.buffer.size() >= Log.BUFFER_SIZE ) {
-						for(final String s : this.buffer) this.output.println(s);
-						
-						this.output.flush();
-						this.buffer.clear();
-					}
-					
-					this.buffer.add( logString );
-				}
-				else {
-					this.output.println(logString);
-					this.output.flush();
-				}
+			String logString = "";
+			
+			if( useTimestamp ) logString = "[" + getTimeString() + "] " + message;
+			else               logString = message;
+			
+			// let the logger's writer thread deal with it
+			if( this.logger != null && this.logger.isRunning() ) {
+				this.logger.enqueue(this, logString);
+				return;
+			}
+			
+			if( this.useBuffer ) {
+				// flush buffer to file if full
+				if( this.buffer.size() >= Log.BUFFER_SIZE ) flush();
 				
-				this.lines_written++;
-
-				if ( this.lines_written == Log.MAX_LOG_SIZE ) {
-					this.isFull = true;
-				}
+				this.buffer.add( logString );
 			}
 			else {
-				if( this.useBuffer ) {
-					// flush ENTIRE buffer since we're closing this log file
-					for(final String s : this.buffer) this.output.println(s);
-					
-					this.output.flush();
-					this.buffer.clear();
-				}
+				append(logString);
 				
-				// report full log
-				System.out.println("Log Full!");
-				
-				// close current log file and open a new one and call write again
-				closeLog();
-				
-				// change filename (e.g. test_date_time.log > test1_date_time.log)
-				final String prefix = filename.substring(0, filename.indexOf('_'));
+				this.output.flush();
+			}
+		}
+		else System.out.println("Log File not open.[" + getFileName() + "]");
+	}
+	
+	/**
+	 * Write a line that's already been formatted, starting a new file first if
+	 * this one is full. Doesn't flush.
+	 * 
+	 * NOTE: when the log belongs to a running Logger, only the Logger's writer
+	 * thread should call this.
+	 * 
+	 * @param line
+	 */
+	public void append(final String line) {
+		if ( !this.isOpen ) return;
+		
+		if ( this.isFull ) rotate();
+		
+		this.output.println(line);
+		
+		this.bytes_written += line.length() + 2;
+		this.lines_written++;
+		
+		if ( this.lines_written % Log.MAX_LOG_SIZE == 0 || (maxBytes > 0 && bytes_written >= maxBytes) ) {
+			this.isFull = true;
+		}
+	}
+	
+	/**
+	 * Send anything written so far to the file.
+	 */
+	public void flush() {
+		if ( this.isOpen ) {
+			if( this.useBuffer && !this.buffer.isEmpty() ) {
+				final List<String> lines = new ArrayList<String>(this.buffer);
 				
-				filename.replace(prefix, prefix + this.log_num);
+				this.buffer.clear();
 				
-				this.log_num++;
-
-				// open log
-				openLog();
+				for(final String s : lines) append(s);
 			}
+			
+			this.output.flush();
 		}
-		else System.out.println("Log File not open.[" + getFileName() + "]");
+	}
+	
+	/**
+	 * Start a new file if the current one has been open long enough.
+	 * 
+	 * @param now current time in ms
+	 */
+	public void checkAge(final long now) {
+		if ( this.isOpen && maxAge > 0 && now - this.opened >= maxAge ) {
+			rotate();
+		}
+	}
+	
+	/**
+	 * Close the current file and open a new one
+	 * (e.g. test_date_time.txt > test_date_time_2.txt)
+	 */
+	private void rotate() {
+		closeLog();
+		
+		this.log_num++;
+		this.filename = makeFilename("_" + this.log_num);
+		
+		openLog();
 	}
 
 	/**
@@ -270,6 +326,12 @@ public class Log {
 	{
 		// if the log is open
 		if ( this.isOpen ) {
+			if( this.useBuffer ) {
+				for(final String s : this.buffer) this.output.println(s);
+				
+				this.buffer.clear();
+			}
+			
 			this.output.flush();
 			this.output.close();
 			
@@ -284,6 +346,22 @@ public class Log {
 		return getTimeString(':');
 	}
 	
+	private String makeFilename(final String suffix) {
+		final Calendar cal = Calendar.getInstance(TZ, LC);
+		
+		int month = cal.get(Calendar.MONTH);
+		int day = cal.get(Calendar.DAY_OF_MONTH);
+		int year = cal.get(Calendar.YEAR);
+		
+		int hour = cal.get(Calendar.HOUR);
+		int minute = cal.get(Calendar.MINUTE);
+		
+		final String date = (month + 1) + "-" + day + "-" + year;
+		final String time = hour + "-" + minute;
+		
+		return name + "_" + date + "_" + time + suffix + ".txt";
+	}
+	
 	/**
 	 * Get a Calendar instance for the purposes of checking the time, so that log entries
 	 * can be timestamped. This gets the current time and generates a string.
@@ -291,10 +369,7 @@ public class Log {
 	 * @return
 	 */
 	private String getTimeString(final char sep) {
-		final TimeZone tz = TimeZone.getTimeZone("America/New_York");
-		final Locale lc = new Locale("ENGLISH", "US");
-		
-		final Calendar cal = Calendar.getInstance(tz, lc);
+		final Calendar cal = Calendar.getInstance(TZ, LC);
 		
 		String hour, minute, second;
 		
@@ -0,0 +1,247 @@
+package mud.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Hashes passwords on a small pool of worker threads, so that a burst of
+ * logins doesn't hold up the game. Hashing is deliberately slow (see
+ * Utils.hash), so doing it on the game thread means everyone waits.
+ *
+ * Results don't go straight back to the caller, they are queued up and handed
+ * over when the owner calls runCompleted() (the main loop does so once per
+ * tick), so login code still runs on the game thread.
+ *
+ * The queue of work is bounded and each address only gets so many attempts
+ * in a given window of time.
+ *
+ * @author Jeremy
+ *
+ */
+public final class PasswordHasher {
+	private final ThreadPoolExecutor pool;
+
+	private final Queue<Runnable> completed = new ConcurrentLinkedQueue<Runnable>();
+
+	// rate limiting
+	private final int maxAttempts;
+	private final long window; // ms
+
+	private final Map<String, Attempts> attempts = new ConcurrentHashMap<String, Attempts>();
+
+	// metrics
+	private final Histogram hashTimes = new Histogram("hash (us)");
+	private final Histogram waitTimes = new Histogram("queued (us)");
+
+	private int maxDepth = 0;
+
+	private long rejected = 0; // turned away because the queue was full
+	private long limited = 0;  // turned away by the rate limit
+
+	/**
+	 *
+	 * @param threads number of worker threads
+	 * @param capacity how many passwords can be waiting to be hashed
+	 * @param maxAttempts attempts allowed per address in each window
+	 * @param window length of the window
+	 * @param unit unit of window
+	 */
+	public PasswordHasher(final int threads, final int capacity, final int maxAttempts, final long window, final TimeUnit unit) {
+		final AtomicInteger n = new AtomicInteger(0);
+
+		this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(capacity), r -> {
+			final Thread thread = new Thread(r, "hash-" + n.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		this.maxAttempts = maxAttempts;
+		this.window = unit.toMillis(window);
+	}
+
+	/**
+	 * Count an attempt by the specified address and check whether it's over
+	 * the limit.
+	 *
+	 * @param address
+	 * @return true if the attempt should be allowed
+	 */
+	public boolean allow(final String address) {
+		final long now = System.currentTimeMillis();
+
+		// forget addresses that haven't tried anything in a while
+		if( attempts.size() > 1024 ) {
+			final Iterator<Attempts> iter = attempts.values().iterator();
+
+			while( iter.hasNext() ) {
+				if( now - iter.next().start > window ) iter.remove();
+			}
+		}
+
+		final Attempts a = attempts.computeIfAbsent(address, k -> new Attempts());
+
+		synchronized(a) {
+			if( now - a.start > window ) {
+				a.start = now;
+				a.count = 0;
+			}
+
+			a.count++;
+
+			if( a.count <= maxAttempts ) return true;
+		}
+
+		synchronized(this) {
+			limited++;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Hash the password on a worker thread.
+	 *
+	 * @param password
+	 * @param done gets the hash, on whichever thread calls runCompleted()
+	 * @return false if there's too much waiting to be hashed already
+	 */
+	public boolean hash(final String password, final Consumer<String> done) {
+		final long queued = System.nanoTime();
+
+		try {
+			pool.execute(() -> {
+				final long start = System.nanoTime();
+
+				final String hash = Utils.hash(password);
+
+				final long end = System.nanoTime();
+
+				waitTimes.record( (start - queued) / 1000 );
+				hashTimes.record( (end - start) / 1000 );
+
+				completed.offer(() -> done.accept(hash));
+			});
+		}
+		catch(final RejectedExecutionException ree) {
+			synchronized(this) {
+				rejected++;
+			}
+
+			return false;
+		}
+
+		synchronized(this) {
+			maxDepth = Math.max(maxDepth, pool.getQueue().size());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Hand over any finished hashes.
+	 *
+	 * @return the number handed over
+	 */
+	public int runCompleted() {
+		int count = 0;
+
+		Runnable r;
+
+		while( (r = completed.poll()) != null ) {
+			try {
+				r.run();
+			}
+			catch(final Exception e) {
+				System.out.println("PasswordHasher: completion failed");
+				e.printStackTrace();
+			}
+
+			count++;
+		}
+
+		return count;
+	}
+
+	public int getQueueDepth() {
+		return pool.getQueue().size();
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	public Histogram getHashTimes() {
+		return this.hashTimes;
+	}
+
+	public Histogram getWaitTimes() {
+		return this.waitTimes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "PasswordHasher (threads: " + pool.getMaximumPoolSize() + ") queued: " + pool.getQueue().size() + " (max " + maxDepth + ")" +
+				" active: " + pool.getActiveCount() + " done: " + pool.getCompletedTaskCount() + " rejected: " + rejected + " rate limited: " + limited;
+	}
+
+	/**
+	 * Compare two hashes in time that depends only on their length, so how
+	 * long a failed check takes doesn't say anything about how close it was.
+	 *
+	 * @param hash
+	 * @param expected
+	 * @return
+	 */
+	public static boolean matches(final String hash, final String expected) {
+		if( hash == null || expected == null ) return false;
+
+		return MessageDigest.isEqual(hash.getBytes(StandardCharsets.UTF_8), expected.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Does the stored value look like a hash (see Utils.hash), as opposed to a
+	 * plain-text password saved before passwords were hashed?
+	 *
+	 * @param stored
+	 * @return
+	 */
+	public static boolean isHash(final String stored) {
+		if( stored == null || stored.length() < 24 || stored.length() > 32 ) return false;
+
+		for(int c = 0; c < stored.length(); c++) {
+			final char ch = stored.charAt(c);
+
+			if( !(ch >= '0' && ch <= '9') && !(ch >= 'a' && ch <= 'f') ) return false;
+		}
+
+		return true;
+	}
+
+	private static final class Attempts {
+		private long start = System.currentTimeMillis();
+		private int count = 0;
+	}
+}
@@ -0,0 +1,504 @@
+package mud.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * The properties ("props") on an object.
+ *
+ * Most objects have few or no properties, so nothing is allocated until the
+ * first one is set and the storage grows from there: the entries are kept in
+ * small arrays (in the order they were added) with an open addressed table
+ * of indexes into them for lookups. Keys are interned, since the same few
+ * names ("_game/race", "visual/...", etc) are used on many objects.
+ *
+ * Values keep their type. Integers, booleans and dbrefs set through the
+ * typed methods are stored as such and read back without going through a
+ * string; they only become strings when read as one (booleans as ":true"
+ * and ":false", as they always have been).
+ *
+ * Property directories (i.e. "visual/") are indexed by a trie of the parts
+ * of each key, so that listing or checking a directory only looks at what's
+ * in it. The trie is built the first time a directory is asked for and kept
+ * up to date after that. Building it is synchronized, since commands that
+ * only look at things (and so may run at the same time) ask for directories;
+ * changing the properties still needs the object to one's self.
+ *
+ * As a Map it can be used wherever the old map of strings was; the typed
+ * methods are there for code that knows what it wants.
+ *
+ * @author Jeremy
+ *
+ */
+public final class PropertyStore extends AbstractMap<String, String> {
+	private static final byte STRING = 0;
+	private static final byte INTEGER = 1;
+	private static final byte BOOLEAN = 2;
+	private static final byte DBREF = 3;
+
+	private static final int MIN_CAPACITY = 4;
+
+	// entries, in the order they were added (null until something is set)
+	private String[] keys = null;
+	private Object[] values = null;
+	private byte[] types = null;
+
+	private int size = 0;
+
+	// open addressed table of entry indexes (+1, so 0 means empty), twice as big as the entry arrays
+	private int[] slots = null;
+
+	// property directories (null until one is asked for)
+	private volatile Dir root = null;
+
+	private transient int modCount = 0;
+
+	/* lookup */
+
+	private int find(final Object key) {
+		if( slots == null || key == null ) return -1;
+
+		final int mask = slots.length - 1;
+
+		int slot = hash(key) & mask;
+
+		while( true ) {
+			final int s = slots[slot];
+
+			if( s == 0 ) return -1;
+
+			final String k = keys[s - 1];
+
+			if( k == key || k.equals(key) ) return s - 1;
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static int hash(final Object key) {
+		final int h = key.hashCode();
+
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return find(key) != -1;
+	}
+
+	/**
+	 * Get a property as a string, whatever type it was stored as.
+	 */
+	@Override
+	public String get(final Object key) {
+		final int index = find(key);
+
+		return (index != -1) ? format(index) : null;
+	}
+
+	/**
+	 * Get a property as an integer. A string is parsed (if it can be).
+	 *
+	 * @param key
+	 * @return the value or null if there isn't one, or it's not a number
+	 */
+	public Integer getInteger(final String key) {
+		final int index = find(key);
+
+		if( index == -1 ) return null;
+
+		switch(types[index]) {
+		case INTEGER:
+		case DBREF:
+			return (Integer) values[index];
+		case STRING:
+			try {
+				return Integer.parseInt( (String) values[index] );
+			}
+			catch(final NumberFormatException nfe) {
+				return null;
+			}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Get a property as a boolean. A string is true if it's ":true".
+	 *
+	 * @param key
+	 * @return the value, false if there isn't one
+	 */
+	public boolean getBoolean(final String key) {
+		final int index = find(key);
+
+		if( index == -1 ) return false;
+
+		switch(types[index]) {
+		case BOOLEAN: return (Boolean) values[index];
+		case STRING:  return ":true".equals(values[index]);
+		default:      return false;
+		}
+	}
+
+	/**
+	 * Get a property that holds a dbref.
+	 *
+	 * @param key
+	 * @return the dbref or -1 if there isn't one
+	 */
+	public int getDBRef(final String key) {
+		final Integer dbref = getInteger(key);
+
+		return (dbref != null) ? dbref : -1;
+	}
+
+	private String format(final int index) {
+		final Object value = values[index];
+
+		switch(types[index]) {
+		case BOOLEAN: return ((Boolean) value) ? ":true" : ":false";
+		case INTEGER:
+		case DBREF:   return value.toString();
+		default:      return (String) value;
+		}
+	}
+
+	/* modification */
+
+	@Override
+	public String put(final String key, final String value) {
+		return set(key, STRING, value);
+	}
+
+	public String putInteger(final String key, final int value) {
+		return set(key, INTEGER, value);
+	}
+
+	public String putBoolean(final String key, final boolean value) {
+		return set(key, BOOLEAN, value);
+	}
+
+	public String putDBRef(final String key, final int dbref) {
+		return set(key, DBREF, dbref);
+	}
+
+	private String set(final String key, final byte type, final Object value) {
+		if( key == null ) throw new NullPointerException("property name is null");
+
+		final int index = find(key);
+
+		if( index != -1 ) {
+			final String old = format(index);
+
+			types[index] = type;
+			values[index] = value;
+
+			return old;
+		}
+
+		if( keys == null )             allocate(MIN_CAPACITY);
+		else if( size == keys.length ) allocate(keys.length * 2);
+
+		final String k = key.intern();
+
+		keys[size] = k;
+		types[size] = type;
+		values[size] = value;
+
+		size++;
+
+		index(size - 1);
+
+		if( root != null ) root.add(k);
+
+		modCount++;
+
+		return null;
+	}
+
+	@Override
+	public String remove(final Object key) {
+		final int index = find(key);
+
+		if( index == -1 ) return null;
+
+		final String old = format(index);
+
+		removeAt(index);
+
+		return old;
+	}
+
+	private void removeAt(final int index) {
+		final String key = keys[index];
+
+		final int moved = size - index - 1;
+
+		// keep the others in order
+		if( moved > 0 ) {
+			System.arraycopy(keys, index + 1, keys, index, moved);
+			System.arraycopy(types, index + 1, types, index, moved);
+			System.arraycopy(values, index + 1, values, index, moved);
+		}
+
+		size--;
+
+		keys[size] = null;
+		values[size] = null;
+
+		if( root != null ) root.remove(key);
+
+		if( size == 0 ) clear();
+		else            reindex();
+
+		modCount++;
+	}
+
+	@Override
+	public void clear() {
+		keys = null;
+		values = null;
+		types = null;
+		slots = null;
+
+		size = 0;
+
+		root = null;
+
+		modCount++;
+	}
+
+	private void allocate(final int capacity) {
+		if( keys == null ) {
+			keys = new String[capacity];
+			values = new Object[capacity];
+			types = new byte[capacity];
+		}
+		else {
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+			types = Arrays.copyOf(types, capacity);
+		}
+
+		slots = new int[capacity * 2];
+
+		for(int e = 0; e < size; e++) index(e);
+	}
+
+	private void reindex() {
+		Arrays.fill(slots, 0);
+
+		for(int e = 0; e < size; e++) index(e);
+	}
+
+	private void index(final int entry) {
+		final int mask = slots.length - 1;
+
+		int slot = hash(keys[entry]) & mask;
+
+		while( slots[slot] != 0 ) slot = (slot + 1) & mask;
+
+		slots[slot] = entry + 1;
+	}
+
+	/* property directories */
+
+	/**
+	 * Get the properties in a property directory (and any below it).
+	 *
+	 * @param propdir a directory name, ending with '/' (i.e. "visual/")
+	 * @return the properties (as strings), in no particular order
+	 */
+	public Map<String, String> getDirectory(final String propdir) {
+		final Dir dir = findDir(propdir);
+
+		if( dir == null || dir.count == (dir.key != null ? 1 : 0) ) return Collections.emptyMap();
+
+		final Map<String, String> props = new LinkedHashMap<String, String>();
+
+		for(final Dir child : dir.children.values()) child.collect(this, props);
+
+		return props;
+	}
+
+	/**
+	 * Is there anything in the property directory?
+	 *
+	 * @param propdir a directory name, ending with '/' (i.e. "visual/")
+	 * @return
+	 */
+	public boolean hasDirectory(final String propdir) {
+		final Dir dir = findDir(propdir);
+
+		return dir != null && dir.count > (dir.key != null ? 1 : 0);
+	}
+
+	private Dir findDir(final String propdir) {
+		if( size == 0 || !propdir.endsWith("/") ) return null;
+
+		Dir dir = root;
+
+		if( dir == null ) {
+			synchronized(this) {
+				dir = root;
+
+				if( dir == null ) {
+					dir = new Dir();
+
+					for(int e = 0; e < size; e++) dir.add(keys[e]);
+
+					root = dir; // only published once it's complete
+				}
+			}
+		}
+
+		for(final String part : split( propdir.substring(0, propdir.length() - 1) )) {
+			dir = dir.child(part);
+
+			if( dir == null ) return null;
+		}
+
+		return dir;
+	}
+
+	private static String[] split(final String key) {
+		return key.split("/", -1);
+	}
+
+	/**
+	 * A node in the property directory trie. Each part of a key (between the
+	 * '/'s) is a level, and the node where a key ends holds it.
+	 */
+	private static final class Dir {
+		private Map<String, Dir> children = null;
+		private String key = null; // property whose name ends here (if any)
+		private int count = 0;     // properties here and below
+
+		private Dir child(final String part) {
+			return (children != null) ? children.get(part) : null;
+		}
+
+		private void add(final String key) {
+			Dir dir = this;
+
+			dir.count++;
+
+			for(final String part : split(key)) {
+				if( dir.children == null ) dir.children = new LinkedHashMap<String, Dir>(4);
+
+				Dir next = dir.children.get(part);
+
+				if( next == null ) {
+					next = new Dir();
+					dir.children.put(part, next);
+				}
+
+				dir = next;
+				dir.count++;
+			}
+
+			dir.key = key;
+		}
+
+		private void remove(final String key) {
+			Dir dir = this;
+
+			dir.count--;
+
+			for(final String part : split(key)) {
+				final Dir next = dir.child(part);
+
+				if( next == null ) return; // shouldn't happen
+
+				// nothing left below, drop the whole branch
+				if( --next.count == 0 ) {
+					dir.children.remove(part);
+					return;
+				}
+
+				dir = next;
+			}
+
+			dir.key = null;
+		}
+
+		private void collect(final PropertyStore store, final Map<String, String> props) {
+			if( key != null ) props.put(key, store.get(key));
+
+			if( children != null ) {
+				for(final Dir child : children.values()) child.collect(store, props);
+			}
+		}
+	}
+
+	/* map view */
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String>>() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new Entries();
+			}
+
+			@Override
+			public int size() {
+				return PropertyStore.this.size;
+			}
+		};
+	}
+
+	private final class Entries implements Iterator<Map.Entry<String, String>> {
+		private int next = 0;
+		private int last = -1;
+		private int expected = modCount;
+
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		public Map.Entry<String, String> next() {
+			if( expected != modCount ) throw new ConcurrentModificationException();
+			if( next >= size )         throw new NoSuchElementException();
+
+			last = next++;
+
+			return new AbstractMap.SimpleImmutableEntry<String, String>(keys[last], format(last));
+		}
+
+		public void remove() {
+			if( last == -1 )           throw new IllegalStateException();
+			if( expected != modCount ) throw new ConcurrentModificationException();
+
+			removeAt(last);
+
+			next = last;
+			last = -1;
+			expected = modCount;
+		}
+	}
+}
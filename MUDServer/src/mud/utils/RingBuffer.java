@@ -0,0 +1,146 @@
+package mud.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * A fixed size queue that doesn't use locks, so that threads adding to it
+ * never wait on each other or on whoever is taking things out.
+ *
+ * Each slot has a sequence number that says whether it's ready to be written
+ * (sequence == position) or read (sequence == position + 1), and threads
+ * claim a position by advancing the head/tail with compare-and-set. When the
+ * buffer is full, offer() fails instead of waiting.
+ *
+ * @author Jeremy
+ *
+ * @param <T>
+ */
+public final class RingBuffer<T> {
+	private final AtomicReferenceArray<T> items;
+	private final AtomicLongArray sequence;
+
+	private final int mask;
+
+	private final AtomicLong head = new AtomicLong(0); // next position to write
+	private final AtomicLong tail = new AtomicLong(0); // next position to read
+
+	/**
+	 *
+	 * @param capacity number of slots (rounded up to a power of two)
+	 */
+	public RingBuffer(final int capacity) {
+		int n = 1;
+
+		while( n < capacity ) n <<= 1;
+
+		this.items = new AtomicReferenceArray<T>(n);
+		this.sequence = new AtomicLongArray(n);
+		this.mask = n - 1;
+
+		for(int s = 0; s < n; s++) this.sequence.set(s, s);
+	}
+
+	/**
+	 * Add an item, if there is room.
+	 *
+	 * @param item
+	 * @return false if the buffer is full
+	 */
+	public boolean offer(final T item) {
+		long pos = head.get();
+
+		while( true ) {
+			final int index = (int) (pos & mask);
+			final long diff = sequence.get(index) - pos;
+
+			if( diff == 0 ) {
+				if( head.compareAndSet(pos, pos + 1) ) {
+					items.set(index, item);
+					sequence.set(index, pos + 1); // now it can be read
+
+					return true;
+				}
+
+				pos = head.get();
+			}
+			else if( diff < 0 ) return false; // the slot hasn't been read since the last time around
+			else                pos = head.get();
+		}
+	}
+
+	/**
+	 * Take the oldest item.
+	 *
+	 * @return the item or null, if the buffer is empty
+	 */
+	public T poll() {
+		long pos = tail.get();
+
+		while( true ) {
+			final int index = (int) (pos & mask);
+			final long diff = sequence.get(index) - (pos + 1);
+
+			if( diff == 0 ) {
+				if( tail.compareAndSet(pos, pos + 1) ) {
+					final T item = items.get(index);
+
+					items.set(index, null);
+					sequence.set(index, pos + mask + 1); // ready to be written on the next time around
+
+					return item;
+				}
+
+				pos = tail.get();
+			}
+			else if( diff < 0 ) return null; // nothing written there yet
+			else                pos = tail.get();
+		}
+	}
+
+	/**
+	 * Take up to max items, handing each to the consumer.
+	 *
+	 * @param consumer
+	 * @param max
+	 * @return the number of items taken
+	 */
+	public int drain(final Consumer<T> consumer, final int max) {
+		int count = 0;
+
+		T item;
+
+		while( count < max && (item = poll()) != null ) {
+			consumer.accept(item);
+
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Approximate number of items in the buffer.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return (int) Math.max(head.get() - tail.get(), 0);
+	}
+
+	public int capacity() {
+		return this.mask + 1;
+	}
+}
@@ -1,40 +1,23 @@
 package mud.utils;
 
-import java.util.TimerTask;
-
 import mud.magic.Spell;
 
 /**
- * A TimerTask that handles duration counts for
- * Spell(s) on a task per spell basis.
+ * A GameTimer that handles duration counts for
+ * Spell(s) on a timer per spell basis.
  * 
  * @author Jeremy
  *
  */
-public class SpellTimer extends TimerTask {
+public class SpellTimer extends GameTimer {
 	private Spell spell;
-	private int remaining;
 	
 	public SpellTimer(Spell spell, int duration) {
+		super(duration);
 		this.spell = spell;
-		this.remaining = duration;
 	}
 	
 	public Spell getSpell() {
 		return this.spell;
 	}
-	
-	public int getTimeRemaining() {
-		return this.remaining;
-	}
-
-	@Override
-	public void run() {
-		if( this.remaining > 0 ) {
-			// do task
-			// increment counter
-			this.remaining--; // count down a "second"
-		}
-		else { cancel(); }
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,403 @@
+package mud.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * Shared storage for object names and descriptions. Lots of objects have
+ * the same name or description (i.e. "You see nothing."), so each distinct
+ * string is kept once and everyone that uses it gets the same copy. The
+ * table only holds weak references, so a string that nothing uses any more
+ * (an old name or description) is dropped from it by the garbage collector.
+ *
+ * Long text (descriptions mostly) can also be packed: kept as UTF-8 bytes,
+ * or deflated if that's a good deal smaller, and only turned back into a
+ * String when it's asked for. That trades a little work on each read for
+ * roughly half the memory (or less) for text that is rarely looked at.
+ * Packing is off unless a length is set with setPackLength(...).
+ *
+ * @author Jeremy
+ *
+ */
+public final class StringTable {
+	private final Map<String, WeakReference<String>> strings = new WeakHashMap<String, WeakReference<String>>(); // guarded by itself
+
+	private volatile int packLength = -1; // pack text at least this long (-1 = never)
+
+	// metrics
+	private final AtomicLong lookups = new AtomicLong(0);
+	private final AtomicLong shared = new AtomicLong(0); // lookups that found an existing copy
+	private final AtomicLong saved = new AtomicLong(0);  // bytes not used because a copy was shared
+
+	private final AtomicLong packed = new AtomicLong(0);      // strings packed
+	private final AtomicLong packedFrom = new AtomicLong(0);  // their size as strings (bytes)
+	private final AtomicLong packedTo = new AtomicLong(0);    // their size packed (bytes)
+	private final AtomicLong unpacked = new AtomicLong(0);    // times packed text was read
+
+	/**
+	 * Set how long text has to be before store(...) packs it.
+	 *
+	 * @param length length in characters, or -1 to never pack
+	 */
+	public void setPackLength(final int length) {
+		this.packLength = length;
+	}
+
+	public int getPackLength() {
+		return this.packLength;
+	}
+
+	/**
+	 * Get the shared copy of a string.
+	 *
+	 * @param string
+	 * @return the shared copy (the string itself, if it's the first)
+	 */
+	public String intern(final String string) {
+		if( string == null ) return null;
+
+		lookups.incrementAndGet();
+
+		final String existing;
+
+		synchronized(strings) {
+			final WeakReference<String> ref = strings.get(string);
+
+			existing = (ref != null) ? ref.get() : null;
+
+			if( existing == null ) {
+				strings.put(string, new WeakReference<String>(string));
+
+				return string;
+			}
+		}
+
+		if( existing != string ) {
+			shared.incrementAndGet();
+			saved.addAndGet( sizeOf(string) );
+		}
+
+		return existing;
+	}
+
+	/**
+	 * Store text, either shared (see intern(...)) or packed, depending on
+	 * it's length.
+	 *
+	 * @param string
+	 * @return a String or a Packed (see text(...))
+	 */
+	public Object store(final String string) {
+		if( string == null ) return null;
+
+		final int limit = this.packLength;
+
+		if( limit > 0 && string.length() >= limit ) return pack(string);
+
+		return intern(string);
+	}
+
+	/**
+	 * Pack text. A given piece of text is packed on it's own, not shared.
+	 *
+	 * @param string
+	 * @return
+	 */
+	public Packed pack(final String string) {
+		final byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+		final byte[] deflated = deflate(utf8);
+
+		final Packed p;
+
+		// only bother with compression when it saves a quarter or more
+		if( deflated.length < utf8.length - (utf8.length / 4) ) p = new Packed(deflated, true, utf8.length);
+		else                                                   p = new Packed(utf8, false, utf8.length);
+
+		packed.incrementAndGet();
+		packedFrom.addAndGet( sizeOf(string) );
+		packedTo.addAndGet( 16 + align(16 + p.data.length) );
+
+		return p;
+	}
+
+	/**
+	 * Get text back from whatever store(...) returned.
+	 *
+	 * @param stored
+	 * @return
+	 */
+	public String text(final Object stored) {
+		if( stored instanceof Packed ) {
+			unpacked.incrementAndGet();
+
+			return stored.toString();
+		}
+
+		return (String) stored;
+	}
+
+	/**
+	 * @return number of distinct strings
+	 */
+	public int size() {
+		synchronized(strings) {
+			return strings.size();
+		}
+	}
+
+	/**
+	 * Approximate number of bytes saved, by sharing and by packing.
+	 *
+	 * @return
+	 */
+	public long getSaved() {
+		return saved.get() + (packedFrom.get() - packedTo.get());
+	}
+
+	@Override
+	public String toString() {
+		return "StringTable strings: " + size() + " lookups: " + lookups.get() + " shared: " + shared.get() +
+				" (" + saved.get() / 1024 + " KB saved) packed: " + packed.get() + " (" + packedFrom.get() / 1024 + " KB -> " +
+				packedTo.get() / 1024 + " KB, read " + unpacked.get() + " times)";
+	}
+
+	/**
+	 * Approximate heap used by a String (Java 8, compressed oops): the String
+	 * itself and it's char array.
+	 *
+	 * @param string
+	 * @return
+	 */
+	public static long sizeOf(final String string) {
+		return 24 + align(16 + 2 * string.length());
+	}
+
+	private static long align(final long size) {
+		return (size + 7) & ~7;
+	}
+
+	private static byte[] deflate(final byte[] data) {
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+			final byte[] buf = new byte[1024];
+
+			while( !deflater.finished() ) {
+				final int count = deflater.deflate(buf);
+
+				out.write(buf, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Packed text, turned back into a String by toString().
+	 */
+	public static final class Packed {
+		private final byte[] data;
+		private final boolean deflated;
+		private final int length; // of the text as UTF-8
+
+		private Packed(final byte[] data, final boolean deflated, final int length) {
+			this.data = data;
+			this.deflated = deflated;
+			this.length = length;
+		}
+
+		@Override
+		public String toString() {
+			if( !deflated ) return new String(data, StandardCharsets.UTF_8);
+
+			final Inflater inflater = new Inflater();
+
+			try {
+				final byte[] utf8 = new byte[length];
+
+				inflater.setInput(data);
+				inflater.inflate(utf8);
+
+				return new String(utf8, StandardCharsets.UTF_8);
+			}
+			catch(final DataFormatException dfe) {
+				// can't happen, we made the data ourselves
+				throw new IllegalStateException(dfe);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Build a large synthetic world's worth of names and descriptions, with
+	 * and without a string table, and report how much heap each used.
+	 *
+	 * Each is built several times (after a warm up run) and the heap used is
+	 * averaged, since a single reading is at the mercy of whatever the garbage
+	 * collector hasn't got around to yet.
+	 *
+	 * usage: java mud.utils.StringTable [objects] [pack length] [trials]
+	 *
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		final int packAt = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+		final int trials = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+		System.out.println("Synthetic world: " + count + " objects, " + trials + " trials");
+
+		measure(count, null); // warm up
+
+		final long plain = average(count, trials, 0);
+		final long interned = average(count, trials, -1);
+		final long packedSize = average(count, trials, packAt);
+
+		System.out.println(String.format("%-32s %8d KB", "plain strings", plain / 1024));
+		System.out.println(String.format("%-32s %8d KB (%d%%)", "shared", interned / 1024, 100 * interned / plain));
+		System.out.println(String.format("%-32s %8d KB (%d%%)", "shared + packed (>= " + packAt + ")", packedSize / 1024, 100 * packedSize / plain));
+	}
+
+	// average heap used over a number of trials, with no table (packAt 0) or a new one each time
+	private static long average(final int count, final int trials, final int packAt) {
+		long total = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+
+		StringTable table = null;
+
+		for(int t = 0; t < trials; t++) {
+			table = null;
+
+			if( packAt != 0 ) {
+				table = new StringTable();
+				table.setPackLength(packAt);
+			}
+
+			final long used = measure(count, table);
+
+			total += used;
+			min = Math.min(min, used);
+			max = Math.max(max, used);
+		}
+
+		System.out.println(String.format("  %s: %d - %d KB", (table != null) ? table : "plain strings", min / 1024, max / 1024));
+
+		return total / trials;
+	}
+
+	// heap used by the names and descriptions of a synthetic world
+	private static long measure(final int count, final StringTable table) {
+		final List<Object> world = new ArrayList<Object>(count * 2);
+
+		final long before = used();
+
+		final Random random = new Random(42);
+
+		final String[] names = { "Room", "Exit", "Torch", "Rat", "Chest", "Road", "Forest", "Guard" };
+		final String[] words = { "the", "old", "stone", "walls", "are", "covered", "in", "moss", "and", "a", "cold",
+				"wind", "blows", "through", "narrow", "passage", "leading", "north", "toward", "distant", "hills" };
+
+		for(int n = 0; n < count; n++) {
+			// names are a handful of common ones, sometimes numbered
+			final String name = (n % 4 == 0) ? names[random.nextInt(names.length)] + " " + (n % 100) : names[random.nextInt(names.length)];
+
+			final String desc;
+
+			// most have the default description, some a short common one, the rest something long and unique
+			final int kind = random.nextInt(10);
+
+			if( kind < 6 )      desc = "You see nothing.";
+			else if( kind < 8 ) desc = "A plain " + names[random.nextInt(names.length)].toLowerCase() + ".";
+			else {
+				final StringBuilder sb = new StringBuilder();
+
+				while( sb.length() < 400 ) sb.append(words[random.nextInt(words.length)]).append(' ');
+
+				desc = sb.toString();
+			}
+
+			// copies, as they'd be after being read from the database
+			final String n1 = new String(name.toCharArray());
+			final String d1 = new String(desc.toCharArray());
+
+			if( table != null ) {
+				world.add( table.intern(n1) );
+				world.add( table.store(d1) );
+			}
+			else {
+				world.add(n1);
+				world.add(d1);
+			}
+		}
+
+		final long after = used();
+
+		if( world.size() != count * 2 ) throw new IllegalStateException(); // keep the world alive until measured
+
+		return after - before;
+	}
+
+	// heap in use, once collecting garbage stops freeing anything (averaged over a few readings)
+	private static long used() {
+		final Runtime rt = Runtime.getRuntime();
+
+		long used = Long.MAX_VALUE;
+
+		for(int i = 0; i < 10; i++) {
+			gc();
+
+			final long now = rt.totalMemory() - rt.freeMemory();
+
+			if( now >= used ) break;
+
+			used = now;
+		}
+
+		long total = 0;
+
+		for(int i = 0; i < 5; i++) {
+			gc();
+
+			total += rt.totalMemory() - rt.freeMemory();
+		}
+
+		return total / 5;
+	}
+
+	private static void gc() {
+		System.gc();
+
+		try { Thread.sleep(20); }
+		catch(final InterruptedException ie) { Thread.currentThread().interrupt(); }
+	}
+}
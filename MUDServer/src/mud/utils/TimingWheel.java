@@ -0,0 +1,304 @@
+package mud.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+/**
+ * A hashed timing wheel. Time is cut into ticks of a fixed length and each
+ * tick maps onto one slot of the wheel (tick % slots). A timeout goes into the
+ * slot for the tick it's due on, along with the number of full turns of the
+ * wheel to wait, so scheduling and cancelling are O(1) and each tick only
+ * looks at one slot.
+ *
+ * The wheel doesn't have a thread of its own, whoever owns it calls advance()
+ * (the main loop does so once per game tick) and expired tasks are run on
+ * that thread.
+ *
+ * @author Jeremy
+ *
+ */
+public final class TimingWheel {
+	private final Slot[] wheel;
+	private final int mask;
+
+	private final long tickNanos;
+	private final long start;
+
+	private long tick = 0; // the next tick to be processed
+	private int size = 0;
+
+	private long fired = 0;
+	private long cancelled = 0;
+
+	/**
+	 *
+	 * @param slots number of slots (rounded up to a power of two)
+	 * @param tickDuration length of one tick
+	 * @param unit unit of tickDuration
+	 */
+	public TimingWheel(final int slots, final long tickDuration, final TimeUnit unit) {
+		int n = 1;
+
+		while( n < slots ) n <<= 1;
+
+		this.wheel = new Slot[n];
+		this.mask = n - 1;
+
+		for(int s = 0; s < n; s++) this.wheel[s] = new Slot();
+
+		this.tickNanos = Math.max(unit.toNanos(tickDuration), 1);
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Run the task once, after the specified delay.
+	 *
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return a handle that can be used to cancel the task
+	 */
+	public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+		return schedule(task, delay, 0, unit);
+	}
+
+	/**
+	 * Run the task after the specified delay and then every period after that,
+	 * until it is cancelled.
+	 *
+	 * @param task
+	 * @param delay
+	 * @param period
+	 * @param unit
+	 * @return a handle that can be used to cancel the task
+	 */
+	public Timeout scheduleAtFixedRate(final Runnable task, final long delay, final long period, final TimeUnit unit) {
+		return schedule(task, delay, Math.max(toTicks(period, unit), 1), unit);
+	}
+
+	private synchronized Timeout schedule(final Runnable task, final long delay, final long period, final TimeUnit unit) {
+		final Timeout timeout = new Timeout(task, period);
+
+		insert(timeout, ((System.nanoTime() - start) / tickNanos) + toTicks(delay, unit));
+
+		return timeout;
+	}
+
+	/**
+	 * Process every tick up to the specified time, running whatever expires
+	 * on the calling thread.
+	 *
+	 * @param now current time (System.nanoTime())
+	 * @return the number of tasks run
+	 */
+	public int advance(final long now) {
+		final long target = (now - start) / tickNanos;
+
+		final List<Timeout> expired = new ArrayList<Timeout>();
+
+		synchronized(this) {
+			while( tick <= target ) {
+				final Slot slot = wheel[(int) (tick & mask)];
+
+				Timeout timeout = slot.head;
+
+				while( timeout != null ) {
+					final Timeout next = timeout.next;
+
+					if( timeout.rounds <= 0 ) {
+						unlink(timeout);
+
+						expired.add(timeout);
+					}
+					else timeout.rounds--;
+
+					timeout = next;
+				}
+
+				tick++;
+			}
+
+			// periodic tasks go back on the wheel before anything runs, so a task may cancel itself
+			for(final Timeout timeout : expired) {
+				if( timeout.period > 0 ) insert(timeout, timeout.deadline + timeout.period);
+			}
+
+			fired += expired.size();
+		}
+
+		for(final Timeout timeout : expired) {
+			try {
+				timeout.task.run();
+			}
+			catch(final Exception e) {
+				System.out.println("TimingWheel: task failed");
+				e.printStackTrace();
+			}
+		}
+
+		return expired.size();
+	}
+
+	/**
+	 * Number of tasks currently scheduled.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	public synchronized long getFired() {
+		return this.fired;
+	}
+
+	public synchronized long getCancelled() {
+		return this.cancelled;
+	}
+
+	public int getSlots() {
+		return this.wheel.length;
+	}
+
+	public long getTickDuration(final TimeUnit unit) {
+		return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TimingWheel (slots: " + wheel.length + ", tick: " + (tickNanos / 1000000L) + " ms) scheduled: " + size + " fired: " + fired + " cancelled: " + cancelled;
+	}
+
+	private long toTicks(final long duration, final TimeUnit unit) {
+		return Math.max(unit.toNanos(duration), 0) / tickNanos;
+	}
+
+	// always called with the lock held
+	private void insert(final Timeout timeout, final long deadline) {
+		// a deadline that's already gone by goes in the next slot to be processed
+		final long due = Math.max(deadline, this.tick);
+
+		final Slot slot = wheel[(int) (due & mask)];
+
+		timeout.deadline = due;
+		timeout.rounds = (due - this.tick) / wheel.length;
+		timeout.slot = slot;
+
+		timeout.prev = null;
+		timeout.next = slot.head;
+
+		if( slot.head != null ) slot.head.prev = timeout;
+
+		slot.head = timeout;
+
+		size++;
+	}
+
+	// always called with the lock held
+	private void unlink(final Timeout timeout) {
+		final Slot slot = timeout.slot;
+
+		if( timeout.prev != null ) timeout.prev.next = timeout.next;
+		else                       slot.head = timeout.next;
+
+		if( timeout.next != null ) timeout.next.prev = timeout.prev;
+
+		timeout.slot = null;
+		timeout.prev = null;
+		timeout.next = null;
+
+		size--;
+	}
+
+	private static final class Slot {
+		private Timeout head = null;
+	}
+
+	/**
+	 * A handle on a scheduled task.
+	 */
+	public final class Timeout {
+		private final Runnable task;
+		private final long period; // in ticks, 0 if the task only runs once
+
+		private long deadline;
+		private long rounds;
+
+		private Slot slot = null;
+
+		private Timeout prev = null;
+		private Timeout next = null;
+
+		private boolean cancelled = false;
+
+		private Timeout(final Runnable task, final long period) {
+			this.task = task;
+			this.period = period;
+		}
+
+		/**
+		 * Stop the task from running (again).
+		 *
+		 * @return true if the task was still scheduled
+		 */
+		public boolean cancel() {
+			synchronized(TimingWheel.this) {
+				this.cancelled = true;
+
+				if( slot != null ) {
+					unlink(this);
+
+					TimingWheel.this.cancelled++;
+
+					return true;
+				}
+
+				return false;
+			}
+		}
+
+		public boolean isCancelled() {
+			synchronized(TimingWheel.this) {
+				return this.cancelled;
+			}
+		}
+
+		/**
+		 * Whether the task is done, i.e. it ran (and isn't periodic) or was cancelled.
+		 *
+		 * @return
+		 */
+		public boolean isExpired() {
+			synchronized(TimingWheel.this) {
+				return this.slot == null;
+			}
+		}
+
+		/**
+		 * Time left until the task next runs (0 if it's done).
+		 *
+		 * @param unit
+		 * @return
+		 */
+		public long getRemaining(final TimeUnit unit) {
+			synchronized(TimingWheel.this) {
+				if( slot == null ) return 0;
+
+				final long left = (deadline * tickNanos) - (System.nanoTime() - start);
+
+				return unit.convert(Math.max(left, 0), TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package mud.utils;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A character trie (prefix tree) of strings. Each node keeps a count of the
+ * words below it, so checking whether a prefix identifies exactly one word
+ * only costs a walk down the length of the prefix.
+ * 
+ * @author Jeremy
+ *
+ */
+public class Trie {
+	private static class Node {
+		final Map<Character, Node> children = new HashMap<Character, Node>(4, 0.75f);
+		String word = null; // the word ending here, if any
+		int count = 0;      // the number of words at or below this node
+	}
+
+	private final Node root = new Node();
+
+	public boolean add(final String word) {
+		if( contains(word) ) return false;
+
+		Node node = root;
+
+		node.count++;
+
+		for(int i = 0; i < word.length(); i++) {
+			final Character ch = word.charAt(i);
+
+			Node next = node.children.get(ch);
+
+			if( next == null ) {
+				next = new Node();
+				node.children.put(ch, next);
+			}
+
+			node = next;
+			node.count++;
+		}
+
+		node.word = word;
+
+		return true;
+	}
+
+	public boolean remove(final String word) {
+		if( !contains(word) ) return false;
+
+		Node node = root;
+
+		node.count--;
+
+		for(int i = 0; i < word.length(); i++) {
+			final Character ch = word.charAt(i);
+			final Node next = node.children.get(ch);
+
+			next.count--;
+
+			// nothing left below here, so drop the whole branch
+			if( next.count == 0 ) {
+				node.children.remove(ch);
+				return true;
+			}
+
+			node = next;
+		}
+
+		node.word = null;
+
+		return true;
+	}
+
+	public boolean contains(final String word) {
+		final Node node = find(word);
+
+		return node != null && word.equals(node.word);
+	}
+
+	/**
+	 * Get the only word starting with the given prefix.
+	 * 
+	 * @param prefix
+	 * @return the word, or null if there are none or more than one
+	 */
+	public String getUnique(final String prefix) {
+		Node node = find(prefix);
+
+		if( node == null || node.count != 1 ) return null;
+
+		// follow the only path down to the word
+		while( node.word == null ) {
+			node = node.children.values().iterator().next();
+		}
+
+		return node.word;
+	}
+
+	/**
+	 * Get all the words starting with the given prefix.
+	 * 
+	 * @param prefix
+	 * @return
+	 */
+	public List<String> getMatches(final String prefix) {
+		final List<String> words = new LinkedList<String>();
+
+		final Node node = find(prefix);
+
+		if( node != null ) collect(node, words);
+
+		return words;
+	}
+
+	public int size() {
+		return root.count;
+	}
+
+	private Node find(final String prefix) {
+		Node node = root;
+
+		for(int i = 0; i < prefix.length() && node != null; i++) {
+			node = node.children.get( prefix.charAt(i) );
+		}
+
+		return node;
+	}
+
+	private void collect(final Node node, final List<String> words) {
+		if( node.word != null ) words.add(node.word);
+
+		for(final Node child : node.children.values()) {
+			collect(child, words);
+		}
+	}
+}
@@ -63,15 +63,21 @@ public final class Utils {
 	 * NOTE: a failure to get a a key factory will result in the program exiting
 	 * 
 	 */
-	private static SecretKeyFactory f;
-	
-	static {
-		try {
-			f = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(-1);
-		}
+	private static final ThreadLocal<SecretKeyFactory> f = ThreadLocal.withInitial(Utils::keyFactory);
+	
+	static {
+		keyFactory(); // fail early
+	}
+	
+	// SecretKeyFactory isn't thread-safe, and hashing happens on more than one thread
+	private static SecretKeyFactory keyFactory() {
+		try {
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		return null;
 	}
 	
 	final private static byte[] salt = new byte[16];
@@ -93,7 +99,7 @@ public final class Utils {
 		final KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 128);
 
 		try {
-			final byte[] hash = f.generateSecret(spec).getEncoded();
+			final byte[] hash = f.get().generateSecret(spec).getEncoded();
 			return new BigInteger(1, hash).toString(16);
 		}
 		catch (Exception e) {